@@ -80,7 +80,7 @@ public class VListSelect extends VOptionGroupBase {
             final UIDL optionUidl = (UIDL) i.next();
             select.addItem(optionUidl.getStringAttribute("caption"),
                     optionUidl.getStringAttribute("key"));
-            if (optionUidl.hasAttribute("selected")) {
+            if (selectedKeys.contains(optionUidl.getStringAttribute("key"))) {
                 int itemIndex = select.getItemCount() - 1;
                 select.setItemSelected(itemIndex, true);
                 lastSelectedIndex = itemIndex;
@@ -60,7 +60,7 @@ public class VNativeSelect extends VOptionGroupBase implements Field {
             final UIDL optionUidl = (UIDL) i.next();
             select.addItem(optionUidl.getStringAttribute("caption"),
                     optionUidl.getStringAttribute("key"));
-            if (optionUidl.hasAttribute("selected")) {
+            if (selectedKeys.contains(optionUidl.getStringAttribute("key"))) {
                 select.setItemSelected(select.getItemCount() - 1, true);
                 selected = true;
             }
@@ -171,7 +171,7 @@ public class VOptionGroup extends VOptionGroupBase implements FocusHandler,
             }
 
             op.setHTML(itemHtml);
-            op.setValue(opUidl.getBooleanAttribute("selected"));
+            op.setValue(selectedKeys.contains(key));
             boolean optionEnabled = !opUidl
                     .getBooleanAttribute(OptionGroupConstants.ATTRIBUTE_OPTION_DISABLED);
             boolean enabled = optionEnabled && !isReadonly() && isEnabled();
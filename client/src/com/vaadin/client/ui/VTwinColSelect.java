@@ -228,7 +228,7 @@ public class VTwinColSelect extends VOptionGroupBase implements KeyDownHandler,
         selections.clear();
         for (final Iterator<?> i = uidl.getChildIterator(); i.hasNext();) {
             final UIDL optionUidl = (UIDL) i.next();
-            if (optionUidl.hasAttribute("selected")) {
+            if (selectedKeys.contains(optionUidl.getStringAttribute("key"))) {
                 selections.addItem(optionUidl.getStringAttribute("caption"),
                         optionUidl.getStringAttribute("key"));
             } else {
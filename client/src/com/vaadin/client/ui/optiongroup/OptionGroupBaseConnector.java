@@ -28,6 +28,12 @@ import com.vaadin.client.ui.VTextField;
 public abstract class OptionGroupBaseConnector extends AbstractFieldConnector
         implements Paintable {
 
+    /**
+     * The options last received from the server, reused when the server
+     * reports them unchanged.
+     */
+    private UIDL options;
+
     @Override
     public void updateFromUIDL(UIDL uidl, ApplicationConnection client) {
 
@@ -57,7 +63,13 @@ public abstract class OptionGroupBaseConnector extends AbstractFieldConnector
             getWidget().rows = uidl.getIntAttribute("rows");
         }
 
-        final UIDL ops = uidl.getChildUIDL(0);
+        UIDL ops = uidl.getChildUIDL(0);
+        if (ops.getBooleanAttribute("unchanged") && options != null) {
+            // Server left out the options, rebuild from the previous ones
+            ops = options;
+        } else {
+            options = ops;
+        }
 
         if (getWidget().getColumns() > 0) {
             getWidget().container.setWidth(getWidget().getColumns() + "em");
@@ -137,11 +137,30 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
      */
     private BeanIdResolver<IDTYPE, BEANTYPE> beanIdResolver = null;
 
+    /**
+     * The default maximum number of recently used items kept when items are
+     * created lazily.
+     */
+    private static final int DEFAULT_LAZY_ITEM_CACHE_SIZE = 1000;
+
+    /**
+     * Maps all item ids in the container (including filtered) to their
+     * corresponding BeanItem. When items are created lazily, only contains the
+     * recently used items.
+     */
+    private Map<IDTYPE, BeanItem<BEANTYPE>> itemIdToItem = new HashMap<IDTYPE, BeanItem<BEANTYPE>>();
+
     /**
      * Maps all item ids in the container (including filtered) to their
-     * corresponding BeanItem.
+     * corresponding bean when items are created lazily, null otherwise.
      */
-    private final Map<IDTYPE, BeanItem<BEANTYPE>> itemIdToItem = new HashMap<IDTYPE, BeanItem<BEANTYPE>>();
+    private Map<IDTYPE, BEANTYPE> itemIdToBean = null;
+
+    /**
+     * The maximum number of recently used items kept when items are created
+     * lazily.
+     */
+    private int lazyItemCacheSize = DEFAULT_LAZY_ITEM_CACHE_SIZE;
 
     /**
      * The type of the beans in the container.
@@ -192,6 +211,98 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
         return bean == null ? null : new BeanItem<BEANTYPE>(bean, model);
     }
 
+    /**
+     * Sets whether the {@link BeanItem}s of the container are created only when
+     * requested. By default, a BeanItem and its properties are created for
+     * each bean when it is added to the container and kept as long as the bean
+     * is in the container.
+     * <p>
+     * When enabled, the container only keeps the beans and creates BeanItems
+     * on demand in {@link #getItem(Object)}, keeping a limited number of
+     * recently used items (see {@link #setLazyItemCacheSize(int)}). This
+     * considerably reduces the memory used by large containers, but
+     * {@link #getItem(Object)} may return a different BeanItem instance for
+     * the same bean once the previous one has been discarded, so properties
+     * added to or removed from individual items are not retained. Beans added
+     * in bulk get an item only when it is requested, while the methods adding
+     * a single bean create the item they return. Filtering and sorting create
+     * items temporarily for the beans they evaluate.
+     * <p>
+     * Can only be changed when the container is empty.
+     * 
+     * @param lazyItems
+     *            true to create items on demand, false to create and keep an
+     *            item for each bean
+     * @throws IllegalStateException
+     *             if the container contains items
+     * @since 7.2
+     */
+    public void setLazyItems(boolean lazyItems) throws IllegalStateException {
+        if (lazyItems == isLazyItems()) {
+            return;
+        }
+        if (!getAllItemIds().isEmpty()) {
+            throw new IllegalStateException(
+                    "Lazy items can only be enabled or disabled for an empty container");
+        }
+        if (lazyItems) {
+            itemIdToBean = new HashMap<IDTYPE, BEANTYPE>();
+            itemIdToItem = new BeanItemCache(lazyItemCacheSize);
+        } else {
+            itemIdToBean = null;
+            itemIdToItem = new HashMap<IDTYPE, BeanItem<BEANTYPE>>();
+        }
+    }
+
+    /**
+     * Checks whether the {@link BeanItem}s of the container are created only
+     * when requested.
+     * 
+     * @see #setLazyItems(boolean)
+     * @return true if items are created on demand, false otherwise
+     * @since 7.2
+     */
+    public boolean isLazyItems() {
+        return itemIdToBean != null;
+    }
+
+    /**
+     * Sets the maximum number of recently used items kept when items are
+     * created lazily. The default is 1000.
+     * 
+     * @see #setLazyItems(boolean)
+     * @param lazyItemCacheSize
+     *            the maximum number of items to keep, 0 to create a new item
+     *            for each request
+     * @throws IllegalArgumentException
+     *             if the size is negative
+     * @since 7.2
+     */
+    public void setLazyItemCacheSize(int lazyItemCacheSize)
+            throws IllegalArgumentException {
+        if (lazyItemCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "The lazy item cache size must not be negative");
+        }
+        this.lazyItemCacheSize = lazyItemCacheSize;
+        if (isLazyItems()) {
+            ((BeanItemCache) itemIdToItem)
+                    .setMaxSize(lazyItemCacheSize);
+        }
+    }
+
+    /**
+     * Returns the maximum number of recently used items kept when items are
+     * created lazily.
+     * 
+     * @see #setLazyItemCacheSize(int)
+     * @return the maximum number of items kept
+     * @since 7.2
+     */
+    public int getLazyItemCacheSize() {
+        return lazyItemCacheSize;
+    }
+
     /**
      * Returns the type of beans this Container can contain.
      * 
@@ -230,6 +341,9 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
             removeAllValueChangeListeners(item);
         }
         itemIdToItem.clear();
+        if (itemIdToBean != null) {
+            itemIdToBean.clear();
+        }
 
         // fire event only if the visible view changed, regardless of whether
         // filtered out items were removed or not
@@ -252,8 +366,43 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     protected BeanItem<BEANTYPE> getUnfilteredItem(Object itemId) {
-        return itemIdToItem.get(itemId);
+        BeanItem<BEANTYPE> item = itemIdToItem.get(itemId);
+        if (item == null && itemIdToBean != null) {
+            BEANTYPE bean = itemIdToBean.get(itemId);
+            if (bean != null) {
+                item = createBeanItem(bean);
+                itemIdToItem.put((IDTYPE) itemId, item);
+                addValueChangeListeners(item);
+            }
+        }
+        return item;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * When items are created lazily, the filters are evaluated against a
+     * temporary item that is not cached. Filtering then neither touches the
+     * item cache, which is not thread safe, nor evicts the recently used items
+     * from it.
+     */
+    @Override
+    protected boolean passesFilters(Object itemId) {
+        if (itemIdToBean == null) {
+            return super.passesFilters(itemId);
+        }
+        if (getFilters().isEmpty()) {
+            return true;
+        }
+        BeanItem<BEANTYPE> item = createBeanItem(itemIdToBean.get(itemId));
+        for (Filter filter : getFilters()) {
+            if (!filter.passesFilter(itemId, item)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /*
@@ -291,15 +440,17 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
     public boolean removeItem(Object itemId) {
         // TODO should also remove items that are filtered out
         int origSize = size();
-        Item item = getItem(itemId);
         int position = indexOfId(itemId);
 
         if (internalRemoveItem(itemId)) {
-            // detach listeners from Item
-            removeAllValueChangeListeners(item);
-
-            // remove item
-            itemIdToItem.remove(itemId);
+            // remove item and detach listeners from it
+            Item item = itemIdToItem.remove(itemId);
+            if (item != null) {
+                removeAllValueChangeListeners(item);
+            }
+            if (itemIdToBean != null) {
+                itemIdToBean.remove(itemId);
+            }
 
             // fire event only if the visible view changed, regardless of
             // whether filtered out items were removed or not
@@ -318,6 +469,8 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
      */
     @Override
     public void valueChange(ValueChangeEvent event) {
+        // the changed property is not known, discard all indexes
+        invalidatePropertyIndex(null);
         // if a property that is used in a filter is changed, refresh filtering
         filterAll();
     }
@@ -350,7 +503,12 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
     public void removeAllContainerFilters() {
         if (!getFilters().isEmpty()) {
             for (Item item : itemIdToItem.values()) {
-                removeAllValueChangeListeners(item);
+                for (Object propertyId : item.getItemPropertyIds()) {
+                    // indexed properties are still listened to
+                    if (!isPropertyIndexed(propertyId)) {
+                        removeValueChangeListener(item, propertyId);
+                    }
+                }
             }
             removeAllFilters();
         }
@@ -366,7 +524,7 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
     @Override
     public void removeContainerFilters(Object propertyId) {
         Collection<Filter> removedFilters = super.removeFilters(propertyId);
-        if (!removedFilters.isEmpty()) {
+        if (!removedFilters.isEmpty() && !isPropertyIndexed(propertyId)) {
             // stop listening to change events for the property
             for (Item item : itemIdToItem.values()) {
                 removeValueChangeListener(item, propertyId);
@@ -385,6 +543,12 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
         removeFilter(filter);
     }
 
+    @Override
+    public void replaceContainerFilter(Filter oldFilter, Filter newFilter)
+            throws UnsupportedFilterException {
+        super.replaceContainerFilter(oldFilter, newFilter);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -487,8 +651,21 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
     @Override
     protected void registerNewItem(int position, IDTYPE itemId,
             BeanItem<BEANTYPE> item) {
+        if (itemIdToBean != null) {
+            itemIdToBean.put(itemId, item.getBean());
+        }
         itemIdToItem.put(itemId, item);
+        addValueChangeListeners(item);
+    }
 
+    /**
+     * Make this container listen to the properties of a new item that are
+     * used for filtering or indexing.
+     * 
+     * @param item
+     *            the new item
+     */
+    private void addValueChangeListeners(Item item) {
         // add listeners to be able to update filtering on property
         // changes
         for (Filter filter : getFilters()) {
@@ -499,6 +676,36 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
                 }
             }
         }
+        for (Object propertyId : getIndexedPropertyIds()) {
+            addValueChangeListener(item, propertyId);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Changes made through the properties of the {@link BeanItem}s of the
+     * container are monitored for the indexed property.
+     */
+    @Override
+    public void addPropertyIndex(Object propertyId) {
+        super.addPropertyIndex(propertyId);
+        for (Item item : itemIdToItem.values()) {
+            addValueChangeListener(item, propertyId);
+        }
+    }
+
+    @Override
+    public boolean removePropertyIndex(Object propertyId) {
+        if (!super.removePropertyIndex(propertyId)) {
+            return false;
+        }
+        if (!isPropertyFiltered(propertyId)) {
+            for (Item item : itemIdToItem.values()) {
+                removeValueChangeListener(item, propertyId);
+            }
+        }
+        return true;
     }
 
     /**
@@ -691,12 +898,20 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
                         "Resolved identifier for a bean must not be null");
             }
 
-            if (internalAddItemAtEnd(itemId, createBeanItem(bean), false) != null) {
+            if (itemIdToBean != null) {
+                if (internalAddBeanAtEnd(itemId, bean)) {
+                    modified = true;
+                }
+            } else if (internalAddItemAtEnd(itemId, createBeanItem(bean),
+                    false) != null) {
                 modified = true;
             }
         }
 
         if (modified) {
+            if (itemIdToBean != null) {
+                invalidatePropertyIndex(null);
+            }
             // Filter the contents when all items have been added
             if (isFiltered()) {
                 filterAll();
@@ -706,6 +921,26 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
         }
     }
 
+    /**
+     * Adds a bean at the end of the unfiltered container without creating an
+     * item for it, when items are created lazily. The caller must invalidate
+     * the property indexes and filter the container after adding the beans.
+     * 
+     * @param itemId
+     *            the id of the new item
+     * @param bean
+     *            the bean to add
+     * @return true if the bean was added, false if the id is already in use
+     */
+    private boolean internalAddBeanAtEnd(IDTYPE itemId, BEANTYPE bean) {
+        if (itemIdToBean.containsKey(itemId)) {
+            return false;
+        }
+        getAllItemIds().add(itemId);
+        itemIdToBean.put(itemId, bean);
+        return true;
+    }
+
     /**
      * Use the bean resolver to get the identifier for a bean.
      * 
@@ -898,8 +1133,8 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
         model.remove(propertyId);
 
         // If remove the Property from all Items
-        for (final Iterator<IDTYPE> i = getAllItemIds().iterator(); i.hasNext();) {
-            getUnfilteredItem(i.next()).removeItemProperty(propertyId);
+        for (BeanItem<BEANTYPE> item : itemIdToItem.values()) {
+            item.removeItemProperty(propertyId);
         }
 
         // Sends a change event
@@ -908,4 +1143,39 @@ public abstract class AbstractBeanContainer<IDTYPE, BEANTYPE> extends
         return true;
     }
 
+    /**
+     * Keeps a limited number of recently used items when items are created
+     * lazily. The listeners of the container are removed from the items
+     * discarded from the cache.
+     */
+    private class BeanItemCache extends
+            LinkedHashMap<IDTYPE, BeanItem<BEANTYPE>> {
+
+        private int maxSize;
+
+        public BeanItemCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            Iterator<BeanItem<BEANTYPE>> i = values().iterator();
+            while (size() > maxSize && i.hasNext()) {
+                removeAllValueChangeListeners(i.next());
+                i.remove();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<IDTYPE, BeanItem<BEANTYPE>> eldest) {
+            if (size() > maxSize) {
+                removeAllValueChangeListeners(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    }
+
 }
@@ -15,13 +15,21 @@
  */
 package com.vaadin.data.util;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Container.ItemSetChangeNotifier;
@@ -79,6 +87,13 @@ import com.vaadin.data.util.filter.UnsupportedFilterException;
  * {@link #addFilter(com.vaadin.data.Container.Filter)} and
  * {@link #removeFilters(Object)} respectively.
  * 
+ * Filtering large containers can optionally be sped up by evaluating the
+ * filters in parallel (see {@link #setFilteringExecutor(Executor)}) and by
+ * maintaining secondary indexes for frequently filtered properties (see
+ * {@link #addPropertyIndex(Object)}). Containers with well-behaved filters can
+ * also re-filter only the visible items when filters are added (see
+ * {@link #setIncrementalFiltering(boolean)}).
+ * 
  * @param <ITEMIDTYPE>
  *            the class of item identifiers in the container, use Object if can
  *            be any class
@@ -125,6 +140,42 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      */
     private ItemSorter itemSorter = new DefaultItemSorter();
 
+    /**
+     * The minimum number of items for which filters are evaluated in parallel
+     * if a filtering executor has been set.
+     */
+    private static final int PARALLEL_FILTERING_THRESHOLD = 10000;
+
+    /**
+     * The minimum number of items evaluated by a single parallel filtering
+     * task.
+     */
+    private static final int PARALLEL_FILTERING_MIN_CHUNK = 2000;
+
+    /**
+     * Executor used for evaluating filters in parallel, <code>null</code> to
+     * evaluate filters in the calling thread.
+     */
+    private transient Executor filteringExecutor;
+
+    /**
+     * Secondary indexes by property id, <code>null</code> if no properties are
+     * indexed.
+     */
+    private Map<Object, InMemoryPropertyIndex> propertyIndexes;
+
+    /**
+     * True if only the visible items are filtered again when the filters have
+     * been narrowed.
+     */
+    private boolean incrementalFiltering = false;
+
+    /**
+     * True while re-filtering after the filters have only been narrowed, in
+     * which case only the currently visible items need to be filtered again.
+     */
+    private boolean filteringNarrowed = false;
+
     // Constructors
 
     /**
@@ -406,6 +457,29 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         }
     }
 
+    /**
+     * Filter the view after the filters have been narrowed so that no item
+     * that was previously filtered out can pass the new filters, e.g. after
+     * adding a filter. If incremental filtering is enabled, only the currently
+     * visible items are filtered again, otherwise all items are. Sends a
+     * notification if the set of visible items changed.
+     * 
+     * @see #setIncrementalFiltering(boolean)
+     * @since 7.2
+     */
+    protected void filterNarrowed() {
+        if (!incrementalFiltering || !isFiltered()) {
+            filterAll();
+            return;
+        }
+        filteringNarrowed = true;
+        try {
+            filterAll();
+        } finally {
+            filteringNarrowed = false;
+        }
+    }
+
     /**
      * Filters the data in the container and updates internal data structures.
      * This method should reset any internal data structures and then repopulate
@@ -434,13 +508,26 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         }
         setFilteredItemIds(new ListSet<ITEMIDTYPE>());
 
+        // Items that may pass the filters, in the order of the full list
+        List<ITEMIDTYPE> candidates;
+        if (filteringNarrowed && !wasUnfiltered) {
+            candidates = new ArrayList<ITEMIDTYPE>(originalFilteredItemIds);
+        } else {
+            candidates = findIndexedFilterCandidates();
+            if (candidates == null) {
+                candidates = getAllItemIds();
+            }
+        }
+
         // Filter
+        boolean[] passes = evaluateFilters(candidates);
         boolean equal = true;
         Iterator<ITEMIDTYPE> origIt = originalFilteredItemIds.iterator();
-        for (final Iterator<ITEMIDTYPE> i = getAllItemIds().iterator(); i
-                .hasNext();) {
+        int index = 0;
+        for (final Iterator<ITEMIDTYPE> i = candidates.iterator(); i
+                .hasNext(); index++) {
             final ITEMIDTYPE id = i.next();
-            if (passesFilters(id)) {
+            if (passes[index]) {
                 // filtered list comes from the full list, can use ==
                 equal = equal && origIt.hasNext() && origIt.next() == id;
                 getFilteredItemIds().add(id);
@@ -451,6 +538,330 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
                 || origIt.hasNext();
     }
 
+    /**
+     * Evaluates the filters for a range of items when filtering in parallel.
+     */
+    private class FilteringTask implements Callable<Void>, Serializable {
+        private final List<ITEMIDTYPE> itemIds;
+        private final boolean[] passes;
+        private final int start;
+        private final int end;
+
+        private FilteringTask(List<ITEMIDTYPE> itemIds, boolean[] passes,
+                int start, int end) {
+            this.itemIds = itemIds;
+            this.passes = passes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Void call() {
+            for (int i = start; i < end; i++) {
+                passes[i] = passesFilters(itemIds.get(i));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Evaluates the filters for the given items, in parallel if a filtering
+     * executor has been set and there are enough items.
+     * 
+     * @param itemIds
+     *            the item ids for which to evaluate the filters
+     * @return an array with the result of {@link #passesFilters(Object)} for
+     *         each item id, in the same order as the item ids
+     */
+    private boolean[] evaluateFilters(List<ITEMIDTYPE> itemIds) {
+        int size = itemIds.size();
+        boolean[] passes = new boolean[size];
+
+        Executor executor = filteringExecutor;
+        int chunks = Math.min(size / PARALLEL_FILTERING_MIN_CHUNK, Runtime
+                .getRuntime().availableProcessors() * 2);
+        if (executor == null || size < PARALLEL_FILTERING_THRESHOLD
+                || chunks < 2) {
+            int index = 0;
+            for (ITEMIDTYPE itemId : itemIds) {
+                passes[index++] = passesFilters(itemId);
+            }
+            return passes;
+        }
+
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int start = (int) ((long) size * chunk / chunks);
+            int end = (int) ((long) size * (chunk + 1) / chunks);
+            tasks.add(new FutureTask<Void>(new FilteringTask(itemIds, passes,
+                    start, end)));
+        }
+
+        // The first chunk is evaluated by this thread
+        for (int i = 1; i < chunks; i++) {
+            executor.execute(tasks.get(i));
+        }
+
+        try {
+            for (FutureTask<Void> task : tasks) {
+                // Evaluate tasks not yet started by the executor in this
+                // thread instead of waiting, does nothing if already run
+                task.run();
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            for (FutureTask<Void> task : tasks) {
+                task.cancel(false);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            for (FutureTask<Void> task : tasks) {
+                task.cancel(false);
+            }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while filtering", e);
+        }
+        return passes;
+    }
+
+    /**
+     * Uses the secondary property indexes to find the items that may pass the
+     * current filters.
+     * 
+     * @return the item ids that may pass the filters in the order of the full
+     *         item id list, or <code>null</code> if no index can be used
+     */
+    @SuppressWarnings("unchecked")
+    private List<ITEMIDTYPE> findIndexedFilterCandidates() {
+        if (propertyIndexes == null || !canUsePropertyIndexes()) {
+            return null;
+        }
+
+        InMemoryPropertyIndex bestIndex = null;
+        int[] bestCandidates = null;
+        for (Filter filter : getFilters()) {
+            for (InMemoryPropertyIndex index : propertyIndexes.values()) {
+                if (!filter.appliesToProperty(index.getPropertyId())
+                        || !index.prepare(getAllItemIds(), this)) {
+                    continue;
+                }
+                int[] candidates = index.findCandidates(filter);
+                if (candidates != null
+                        && (bestCandidates == null || candidates.length < bestCandidates.length)) {
+                    bestIndex = index;
+                    bestCandidates = candidates;
+                }
+            }
+        }
+
+        if (bestCandidates == null) {
+            return null;
+        }
+        List<ITEMIDTYPE> itemIds = new ArrayList<ITEMIDTYPE>(
+                bestCandidates.length);
+        for (int position : bestCandidates) {
+            itemIds.add((ITEMIDTYPE) bestIndex.getItemId(position));
+        }
+        return itemIds;
+    }
+
+    /**
+     * Sets the executor used for evaluating filters in parallel for large
+     * containers. By default, filters are evaluated in the thread modifying the
+     * filters.
+     * <p>
+     * When an executor is set, the item set is split into chunks that are
+     * evaluated concurrently by the executor and the calling thread. The order
+     * of the items is preserved. Filters and the items and properties they use
+     * must then support being read concurrently from multiple threads, and
+     * must not depend on e.g. {@link com.vaadin.server.VaadinSession#getCurrent()}
+     * as the filters are evaluated outside the session lock.
+     * <p>
+     * The executor is not serialized with the container.
+     * 
+     * @param filteringExecutor
+     *            the executor to use for parallel filtering, or
+     *            <code>null</code> to evaluate filters sequentially
+     * @since 7.2
+     */
+    public void setFilteringExecutor(Executor filteringExecutor) {
+        this.filteringExecutor = filteringExecutor;
+    }
+
+    /**
+     * Sets whether only the visible items are filtered again when the filters
+     * of the container are narrowed, i.e. when a filter is added or replaced
+     * with a narrower one using
+     * {@link #replaceContainerFilter(Filter, Filter)}. By default, all items
+     * are filtered again whenever the filters change.
+     * <p>
+     * Incremental filtering is only correct if an item that does not pass the
+     * filters can never pass them after another filter has been added. Only
+     * enable it if all filters of the container depend on nothing but the
+     * current property values of the item, and if any overridden
+     * {@link #passesFilters(Object)} or {@link #doFilterContainer(boolean)}
+     * of the container preserves this.
+     * 
+     * @param incrementalFiltering
+     *            true to filter only the visible items again when the filters
+     *            are narrowed, false to always filter all items
+     * @since 7.2
+     */
+    public void setIncrementalFiltering(boolean incrementalFiltering) {
+        this.incrementalFiltering = incrementalFiltering;
+    }
+
+    /**
+     * Checks whether only the visible items are filtered again when the
+     * filters of the container are narrowed.
+     * 
+     * @see #setIncrementalFiltering(boolean)
+     * 
+     * @return true if incremental filtering is enabled, false otherwise
+     * @since 7.2
+     */
+    public boolean isIncrementalFiltering() {
+        return incrementalFiltering;
+    }
+
+    /**
+     * Gets the executor used for evaluating filters in parallel.
+     * 
+     * @see #setFilteringExecutor(Executor)
+     * 
+     * @return the executor used for parallel filtering, or <code>null</code>
+     *         if filters are evaluated sequentially
+     * @since 7.2
+     */
+    public Executor getFilteringExecutor() {
+        return filteringExecutor;
+    }
+
+    /**
+     * Adds a secondary index for the given property. The index is used when
+     * filtering the container with {@link com.vaadin.data.util.filter.Compare}
+     * , {@link com.vaadin.data.util.filter.Between} or prefix matching
+     * {@link SimpleStringFilter} filters for the property, so that only the
+     * items matching the indexed filter need to be evaluated against all
+     * filters.
+     * <p>
+     * The index is built on demand when repeatedly filtering by the property
+     * and rebuilt after items have been added, removed or sorted or after the
+     * value of the property has been changed through the container. Values
+     * changed in other ways, e.g. directly in beans, are not noticed; call
+     * {@link #invalidatePropertyIndex(Object)} after such changes.
+     * 
+     * @param propertyId
+     *            the id of the property to index
+     * @since 7.2
+     */
+    public void addPropertyIndex(Object propertyId) {
+        if (propertyId == null) {
+            throw new IllegalArgumentException("Property id cannot be null");
+        }
+        if (propertyIndexes == null) {
+            propertyIndexes = new LinkedHashMap<Object, InMemoryPropertyIndex>();
+        }
+        if (!propertyIndexes.containsKey(propertyId)) {
+            propertyIndexes.put(propertyId, new InMemoryPropertyIndex(
+                    propertyId));
+        }
+    }
+
+    /**
+     * Removes the secondary index for the given property.
+     * 
+     * @see #addPropertyIndex(Object)
+     * 
+     * @param propertyId
+     *            the id of the property
+     * @return true if the property was indexed, false otherwise
+     * @since 7.2
+     */
+    public boolean removePropertyIndex(Object propertyId) {
+        if (propertyIndexes == null
+                || propertyIndexes.remove(propertyId) == null) {
+            return false;
+        }
+        if (propertyIndexes.isEmpty()) {
+            propertyIndexes = null;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the ids of the properties that have a secondary index.
+     * 
+     * @see #addPropertyIndex(Object)
+     * 
+     * @return an unmodifiable collection of indexed property ids
+     * @since 7.2
+     */
+    public Collection<?> getIndexedPropertyIds() {
+        if (propertyIndexes == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableCollection(propertyIndexes.keySet());
+    }
+
+    /**
+     * Checks whether the secondary property indexes can currently be used for
+     * filtering. Indexes can only be used if {@link #passesFilters(Object)}
+     * only returns true for items passing all the filters of the container.
+     * 
+     * @return true if indexes can be used when filtering, false to always
+     *         evaluate the filters for all items
+     * @since 7.2
+     */
+    protected boolean canUsePropertyIndexes() {
+        return true;
+    }
+
+    /**
+     * Checks whether the given property has a secondary index.
+     * 
+     * @param propertyId
+     *            the id of the property
+     * @return true if the property is indexed
+     * @since 7.2
+     */
+    protected boolean isPropertyIndexed(Object propertyId) {
+        return propertyIndexes != null
+                && propertyIndexes.containsKey(propertyId);
+    }
+
+    /**
+     * Discards the contents of the secondary index for the given property, if
+     * any. Should be called when the value of the property changes for any
+     * item.
+     * 
+     * @param propertyId
+     *            the id of the property whose value has changed, or
+     *            <code>null</code> to discard all indexes
+     * @since 7.2
+     */
+    public void invalidatePropertyIndex(Object propertyId) {
+        if (propertyIndexes == null) {
+            return;
+        }
+        if (propertyId == null) {
+            for (InMemoryPropertyIndex index : propertyIndexes.values()) {
+                index.invalidate();
+            }
+        } else {
+            InMemoryPropertyIndex index = propertyIndexes.get(propertyId);
+            if (index != null) {
+                index.invalidate();
+            }
+        }
+    }
+
     /**
      * Checks if the given itemId passes the filters set for the container. The
      * caller should make sure the itemId exists in the container. For
@@ -497,7 +908,82 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      */
     protected void addFilter(Filter filter) throws UnsupportedFilterException {
         getFilters().add(filter);
-        filterAll();
+        // Adding a filter can only remove items from the view, if the filters
+        // are well-behaved
+        filterNarrowed();
+    }
+
+    /**
+     * Replaces a container filter with another one and re-filters the view
+     * once, sending at most one notification.
+     * <p>
+     * If incremental filtering is enabled and the new filter is known to be
+     * narrower than the old one, e.g. a {@link SimpleStringFilter} whose filter
+     * string extends that of the old filter, only the currently visible items
+     * are filtered again. This makes incremental searching proportional to the
+     * number of matching items instead of the total number of items.
+     * <p>
+     * If the old filter is not in use, the new filter is simply added.
+     * <p>
+     * This can be used to implement a public method of the same name in
+     * filterable containers.
+     * 
+     * @see #setIncrementalFiltering(boolean)
+     * 
+     * @param oldFilter
+     *            the filter to remove
+     * @param newFilter
+     *            the filter to add
+     * @throws UnsupportedFilterException
+     *             if the new filter is detected as not supported by the
+     *             container
+     * @since 7.2
+     */
+    protected void replaceContainerFilter(Filter oldFilter, Filter newFilter)
+            throws UnsupportedFilterException {
+        boolean removed = getFilters().remove(oldFilter);
+        getFilters().add(newFilter);
+        if (!removed || isNarrowerFilter(oldFilter, newFilter)) {
+            filterNarrowed();
+        } else {
+            filterAll();
+        }
+    }
+
+    /**
+     * Checks whether all items passing a filter also pass another filter.
+     * 
+     * @param filter
+     *            the original filter
+     * @param narrowerFilter
+     *            the filter to check
+     * @return true if no item that is filtered out by <code>filter</code> can
+     *         pass <code>narrowerFilter</code>, false if not or unknown
+     */
+    private static boolean isNarrowerFilter(Filter filter,
+            Filter narrowerFilter) {
+        if (filter.equals(narrowerFilter)) {
+            return true;
+        }
+        if (!(filter instanceof SimpleStringFilter)
+                || !(narrowerFilter instanceof SimpleStringFilter)) {
+            return false;
+        }
+        SimpleStringFilter old = (SimpleStringFilter) filter;
+        SimpleStringFilter narrower = (SimpleStringFilter) narrowerFilter;
+        if (old.getPropertyId() == null
+                || !old.getPropertyId().equals(narrower.getPropertyId())
+                || old.isIgnoreCase() != narrower.isIgnoreCase()
+                || old.isOnlyMatchPrefix() != narrower.isOnlyMatchPrefix()) {
+            return false;
+        }
+        if (old.isOnlyMatchPrefix()) {
+            return narrower.getFilterString().startsWith(
+                    old.getFilterString());
+        } else {
+            return narrower.getFilterString()
+                    .contains(old.getFilterString());
+        }
     }
 
     /**
@@ -650,6 +1136,7 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
 
         // Perform the actual sort
         doSort();
+        invalidatePropertyIndex(null);
 
         // Post sort updates
         if (isFiltered()) {
@@ -664,12 +1151,31 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
      * Perform the sorting of the data structures in the container. This is
      * invoked when the <code>itemSorter</code> has been prepared for the sort
      * operation. Typically this method calls
-     * <code>Collections.sort(aCollection, getItemSorter())</code> on all arrays
-     * (containing item ids) that need to be sorted.
+     * <code>Collections.sort(aCollection, getItemSorter())</code> or
+     * {@link #sortItemIds(List)} on all arrays (containing item ids) that need
+     * to be sorted.
      * 
      */
     protected void doSort() {
-        Collections.sort(getAllItemIds(), getItemSorter());
+        sortItemIds(getAllItemIds());
+    }
+
+    /**
+     * Sorts a list of item ids using the current item sorter. When using a
+     * {@link DefaultItemSorter}, the values of the sort properties are read
+     * only once per item instead of once per comparison.
+     * 
+     * @param itemIds
+     *            the list of item ids to sort in place
+     * @since 7.2
+     */
+    protected <T> void sortItemIds(List<T> itemIds) {
+        ItemSorter sorter = getItemSorter();
+        if (sorter instanceof DefaultItemSorter) {
+            ((DefaultItemSorter) sorter).sort(itemIds);
+        } else {
+            Collections.sort(itemIds, sorter);
+        }
     }
 
     /**
@@ -700,6 +1206,7 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
     protected void internalRemoveAllItems() {
         // Removes all Items
         getAllItemIds().clear();
+        invalidatePropertyIndex(null);
         if (isFiltered()) {
             getFilteredItemIds().clear();
         }
@@ -723,6 +1230,9 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         }
 
         boolean result = getAllItemIds().remove(itemId);
+        if (result) {
+            invalidatePropertyIndex(null);
+        }
         if (result && isFiltered()) {
             getFilteredItemIds().remove(itemId);
         }
@@ -770,6 +1280,7 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
         // "filteredList" will be updated in filterAll() which should be invoked
         // by the caller after calling this method.
         getAllItemIds().add(position, itemId);
+        invalidatePropertyIndex(null);
         registerNewItem(position, itemId, item);
 
         return item;
@@ -988,6 +1499,7 @@ public abstract class AbstractInMemoryContainer<ITEMIDTYPE, PROPERTYIDCLASS, ITE
     @Deprecated
     protected void setAllItemIds(List<ITEMIDTYPE> allItemIds) {
         this.allItemIds = allItemIds;
+        invalidatePropertyIndex(null);
     }
 
     /**
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.data.util;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM-wide registry of the properties and accessor methods of bean classes.
+ * The introspection and method lookups are done once per class and property
+ * and the results are shared by all {@link BeanItem}, {@link MethodProperty}
+ * and {@link NestedMethodProperty} instances, so creating items and
+ * properties for large numbers of beans does not repeat them for each bean.
+ * 
+ * @since 7.2
+ */
+class BeanAccessorRegistry implements Serializable {
+
+    private static final ConcurrentHashMap<Class<?>, Map<String, VaadinPropertyDescriptor<?>>> propertyDescriptors = new ConcurrentHashMap<Class<?>, Map<String, VaadinPropertyDescriptor<?>>>();
+
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Accessor>> accessors = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Accessor>>();
+
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Accessor>> nestedAccessors = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Accessor>>();
+
+    /**
+     * The getter chain, setter and type of a bean property.
+     */
+    static final class Accessor implements Serializable {
+
+        private final List<Method> getMethods;
+
+        private final Method setMethod;
+
+        private Accessor(List<Method> getMethods, Method setMethod) {
+            this.getMethods = Collections.unmodifiableList(getMethods);
+            this.setMethod = setMethod;
+        }
+
+        /**
+         * Returns the getter methods to call in order to read the property,
+         * starting from the bean. Contains a single method for a simple
+         * property.
+         * 
+         * @return an unmodifiable list of getter methods
+         */
+        public List<Method> getGetMethods() {
+            return getMethods;
+        }
+
+        /**
+         * Returns the getter of the property itself, the last one in the
+         * getter chain.
+         * 
+         * @return the getter method of the property
+         */
+        public Method getGetMethod() {
+            return getMethods.get(getMethods.size() - 1);
+        }
+
+        /**
+         * Returns the setter of the property.
+         * 
+         * @return the setter method, or null if the property is read-only
+         */
+        public Method getSetMethod() {
+            return setMethod;
+        }
+
+        /**
+         * Returns the type of the property, which is the return type of its
+         * getter. Primitive types are not converted.
+         * 
+         * @return the type of the property
+         */
+        public Class<?> getType() {
+            return getGetMethod().getReturnType();
+        }
+    }
+
+    private BeanAccessorRegistry() {
+        // Only static methods
+    }
+
+    /**
+     * Returns the property descriptors of a bean class, introspecting the
+     * class only the first time.
+     * 
+     * @param beanClass
+     *            the Java Bean class to get properties for.
+     * @return a new ordered map from property names to property descriptors
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static <BT> LinkedHashMap<String, VaadinPropertyDescriptor<BT>> getPropertyDescriptors(
+            Class<BT> beanClass) {
+        Map<String, VaadinPropertyDescriptor<?>> descriptors = propertyDescriptors
+                .get(beanClass);
+        if (descriptors == null) {
+            descriptors = (Map) introspectPropertyDescriptors(beanClass);
+            propertyDescriptors.putIfAbsent(beanClass, descriptors);
+        }
+        // the container and item models are modified by their owners
+        return new LinkedHashMap<String, VaadinPropertyDescriptor<BT>>(
+                (Map) descriptors);
+    }
+
+    /**
+     * Returns the accessor methods of a simple (not nested) bean property.
+     * 
+     * @param beanClass
+     *            the class in which to look for the accessor methods
+     * @param propertyName
+     *            the name of the property
+     * @return the accessor of the property
+     * @throws NoSuchMethodException
+     *             if no getter is found for the property
+     */
+    static Accessor getAccessor(Class<?> beanClass, String propertyName)
+            throws NoSuchMethodException {
+        ConcurrentHashMap<String, Accessor> classAccessors = getClassAccessors(
+                accessors, beanClass);
+        Accessor accessor = classAccessors.get(propertyName);
+        if (accessor == null) {
+            accessor = findAccessor(beanClass, propertyName);
+            classAccessors.putIfAbsent(propertyName, accessor);
+        }
+        return accessor;
+    }
+
+    /**
+     * Returns the accessor methods of a nested bean property given in the
+     * dotted notation, e.g. "address.street".
+     * 
+     * @param beanClass
+     *            the class of the top-level bean
+     * @param propertyName
+     *            the dotted name of the property
+     * @return the accessor of the property
+     * @throws IllegalArgumentException
+     *             if the property name is invalid or a getter is not found
+     */
+    static Accessor getNestedAccessor(Class<?> beanClass, String propertyName)
+            throws IllegalArgumentException {
+        ConcurrentHashMap<String, Accessor> classAccessors = getClassAccessors(
+                nestedAccessors, beanClass);
+        Accessor accessor = classAccessors.get(propertyName);
+        if (accessor == null) {
+            accessor = findNestedAccessor(beanClass, propertyName);
+            classAccessors.putIfAbsent(propertyName, accessor);
+        }
+        return accessor;
+    }
+
+    private static ConcurrentHashMap<String, Accessor> getClassAccessors(
+            ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Accessor>> registry,
+            Class<?> beanClass) {
+        ConcurrentHashMap<String, Accessor> classAccessors = registry
+                .get(beanClass);
+        if (classAccessors == null) {
+            classAccessors = new ConcurrentHashMap<String, Accessor>();
+            ConcurrentHashMap<String, Accessor> previous = registry
+                    .putIfAbsent(beanClass, classAccessors);
+            if (previous != null) {
+                classAccessors = previous;
+            }
+        }
+        return classAccessors;
+    }
+
+    private static Accessor findAccessor(Class<?> beanClass,
+            String propertyName) throws NoSuchMethodException {
+        Method getMethod = MethodProperty.initGetterMethod(propertyName,
+                beanClass);
+        List<Method> getMethods = new ArrayList<Method>(1);
+        getMethods.add(getMethod);
+        return new Accessor(getMethods, findSetMethod(beanClass,
+                propertyName, getMethod.getReturnType()));
+    }
+
+    private static Accessor findNestedAccessor(Class<?> beanClass,
+            String propertyName) throws IllegalArgumentException {
+        List<Method> getMethods = new ArrayList<Method>();
+
+        String lastSimplePropertyName = propertyName;
+        Class<?> lastClass = beanClass;
+
+        // first top-level property, then go deeper in a loop
+        Class<?> propertyClass = beanClass;
+        String[] simplePropertyNames = propertyName.split("\\.");
+        if (propertyName.endsWith(".") || 0 == simplePropertyNames.length) {
+            throw new IllegalArgumentException("Invalid property name '"
+                    + propertyName + "'");
+        }
+        for (int i = 0; i < simplePropertyNames.length; i++) {
+            String simplePropertyName = simplePropertyNames[i].trim();
+            if (simplePropertyName.length() > 0) {
+                lastSimplePropertyName = simplePropertyName;
+                lastClass = propertyClass;
+                try {
+                    Method getter = MethodProperty.initGetterMethod(
+                            simplePropertyName, propertyClass);
+                    propertyClass = getter.getReturnType();
+                    getMethods.add(getter);
+                } catch (final java.lang.NoSuchMethodException e) {
+                    throw new IllegalArgumentException("Bean property '"
+                            + simplePropertyName + "' not found", e);
+                }
+            } else {
+                throw new IllegalArgumentException(
+                        "Empty or invalid bean property identifier in '"
+                                + propertyName + "'");
+            }
+        }
+
+        return new Accessor(getMethods, findSetMethod(lastClass,
+                lastSimplePropertyName, propertyClass));
+    }
+
+    /**
+     * Finds the setter for a property.
+     * 
+     * @param beanClass
+     *            class in which to look for the setter method
+     * @param propertyName
+     *            name of the property
+     * @param type
+     *            the parameter type of the setter
+     * @return the setter method or null if none found
+     */
+    private static Method findSetMethod(Class<?> beanClass,
+            String propertyName, Class<?> type) {
+        // Assure that the first letter is upper cased (it is a common
+        // mistake to write firstName, not FirstName).
+        if (Character.isLowerCase(propertyName.charAt(0))) {
+            final char[] buf = propertyName.toCharArray();
+            buf[0] = Character.toUpperCase(buf[0]);
+            propertyName = new String(buf);
+        }
+        try {
+            return beanClass.getMethod("set" + propertyName,
+                    new Class[] { type });
+        } catch (final NoSuchMethodException skipped) {
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Perform introspection on a Java Bean class to find its properties.
+     * </p>
+     * 
+     * <p>
+     * Note : This version only supports introspectable bean properties and
+     * their getter and setter methods. Stand-alone <code>is</code> and
+     * <code>are</code> methods are not supported.
+     * </p>
+     * 
+     * @param beanClass
+     *            the Java Bean class to get properties for.
+     * @return an ordered map from property names to property descriptors
+     */
+    private static <BT> LinkedHashMap<String, VaadinPropertyDescriptor<BT>> introspectPropertyDescriptors(
+            final Class<BT> beanClass) {
+        final LinkedHashMap<String, VaadinPropertyDescriptor<BT>> pdMap = new LinkedHashMap<String, VaadinPropertyDescriptor<BT>>();
+
+        // Try to introspect, if it fails, we just have an empty Item
+        try {
+            List<PropertyDescriptor> propertyDescriptors = getBeanPropertyDescriptor(beanClass);
+
+            // Add all the bean properties as MethodProperties to this Item
+            // later entries on the list overwrite earlier ones
+            for (PropertyDescriptor pd : propertyDescriptors) {
+                final Method getMethod = pd.getReadMethod();
+                if ((getMethod != null)
+                        && getMethod.getDeclaringClass() != Object.class) {
+                    VaadinPropertyDescriptor<BT> vaadinPropertyDescriptor = new MethodPropertyDescriptor<BT>(
+                            pd.getName(), pd.getPropertyType(),
+                            pd.getReadMethod(), pd.getWriteMethod());
+                    pdMap.put(pd.getName(), vaadinPropertyDescriptor);
+                }
+            }
+        } catch (final java.beans.IntrospectionException ignored) {
+        }
+
+        return pdMap;
+    }
+
+    /**
+     * Returns the property descriptors of a class or an interface.
+     * 
+     * For an interface, superinterfaces are also iterated as Introspector does
+     * not take them into account (Oracle Java bug 4275879), but in that case,
+     * both the setter and the getter for a property must be in the same
+     * interface and should not be overridden in subinterfaces for the discovery
+     * to work correctly.
+     * 
+     * For interfaces, the iteration is depth first and the properties of
+     * superinterfaces are returned before those of their subinterfaces.
+     * 
+     * @param beanClass
+     * @return
+     * @throws IntrospectionException
+     */
+    private static List<PropertyDescriptor> getBeanPropertyDescriptor(
+            final Class<?> beanClass) throws IntrospectionException {
+        // Oracle bug 4275879: Introspector does not consider superinterfaces of
+        // an interface
+        if (beanClass.isInterface()) {
+            List<PropertyDescriptor> propertyDescriptors = new ArrayList<PropertyDescriptor>();
+
+            for (Class<?> cls : beanClass.getInterfaces()) {
+                propertyDescriptors.addAll(getBeanPropertyDescriptor(cls));
+            }
+
+            BeanInfo info = Introspector.getBeanInfo(beanClass);
+            propertyDescriptors.addAll(Arrays.asList(info
+                    .getPropertyDescriptors()));
+
+            return propertyDescriptors;
+        } else {
+            BeanInfo info = Introspector.getBeanInfo(beanClass);
+            return Arrays.asList(info.getPropertyDescriptors());
+        }
+    }
+}
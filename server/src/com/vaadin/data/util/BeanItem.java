@@ -16,17 +16,10 @@
 
 package com.vaadin.data.util;
 
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -156,72 +149,18 @@ public class BeanItem<BT> extends PropertysetItem {
      * <code>are</code> methods are not supported.
      * </p>
      * 
+     * <p>
+     * The class is introspected only once, later calls return a copy of the
+     * cached result.
+     * </p>
+     * 
      * @param beanClass
      *            the Java Bean class to get properties for.
-     * @return an ordered map from property names to property descriptors
+     * @return a new ordered map from property names to property descriptors
      */
     static <BT> LinkedHashMap<String, VaadinPropertyDescriptor<BT>> getPropertyDescriptors(
             final Class<BT> beanClass) {
-        final LinkedHashMap<String, VaadinPropertyDescriptor<BT>> pdMap = new LinkedHashMap<String, VaadinPropertyDescriptor<BT>>();
-
-        // Try to introspect, if it fails, we just have an empty Item
-        try {
-            List<PropertyDescriptor> propertyDescriptors = getBeanPropertyDescriptor(beanClass);
-
-            // Add all the bean properties as MethodProperties to this Item
-            // later entries on the list overwrite earlier ones
-            for (PropertyDescriptor pd : propertyDescriptors) {
-                final Method getMethod = pd.getReadMethod();
-                if ((getMethod != null)
-                        && getMethod.getDeclaringClass() != Object.class) {
-                    VaadinPropertyDescriptor<BT> vaadinPropertyDescriptor = new MethodPropertyDescriptor<BT>(
-                            pd.getName(), pd.getPropertyType(),
-                            pd.getReadMethod(), pd.getWriteMethod());
-                    pdMap.put(pd.getName(), vaadinPropertyDescriptor);
-                }
-            }
-        } catch (final java.beans.IntrospectionException ignored) {
-        }
-
-        return pdMap;
-    }
-
-    /**
-     * Returns the property descriptors of a class or an interface.
-     * 
-     * For an interface, superinterfaces are also iterated as Introspector does
-     * not take them into account (Oracle Java bug 4275879), but in that case,
-     * both the setter and the getter for a property must be in the same
-     * interface and should not be overridden in subinterfaces for the discovery
-     * to work correctly.
-     * 
-     * For interfaces, the iteration is depth first and the properties of
-     * superinterfaces are returned before those of their subinterfaces.
-     * 
-     * @param beanClass
-     * @return
-     * @throws IntrospectionException
-     */
-    private static List<PropertyDescriptor> getBeanPropertyDescriptor(
-            final Class<?> beanClass) throws IntrospectionException {
-        // Oracle bug 4275879: Introspector does not consider superinterfaces of
-        // an interface
-        if (beanClass.isInterface()) {
-            List<PropertyDescriptor> propertyDescriptors = new ArrayList<PropertyDescriptor>();
-
-            for (Class<?> cls : beanClass.getInterfaces()) {
-                propertyDescriptors.addAll(getBeanPropertyDescriptor(cls));
-            }
-
-            BeanInfo info = Introspector.getBeanInfo(beanClass);
-            propertyDescriptors.addAll(Arrays.asList(info
-                    .getPropertyDescriptors()));
-
-            return propertyDescriptors;
-        } else {
-            BeanInfo info = Introspector.getBeanInfo(beanClass);
-            return Arrays.asList(info.getPropertyDescriptors());
-        }
+        return BeanAccessorRegistry.getPropertyDescriptors(beanClass);
     }
 
     /**
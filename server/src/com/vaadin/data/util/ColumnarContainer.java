@@ -0,0 +1,790 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.data.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.data.Container;
+
+/**
+ * An {@link IndexedContainer} that stores its data column by column instead of
+ * using one map per item.
+ * <p>
+ * Each property is stored as an array indexed by an internal row number.
+ * Properties of type {@link Integer}, {@link Long}, {@link Double} and
+ * {@link Boolean} (or the corresponding primitive types) are stored in
+ * primitive arrays, other properties in plain object arrays. All other
+ * features, including events, filtering and sorting, are the same as in
+ * {@link IndexedContainer}.
+ * <p>
+ * Compared to {@link IndexedContainer}, this uses considerably less memory for
+ * containers with many items and sorts faster when the default item sorter is
+ * used, as sorting compares the column values directly. Values of primitive
+ * columns are boxed when they are read through the {@link com.vaadin.data.Property}
+ * API.
+ * 
+ * @see IndexedContainer
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+@SuppressWarnings("serial")
+public class ColumnarContainer extends IndexedContainer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ColumnStorage columnStorage;
+
+    /* Container constructors */
+
+    public ColumnarContainer() {
+        this(new ColumnStorage());
+    }
+
+    public ColumnarContainer(Collection<?> itemIds) {
+        this(new ColumnStorage(), itemIds);
+    }
+
+    private ColumnarContainer(ColumnStorage storage) {
+        super(storage);
+        columnStorage = storage;
+        setItemSorter(new ColumnItemSorter());
+    }
+
+    private ColumnarContainer(ColumnStorage storage, Collection<?> itemIds) {
+        super(storage, itemIds);
+        columnStorage = storage;
+        setItemSorter(new ColumnItemSorter());
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws IllegalArgumentException
+     *             if the default value is not of the given type
+     */
+    @Override
+    public boolean addContainerProperty(Object propertyId, Class<?> type,
+            Object defaultValue) {
+        // The default value is copied to new rows without type checks
+        if (type != null && defaultValue != null
+                && !type.isAssignableFrom(defaultValue.getClass())) {
+            throw new IllegalArgumentException(
+                    "Default value is of invalid type, got "
+                            + defaultValue.getClass().getName() + " but "
+                            + type.getName() + " was expected");
+        }
+        return super.addContainerProperty(propertyId, type, defaultValue);
+    }
+
+    /* Sorting */
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The default item sorter of this container compares the stored values
+     * directly, the same way as {@link DefaultItemSorter} with its default
+     * comparator. Setting any other item sorter causes items to be compared
+     * through the {@link com.vaadin.data.Property} API.
+     */
+    @Override
+    public void setItemSorter(ItemSorter itemSorter) {
+        super.setItemSorter(itemSorter);
+    }
+
+    @Override
+    protected void doSort() {
+        ItemSorter sorter = getItemSorter();
+        if (sorter instanceof ColumnItemSorter) {
+            ((ColumnItemSorter) sorter).sort(getAllItemIds());
+        } else {
+            super.doSort();
+        }
+    }
+
+    /**
+     * Item sorter comparing the values in the columns of the container.
+     */
+    private class ColumnItemSorter implements ItemSorter,
+            IndexSorter.IndexComparator {
+
+        private Column[] sortColumns = new Column[0];
+        private boolean[] sortDirections = new boolean[0];
+
+        @Override
+        public void setSortProperties(Container.Sortable container,
+                Object[] propertyId, boolean[] ascending) {
+            // Removes any non-sortable property ids
+            final List<Column> sortable = new ArrayList<Column>();
+            final List<Boolean> orders = new ArrayList<Boolean>();
+            final Collection<?> sortableIds = getSortablePropertyIds();
+            for (int i = 0; i < propertyId.length; i++) {
+                if (sortableIds.contains(propertyId[i])) {
+                    sortable.add(columnStorage.columns.get(propertyId[i]));
+                    orders.add(Boolean.valueOf(i < ascending.length ? ascending[i]
+                            : true));
+                }
+            }
+
+            sortColumns = sortable.toArray(new Column[sortable.size()]);
+            sortDirections = new boolean[orders.size()];
+            for (int i = 0; i < sortDirections.length; i++) {
+                sortDirections[i] = orders.get(i).booleanValue();
+            }
+        }
+
+        @Override
+        public int compare(Object itemId1, Object itemId2) {
+            int row1 = columnStorage.rowIndex.get(itemId1);
+            int row2 = columnStorage.rowIndex.get(itemId2);
+            if (row1 == -1) {
+                return row2 == -1 ? 0 : 1;
+            } else if (row2 == -1) {
+                return -1;
+            }
+            return compare(row1, row2);
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            for (int i = 0; i < sortColumns.length; i++) {
+                int result = sortColumns[i].compare(row1, row2);
+                if (result != 0) {
+                    return sortDirections[i] ? result : -result;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Sorts the given item ids in place using a stable merge sort on their
+         * rows, to avoid looking up the rows for every comparison.
+         */
+        private void sort(List<Object> itemIds) {
+            int size = itemIds.size();
+            int[] rows = new int[size];
+            for (int i = 0; i < size; i++) {
+                rows[i] = columnStorage.rowIndex.get(itemIds.get(i));
+            }
+
+            IndexSorter.sort(rows, this);
+
+            itemIds.clear();
+            for (int i = 0; i < size; i++) {
+                itemIds.add(columnStorage.rowItemIds[rows[i]]);
+            }
+        }
+    }
+
+    /* Internal storage */
+
+    /**
+     * Value storage keeping one column per property and mapping item ids to
+     * rows in the columns.
+     */
+    private static class ColumnStorage extends ValueStorage {
+
+        /**
+         * Property id to column mapping.
+         */
+        private HashMap<Object, Column> columns = new HashMap<Object, Column>();
+
+        /**
+         * Item id to row mapping.
+         */
+        private RowIndex rowIndex = new RowIndex();
+
+        /**
+         * Row to item id mapping, <code>null</code> for unused rows.
+         */
+        private Object[] rowItemIds = new Object[INITIAL_CAPACITY];
+
+        /**
+         * The number of rows that have ever been used, including free rows.
+         */
+        private int rowCount = 0;
+
+        /**
+         * Rows that have been freed when removing items and can be reused.
+         */
+        private int[] freeRows = new int[INITIAL_CAPACITY];
+        private int freeRowCount = 0;
+
+        @Override
+        boolean containsItem(Object itemId) {
+            return rowIndex.get(itemId) != -1;
+        }
+
+        @Override
+        void addItem(Object itemId) {
+            int row = allocateRow();
+            rowItemIds[row] = itemId;
+            rowIndex.put(itemId, row);
+        }
+
+        @Override
+        boolean removeItem(Object itemId) {
+            int row = rowIndex.remove(itemId);
+            if (row == -1) {
+                return false;
+            }
+            freeRow(row);
+            return true;
+        }
+
+        @Override
+        void removeAllItems() {
+            rowIndex = new RowIndex();
+            rowItemIds = new Object[INITIAL_CAPACITY];
+            rowCount = 0;
+            freeRows = new int[INITIAL_CAPACITY];
+            freeRowCount = 0;
+            for (Column column : columns.values()) {
+                column.reset(INITIAL_CAPACITY);
+            }
+        }
+
+        @Override
+        void addProperty(Object propertyId, Class<?> type) {
+            columns.put(propertyId, Column.create(type, rowItemIds.length));
+        }
+
+        @Override
+        void removeProperty(Object propertyId) {
+            columns.remove(propertyId);
+        }
+
+        @Override
+        Object getValue(Object itemId, Object propertyId) {
+            Column column = columns.get(propertyId);
+            int row = rowIndex.get(itemId);
+            if (column == null || row == -1) {
+                return null;
+            }
+            return column.get(row);
+        }
+
+        @Override
+        void setValue(Object itemId, Object propertyId, Object value) {
+            Column column = columns.get(propertyId);
+            int row = rowIndex.get(itemId);
+            if (column == null || row == -1) {
+                throw new IllegalStateException("Item " + itemId
+                        + " or property " + propertyId
+                        + " is no longer in the container");
+            }
+            column.set(row, value);
+        }
+
+        @Override
+        ValueStorage copy() {
+            ColumnStorage copy = new ColumnStorage();
+            for (Map.Entry<Object, Column> entry : columns.entrySet()) {
+                copy.columns.put(entry.getKey(), entry.getValue().copy());
+            }
+            copy.rowIndex = rowIndex.copy();
+            copy.rowItemIds = rowItemIds.clone();
+            copy.rowCount = rowCount;
+            copy.freeRows = freeRows.clone();
+            copy.freeRowCount = freeRowCount;
+            return copy;
+        }
+
+        private int allocateRow() {
+            if (freeRowCount > 0) {
+                return freeRows[--freeRowCount];
+            }
+            if (rowCount == rowItemIds.length) {
+                int capacity = rowItemIds.length * 2;
+                Object[] newRowItemIds = new Object[capacity];
+                System.arraycopy(rowItemIds, 0, newRowItemIds, 0, rowCount);
+                rowItemIds = newRowItemIds;
+                for (Column column : columns.values()) {
+                    column.ensureCapacity(capacity);
+                }
+            }
+            return rowCount++;
+        }
+
+        private void freeRow(int row) {
+            rowItemIds[row] = null;
+            for (Column column : columns.values()) {
+                column.set(row, null);
+            }
+            if (freeRowCount == freeRows.length) {
+                int[] newFreeRows = new int[freeRows.length * 2];
+                System.arraycopy(freeRows, 0, newFreeRows, 0, freeRowCount);
+                freeRows = newFreeRows;
+            }
+            freeRows[freeRowCount++] = row;
+        }
+    }
+
+    /**
+     * Storage for the values of one property. Values of unused rows are
+     * <code>null</code>.
+     */
+    private static abstract class Column implements Serializable {
+
+        /**
+         * Creates a column suitable for storing values of the given type.
+         */
+        private static Column create(Class<?> type, int capacity) {
+            if (type == Integer.class || type == Integer.TYPE) {
+                return new IntColumn(capacity);
+            } else if (type == Long.class || type == Long.TYPE) {
+                return new LongColumn(capacity);
+            } else if (type == Double.class || type == Double.TYPE) {
+                return new DoubleColumn(capacity);
+            } else if (type == Boolean.class || type == Boolean.TYPE) {
+                return new BooleanColumn();
+            } else {
+                return new ObjectColumn(capacity);
+            }
+        }
+
+        protected abstract Object get(int row);
+
+        protected abstract void set(int row, Object value);
+
+        protected abstract void ensureCapacity(int capacity);
+
+        /**
+         * Discards all values and sets the capacity of the column.
+         */
+        protected abstract void reset(int capacity);
+
+        /**
+         * Compares the values of two rows, <code>null</code> is considered
+         * less than any other value.
+         */
+        protected abstract int compare(int row1, int row2);
+
+        /**
+         * Creates an independent copy of the column.
+         */
+        protected abstract Column copy();
+    }
+
+    /**
+     * Base class for columns storing primitive values, using a bit set for
+     * tracking which values are not <code>null</code>.
+     */
+    private static abstract class PrimitiveColumn extends Column {
+
+        protected BitSet present = new BitSet();
+
+        @Override
+        protected Object get(int row) {
+            return present.get(row) ? getValue(row) : null;
+        }
+
+        @Override
+        protected void set(int row, Object value) {
+            if (value == null) {
+                present.clear(row);
+            } else {
+                setValue(row, value);
+                present.set(row);
+            }
+        }
+
+        @Override
+        protected void reset(int capacity) {
+            present = new BitSet();
+        }
+
+        @Override
+        protected int compare(int row1, int row2) {
+            boolean present1 = present.get(row1);
+            boolean present2 = present.get(row2);
+            if (present1 && present2) {
+                return compareValues(row1, row2);
+            } else if (present1 == present2) {
+                return 0;
+            } else {
+                return present1 ? 1 : -1;
+            }
+        }
+
+        protected abstract Object getValue(int row);
+
+        protected abstract void setValue(int row, Object value);
+
+        protected abstract int compareValues(int row1, int row2);
+    }
+
+    private static class IntColumn extends PrimitiveColumn {
+
+        private int[] values;
+
+        private IntColumn(int capacity) {
+            values = new int[capacity];
+        }
+
+        @Override
+        protected Object getValue(int row) {
+            return Integer.valueOf(values[row]);
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values[row] = ((Integer) value).intValue();
+        }
+
+        @Override
+        protected int compareValues(int row1, int row2) {
+            int value1 = values[row1];
+            int value2 = values[row2];
+            return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (values.length < capacity) {
+                int[] newValues = new int[capacity];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+
+        @Override
+        protected void reset(int capacity) {
+            super.reset(capacity);
+            values = new int[capacity];
+        }
+
+        @Override
+        protected Column copy() {
+            IntColumn copy = new IntColumn(0);
+            copy.present = (BitSet) present.clone();
+            copy.values = values.clone();
+            return copy;
+        }
+    }
+
+    private static class LongColumn extends PrimitiveColumn {
+
+        private long[] values;
+
+        private LongColumn(int capacity) {
+            values = new long[capacity];
+        }
+
+        @Override
+        protected Object getValue(int row) {
+            return Long.valueOf(values[row]);
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values[row] = ((Long) value).longValue();
+        }
+
+        @Override
+        protected int compareValues(int row1, int row2) {
+            long value1 = values[row1];
+            long value2 = values[row2];
+            return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (values.length < capacity) {
+                long[] newValues = new long[capacity];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+
+        @Override
+        protected void reset(int capacity) {
+            super.reset(capacity);
+            values = new long[capacity];
+        }
+
+        @Override
+        protected Column copy() {
+            LongColumn copy = new LongColumn(0);
+            copy.present = (BitSet) present.clone();
+            copy.values = values.clone();
+            return copy;
+        }
+    }
+
+    private static class DoubleColumn extends PrimitiveColumn {
+
+        private double[] values;
+
+        private DoubleColumn(int capacity) {
+            values = new double[capacity];
+        }
+
+        @Override
+        protected Object getValue(int row) {
+            return Double.valueOf(values[row]);
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values[row] = ((Double) value).doubleValue();
+        }
+
+        @Override
+        protected int compareValues(int row1, int row2) {
+            return Double.compare(values[row1], values[row2]);
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (values.length < capacity) {
+                double[] newValues = new double[capacity];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+
+        @Override
+        protected void reset(int capacity) {
+            super.reset(capacity);
+            values = new double[capacity];
+        }
+
+        @Override
+        protected Column copy() {
+            DoubleColumn copy = new DoubleColumn(0);
+            copy.present = (BitSet) present.clone();
+            copy.values = values.clone();
+            return copy;
+        }
+    }
+
+    private static class BooleanColumn extends PrimitiveColumn {
+
+        private BitSet values = new BitSet();
+
+        @Override
+        protected Object getValue(int row) {
+            return Boolean.valueOf(values.get(row));
+        }
+
+        @Override
+        protected void setValue(int row, Object value) {
+            values.set(row, ((Boolean) value).booleanValue());
+        }
+
+        @Override
+        protected int compareValues(int row1, int row2) {
+            boolean value1 = values.get(row1);
+            boolean value2 = values.get(row2);
+            return value1 == value2 ? 0 : (value1 ? 1 : -1);
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            // BitSet grows automatically
+        }
+
+        @Override
+        protected void reset(int capacity) {
+            super.reset(capacity);
+            values = new BitSet();
+        }
+
+        @Override
+        protected Column copy() {
+            BooleanColumn copy = new BooleanColumn();
+            copy.present = (BitSet) present.clone();
+            copy.values = (BitSet) values.clone();
+            return copy;
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+
+        private Object[] values;
+
+        private ObjectColumn(int capacity) {
+            values = new Object[capacity];
+        }
+
+        @Override
+        protected Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected void set(int row, Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected int compare(int row1, int row2) {
+            Object value1 = values[row1];
+            Object value2 = values[row2];
+            if (value1 != null && value2 != null) {
+                // Same as DefaultPropertyValueComparator
+                return ((Comparable<Object>) value1).compareTo(value2);
+            } else if (value1 == value2) {
+                return 0;
+            } else {
+                return value1 == null ? -1 : 1;
+            }
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (values.length < capacity) {
+                Object[] newValues = new Object[capacity];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+
+        @Override
+        protected void reset(int capacity) {
+            values = new Object[capacity];
+        }
+
+        @Override
+        protected Column copy() {
+            ObjectColumn copy = new ObjectColumn(0);
+            copy.values = values.clone();
+            return copy;
+        }
+    }
+
+    /**
+     * Open addressing hash table mapping item ids to rows without creating any
+     * objects per entry.
+     */
+    private static class RowIndex implements Serializable {
+
+        private Object[] keys = new Object[INITIAL_CAPACITY];
+        private int[] rows = new int[INITIAL_CAPACITY];
+        private int size = 0;
+
+        /**
+         * Gets the row of the given item id.
+         * 
+         * @return the row, or -1 if the item id is not mapped
+         */
+        private int get(Object itemId) {
+            int mask = keys.length - 1;
+            for (int i = indexFor(itemId, mask);; i = (i + 1) & mask) {
+                Object key = keys[i];
+                if (key == null) {
+                    return -1;
+                } else if (key == itemId || key.equals(itemId)) {
+                    return rows[i];
+                }
+            }
+        }
+
+        private void put(Object itemId, int row) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            for (int i = indexFor(itemId, mask);; i = (i + 1) & mask) {
+                Object key = keys[i];
+                if (key == null) {
+                    keys[i] = itemId;
+                    rows[i] = row;
+                    size++;
+                    return;
+                } else if (key == itemId || key.equals(itemId)) {
+                    rows[i] = row;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Removes the mapping for the given item id.
+         * 
+         * @return the row the item id was mapped to, or -1 if it was not mapped
+         */
+        private int remove(Object itemId) {
+            int mask = keys.length - 1;
+            int i = indexFor(itemId, mask);
+            while (true) {
+                Object key = keys[i];
+                if (key == null) {
+                    return -1;
+                } else if (key == itemId || key.equals(itemId)) {
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+            int row = rows[i];
+            size--;
+
+            // Shift back following entries that would no longer be found
+            int free = i;
+            keys[free] = null;
+            for (int j = (free + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+                int home = indexFor(keys[j], mask);
+                // Move if the home slot is not cyclically in (free, j]
+                if (free <= j ? (home <= free || home > j)
+                        : (home <= free && home > j)) {
+                    keys[free] = keys[j];
+                    rows[free] = rows[j];
+                    keys[j] = null;
+                    free = j;
+                }
+            }
+            return row;
+        }
+
+        private RowIndex copy() {
+            RowIndex copy = new RowIndex();
+            copy.keys = keys.clone();
+            copy.rows = rows.clone();
+            copy.size = size;
+            return copy;
+        }
+
+        private void resize(int capacity) {
+            Object[] oldKeys = keys;
+            int[] oldRows = rows;
+            keys = new Object[capacity];
+            rows = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    put(oldKeys[i], oldRows[i]);
+                }
+            }
+        }
+
+        private static int indexFor(Object key, int mask) {
+            int h = key.hashCode();
+            // Spread the bits like HashMap does
+            h ^= (h >>> 20) ^ (h >>> 12);
+            h ^= (h >>> 7) ^ (h >>> 4);
+            return h & mask;
+        }
+    }
+}
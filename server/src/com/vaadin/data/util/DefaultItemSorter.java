@@ -17,7 +17,9 @@ package com.vaadin.data.util;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -36,6 +38,10 @@ import com.vaadin.data.Property;
  * A Comparator is used for comparing the individual <code>Property</code>
  * values. The comparator can be set using the constructor. If no comparator is
  * provided a default comparator is used.
+ * <p>
+ * When sorting with {@link #sort(List)}, the property values are read only once
+ * per item and stored in arrays, instead of being read for both items in every
+ * comparison.
  * 
  */
 public class DefaultItemSorter implements ItemSorter {
@@ -45,6 +51,12 @@ public class DefaultItemSorter implements ItemSorter {
     private Container container;
     private Comparator<Object> propertyValueComparator;
 
+    /*
+     * Whether the comparison logic is that of this class, allowing sorting by
+     * extracted keys. Resolved lazily.
+     */
+    private transient Boolean defaultComparison;
+
     /**
      * Constructs a DefaultItemSorter using the default <code>Comparator</code>
      * for comparing <code>Property</code>values.
@@ -186,6 +198,269 @@ public class DefaultItemSorter implements ItemSorter {
 
     }
 
+    /**
+     * Sorts a list of item ids of the container given in
+     * {@link #setSortProperties(Sortable, Object[], boolean[])}. The result is
+     * the same as for <code>Collections.sort(itemIds, this)</code>, but the
+     * values of the sort properties are extracted only once for each item and
+     * compared as primitives where possible.
+     * <p>
+     * If a subclass overrides {@link #compare(Object, Object)} or
+     * {@link #compareProperty(Object, boolean, Item, Item)}, the overridden
+     * methods are used for comparing items instead.
+     * 
+     * @param itemIds
+     *            the item ids to sort, not null
+     * @since 7.2
+     */
+    public <T> void sort(List<T> itemIds) {
+        if (itemIds.size() < 2) {
+            return;
+        }
+        if (!isDefaultComparison()) {
+            Collections.sort(itemIds, this);
+            return;
+        }
+
+        int size = itemIds.size();
+        Object[] ids = itemIds.toArray();
+
+        // Extract the sort keys
+        BitSet missingItems = new BitSet(size);
+        Object[][] values = new Object[sortPropertyIds.length][size];
+        for (int i = 0; i < size; i++) {
+            Item item = container.getItem(ids[i]);
+            if (item == null) {
+                missingItems.set(i);
+                continue;
+            }
+            for (int p = 0; p < sortPropertyIds.length; p++) {
+                Property<?> property = item.getItemProperty(sortPropertyIds[p]);
+                values[p][i] = property == null ? null : property.getValue();
+            }
+        }
+        SortKeys[] keys = new SortKeys[sortPropertyIds.length];
+        for (int p = 0; p < keys.length; p++) {
+            keys[p] = SortKeys.create(values[p], sortDirections[p],
+                    propertyValueComparator);
+        }
+
+        // Sort positions by the keys and reorder the item ids
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = i;
+        }
+        IndexSorter.sort(positions, new KeyComparator(keys, missingItems));
+
+        itemIds.clear();
+        for (int position : positions) {
+            @SuppressWarnings("unchecked")
+            T itemId = (T) ids[position];
+            itemIds.add(itemId);
+        }
+    }
+
+    /**
+     * Checks whether neither {@link #compare(Object, Object)} nor
+     * {@link #compareProperty(Object, boolean, Item, Item)} is overridden.
+     */
+    private boolean isDefaultComparison() {
+        if (defaultComparison == null) {
+            boolean result = true;
+            for (Class<?> type = getClass(); type != DefaultItemSorter.class; type = type
+                    .getSuperclass()) {
+                if (declaresMethod(type, "compare", Object.class, Object.class)
+                        || declaresMethod(type, "compareProperty",
+                                Object.class, boolean.class, Item.class,
+                                Item.class)) {
+                    result = false;
+                    break;
+                }
+            }
+            defaultComparison = Boolean.valueOf(result);
+        }
+        return defaultComparison.booleanValue();
+    }
+
+    private static boolean declaresMethod(Class<?> type, String name,
+            Class<?>... parameterTypes) {
+        try {
+            type.getDeclaredMethod(name, parameterTypes);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The extracted values of one sort property, in the order of the item ids
+     * being sorted.
+     */
+    private static abstract class SortKeys implements Serializable {
+
+        /**
+         * Compares the values at two positions, taking the sort direction into
+         * account.
+         */
+        abstract int compare(int position1, int position2);
+
+        static SortKeys create(Object[] values, boolean ascending,
+                Comparator<Object> comparator) {
+            if (comparator.getClass() == DefaultPropertyValueComparator.class) {
+                Class<?> type = getCommonType(values);
+                if (type == Integer.class || type == Long.class
+                        || type == Short.class || type == Byte.class) {
+                    return new LongKeys(values, ascending);
+                } else if (type == Double.class || type == Float.class) {
+                    return new DoubleKeys(values, ascending);
+                }
+            }
+            return new ObjectKeys(values, ascending, comparator);
+        }
+
+        /**
+         * Returns the class of all non-null values, or null if the values are
+         * of different classes or all null.
+         */
+        private static Class<?> getCommonType(Object[] values) {
+            Class<?> type = null;
+            for (Object value : values) {
+                if (value == null) {
+                    continue;
+                } else if (type == null) {
+                    type = value.getClass();
+                } else if (type != value.getClass()) {
+                    return null;
+                }
+            }
+            return type;
+        }
+    }
+
+    private static class ObjectKeys extends SortKeys {
+        private final Object[] values;
+        private final boolean ascending;
+        private final Comparator<Object> comparator;
+
+        private ObjectKeys(Object[] values, boolean ascending,
+                Comparator<Object> comparator) {
+            this.values = values;
+            this.ascending = ascending;
+            this.comparator = comparator;
+        }
+
+        @Override
+        int compare(int position1, int position2) {
+            if (ascending) {
+                return comparator.compare(values[position1], values[position2]);
+            } else {
+                return comparator.compare(values[position2], values[position1]);
+            }
+        }
+    }
+
+    /*
+     * Null values are considered smaller than any other value, as by
+     * DefaultPropertyValueComparator.
+     */
+    private static class LongKeys extends SortKeys {
+        private final long[] values;
+        private final BitSet nulls;
+        private final int direction;
+
+        private LongKeys(Object[] values, boolean ascending) {
+            this.values = new long[values.length];
+            nulls = new BitSet(values.length);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    nulls.set(i);
+                } else {
+                    this.values[i] = ((Number) values[i]).longValue();
+                }
+            }
+            direction = ascending ? 1 : -1;
+        }
+
+        @Override
+        int compare(int position1, int position2) {
+            boolean null1 = nulls.get(position1);
+            boolean null2 = nulls.get(position2);
+            int r;
+            if (null1 || null2) {
+                r = null1 == null2 ? 0 : (null1 ? -1 : 1);
+            } else {
+                long value1 = values[position1];
+                long value2 = values[position2];
+                r = value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+            }
+            return r * direction;
+        }
+    }
+
+    private static class DoubleKeys extends SortKeys {
+        private final double[] values;
+        private final BitSet nulls;
+        private final int direction;
+
+        private DoubleKeys(Object[] values, boolean ascending) {
+            this.values = new double[values.length];
+            nulls = new BitSet(values.length);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    nulls.set(i);
+                } else {
+                    this.values[i] = ((Number) values[i]).doubleValue();
+                }
+            }
+            direction = ascending ? 1 : -1;
+        }
+
+        @Override
+        int compare(int position1, int position2) {
+            boolean null1 = nulls.get(position1);
+            boolean null2 = nulls.get(position2);
+            int r;
+            if (null1 || null2) {
+                r = null1 == null2 ? 0 : (null1 ? -1 : 1);
+            } else {
+                // Same ordering as Double.compareTo and Float.compareTo
+                r = Double.compare(values[position1], values[position2]);
+            }
+            return r * direction;
+        }
+    }
+
+    /**
+     * Compares item positions by their extracted keys. Items that are not
+     * available in the container are placed last, as by
+     * {@link DefaultItemSorter#compare(Object, Object)}.
+     */
+    private static class KeyComparator implements IndexSorter.IndexComparator {
+        private final SortKeys[] keys;
+        private final BitSet missingItems;
+
+        private KeyComparator(SortKeys[] keys, BitSet missingItems) {
+            this.keys = keys;
+            this.missingItems = missingItems;
+        }
+
+        @Override
+        public int compare(int position1, int position2) {
+            boolean missing1 = missingItems.get(position1);
+            boolean missing2 = missingItems.get(position2);
+            if (missing1 || missing2) {
+                return missing1 == missing2 ? 0 : (missing1 ? 1 : -1);
+            }
+            for (SortKeys key : keys) {
+                int r = key.compare(position1, position2);
+                if (r != 0) {
+                    return r;
+                }
+            }
+            return 0;
+        }
+    }
+
     /**
      * Provides a default comparator used for comparing {@link Property} values.
      * The <code>DefaultPropertyValueComparator</code> assumes all objects it
@@ -656,9 +656,9 @@ public class HierarchicalContainer extends IndexedContainer implements
     protected void doSort() {
         super.doSort();
 
-        Collections.sort(roots, getItemSorter());
+        sortItemIds(roots);
         for (LinkedList<Object> childList : children.values()) {
-            Collections.sort(childList, getItemSorter());
+            sortItemIds(childList);
         }
     }
 
@@ -853,6 +853,15 @@ public class HierarchicalContainer extends IndexedContainer implements
         }
     }
 
+    /*
+     * Indexes can not be used when including the parents of matching items, as
+     * the parents do not necessarily pass the filters.
+     */
+    @Override
+    protected boolean canUsePropertyIndexes() {
+        return filterOverride == null;
+    }
+
     private static final Logger getLogger() {
         return Logger.getLogger(HierarchicalContainer.class.getName());
     }
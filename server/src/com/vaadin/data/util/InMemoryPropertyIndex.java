@@ -0,0 +1,422 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.filter.Between;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+
+/**
+ * A sorted secondary index of the values of one property in an
+ * {@link AbstractInMemoryContainer}, used for finding the items that may pass
+ * a filter without evaluating the filter for every item.
+ * <p>
+ * The index is a snapshot of the property values of all items, in the order of
+ * the unfiltered item id list of the container. It is built lazily and must be
+ * invalidated whenever items are added, removed or reordered or when a value of
+ * the property changes.
+ * <p>
+ * The candidates returned by {@link #findCandidates(Filter)} are always a
+ * superset of the items passing the filter, so the filter must still be
+ * evaluated for the candidates.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+class InMemoryPropertyIndex implements Serializable {
+
+    private final Object propertyId;
+
+    /*
+     * The snapshot, rebuilt on demand. Positions refer to indexes in the
+     * itemIds array.
+     */
+    private transient boolean built = false;
+
+    /*
+     * Number of times the index has been needed since it was last invalidated,
+     * used for not rebuilding the index when items are added or changed
+     * between each filtering.
+     */
+    private transient int uses = 0;
+    private transient Object[] itemIds;
+    private transient Object[] values;
+
+    /*
+     * Positions of non-null values sorted by their natural order, or null if
+     * the values are not all of the same Comparable class.
+     */
+    private transient int[] naturalOrder;
+    private transient Class<?> valueClass;
+
+    /* Positions with null values, in ascending order */
+    private transient int[] nullPositions;
+
+    /*
+     * String representations of the values in the same order as the sorted
+     * positions, built separately on demand for case sensitive and case
+     * insensitive prefix matching.
+     */
+    private transient StringOrder caseSensitiveOrder;
+    private transient StringOrder caseInsensitiveOrder;
+
+    private static class StringOrder implements Serializable {
+        private final String[] keys;
+        private final int[] positions;
+
+        private StringOrder(String[] keys, int[] positions) {
+            this.keys = keys;
+            this.positions = positions;
+        }
+    }
+
+    /**
+     * Creates an empty index for the given property.
+     * 
+     * @param propertyId
+     *            the id of the indexed property
+     */
+    InMemoryPropertyIndex(Object propertyId) {
+        this.propertyId = propertyId;
+    }
+
+    /**
+     * Gets the id of the indexed property.
+     * 
+     * @return the property id
+     */
+    Object getPropertyId() {
+        return propertyId;
+    }
+
+    /**
+     * Discards the contents of this index. The index is rebuilt the next time
+     * it is used.
+     */
+    void invalidate() {
+        built = false;
+        uses = 0;
+        itemIds = null;
+        values = null;
+        naturalOrder = null;
+        valueClass = null;
+        nullPositions = null;
+        caseSensitiveOrder = null;
+        caseInsensitiveOrder = null;
+    }
+
+    /**
+     * Checks whether this index has been built and not invalidated since.
+     * 
+     * @return true if the index contents are available
+     */
+    boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Makes sure the index is up to date for the given items if using the index
+     * is worthwhile. The index is built only when it is needed for the second
+     * time after being invalidated, so that alternately modifying and filtering
+     * the container does not rebuild the index every time.
+     * 
+     * @param allItemIds
+     *            the unfiltered item ids of the container, in order
+     * @param container
+     *            the container from which to read the property values
+     * @return true if the index can be used, false otherwise
+     */
+    boolean prepare(List<?> allItemIds,
+            AbstractInMemoryContainer<?, ?, ?> container) {
+        if (built && itemIds.length == allItemIds.size()) {
+            return true;
+        }
+        if (++uses < 2) {
+            return false;
+        }
+        build(allItemIds, container);
+        return true;
+    }
+
+    /**
+     * Builds the index for the given items.
+     * 
+     * @param allItemIds
+     *            the unfiltered item ids of the container, in order
+     * @param container
+     *            the container from which to read the property values
+     */
+    void build(List<?> allItemIds,
+            AbstractInMemoryContainer<?, ?, ?> container) {
+        int size = allItemIds.size();
+        itemIds = allItemIds.toArray();
+        values = new Object[size];
+
+        int nullCount = 0;
+        Class<?> commonClass = null;
+        boolean sameClass = true;
+        for (int i = 0; i < size; i++) {
+            Item item = container.getUnfilteredItem(itemIds[i]);
+            Property<?> property = item == null ? null : item
+                    .getItemProperty(propertyId);
+            Object value = property == null ? null : property.getValue();
+            values[i] = value;
+            if (value == null) {
+                nullCount++;
+            } else if (commonClass == null) {
+                commonClass = value.getClass();
+            } else if (commonClass != value.getClass()) {
+                sameClass = false;
+            }
+        }
+
+        nullPositions = new int[nullCount];
+        int[] nonNullPositions = new int[size - nullCount];
+        for (int i = 0, n = 0, v = 0; i < size; i++) {
+            if (values[i] == null) {
+                nullPositions[n++] = i;
+            } else {
+                nonNullPositions[v++] = i;
+            }
+        }
+
+        if (sameClass
+                && (commonClass == null || Comparable.class
+                        .isAssignableFrom(commonClass))) {
+            naturalOrder = sortPositions(nonNullPositions, values);
+            valueClass = commonClass;
+        }
+
+        built = true;
+    }
+
+    /**
+     * Finds the positions of the items that may pass the given filter.
+     * 
+     * @param filter
+     *            the filter for which to find candidates
+     * @return the candidate positions in ascending order, or <code>null</code>
+     *         if this index can not be used for the filter
+     */
+    int[] findCandidates(Filter filter) {
+        if (filter instanceof Compare) {
+            return findCompareCandidates((Compare) filter);
+        } else if (filter instanceof Between) {
+            Between between = (Between) filter;
+            if (!propertyId.equals(between.getPropertyId())
+                    || !isComparableWith(between.getStartValue())
+                    || !isComparableWith(between.getEndValue())) {
+                return null;
+            }
+            int from = lowerBound(between.getStartValue());
+            int to = upperBound(between.getEndValue());
+            return sortedRange(naturalOrder, from, to, null);
+        } else if (filter instanceof SimpleStringFilter) {
+            SimpleStringFilter stringFilter = (SimpleStringFilter) filter;
+            if (!propertyId.equals(stringFilter.getPropertyId())
+                    || !stringFilter.isOnlyMatchPrefix()) {
+                return null;
+            }
+            return findPrefixCandidates(stringFilter.getFilterString(),
+                    stringFilter.isIgnoreCase());
+        }
+        return null;
+    }
+
+    /**
+     * Gets the item id at the given position of the index snapshot.
+     * 
+     * @param position
+     *            a position returned by {@link #findCandidates(Filter)}
+     * @return the item id
+     */
+    Object getItemId(int position) {
+        return itemIds[position];
+    }
+
+    private int[] findCompareCandidates(Compare filter) {
+        Object value = filter.getValue();
+        if (!propertyId.equals(filter.getPropertyId())
+                || !isComparableWith(value)) {
+            return null;
+        }
+        switch (filter.getOperation()) {
+        case EQUAL:
+            return sortedRange(naturalOrder, lowerBound(value),
+                    upperBound(value), null);
+        case LESS:
+            return sortedRange(naturalOrder, 0, lowerBound(value), null);
+        case LESS_OR_EQUAL:
+            return sortedRange(naturalOrder, 0, upperBound(value), null);
+        case GREATER:
+            // Compare considers null values to be greater than any value
+            return sortedRange(naturalOrder, upperBound(value),
+                    naturalOrder.length, nullPositions);
+        case GREATER_OR_EQUAL:
+            return sortedRange(naturalOrder, lowerBound(value),
+                    naturalOrder.length, nullPositions);
+        }
+        return null;
+    }
+
+    private boolean isComparableWith(Object value) {
+        return naturalOrder != null && value != null
+                && (valueClass == null || valueClass == value.getClass());
+    }
+
+    private int[] findPrefixCandidates(String prefix, boolean ignoreCase) {
+        StringOrder order = ignoreCase ? caseInsensitiveOrder
+                : caseSensitiveOrder;
+        if (order == null) {
+            order = buildStringOrder(ignoreCase);
+            if (ignoreCase) {
+                caseInsensitiveOrder = order;
+            } else {
+                caseSensitiveOrder = order;
+            }
+        }
+
+        String[] keys = order.keys;
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = low;
+        while (end < keys.length && keys[end].startsWith(prefix)) {
+            end++;
+        }
+        return sortedRange(order.positions, low, end, null);
+    }
+
+    private StringOrder buildStringOrder(boolean ignoreCase) {
+        int count = values.length - nullPositions.length;
+        final String[] keysByPosition = new String[values.length];
+        int[] positions = new int[count];
+        for (int i = 0, p = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                String key = values[i].toString();
+                keysByPosition[i] = ignoreCase ? key.toLowerCase() : key;
+                positions[p++] = i;
+            }
+        }
+        positions = sortPositions(positions, keysByPosition);
+
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = keysByPosition[positions[i]];
+        }
+        return new StringOrder(keys, positions);
+    }
+
+    /**
+     * Finds the first index in the natural order whose value is not less than
+     * the given value.
+     */
+    @SuppressWarnings("unchecked")
+    private int lowerBound(Object value) {
+        Comparable<Object> comparable = (Comparable<Object>) value;
+        int low = 0;
+        int high = naturalOrder.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparable.compareTo(values[naturalOrder[mid]]) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first index in the natural order whose value is greater than
+     * the given value.
+     */
+    @SuppressWarnings("unchecked")
+    private int upperBound(Object value) {
+        Comparable<Object> comparable = (Comparable<Object>) value;
+        int low = 0;
+        int high = naturalOrder.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparable.compareTo(values[naturalOrder[mid]]) >= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the positions in the given range of a sorted order, and the
+     * optional extra positions, in ascending position order.
+     */
+    private static int[] sortedRange(int[] order, int from, int to,
+            int[] extra) {
+        int length = Math.max(0, to - from);
+        int extraLength = extra == null ? 0 : extra.length;
+        int[] result = new int[length + extraLength];
+        if (length > 0) {
+            System.arraycopy(order, from, result, 0, length);
+        }
+        if (extraLength > 0) {
+            System.arraycopy(extra, 0, result, length, extraLength);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Sorts positions by the comparable values at those positions using a
+     * stable merge sort.
+     */
+    private static int[] sortPositions(int[] positions, Object[] keys) {
+        IndexSorter.sort(positions, new KeyComparator(keys));
+        return positions;
+    }
+
+    /**
+     * Compares positions by the comparable values at those positions.
+     */
+    private static class KeyComparator implements IndexSorter.IndexComparator {
+        private final Object[] keys;
+
+        private KeyComparator(Object[] keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compare(int position1, int position2) {
+            return ((Comparable<Object>) keys[position1])
+                    .compareTo(keys[position2]);
+        }
+    }
+}
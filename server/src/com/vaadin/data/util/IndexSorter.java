@@ -0,0 +1,101 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util;
+
+import java.io.Serializable;
+
+/**
+ * Stable merge sort for arrays of primitive <code>int</code> indexes, such as
+ * item positions or column rows, ordered by a comparator on the indexes. Used
+ * by the in-memory containers for sorting without boxing the indexes.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+class IndexSorter implements Serializable {
+
+    /**
+     * Compares two indexes by the values they refer to.
+     */
+    interface IndexComparator extends Serializable {
+        /**
+         * Compares the values at two indexes.
+         * 
+         * @param index1
+         *            the first index
+         * @param index2
+         *            the second index
+         * @return a negative integer, zero or a positive integer as the value
+         *         at the first index is less than, equal to or greater than
+         *         the value at the second index
+         */
+        public int compare(int index1, int index2);
+    }
+
+    private IndexSorter() {
+    }
+
+    /**
+     * Sorts the given indexes in place. Equal indexes keep their relative
+     * order.
+     * 
+     * @param indexes
+     *            the indexes to sort, not null
+     * @param comparator
+     *            the comparator defining the order of the indexes, not null
+     */
+    static void sort(int[] indexes, IndexComparator comparator) {
+        int[] aux = indexes.clone();
+        mergeSort(aux, indexes, 0, indexes.length, comparator);
+    }
+
+    private static void mergeSort(int[] src, int[] dest, int low, int high,
+            IndexComparator comparator) {
+        int length = high - low;
+
+        if (length < 7) {
+            // Insertion sort on smallest arrays
+            for (int i = low; i < high; i++) {
+                for (int j = i; j > low
+                        && comparator.compare(dest[j - 1], dest[j]) > 0; j--) {
+                    int tmp = dest[j];
+                    dest[j] = dest[j - 1];
+                    dest[j - 1] = tmp;
+                }
+            }
+            return;
+        }
+
+        int mid = (low + high) >>> 1;
+        mergeSort(dest, src, low, mid, comparator);
+        mergeSort(dest, src, mid, high, comparator);
+
+        // Already in order, just copy
+        if (comparator.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, low, dest, low, length);
+            return;
+        }
+
+        for (int i = low, p = low, q = mid; i < high; i++) {
+            if (q >= high || p < mid
+                    && comparator.compare(src[p], src[q]) <= 0) {
+                dest[i] = src[p++];
+            } else {
+                dest[i] = src[q++];
+            }
+        }
+    }
+}
@@ -78,10 +78,9 @@ public class IndexedContainer extends
     private Hashtable<Object, Class<?>> types = new Hashtable<Object, Class<?>>();
 
     /**
-     * Hash of Items, where each Item is implemented as a mapping from Property
-     * ID to Property value.
+     * Storage for the property values of the items.
      */
-    private Hashtable<Object, Map<Object, Object>> items = new Hashtable<Object, Map<Object, Object>>();
+    private ValueStorage storage;
 
     /**
      * Set of properties that are read-only.
@@ -109,26 +108,49 @@ public class IndexedContainer extends
     /* Container constructors */
 
     public IndexedContainer() {
-        super();
+        this(new MapValueStorage());
     }
 
     public IndexedContainer(Collection<?> itemIds) {
-        this();
-        if (items != null) {
-            for (final Iterator<?> i = itemIds.iterator(); i.hasNext();) {
-                Object itemId = i.next();
-                internalAddItemAtEnd(itemId, new IndexedContainerItem(itemId),
-                        false);
-            }
-            filterAll();
+        this(new MapValueStorage(), itemIds);
+    }
+
+    /**
+     * Creates an empty container storing the property values in the given
+     * storage.
+     * 
+     * @param storage
+     *            the storage for the property values, not <code>null</code>
+     */
+    IndexedContainer(ValueStorage storage) {
+        super();
+        this.storage = storage;
+    }
+
+    /**
+     * Creates a container with the given item ids, storing the property values
+     * in the given storage.
+     * 
+     * @param storage
+     *            the storage for the property values, not <code>null</code>
+     * @param itemIds
+     *            the ids of the initial items
+     */
+    IndexedContainer(ValueStorage storage, Collection<?> itemIds) {
+        this(storage);
+        for (final Iterator<?> i = itemIds.iterator(); i.hasNext();) {
+            Object itemId = i.next();
+            internalAddItemAtEnd(itemId, new IndexedContainerItem(itemId),
+                    false);
         }
+        filterAll();
     }
 
     /* Container methods */
 
     @Override
     protected Item getUnfilteredItem(Object itemId) {
-        if (itemId != null && items.containsKey(itemId)) {
+        if (itemId != null && storage.containsItem(itemId)) {
             return new IndexedContainerItem(itemId);
         }
         return null;
@@ -197,6 +219,7 @@ public class IndexedContainer extends
         // Adds the Property to Property list and types
         propertyIds.add(propertyId);
         types.put(propertyId, type);
+        storage.addProperty(propertyId, type);
 
         // If default value is given, set it
         if (defaultValue != null) {
@@ -229,7 +252,7 @@ public class IndexedContainer extends
 
         internalRemoveAllItems();
 
-        items.clear();
+        storage.removeAllItems();
 
         // fire event only if the visible view changed, regardless of whether
         // filtered out items were removed or not
@@ -267,6 +290,9 @@ public class IndexedContainer extends
     public Item addItem(Object itemId) {
         Item item = internalAddItemAtEnd(itemId, new IndexedContainerItem(
                 itemId), false);
+        if (item == null) {
+            return null;
+        }
         if (!isFiltered()) {
             // always the last item
             fireItemAdded(size() - 1, itemId, item);
@@ -281,13 +307,13 @@ public class IndexedContainer extends
     /**
      * Helper method to add default values for items if available
      * 
-     * @param t
-     *            data table of added item
+     * @param itemId
+     *            the id of the added item
      */
-    private void addDefaultValues(Hashtable<Object, Object> t) {
+    private void addDefaultValues(Object itemId) {
         if (defaultPropertyValues != null) {
             for (Object key : defaultPropertyValues.keySet()) {
-                t.put(key, defaultPropertyValues.get(key));
+                storage.setValue(itemId, key, defaultPropertyValues.get(key));
             }
         }
     }
@@ -299,7 +325,7 @@ public class IndexedContainer extends
      */
     @Override
     public boolean removeItem(Object itemId) {
-        if (itemId == null || items.remove(itemId) == null) {
+        if (itemId == null || !storage.removeItem(itemId)) {
             return false;
         }
         int origSize = size();
@@ -338,9 +364,8 @@ public class IndexedContainer extends
         }
 
         // If remove the Property from all Items
-        for (final Iterator<Object> i = getAllItemIds().iterator(); i.hasNext();) {
-            items.get(i.next()).remove(propertyId);
-        }
+        storage.removeProperty(propertyId);
+        invalidatePropertyIndex(propertyId);
 
         // Sends a change event
         fireContainerPropertySetChange();
@@ -418,16 +443,15 @@ public class IndexedContainer extends
         Serializable id;
         do {
             id = Integer.valueOf(nextGeneratedItemId++);
-        } while (items.containsKey(id));
+        } while (storage.containsItem(id));
 
         return id;
     }
 
     @Override
     protected void registerNewItem(int index, Object newItemId, Item item) {
-        Hashtable<Object, Object> t = new Hashtable<Object, Object>();
-        items.put(newItemId, t);
-        addDefaultValues(t);
+        storage.addItem(newItemId);
+        addDefaultValues(newItemId);
     }
 
     /* Event notifiers */
@@ -895,7 +919,7 @@ public class IndexedContainer extends
          */
         @Override
         public T getValue() {
-            return (T) items.get(itemId).get(propertyId);
+            return (T) storage.getValue(itemId, propertyId);
         }
 
         /*
@@ -929,20 +953,17 @@ public class IndexedContainer extends
          */
         @Override
         public void setValue(Object newValue) throws Property.ReadOnlyException {
-            // Gets the Property set
-            final Map<Object, Object> propertySet = items.get(itemId);
-
             // Support null values on all types
-            if (newValue == null) {
-                propertySet.remove(propertyId);
-            } else if (getType().isAssignableFrom(newValue.getClass())) {
-                propertySet.put(propertyId, newValue);
+            if (newValue == null
+                    || getType().isAssignableFrom(newValue.getClass())) {
+                storage.setValue(itemId, propertyId, newValue);
             } else {
                 throw new IllegalArgumentException(
                         "Value is of invalid type, got "
                                 + newValue.getClass().getName() + " but "
                                 + getType().getName() + " was expected");
             }
+            invalidatePropertyIndex(propertyId);
 
             // update the container filtering if this property is being filtered
             if (isPropertyFiltered(propertyId)) {
@@ -1144,17 +1165,7 @@ public class IndexedContainer extends
                         .clone());
 
         // Clone property-values
-        if (items == null) {
-            nc.items = null;
-        } else {
-            nc.items = new Hashtable<Object, Map<Object, Object>>();
-            for (final Iterator<?> i = items.keySet().iterator(); i.hasNext();) {
-                final Object id = i.next();
-                final Hashtable<Object, Object> it = (Hashtable<Object, Object>) items
-                        .get(id);
-                nc.items.put(id, (Map<Object, Object>) it.clone());
-            }
-        }
+        nc.storage = storage.copy();
 
         return nc;
     }
@@ -1192,6 +1203,12 @@ public class IndexedContainer extends
         removeFilter(filter);
     }
 
+    @Override
+    public void replaceContainerFilter(Filter oldFilter, Filter newFilter)
+            throws UnsupportedFilterException {
+        super.replaceContainerFilter(oldFilter, newFilter);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -1211,4 +1228,134 @@ public class IndexedContainer extends
     public Collection<Filter> getContainerFilters() {
         return super.getContainerFilters();
     }
+
+    /* Value storage */
+
+    /**
+     * Storage for the property values of the items in an
+     * {@link IndexedContainer}. The container keeps track of the item and
+     * property ids, their order, types and listeners, and only stores and
+     * reads the values through this class.
+     * <p>
+     * The container validates the ids and types before calling the storage, so
+     * the values given to the storage are always either <code>null</code> or
+     * of the type of the property.
+     */
+    abstract static class ValueStorage implements Serializable {
+
+        /**
+         * Checks whether the storage has an entry for the given item.
+         */
+        abstract boolean containsItem(Object itemId);
+
+        /**
+         * Adds an entry for a new item, with all values <code>null</code>.
+         */
+        abstract void addItem(Object itemId);
+
+        /**
+         * Removes the entry of an item.
+         * 
+         * @return <code>true</code> if the item was in the storage
+         */
+        abstract boolean removeItem(Object itemId);
+
+        /**
+         * Removes all items from the storage. The properties are retained.
+         */
+        abstract void removeAllItems();
+
+        /**
+         * Adds a property, with the value <code>null</code> for all existing
+         * items.
+         */
+        abstract void addProperty(Object propertyId, Class<?> type);
+
+        /**
+         * Removes a property and its values from all items.
+         */
+        abstract void removeProperty(Object propertyId);
+
+        /**
+         * Gets the value of a property of an item.
+         */
+        abstract Object getValue(Object itemId, Object propertyId);
+
+        /**
+         * Sets the value of a property of an item.
+         */
+        abstract void setValue(Object itemId, Object propertyId, Object value);
+
+        /**
+         * Creates an independent copy of the storage and the values in it.
+         */
+        abstract ValueStorage copy();
+    }
+
+    /**
+     * Default value storage, where each Item is implemented as a mapping from
+     * Property ID to Property value.
+     */
+    private static class MapValueStorage extends ValueStorage {
+
+        private Hashtable<Object, Map<Object, Object>> items = new Hashtable<Object, Map<Object, Object>>();
+
+        @Override
+        boolean containsItem(Object itemId) {
+            return items.containsKey(itemId);
+        }
+
+        @Override
+        void addItem(Object itemId) {
+            items.put(itemId, new Hashtable<Object, Object>());
+        }
+
+        @Override
+        boolean removeItem(Object itemId) {
+            return items.remove(itemId) != null;
+        }
+
+        @Override
+        void removeAllItems() {
+            items.clear();
+        }
+
+        @Override
+        void addProperty(Object propertyId, Class<?> type) {
+            // Missing values are null
+        }
+
+        @Override
+        void removeProperty(Object propertyId) {
+            for (Map<Object, Object> propertySet : items.values()) {
+                propertySet.remove(propertyId);
+            }
+        }
+
+        @Override
+        Object getValue(Object itemId, Object propertyId) {
+            return items.get(itemId).get(propertyId);
+        }
+
+        @Override
+        void setValue(Object itemId, Object propertyId, Object value) {
+            final Map<Object, Object> propertySet = items.get(itemId);
+            if (value == null) {
+                propertySet.remove(propertyId);
+            } else {
+                propertySet.put(propertyId, value);
+            }
+        }
+
+        @Override
+        ValueStorage copy() {
+            MapValueStorage copy = new MapValueStorage();
+            for (Map.Entry<Object, Map<Object, Object>> entry : items
+                    .entrySet()) {
+                copy.items.put(entry.getKey(), new Hashtable<Object, Object>(
+                        entry.getValue()));
+            }
+            return copy;
+        }
+    }
 }
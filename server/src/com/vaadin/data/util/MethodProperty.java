@@ -185,34 +185,23 @@ public class MethodProperty<T> extends AbstractProperty<T> {
 
         final Class<?> beanClass = instance.getClass();
 
-        // Assure that the first letter is upper cased (it is a common
-        // mistake to write firstName, not FirstName).
-        if (Character.isLowerCase(beanPropertyName.charAt(0))) {
-            final char[] buf = beanPropertyName.toCharArray();
-            buf[0] = Character.toUpperCase(buf[0]);
-            beanPropertyName = new String(buf);
-        }
-
-        // Find the get method
-        getMethod = null;
+        // Find the get and set methods, the first letter of the property
+        // name is upper cased for the method names
+        final BeanAccessorRegistry.Accessor accessor;
         try {
-            getMethod = initGetterMethod(beanPropertyName, beanClass);
+            accessor = BeanAccessorRegistry.getAccessor(beanClass,
+                    beanPropertyName);
         } catch (final java.lang.NoSuchMethodException ignored) {
-            throw new MethodException(this, "Bean property " + beanPropertyName
-                    + " can not be found");
+            throw new MethodException(this, "Bean property "
+                    + Character.toUpperCase(beanPropertyName.charAt(0))
+                    + beanPropertyName.substring(1) + " can not be found");
         }
+        getMethod = accessor.getGetMethod();
+        setMethod = accessor.getSetMethod();
 
         // In case the get method is found, resolve the type
         Class<?> returnType = getMethod.getReturnType();
 
-        // Finds the set method
-        setMethod = null;
-        try {
-            setMethod = beanClass.getMethod("set" + beanPropertyName,
-                    new Class[] { returnType });
-        } catch (final java.lang.NoSuchMethodException skipped) {
-        }
-
         // Gets the return type from get method
         if (returnType.isPrimitive()) {
             type = (Class<T>) convertPrimitiveType(returnType);
@@ -255,8 +244,8 @@ public class MethodProperty<T> extends AbstractProperty<T> {
      */
     public MethodProperty(Class<? extends T> type, Object instance,
             String getMethodName, String setMethodName) {
-        this(type, instance, getMethodName, setMethodName, new Object[] {},
-                new Object[] { null }, 0);
+        this(type, instance, getMethodName, setMethodName, DEFAULT_GET_ARGS,
+                DEFAULT_SET_ARGS, 0);
     }
 
     /**
@@ -284,8 +273,8 @@ public class MethodProperty<T> extends AbstractProperty<T> {
      */
     public MethodProperty(Class<? extends T> type, Object instance,
             Method getMethod, Method setMethod) {
-        this(type, instance, getMethod, setMethod, new Object[] {},
-                new Object[] { null }, 0);
+        this(type, instance, getMethod, setMethod, DEFAULT_GET_ARGS,
+                DEFAULT_SET_ARGS, 0);
     }
 
     /**
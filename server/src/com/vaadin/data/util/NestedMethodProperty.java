@@ -44,6 +44,8 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
     // needed for de-serialization
     private String propertyName;
 
+    private static final Object[] NO_ARGS = new Object[0];
+
     // chain of getter methods
     private transient List<Method> getMethods;
     /**
@@ -119,65 +121,14 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
      */
     private void initialize(Class<?> beanClass, String propertyName)
             throws IllegalArgumentException {
+        BeanAccessorRegistry.Accessor accessor = BeanAccessorRegistry
+                .getNestedAccessor(beanClass, propertyName);
 
-        List<Method> getMethods = new ArrayList<Method>();
-
-        String lastSimplePropertyName = propertyName;
-        Class<?> lastClass = beanClass;
-
-        // first top-level property, then go deeper in a loop
-        Class<?> propertyClass = beanClass;
-        String[] simplePropertyNames = propertyName.split("\\.");
-        if (propertyName.endsWith(".") || 0 == simplePropertyNames.length) {
-            throw new IllegalArgumentException("Invalid property name '"
-                    + propertyName + "'");
-        }
-        for (int i = 0; i < simplePropertyNames.length; i++) {
-            String simplePropertyName = simplePropertyNames[i].trim();
-            if (simplePropertyName.length() > 0) {
-                lastSimplePropertyName = simplePropertyName;
-                lastClass = propertyClass;
-                try {
-                    Method getter = MethodProperty.initGetterMethod(
-                            simplePropertyName, propertyClass);
-                    propertyClass = getter.getReturnType();
-                    getMethods.add(getter);
-                } catch (final java.lang.NoSuchMethodException e) {
-                    throw new IllegalArgumentException("Bean property '"
-                            + simplePropertyName + "' not found", e);
-                }
-            } else {
-                throw new IllegalArgumentException(
-                        "Empty or invalid bean property identifier in '"
-                                + propertyName + "'");
-            }
-        }
-
-        // In case the get method is found, resolve the type
-        Method lastGetMethod = getMethods.get(getMethods.size() - 1);
-        Class<?> type = lastGetMethod.getReturnType();
-
-        // Finds the set method
-        Method setMethod = null;
-        try {
-            // Assure that the first letter is upper cased (it is a common
-            // mistake to write firstName, not FirstName).
-            if (Character.isLowerCase(lastSimplePropertyName.charAt(0))) {
-                final char[] buf = lastSimplePropertyName.toCharArray();
-                buf[0] = Character.toUpperCase(buf[0]);
-                lastSimplePropertyName = new String(buf);
-            }
-
-            setMethod = lastClass.getMethod("set" + lastSimplePropertyName,
-                    new Class[] { type });
-        } catch (final NoSuchMethodException skipped) {
-        }
-
-        this.type = (Class<? extends T>) MethodProperty
-                .convertPrimitiveType(type);
+        type = (Class<? extends T>) MethodProperty.convertPrimitiveType(accessor
+                .getType());
         this.propertyName = propertyName;
-        this.getMethods = getMethods;
-        this.setMethod = setMethod;
+        getMethods = accessor.getGetMethods();
+        setMethod = accessor.getSetMethod();
     }
 
     @Override
@@ -200,8 +151,8 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
     public T getValue() {
         try {
             Object object = instance;
-            for (Method m : getMethods) {
-                object = m.invoke(object);
+            for (int i = 0; i < getMethods.size(); i++) {
+                object = getMethods.get(i).invoke(object, NO_ARGS);
                 if (object == null) {
                     return null;
                 }
@@ -243,7 +194,7 @@ public class NestedMethodProperty<T> extends AbstractProperty<T> {
         try {
             Object object = instance;
             for (int i = 0; i < getMethods.size() - 1; i++) {
-                object = getMethods.get(i).invoke(object);
+                object = getMethods.get(i).invoke(object, NO_ARGS);
             }
             setMethod.invoke(object, new Object[] { value });
         } catch (final InvocationTargetException e) {
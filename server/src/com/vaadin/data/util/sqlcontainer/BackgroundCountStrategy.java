@@ -0,0 +1,196 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.sqlcontainer.query.QueryDelegate;
+import com.vaadin.data.util.sqlcontainer.query.TableQuery;
+import com.vaadin.server.VaadinSession;
+
+/**
+ * Count strategy that counts the rows in a background thread, without holding
+ * the session lock while the database executes the count. Until the count is
+ * done, the container uses the previous count or, if there is none for the
+ * current filters, an estimated count.
+ * <p>
+ * When the count is done, the container is updated through
+ * {@link VaadinSession#access(Runnable)}. If the count has changed, the
+ * container notifies its item set change listeners, and the new size is
+ * pushed to the browser if push is enabled in automatic mode.
+ * <p>
+ * Rows are counted in the background only for containers using a
+ * {@link TableQuery} and used within a session. Otherwise, or if no estimate is
+ * available, the rows are counted immediately as in
+ * {@link SynchronousCountStrategy}. The rows are also counted immediately if
+ * the executor rejects the count. The executor is not serialized, so rows
+ * are also counted immediately after the strategy has been deserialized.
+ * 
+ * @since 7.2
+ */
+public class BackgroundCountStrategy implements CountStrategy {
+
+    /**
+     * Counts the rows in a background thread and passes the count to the
+     * session of the container.
+     */
+    private static class CountTask implements Runnable, Serializable {
+        private final SQLContainer container;
+        private final TableQuery query;
+        private final List<Filter> filters;
+        private final VaadinSession session;
+
+        private CountTask(SQLContainer container, TableQuery query,
+                List<Filter> filters, VaadinSession session) {
+            this.container = container;
+            this.query = query;
+            this.filters = filters;
+            this.session = session;
+        }
+
+        @Override
+        public void run() {
+            int count = -1;
+            try {
+                count = query.getCount(filters);
+            } catch (SQLException e) {
+                getLogger().log(Level.WARNING,
+                        "Failed to count rows in the background", e);
+            } catch (RuntimeException e) {
+                getLogger().log(Level.WARNING,
+                        "Failed to count rows in the background", e);
+            }
+            session.access(new ApplyCountTask(container, filters, count));
+        }
+    }
+
+    /**
+     * Updates the size of the container while holding the session lock.
+     */
+    private static class ApplyCountTask implements Runnable, Serializable {
+        private final SQLContainer container;
+        private final List<Filter> filters;
+        private final int count;
+
+        private ApplyCountTask(SQLContainer container, List<Filter> filters,
+                int count) {
+            this.container = container;
+            this.filters = filters;
+            this.count = count;
+        }
+
+        @Override
+        public void run() {
+            container.applyBackgroundCount(filters, count);
+        }
+    }
+
+    private final transient Executor executor;
+    private final int initialEstimate;
+
+    /**
+     * Creates a new background count strategy that counts the rows
+     * immediately when there is no previous count for the current filters.
+     * 
+     * @param executor
+     *            the executor to run the counts in
+     */
+    public BackgroundCountStrategy(Executor executor) {
+        this(executor, -1);
+    }
+
+    /**
+     * Creates a new background count strategy that uses the given estimate
+     * when there is no previous count for the current filters.
+     * 
+     * @param executor
+     *            the executor to run the counts in
+     * @param initialEstimate
+     *            the estimated row count, or -1 to count the rows immediately
+     *            when there is no previous count
+     */
+    public BackgroundCountStrategy(Executor executor, int initialEstimate) {
+        if (executor == null) {
+            throw new IllegalArgumentException("The executor must not be null");
+        }
+        this.executor = executor;
+        this.initialEstimate = initialEstimate;
+    }
+
+    @Override
+    public int getCount(SQLContainer container, QueryDelegate queryDelegate,
+            int lastCount) throws SQLException {
+        VaadinSession session = VaadinSession.getCurrent();
+        if (executor == null || session == null
+                || !(queryDelegate instanceof TableQuery)) {
+            return queryDelegate.getCount();
+        }
+        int count = lastCount;
+        if (count < 0) {
+            count = estimateCount(container, queryDelegate);
+            if (count < 0) {
+                return queryDelegate.getCount();
+            }
+        }
+        if (!container.isBackgroundCountPending()) {
+            container.setBackgroundCountPending(true);
+            try {
+                executor.execute(new CountTask(container,
+                        (TableQuery) queryDelegate, new ArrayList<Filter>(
+                                container.getContainerFilters()), session));
+            } catch (RejectedExecutionException e) {
+                container.setBackgroundCountPending(false);
+                getLogger().log(Level.FINE,
+                        "Background count rejected, counting immediately", e);
+                return queryDelegate.getCount();
+            } catch (RuntimeException e) {
+                // Allow counting in the background again later
+                container.setBackgroundCountPending(false);
+                throw e;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Estimates the row count of a container for which there is no previous
+     * count for the current filters. The estimate is used until the rows have
+     * been counted in the background. The default implementation returns the
+     * estimate given in the constructor.
+     * 
+     * @param container
+     *            the container for which the count is requested
+     * @param queryDelegate
+     *            the query delegate of the container
+     * @return the estimated row count, or -1 to count the rows immediately
+     */
+    protected int estimateCount(SQLContainer container,
+            QueryDelegate queryDelegate) {
+        return initialEstimate;
+    }
+
+    private static final Logger getLogger() {
+        return Logger.getLogger(BackgroundCountStrategy.class.getName());
+    }
+}
@@ -16,26 +16,80 @@
 package com.vaadin.data.util.sqlcontainer;
 
 import java.io.Serializable;
+import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.vaadin.data.util.sqlcontainer.query.FreeformQuery;
 import com.vaadin.data.util.sqlcontainer.query.QueryDelegate;
 import com.vaadin.data.util.sqlcontainer.query.TableQuery;
+import com.vaadin.server.VaadinSession;
 
 /**
  * CacheFlushNotifier is a simple static notification mechanism to inform other
  * SQLContainers that the contents of their caches may have become stale.
+ * <p>
+ * Containers are registered by the name of their table or by their query
+ * string, so that a notification only visits the containers connected to the
+ * same table or using the same query. The registry can be used concurrently
+ * from any number of sessions.
+ * <p>
+ * A notified container is first marked as stale, which is safe from any
+ * thread. A container registered from within a session is then refreshed
+ * through its session using {@link VaadinSession#access(Runnable)}. A
+ * container registered without a session is never modified by the notifying
+ * thread. It discards its cache the next time it is used, without notifying
+ * its listeners.
  */
 class CacheFlushNotifier implements Serializable {
     /*
-     * SQLContainer instance reference list and dead reference queue. Used for
-     * the cache flush notification feature.
+     * SQLContainer instance references by table name or query string and the
+     * dead reference queue. Used for the cache flush notification feature.
      */
-    private static List<WeakReference<SQLContainer>> allInstances = new ArrayList<WeakReference<SQLContainer>>();
-    private static ReferenceQueue<SQLContainer> deadInstances = new ReferenceQueue<SQLContainer>();
+    private static final ConcurrentMap<String, Set<ContainerReference>> instancesByKey = new ConcurrentHashMap<String, Set<ContainerReference>>();
+    private static final ReferenceQueue<SQLContainer> deadInstances = new ReferenceQueue<SQLContainer>();
+
+    /**
+     * Weak reference to a registered container, remembering the registry key
+     * and the session in which the container was registered.
+     */
+    private static class ContainerReference extends
+            WeakReference<SQLContainer> implements Serializable {
+        private final String key;
+        private final WeakReference<VaadinSession> session;
+
+        private ContainerReference(SQLContainer container, String key,
+                VaadinSession session) {
+            super(container, deadInstances);
+            this.key = key;
+            this.session = session == null ? null
+                    : new WeakReference<VaadinSession>(session);
+        }
+
+        private VaadinSession getSession() {
+            return session == null ? null : session.get();
+        }
+    }
+
+    /**
+     * Refreshes a stale container while holding the lock of its session.
+     */
+    private static class RefreshTask implements Runnable, Serializable {
+        private final SQLContainer container;
+
+        private RefreshTask(SQLContainer container) {
+            this.container = container;
+        }
+
+        @Override
+        public void run() {
+            container.refresh();
+        }
+    }
 
     /**
      * Adds the given SQLContainer to the cache flush notification receiver list
@@ -45,8 +99,31 @@ class CacheFlushNotifier implements Serializable {
      */
     public static void addInstance(SQLContainer c) {
         removeDeadReferences();
-        if (c != null) {
-            allInstances.add(new WeakReference<SQLContainer>(c, deadInstances));
+        if (c == null) {
+            return;
+        }
+        String key = getKey(c);
+        if (key == null) {
+            return;
+        }
+        ContainerReference reference = new ContainerReference(c, key,
+                VaadinSession.getCurrent());
+        while (true) {
+            Set<ContainerReference> instances = instancesByKey.get(key);
+            if (instances == null) {
+                Set<ContainerReference> newInstances = Collections
+                        .newSetFromMap(new ConcurrentHashMap<ContainerReference, Boolean>());
+                instances = instancesByKey.putIfAbsent(key, newInstances);
+                if (instances == null) {
+                    instances = newInstances;
+                }
+            }
+            instances.add(reference);
+            // Retry if the set was concurrently removed as empty
+            if (instancesByKey.get(key) == instances) {
+                return;
+            }
+            instances.remove(reference);
         }
     }
 
@@ -54,50 +131,81 @@ class CacheFlushNotifier implements Serializable {
      * Removes dead references from instance list
      */
     private static void removeDeadReferences() {
-        java.lang.ref.Reference<? extends SQLContainer> dead = deadInstances
-                .poll();
+        Reference<? extends SQLContainer> dead = deadInstances.poll();
         while (dead != null) {
-            allInstances.remove(dead);
+            String key = ((ContainerReference) dead).key;
+            Set<ContainerReference> instances = instancesByKey.get(key);
+            if (instances != null) {
+                instances.remove(dead);
+                if (instances.isEmpty()) {
+                    instancesByKey.remove(key, instances);
+                }
+            }
             dead = deadInstances.poll();
         }
     }
 
     /**
-     * Iterates through the instances and notifies containers which are
-     * connected to the same table or are using the same query string.
+     * Gets the registry key of a container, based on the table name or query
+     * string of its query delegate.
+     * 
+     * @param c
+     *            the container
+     * @return the key, or <code>null</code> if notifications are not supported
+     *         for the query delegate of the container
+     */
+    private static String getKey(SQLContainer c) {
+        QueryDelegate qd = c.getQueryDelegate();
+        if (qd instanceof TableQuery) {
+            return "table:" + ((TableQuery) qd).getTableName();
+        } else if (qd instanceof FreeformQuery) {
+            return "query:" + ((FreeformQuery) qd).getQueryString();
+        }
+        return null;
+    }
+
+    /**
+     * Notifies the containers which are connected to the same table or are
+     * using the same query string that their caches are stale.
      * 
      * @param c
      *            SQLContainer that issued the cache flush notification
      */
     public static void notifyOfCacheFlush(SQLContainer c) {
         removeDeadReferences();
-        for (WeakReference<SQLContainer> wr : allInstances) {
-            if (wr.get() != null) {
-                SQLContainer wrc = wr.get();
-                if (wrc == null) {
-                    continue;
-                }
+        String key = getKey(c);
+        Set<ContainerReference> instances = key == null ? null
+                : instancesByKey.get(key);
+        if (instances == null) {
+            return;
+        }
+        VaadinSession currentSession = VaadinSession.getCurrent();
+        for (ContainerReference reference : instances) {
+            SQLContainer wrc = reference.get();
+            /*
+             * If the reference points to the container sending the
+             * notification, do nothing.
+             */
+            if (wrc == null || wrc == c) {
+                continue;
+            }
+            if (!wrc.markCacheStale()) {
+                // Already stale, a refresh is pending or will happen lazily
+                continue;
+            }
+            VaadinSession session = reference.getSession();
+            if (session == null) {
                 /*
-                 * If the reference points to the container sending the
-                 * notification, do nothing.
+                 * The container may be in use by another thread and there is
+                 * no lock for refreshing it safely. The cache is discarded the
+                 * next time the container is used.
                  */
-                if (wrc.equals(c)) {
-                    continue;
-                }
-                /* Compare QueryDelegate types and tableName/queryString */
-                QueryDelegate wrQd = wrc.getQueryDelegate();
-                QueryDelegate qd = c.getQueryDelegate();
-                if (wrQd instanceof TableQuery
-                        && qd instanceof TableQuery
-                        && ((TableQuery) wrQd).getTableName().equals(
-                                ((TableQuery) qd).getTableName())) {
-                    wrc.refresh();
-                } else if (wrQd instanceof FreeformQuery
-                        && qd instanceof FreeformQuery
-                        && ((FreeformQuery) wrQd).getQueryString().equals(
-                                ((FreeformQuery) qd).getQueryString())) {
-                    wrc.refresh();
-                }
+                continue;
+            }
+            if (session == currentSession && session.hasLock()) {
+                wrc.refresh();
+            } else {
+                session.access(new RefreshTask(wrc));
             }
         }
     }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+
+import com.vaadin.data.util.sqlcontainer.query.QueryDelegate;
+
+/**
+ * Strategy for determining the total number of rows of a {@link SQLContainer}.
+ * The container asks for the row count when the previous count is no longer
+ * valid, that is when the filters or the contents of the container have
+ * changed, or when the count is older than the validity time of the container.
+ * 
+ * @see SQLContainer#setCountStrategy(CountStrategy)
+ * @see SQLContainer#setSizeValidMilliSeconds(int)
+ * @see SynchronousCountStrategy
+ * @see BackgroundCountStrategy
+ * 
+ * @since 7.2
+ */
+public interface CountStrategy extends Serializable {
+
+    /**
+     * Gets the row count to use for the container. Called while holding the
+     * lock of the session of the container, if any, and after the current
+     * filters and sorting have been set to the query delegate.
+     * 
+     * @param container
+     *            the container for which the count is requested
+     * @param queryDelegate
+     *            the query delegate of the container
+     * @param lastCount
+     *            the previously determined count for the current filters, or
+     *            -1 if there is no such count
+     * @return the row count to use
+     * @throws SQLException
+     *             if counting the rows fails
+     */
+    public int getCount(SQLContainer container, QueryDelegate queryDelegate,
+            int lastCount) throws SQLException;
+}
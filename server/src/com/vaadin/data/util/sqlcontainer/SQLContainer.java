@@ -29,6 +29,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,6 +43,7 @@ import com.vaadin.data.util.filter.UnsupportedFilterException;
 import com.vaadin.data.util.sqlcontainer.query.OrderBy;
 import com.vaadin.data.util.sqlcontainer.query.QueryDelegate;
 import com.vaadin.data.util.sqlcontainer.query.QueryDelegate.RowIdChangeListener;
+import com.vaadin.data.util.sqlcontainer.query.SharedPageCache;
 import com.vaadin.data.util.sqlcontainer.query.TableQuery;
 import com.vaadin.data.util.sqlcontainer.query.generator.MSSQLGenerator;
 import com.vaadin.data.util.sqlcontainer.query.generator.OracleGenerator;
@@ -90,10 +92,15 @@ public class SQLContainer implements Container, Container.Filterable,
      * Size updating logic. Do not update size from data source if it has been
      * updated in the last sizeValidMilliSeconds milliseconds.
      */
-    private final int sizeValidMilliSeconds = 10000;
+    private int sizeValidMilliSeconds = 10000;
     private boolean sizeDirty = true;
     private Date sizeUpdated = new Date();
 
+    /** Strategy for counting rows and the filters used in the last count */
+    private CountStrategy countStrategy = new SynchronousCountStrategy();
+    private List<Filter> countedFilters;
+    private boolean backgroundCountPending;
+
     /** Starting row number of the currently fetched page */
     private int currentOffset;
 
@@ -111,6 +118,13 @@ public class SQLContainer implements Container, Container.Filterable,
     /** Cache flush notification system enabled. Disabled by default. */
     private boolean notificationsEnabled;
 
+    /**
+     * Set when another container has notified of a cache flush and the cache
+     * of this container has not been refreshed since. May be set from any
+     * thread.
+     */
+    private final AtomicBoolean cacheStale = new AtomicBoolean();
+
     /**
      * Prevent instantiation without a QueryDelegate.
      */
@@ -214,6 +228,7 @@ public class SQLContainer implements Container, Container.Filterable,
         if (itemId == null) {
             return false;
         }
+        discardCacheIfStale();
 
         if (cachedItems.containsKey(itemId)) {
             return true;
@@ -280,6 +295,7 @@ public class SQLContainer implements Container, Container.Filterable,
 
     @Override
     public Item getItem(Object itemId) {
+        discardCacheIfStale();
         if (!cachedItems.containsKey(itemId)) {
             int index = indexOfId(itemId);
             if (index >= size) {
@@ -308,6 +324,7 @@ public class SQLContainer implements Container, Container.Filterable,
      * @return the item represented by itemId.
      */
     public Item getItemUnfiltered(Object itemId) {
+        discardCacheIfStale();
         if (!cachedItems.containsKey(itemId)) {
             for (RowItem item : addedItems) {
                 if (item.getId().equals(itemId)) {
@@ -905,12 +922,39 @@ public class SQLContainer implements Container, Container.Filterable,
         if (setSizeDirty) {
             sizeDirty = true;
         }
+        cacheStale.set(false);
         currentOffset = 0;
         cachedItems.clear();
         itemIndexes.clear();
         fireContentsChange();
     }
 
+    /**
+     * Marks the cache of this container as stale after another container has
+     * flushed its cache. Can be called from any thread, the cache is discarded
+     * later.
+     * 
+     * @return true if the cache was marked stale, false if it was already
+     *         stale
+     */
+    boolean markCacheStale() {
+        return cacheStale.compareAndSet(false, true);
+    }
+
+    /**
+     * Discards the cached rows and size without notifying listeners if the
+     * cache has been marked stale. Called before accessing the cache so that
+     * no stale data is returned.
+     */
+    private void discardCacheIfStale() {
+        if (cacheStale.compareAndSet(true, false)) {
+            sizeDirty = true;
+            currentOffset = 0;
+            cachedItems.clear();
+            itemIndexes.clear();
+        }
+    }
+
     /**
      * Returns modify state of the container.
      * 
@@ -1142,6 +1186,7 @@ public class SQLContainer implements Container, Container.Filterable,
      * Fetches new count of rows from the data source, if needed.
      */
     private void updateCount() {
+        discardCacheIfStale();
         if (!sizeDirty
                 && new Date().getTime() < sizeUpdated.getTime()
                         + sizeValidMilliSeconds) {
@@ -1160,7 +1205,10 @@ public class SQLContainer implements Container, Container.Filterable,
                 getLogger().log(Level.FINE,
                         "The query delegate doesn't support sorting", e);
             }
-            int newSize = queryDelegate.getCount();
+            int lastCount = filters.equals(countedFilters) ? size : -1;
+            int newSize = countStrategy.getCount(this, queryDelegate,
+                    lastCount);
+            countedFilters = new ArrayList<Filter>(filters);
             sizeUpdated = new Date();
             sizeDirty = false;
             if (newSize != size) {
@@ -1175,6 +1223,41 @@ public class SQLContainer implements Container, Container.Filterable,
         }
     }
 
+    /**
+     * Updates the row count after it has been counted in the background. The
+     * count is discarded if the filters have been changed in the meantime.
+     * 
+     * @param counted
+     *            the filters used in the count
+     * @param count
+     *            the row count, or -1 if counting failed
+     */
+    void applyBackgroundCount(List<Filter> counted, int count) {
+        backgroundCountPending = false;
+        if (!filters.equals(counted)) {
+            // Count again for the current filters
+            refresh();
+        } else if (count >= 0) {
+            sizeUpdated = new Date();
+            sizeDirty = false;
+            if (count != size) {
+                size = count;
+                refresh(false);
+            }
+            getLogger().log(Level.FINER,
+                    "Updated row count in the background. New count is: {0}",
+                    size);
+        }
+    }
+
+    boolean isBackgroundCountPending() {
+        return backgroundCountPending;
+    }
+
+    void setBackgroundCountPending(boolean backgroundCountPending) {
+        this.backgroundCountPending = backgroundCountPending;
+    }
+
     /**
      * Fetches property id's (column names and their types) from the data
      * source.
@@ -1279,7 +1362,7 @@ public class SQLContainer implements Container, Container.Filterable,
     private void getPage() {
         updateCount();
         ResultSet rs = null;
-        ResultSetMetaData rsmd = null;
+        boolean inTransaction = false;
         cachedItems.clear();
         itemIndexes.clear();
         try {
@@ -1291,98 +1374,58 @@ public class SQLContainer implements Container, Container.Filterable,
                 getLogger().log(Level.FINE,
                         "The query delegate doesn't support sorting", e);
             }
-            queryDelegate.beginTransaction();
             int fetchedRows = pageLength * CACHE_RATIO + cacheOverlap;
-            rs = queryDelegate.getResults(currentOffset, fetchedRows);
-            rsmd = rs.getMetaData();
             List<String> pKeys = queryDelegate.getPrimaryKeyColumns();
-            // }
-            /* Create new items and column properties */
-            ColumnProperty cp = null;
-            int rowCount = currentOffset;
-            if (!queryDelegate.implementationRespectsPagingLimits()) {
-                rowCount = currentOffset = 0;
-                setPageLengthInternal(size);
-            }
-            while (rs.next()) {
-                List<ColumnProperty> itemProperties = new ArrayList<ColumnProperty>();
-                /* Generate row itemId based on primary key(s) */
-                Object[] itemId = new Object[pKeys.size()];
-                for (int i = 0; i < pKeys.size(); i++) {
-                    itemId[i] = rs.getObject(pKeys.get(i));
+            if (isSharedPageCacheUsed()) {
+                /* Begins a transaction by itself if the page is not cached */
+                SharedPageCache.CachedPage page = ((TableQuery) queryDelegate)
+                        .getResultsPage(currentOffset, fetchedRows);
+                String[] columnLabels = new String[page.getColumnCount()];
+                for (int i = 0; i < columnLabels.length; i++) {
+                    columnLabels[i] = page.getColumnLabel(i);
                 }
-                RowId id = null;
-                if (pKeys.isEmpty()) {
-                    id = new ReadOnlyRowId(rs.getRow());
-                } else {
-                    id = new RowId(itemId);
-                }
-                List<String> propertiesToAdd = new ArrayList<String>(
-                        propertyIds);
-                if (!removedItems.containsKey(id)) {
-                    for (int i = 1; i <= rsmd.getColumnCount(); i++) {
-                        if (!isColumnIdentifierValid(rsmd.getColumnLabel(i))) {
-                            continue;
-                        }
-                        String colName = rsmd.getColumnLabel(i);
-                        Object value = rs.getObject(i);
-                        Class<?> type = value != null ? value.getClass()
-                                : Object.class;
-                        if (value == null) {
-                            for (String propName : propertyTypes.keySet()) {
-                                if (propName.equals(rsmd.getColumnLabel(i))) {
-                                    type = propertyTypes.get(propName);
-                                    break;
-                                }
-                            }
-                        }
-                        /*
-                         * In case there are more than one column with the same
-                         * name, add only the first one. This can easily happen
-                         * if you join many tables where each table has an ID
-                         * column.
-                         */
-                        if (propertiesToAdd.contains(colName)) {
-
-                            cp = new ColumnProperty(colName,
-                                    propertyReadOnly.get(colName),
-                                    propertyPersistable.get(colName),
-                                    propertyNullable.get(colName),
-                                    propertyPrimaryKey.get(colName), value,
-                                    type);
-                            itemProperties.add(cp);
-                            propertiesToAdd.remove(colName);
-                        }
+                Object[] values = new Object[columnLabels.length];
+                int rowCount = getFirstFetchedRowIndex();
+                for (int row = 0; row < page.getRowCount(); row++) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = page.getValue(row, i);
                     }
-                    /* Cache item */
-                    itemIndexes.put(rowCount, id);
-
-                    // if an item with the id is contained in the modified
-                    // cache, then use this record and add it to the cached
-                    // items. Otherwise create a new item
-                    int modifiedIndex = indexInModifiedCache(id);
-                    if (modifiedIndex != -1) {
-                        cachedItems.put(id, modifiedItems.get(modifiedIndex));
-                    } else {
-                        cachedItems.put(id, new RowItem(this, id,
-                                itemProperties));
+                    rowCount = addFetchedRow(rowCount, pKeys, columnLabels,
+                            values, page.getRowNumber(row));
+                }
+            } else {
+                queryDelegate.beginTransaction();
+                inTransaction = true;
+                rs = queryDelegate.getResults(currentOffset, fetchedRows);
+                ResultSetMetaData rsmd = rs.getMetaData();
+                String[] columnLabels = new String[rsmd.getColumnCount()];
+                for (int i = 0; i < columnLabels.length; i++) {
+                    columnLabels[i] = rsmd.getColumnLabel(i + 1);
+                }
+                Object[] values = new Object[columnLabels.length];
+                int rowCount = getFirstFetchedRowIndex();
+                while (rs.next()) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = rs.getObject(i + 1);
                     }
-
-                    rowCount++;
+                    rowCount = addFetchedRow(rowCount, pKeys, columnLabels,
+                            values, rs.getRow());
                 }
+                rs.getStatement().close();
+                rs.close();
+                queryDelegate.commit();
+                inTransaction = false;
             }
-            rs.getStatement().close();
-            rs.close();
-            queryDelegate.commit();
             getLogger().log(Level.FINER, "Fetched {0} rows starting from {1}",
                     new Object[] { fetchedRows, currentOffset });
         } catch (SQLException e) {
-            getLogger().log(Level.WARNING,
-                    "Failed to fetch rows, rolling back", e);
-            try {
-                queryDelegate.rollback();
-            } catch (SQLException e1) {
-                getLogger().log(Level.SEVERE, "Failed to roll back", e1);
+            getLogger().log(Level.WARNING, "Failed to fetch rows", e);
+            if (inTransaction) {
+                try {
+                    queryDelegate.rollback();
+                } catch (SQLException e1) {
+                    getLogger().log(Level.SEVERE, "Failed to roll back", e1);
+                }
             }
             try {
                 if (rs != null) {
@@ -1398,6 +1441,123 @@ public class SQLContainer implements Container, Container.Filterable,
         }
     }
 
+    /**
+     * Returns the index of the first row of a fetched page. Resets the paging
+     * if the query delegate returns all rows regardless of the paging limits.
+     * 
+     * @return the index of the first fetched row
+     */
+    private int getFirstFetchedRowIndex() {
+        if (!queryDelegate.implementationRespectsPagingLimits()) {
+            currentOffset = 0;
+            setPageLengthInternal(size);
+        }
+        return currentOffset;
+    }
+
+    /**
+     * Creates an item for a fetched row and adds it to the item cache, unless
+     * the item has been removed.
+     * 
+     * @param rowCount
+     *            the index of the row in the container
+     * @param pKeys
+     *            the primary key columns
+     * @param columnLabels
+     *            the labels of the fetched columns
+     * @param values
+     *            the values of the row, in the order of the column labels
+     * @param rowNumber
+     *            the row number in the result, used as the id of rows without
+     *            a primary key
+     * @return the index of the next row in the container
+     * @throws SQLException
+     *             if a primary key column is missing from the row
+     */
+    private int addFetchedRow(int rowCount, List<String> pKeys,
+            String[] columnLabels, Object[] values, int rowNumber)
+            throws SQLException {
+        List<ColumnProperty> itemProperties = new ArrayList<ColumnProperty>();
+        /* Generate row itemId based on primary key(s) */
+        Object[] itemId = new Object[pKeys.size()];
+        for (int i = 0; i < pKeys.size(); i++) {
+            itemId[i] = getColumnValue(columnLabels, values, pKeys.get(i));
+        }
+        RowId id = null;
+        if (pKeys.isEmpty()) {
+            id = new ReadOnlyRowId(rowNumber);
+        } else {
+            id = new RowId(itemId);
+        }
+        if (removedItems.containsKey(id)) {
+            return rowCount;
+        }
+        List<String> propertiesToAdd = new ArrayList<String>(propertyIds);
+        for (int i = 0; i < columnLabels.length; i++) {
+            String colName = columnLabels[i];
+            if (!isColumnIdentifierValid(colName)) {
+                continue;
+            }
+            Object value = values[i];
+            Class<?> type = value != null ? value.getClass() : Object.class;
+            if (value == null) {
+                for (String propName : propertyTypes.keySet()) {
+                    if (propName.equals(colName)) {
+                        type = propertyTypes.get(propName);
+                        break;
+                    }
+                }
+            }
+            /*
+             * In case there are more than one column with the same name, add
+             * only the first one. This can easily happen if you join many
+             * tables where each table has an ID column.
+             */
+            if (propertiesToAdd.contains(colName)) {
+                ColumnProperty cp = new ColumnProperty(colName,
+                        propertyReadOnly.get(colName),
+                        propertyPersistable.get(colName),
+                        propertyNullable.get(colName),
+                        propertyPrimaryKey.get(colName), value, type);
+                itemProperties.add(cp);
+                propertiesToAdd.remove(colName);
+            }
+        }
+        /* Cache item */
+        itemIndexes.put(rowCount, id);
+
+        // if an item with the id is contained in the modified
+        // cache, then use this record and add it to the cached
+        // items. Otherwise create a new item
+        int modifiedIndex = indexInModifiedCache(id);
+        if (modifiedIndex != -1) {
+            cachedItems.put(id, modifiedItems.get(modifiedIndex));
+        } else {
+            cachedItems.put(id, new RowItem(this, id, itemProperties));
+        }
+        return rowCount + 1;
+    }
+
+    /**
+     * Gets a value of a fetched row by the column label. As with
+     * {@link ResultSet#getObject(String)}, the label is case insensitive and
+     * the first matching column is used.
+     */
+    private static Object getColumnValue(String[] columnLabels,
+            Object[] values, String columnLabel) throws SQLException {
+        for (int i = 0; i < columnLabels.length; i++) {
+            if (columnLabels[i].equalsIgnoreCase(columnLabel)) {
+                return values[i];
+            }
+        }
+        throw new SQLException("No column " + columnLabel + " in the result");
+    }
+
+    private boolean isSharedPageCacheUsed() {
+        return queryDelegate instanceof TableQuery
+                && ((TableQuery) queryDelegate).getSharedPageCache() != null;
+    }
+
     /**
      * Returns the index of the item with the given itemId for the modified
      * cache.
@@ -1463,6 +1623,58 @@ public class SQLContainer implements Container, Container.Filterable,
         return true;
     }
 
+    /**
+     * Sets the strategy used for counting the rows of this container. The
+     * default strategy counts the rows immediately when a new count is needed.
+     * 
+     * @param countStrategy
+     *            the count strategy, not null
+     * @since 7.2
+     */
+    public void setCountStrategy(CountStrategy countStrategy) {
+        if (countStrategy == null) {
+            throw new IllegalArgumentException(
+                    "The count strategy must not be null");
+        }
+        this.countStrategy = countStrategy;
+        sizeDirty = true;
+    }
+
+    /**
+     * Gets the strategy used for counting the rows of this container.
+     * 
+     * @return the count strategy
+     * @since 7.2
+     */
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+
+    /**
+     * Sets the time for which the row count of this container is considered
+     * valid. The rows are counted again when the container size is needed
+     * after this time, or after the filters or the contents of the container
+     * have changed. The default is 10000 milliseconds.
+     * 
+     * @param sizeValidMilliSeconds
+     *            the validity time of the row count in milliseconds
+     * @since 7.2
+     */
+    public void setSizeValidMilliSeconds(int sizeValidMilliSeconds) {
+        this.sizeValidMilliSeconds = sizeValidMilliSeconds;
+    }
+
+    /**
+     * Gets the time for which the row count of this container is considered
+     * valid.
+     * 
+     * @return the validity time of the row count in milliseconds
+     * @since 7.2
+     */
+    public int getSizeValidMilliSeconds() {
+        return sizeValidMilliSeconds;
+    }
+
     /**
      * Returns the QueryDelegate set for this SQLContainer.
      * 
@@ -1695,6 +1907,18 @@ public class SQLContainer implements Container, Container.Filterable,
     /**
      * Calling this will enable this SQLContainer to send and receive cache
      * flush notifications for its lifetime.
+     * <p>
+     * When another container connected to the same table or using the same
+     * query flushes its cache, this container is refreshed through the session
+     * that was current when this method was called, which notifies the item
+     * set change listeners of this container.
+     * <p>
+     * If there was no current session, there is no lock for refreshing this
+     * container safely from the thread issuing the notification. The cache of
+     * this container is then only marked stale and discarded when the
+     * container is used the next time, and the item set change listeners are
+     * not notified. Call {@link #refresh()} from the thread using this
+     * container to notify the listeners.
      */
     public void enableCacheFlushNotifications() {
         if (!notificationsEnabled) {
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer;
+
+import java.sql.SQLException;
+
+import com.vaadin.data.util.sqlcontainer.query.QueryDelegate;
+
+/**
+ * Count strategy that counts the rows using {@link QueryDelegate#getCount()}
+ * whenever a new count is needed. This is the default strategy of
+ * {@link SQLContainer}.
+ * 
+ * @since 7.2
+ */
+public class SynchronousCountStrategy implements CountStrategy {
+
+    @Override
+    public int getCount(SQLContainer container, QueryDelegate queryDelegate,
+            int lastCount) throws SQLException {
+        return queryDelegate.getCount();
+    }
+}
@@ -167,6 +167,15 @@ public abstract class AbstractTransactionalQuery implements Serializable {
         return connectionPool.reserveConnection();
     }
 
+    /**
+     * Gets the connection pool used by this query.
+     * 
+     * @return the connection pool
+     */
+    JDBCConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
     protected boolean isInTransaction() {
         return activeConnection != null;
     }
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.data.util.sqlcontainer.query;
+
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of fetched result pages that can be shared by
+ * {@link TableQuery} instances in any number of sessions. Read-mostly tables
+ * that are browsed by many users concurrently can then be served from memory
+ * instead of every container running the same paged queries.
+ * <p>
+ * Pages are keyed by the generated select statement and its parameters, so
+ * the table, filters, ordering, offset and page length of the query are all
+ * taken into account. The cache holds at most a given number of pages, evicting
+ * the least recently used pages first, and pages expire after a given time.
+ * All pages of a table are discarded when a {@link TableQuery} using the cache
+ * commits changes to that table, and pages being fetched at that time are not
+ * added to the cache. Changes made to the table in other ways are only seen
+ * when the cached pages have expired.
+ * <p>
+ * The cached values are shared between all containers reading the same page
+ * and must not be modified.
+ * 
+ * @see TableQuery#setSharedPageCache(SharedPageCache)
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class SharedPageCache implements Serializable {
+
+    /**
+     * A page of rows fetched from the database.
+     * 
+     * @since 7.2
+     */
+    public static class CachedPage implements Serializable {
+        private final String[] columnLabels;
+        private final List<Object[]> rows;
+        private final int[] rowNumbers;
+
+        private CachedPage(String[] columnLabels, List<Object[]> rows,
+                int[] rowNumbers) {
+            this.columnLabels = columnLabels;
+            this.rows = rows;
+            this.rowNumbers = rowNumbers;
+        }
+
+        /**
+         * Reads all remaining rows of a result set into a new page.
+         * 
+         * @param rs
+         *            the result set to read, not closed by this method
+         * @return a page with the rows of the result set
+         * @throws SQLException
+         *             if reading the result set fails
+         */
+        public static CachedPage read(ResultSet rs) throws SQLException {
+            ResultSetMetaData rsmd = rs.getMetaData();
+            String[] columnLabels = new String[rsmd.getColumnCount()];
+            for (int i = 0; i < columnLabels.length; i++) {
+                columnLabels[i] = rsmd.getColumnLabel(i + 1);
+            }
+            List<Object[]> rows = new ArrayList<Object[]>();
+            List<Integer> rowNumbers = new ArrayList<Integer>();
+            while (rs.next()) {
+                Object[] row = new Object[columnLabels.length];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                rows.add(row);
+                rowNumbers.add(Integer.valueOf(rs.getRow()));
+            }
+            int[] numbers = new int[rowNumbers.size()];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = rowNumbers.get(i).intValue();
+            }
+            return new CachedPage(columnLabels, rows, numbers);
+        }
+
+        /**
+         * Gets the number of columns in this page.
+         * 
+         * @return the number of columns
+         */
+        public int getColumnCount() {
+            return columnLabels.length;
+        }
+
+        /**
+         * Gets the label of a column, as given by
+         * {@link ResultSetMetaData#getColumnLabel(int)}.
+         * 
+         * @param column
+         *            the index of the column, starting from 0
+         * @return the column label
+         */
+        public String getColumnLabel(int column) {
+            return columnLabels[column];
+        }
+
+        /**
+         * Gets the number of rows in this page.
+         * 
+         * @return the number of rows
+         */
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        /**
+         * Gets the row number of a row in the result set, as given by
+         * {@link ResultSet#getRow()}.
+         * 
+         * @param row
+         *            the index of the row in this page, starting from 0
+         * @return the row number in the result set
+         */
+        public int getRowNumber(int row) {
+            return rowNumbers[row];
+        }
+
+        /**
+         * Gets a value in this page.
+         * 
+         * @param row
+         *            the index of the row, starting from 0
+         * @param column
+         *            the index of the column, starting from 0
+         * @return the value
+         */
+        public Object getValue(int row, int column) {
+            return rows.get(row)[column];
+        }
+
+        /**
+         * Gets a value in this page by the column label. As with
+         * {@link ResultSet#getObject(String)}, the label is case insensitive
+         * and the first matching column is used.
+         * 
+         * @param row
+         *            the index of the row, starting from 0
+         * @param columnLabel
+         *            the label of the column
+         * @return the value
+         * @throws IllegalArgumentException
+         *             if there is no column with the given label
+         */
+        public Object getValue(int row, String columnLabel) {
+            for (int i = 0; i < columnLabels.length; i++) {
+                if (columnLabels[i].equalsIgnoreCase(columnLabel)) {
+                    return getValue(row, i);
+                }
+            }
+            throw new IllegalArgumentException("No column " + columnLabel
+                    + " in the page");
+        }
+    }
+
+    private static class CacheEntry implements Serializable {
+        private final String tableName;
+        private final CachedPage page;
+        private final long expires;
+
+        private CacheEntry(String tableName, CachedPage page, long expires) {
+            this.tableName = tableName;
+            this.page = page;
+            this.expires = expires;
+        }
+    }
+
+    private final int maxPages;
+    private final long timeToLiveMillis;
+
+    /*
+     * Pages in least recently used order. All access is synchronized on the
+     * map.
+     */
+    private final LinkedHashMap<Object, CacheEntry> pages;
+
+    /*
+     * Generations of the tables, used for not caching pages that have been
+     * fetched before the table was invalidated. A table without an entry is
+     * at the generation of the last clear(). Guarded by pages.
+     */
+    private final Map<String, Long> tableGenerations = new HashMap<String, Long>();
+    private long clearGeneration = 0;
+    private long lastGeneration = 0;
+
+    /**
+     * Creates a new shared page cache.
+     * 
+     * @param maxPages
+     *            the maximum number of pages to keep in the cache
+     * @param timeToLiveMillis
+     *            the time in milliseconds after which a cached page is no
+     *            longer used
+     */
+    public SharedPageCache(final int maxPages, long timeToLiveMillis) {
+        if (maxPages < 1) {
+            throw new IllegalArgumentException(
+                    "The cache must be able to hold at least one page");
+        }
+        this.maxPages = maxPages;
+        this.timeToLiveMillis = timeToLiveMillis;
+        pages = new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Object, CacheEntry> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /**
+     * Gets the maximum number of pages kept in this cache.
+     * 
+     * @return the maximum number of pages
+     */
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * Gets the time after which a cached page is no longer used.
+     * 
+     * @return the time to live in milliseconds
+     */
+    public long getTimeToLiveMillis() {
+        return timeToLiveMillis;
+    }
+
+    /**
+     * Gets a cached page.
+     * 
+     * @param key
+     *            the key of the page
+     * @return the cached page, or <code>null</code> if there is no page for
+     *         the key or it has expired
+     */
+    CachedPage get(Object key) {
+        synchronized (pages) {
+            CacheEntry entry = pages.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expires < System.currentTimeMillis()) {
+                pages.remove(key);
+                return null;
+            }
+            return entry.page;
+        }
+    }
+
+    /**
+     * Gets the current generation of a table. The generation changes whenever
+     * the pages of the table are discarded, and should be read before fetching
+     * a page that is then passed to
+     * {@link #put(String, Object, CachedPage, long)}.
+     * 
+     * @param tableName
+     *            the name of the table
+     * @return the current generation of the table
+     */
+    long getGeneration(String tableName) {
+        synchronized (pages) {
+            Long generation = tableGenerations.get(tableName);
+            return generation == null ? clearGeneration : generation
+                    .longValue();
+        }
+    }
+
+    /**
+     * Adds a page to the cache. The page is not added if the pages of the
+     * table have been discarded after the page was fetched, as it may then
+     * contain stale rows.
+     * 
+     * @param tableName
+     *            the name of the table from which the page has been fetched
+     * @param key
+     *            the key of the page
+     * @param page
+     *            the page to cache
+     * @param generation
+     *            the generation of the table, as returned by
+     *            {@link #getGeneration(String)}, before the page was fetched
+     */
+    void put(String tableName, Object key, CachedPage page, long generation) {
+        CacheEntry entry = new CacheEntry(tableName, page,
+                System.currentTimeMillis() + timeToLiveMillis);
+        synchronized (pages) {
+            if (generation == getGeneration(tableName)) {
+                pages.put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Discards all cached pages of a table.
+     * 
+     * @param tableName
+     *            the name of the table, as given by
+     *            {@link TableQuery#getFullTableName()}
+     */
+    public void invalidate(String tableName) {
+        synchronized (pages) {
+            tableGenerations.put(tableName, Long.valueOf(++lastGeneration));
+            for (Iterator<CacheEntry> i = pages.values().iterator(); i
+                    .hasNext();) {
+                if (i.next().tableName.equals(tableName)) {
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards all cached pages.
+     */
+    public void clear() {
+        synchronized (pages) {
+            tableGenerations.clear();
+            clearGeneration = ++lastGeneration;
+            pages.clear();
+        }
+    }
+
+    /**
+     * Gets the number of pages currently in the cache, including pages that
+     * have expired but have not yet been removed.
+     * 
+     * @return the number of cached pages
+     */
+    public int size() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EventObject;
 import java.util.HashMap;
@@ -81,6 +82,11 @@ public class TableQuery extends AbstractTransactionalQuery implements
     /** Row ID change events, stored until commit() is called */
     private final List<RowIdChangeEvent> bufferedEvents = new ArrayList<RowIdChangeEvent>();
 
+    /** Optional cache of fetched pages shared with other queries */
+    private transient SharedPageCache sharedPageCache;
+    /** Set when the table has been modified in the current transaction */
+    private boolean tableModified = false;
+
     /** Set to true to output generated SQL Queries to System.out */
     private final boolean debug = false;
 
@@ -225,6 +231,61 @@ public class TableQuery extends AbstractTransactionalQuery implements
         return count;
     }
 
+    /**
+     * Counts the rows matching the given filters using a connection and a
+     * transaction of its own. Unlike {@link #getCount()}, this method does not
+     * use the filters set to this query or the active transaction, so it can
+     * be called from any thread while the query is used by a container.
+     * 
+     * @param filters
+     *            the filters the counted rows must match, or <code>null</code>
+     *            to count all rows
+     * @return the row count
+     * @throws SQLException
+     *             if counting the rows fails
+     * @since 7.2
+     */
+    public int getCount(List<Filter> filters) throws SQLException {
+        StatementHelper sh = sqlGenerator.generateSelectQuery(
+                getFullTableName(), filters, null, 0, 0, "COUNT(*)");
+        JDBCConnectionPool pool = getConnectionPool();
+        Connection connection = pool.reserveConnection();
+        PreparedStatement pstmt = null;
+        ResultSet r = null;
+        try {
+            connection.setAutoCommit(false);
+            pstmt = connection.prepareStatement(sh.getQueryString());
+            sh.setParameterValuesToStatement(pstmt);
+            getLogger().log(Level.FINE, "DB -> {0}", sh.getQueryString());
+            r = pstmt.executeQuery();
+            r.next();
+            int count = r.getInt(1);
+            connection.commit();
+            return count;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackException) {
+                // Do not hide the original exception
+                getLogger().log(Level.WARNING,
+                        "Rollback after a failed count failed",
+                        rollbackException);
+            }
+            throw e;
+        } finally {
+            try {
+                if (r != null) {
+                    r.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+            } finally {
+                pool.releaseConnection(connection);
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -233,7 +294,10 @@ public class TableQuery extends AbstractTransactionalQuery implements
      */
     @Override
     public ResultSet getResults(int offset, int pagelength) throws SQLException {
-        StatementHelper sh;
+        return executeQuery(generateSelectQuery(offset, pagelength));
+    }
+
+    private StatementHelper generateSelectQuery(int offset, int pagelength) {
         /*
          * If no ordering is explicitly set, results will be ordered by the
          * first primary key column.
@@ -243,13 +307,103 @@ public class TableQuery extends AbstractTransactionalQuery implements
             for (int i = 0; i < primaryKeyColumns.size(); i++) {
                 ob.add(new OrderBy(primaryKeyColumns.get(i), true));
             }
-            sh = sqlGenerator.generateSelectQuery(getFullTableName(), filters,
-                    ob, offset, pagelength, null);
+            return sqlGenerator.generateSelectQuery(getFullTableName(),
+                    filters, ob, offset, pagelength, null);
         } else {
-            sh = sqlGenerator.generateSelectQuery(getFullTableName(), filters,
-                    orderBys, offset, pagelength, null);
+            return sqlGenerator.generateSelectQuery(getFullTableName(),
+                    filters, orderBys, offset, pagelength, null);
         }
-        return executeQuery(sh);
+    }
+
+    /**
+     * Fetches a page of rows, using the shared page cache if one has been set.
+     * Unlike {@link #getResults(int, int)}, this method begins and commits a
+     * transaction by itself if no transaction is active. The cache is bypassed
+     * while the current transaction contains uncommitted changes to the
+     * table.
+     * 
+     * @param offset
+     *            the index of the first row to fetch
+     * @param pagelength
+     *            the number of rows to fetch
+     * @return the fetched page
+     * @throws SQLException
+     *             if fetching the rows fails
+     * @see #setSharedPageCache(SharedPageCache)
+     * @since 7.2
+     */
+    public SharedPageCache.CachedPage getResultsPage(int offset, int pagelength)
+            throws SQLException {
+        StatementHelper sh = generateSelectQuery(offset, pagelength);
+        SharedPageCache cache = tableModified ? null : sharedPageCache;
+        Object key = null;
+        long generation = 0;
+        if (cache != null) {
+            generation = cache.getGeneration(getFullTableName());
+            key = Arrays.asList(sh.getQueryString(), new ArrayList<Object>(
+                    sh.getParameterValues()), offset, pagelength);
+            SharedPageCache.CachedPage page = cache.get(key);
+            if (page != null) {
+                getLogger().log(Level.FINE, "Page found in the shared cache");
+                return page;
+            }
+        }
+        boolean shouldCloseTransaction = false;
+        if (!isInTransaction()) {
+            shouldCloseTransaction = true;
+            beginTransaction();
+        }
+        ResultSet r = null;
+        SharedPageCache.CachedPage page;
+        try {
+            r = executeQuery(sh);
+            page = SharedPageCache.CachedPage.read(r);
+        } finally {
+            try {
+                if (r != null) {
+                    releaseConnection(r.getStatement().getConnection(),
+                            r.getStatement(), r);
+                }
+            } finally {
+                if (shouldCloseTransaction) {
+                    commit();
+                }
+            }
+        }
+        if (cache != null) {
+            cache.put(getFullTableName(), key, page, generation);
+        }
+        return page;
+    }
+
+    /**
+     * Sets a cache of fetched pages that can be shared with other
+     * {@link TableQuery} instances, also in other sessions. When set, pages
+     * fetched by a {@link com.vaadin.data.util.sqlcontainer.SQLContainer}
+     * using this query are read from the cache if possible. Committing changes
+     * to the table through this query discards the cached pages of the table.
+     * <p>
+     * The cache is not serialized with the query and needs to be set again
+     * after deserialization.
+     * 
+     * @param sharedPageCache
+     *            the cache to use, or <code>null</code> to not cache pages
+     * @since 7.2
+     */
+    public void setSharedPageCache(SharedPageCache sharedPageCache) {
+        this.sharedPageCache = sharedPageCache;
+    }
+
+    /**
+     * Gets the cache of fetched pages used by this query.
+     * 
+     * @return the shared page cache, or <code>null</code> if pages are not
+     *         cached
+     * @see #setSharedPageCache(SharedPageCache)
+     * @since 7.2
+     */
+    public SharedPageCache getSharedPageCache() {
+        return sharedPageCache;
     }
 
     /*
@@ -278,6 +432,7 @@ public class TableQuery extends AbstractTransactionalQuery implements
         }
         StatementHelper sh;
         int result = 0;
+        tableModified = true;
         if (row.getId() instanceof TemporaryRowId) {
             setVersionColumnFlagInProperty(row);
             sh = sqlGenerator.generateInsertQuery(getFullTableName(), row);
@@ -317,6 +472,7 @@ public class TableQuery extends AbstractTransactionalQuery implements
      */
     public RowId storeRowImmediately(RowItem row) throws SQLException {
         beginTransaction();
+        tableModified = true;
         /* Set version column, if one is provided */
         setVersionColumnFlagInProperty(row);
         /* Generate query */
@@ -404,6 +560,12 @@ public class TableQuery extends AbstractTransactionalQuery implements
     public void commit() throws UnsupportedOperationException, SQLException {
         getLogger().log(Level.FINE, "DB -> commit");
         super.commit();
+        if (tableModified) {
+            tableModified = false;
+            if (sharedPageCache != null) {
+                sharedPageCache.invalidate(getFullTableName());
+            }
+        }
 
         /* Handle firing row ID change events */
         RowIdChangeEvent[] unFiredEvents = bufferedEvents
@@ -427,6 +589,7 @@ public class TableQuery extends AbstractTransactionalQuery implements
     public void rollback() throws UnsupportedOperationException, SQLException {
         getLogger().log(Level.FINE, "DB -> rollback");
         super.rollback();
+        tableModified = false;
     }
 
     /*
@@ -728,6 +891,7 @@ public class TableQuery extends AbstractTransactionalQuery implements
             getLogger().log(Level.FINE, "Removing row with id: {0}",
                     row.getId().getId()[0]);
         }
+        tableModified = true;
         if (executeUpdate(sqlGenerator.generateDeleteQuery(getFullTableName(),
                 primaryKeyColumns, versionColumn, row)) == 1) {
             return true;
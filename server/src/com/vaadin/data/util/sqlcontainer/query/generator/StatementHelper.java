@@ -24,6 +24,7 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +56,17 @@ public class StatementHelper implements Serializable {
         return queryString;
     }
 
+    /**
+     * Gets the parameter values of the statement, in the order in which they
+     * are set to the prepared statement.
+     * 
+     * @return an unmodifiable list of the parameter values
+     * @since 7.2
+     */
+    public List<Object> getParameterValues() {
+        return Collections.unmodifiableList(parameters);
+    }
+
     public void addParameterValue(Object parameter) {
         if (parameter != null) {
             parameters.add(parameter);
@@ -20,9 +20,11 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EventObject;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import com.vaadin.server.ErrorEvent;
@@ -44,6 +46,14 @@ public class EventRouter implements MethodEventSource {
      */
     private LinkedHashSet<ListenerMethod> listenerList = null;
 
+    /*
+     * The listeners accepting each event class that has been fired, in the
+     * order they were added. Cleared whenever the listeners change, so the
+     * arrays are never modified and listeners can be added and removed while
+     * firing an event.
+     */
+    private transient Map<Class<?>, ListenerMethod[]> listenersByEventType = null;
+
     /*
      * Registers a new listener with the specified activation method to listen
      * events generated by this component. Don't add a JavaDoc comment here, we
@@ -55,6 +65,7 @@ public class EventRouter implements MethodEventSource {
             listenerList = new LinkedHashSet<ListenerMethod>();
         }
         listenerList.add(new ListenerMethod(eventType, object, method));
+        listenersByEventType = null;
     }
 
     /*
@@ -68,6 +79,7 @@ public class EventRouter implements MethodEventSource {
             listenerList = new LinkedHashSet<ListenerMethod>();
         }
         listenerList.add(new ListenerMethod(eventType, object, methodName));
+        listenersByEventType = null;
     }
 
     /*
@@ -83,6 +95,7 @@ public class EventRouter implements MethodEventSource {
                 final ListenerMethod lm = i.next();
                 if (lm.matches(eventType, target)) {
                     i.remove();
+                    listenersByEventType = null;
                     return;
                 }
             }
@@ -102,6 +115,7 @@ public class EventRouter implements MethodEventSource {
                 final ListenerMethod lm = i.next();
                 if (lm.matches(eventType, target, method)) {
                     i.remove();
+                    listenersByEventType = null;
                     return;
                 }
             }
@@ -136,6 +150,7 @@ public class EventRouter implements MethodEventSource {
                 final ListenerMethod lm = i.next();
                 if (lm.matches(eventType, target, method)) {
                     i.remove();
+                    listenersByEventType = null;
                     return;
                 }
             }
@@ -148,6 +163,7 @@ public class EventRouter implements MethodEventSource {
      */
     public void removeAllListeners() {
         listenerList = null;
+        listenersByEventType = null;
     }
 
     /**
@@ -180,14 +196,13 @@ public class EventRouter implements MethodEventSource {
         // It is not necessary to send any events if there are no listeners
         if (listenerList != null) {
 
-            // Make a copy of the listener list to allow listeners to be added
-            // inside listener methods. Fixes #3605.
-
-            // Send the event to all listeners. The listeners themselves
-            // will filter out unwanted events.
-            final Object[] listeners = listenerList.toArray();
+            // Send the event to the listeners accepting it. The array is not
+            // modified if listeners are added inside listener methods. Fixes
+            // #3605.
+            final ListenerMethod[] listeners = getAcceptingListeners(event
+                    .getClass());
             for (int i = 0; i < listeners.length; i++) {
-                ListenerMethod listenerMethod = (ListenerMethod) listeners[i];
+                ListenerMethod listenerMethod = listeners[i];
                 if (null != errorHandler) {
                     try {
                         listenerMethod.receiveEvent(event);
@@ -202,6 +217,24 @@ public class EventRouter implements MethodEventSource {
         }
     }
 
+    private ListenerMethod[] getAcceptingListeners(Class<?> eventClass) {
+        if (listenersByEventType == null) {
+            listenersByEventType = new HashMap<Class<?>, ListenerMethod[]>(4);
+        }
+        ListenerMethod[] listeners = listenersByEventType.get(eventClass);
+        if (listeners == null) {
+            List<ListenerMethod> accepting = new ArrayList<ListenerMethod>();
+            for (ListenerMethod lm : listenerList) {
+                if (lm.acceptsEvent(eventClass)) {
+                    accepting.add(lm);
+                }
+            }
+            listeners = accepting.toArray(new ListenerMethod[accepting.size()]);
+            listenersByEventType.put(eventClass, listeners);
+        }
+        return listeners;
+    }
+
     /**
      * Checks if the given Event type is listened by a listener registered to
      * this router.
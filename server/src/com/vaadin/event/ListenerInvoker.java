@@ -0,0 +1,193 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.event;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+
+import com.vaadin.data.Property;
+import com.vaadin.event.FieldEvents.BlurEvent;
+import com.vaadin.event.FieldEvents.BlurListener;
+import com.vaadin.event.FieldEvents.FocusEvent;
+import com.vaadin.event.FieldEvents.FocusListener;
+import com.vaadin.event.FieldEvents.TextChangeEvent;
+import com.vaadin.event.FieldEvents.TextChangeListener;
+import com.vaadin.event.ItemClickEvent.ItemClickListener;
+import com.vaadin.event.LayoutEvents.LayoutClickEvent;
+import com.vaadin.event.LayoutEvents.LayoutClickListener;
+import com.vaadin.event.MouseEvents.ClickEvent;
+import com.vaadin.event.MouseEvents.ClickListener;
+import com.vaadin.event.MouseEvents.DoubleClickEvent;
+import com.vaadin.event.MouseEvents.DoubleClickListener;
+import com.vaadin.server.ClientConnector.AttachEvent;
+import com.vaadin.server.ClientConnector.AttachListener;
+import com.vaadin.server.ClientConnector.DetachEvent;
+import com.vaadin.server.ClientConnector.DetachListener;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Component;
+import com.vaadin.util.ReflectTools;
+
+/**
+ * Calls the methods of the standard listener interfaces directly instead of
+ * through reflection. A {@link ListenerMethod} for one of these methods
+ * invokes its listener using {@link #invoke(int, Object, Object)} with the
+ * index given by {@link #getIndex(Method)}, so firing an event does not
+ * allocate an argument array or go through {@link Method#invoke}.
+ * <p>
+ * Listeners registered using any other method are invoked using reflection.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+class ListenerInvoker implements Serializable {
+
+    /**
+     * The index of methods that are not invoked directly.
+     */
+    static final int NONE = -1;
+
+    private static final int VALUE_CHANGE = 0;
+    private static final int BUTTON_CLICK = 1;
+    private static final int CLICK = 2;
+    private static final int DOUBLE_CLICK = 3;
+    private static final int LAYOUT_CLICK = 4;
+    private static final int ITEM_CLICK = 5;
+    private static final int FOCUS = 6;
+    private static final int BLUR = 7;
+    private static final int TEXT_CHANGE = 8;
+    private static final int COMPONENT_EVENT = 9;
+    private static final int ATTACH = 10;
+    private static final int DETACH = 11;
+
+    private static final Method[] methods = new Method[12];
+    static {
+        methods[VALUE_CHANGE] = ReflectTools.findMethod(
+                Property.ValueChangeListener.class, "valueChange",
+                Property.ValueChangeEvent.class);
+        methods[BUTTON_CLICK] = ReflectTools.findMethod(
+                Button.ClickListener.class, "buttonClick",
+                Button.ClickEvent.class);
+        methods[CLICK] = ReflectTools.findMethod(ClickListener.class, "click",
+                ClickEvent.class);
+        methods[DOUBLE_CLICK] = ReflectTools.findMethod(
+                DoubleClickListener.class, "doubleClick",
+                DoubleClickEvent.class);
+        methods[LAYOUT_CLICK] = ReflectTools.findMethod(
+                LayoutClickListener.class, "layoutClick",
+                LayoutClickEvent.class);
+        methods[ITEM_CLICK] = ReflectTools.findMethod(ItemClickListener.class,
+                "itemClick", ItemClickEvent.class);
+        methods[FOCUS] = ReflectTools.findMethod(FocusListener.class, "focus",
+                FocusEvent.class);
+        methods[BLUR] = ReflectTools.findMethod(BlurListener.class, "blur",
+                BlurEvent.class);
+        methods[TEXT_CHANGE] = ReflectTools.findMethod(
+                TextChangeListener.class, "textChange", TextChangeEvent.class);
+        methods[COMPONENT_EVENT] = ReflectTools.findMethod(
+                Component.Listener.class, "componentEvent",
+                Component.Event.class);
+        methods[ATTACH] = ReflectTools.findMethod(AttachListener.class,
+                "attach", AttachEvent.class);
+        methods[DETACH] = ReflectTools.findMethod(DetachListener.class,
+                "detach", DetachEvent.class);
+    }
+
+    private ListenerInvoker() {
+        // Only static methods
+    }
+
+    /**
+     * Gets the index of a method that can be invoked directly.
+     * 
+     * @param method
+     *            the listener method
+     * @return the index of the method, or {@link #NONE} if the method must be
+     *         invoked using reflection
+     */
+    static int getIndex(Method method) {
+        if (method.getParameterTypes().length != 1) {
+            return NONE;
+        }
+        for (int i = 0; i < methods.length; i++) {
+            if (methods[i].equals(method)) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Invokes a listener method directly.
+     * 
+     * @param index
+     *            the index of the method, as given by
+     *            {@link #getIndex(Method)}
+     * @param listener
+     *            the listener to invoke, implementing the interface of the
+     *            method
+     * @param event
+     *            the event to pass to the listener, of the parameter type of
+     *            the method
+     */
+    static void invoke(int index, Object listener, Object event) {
+        switch (index) {
+        case VALUE_CHANGE:
+            ((Property.ValueChangeListener) listener)
+                    .valueChange((Property.ValueChangeEvent) event);
+            break;
+        case BUTTON_CLICK:
+            ((Button.ClickListener) listener)
+                    .buttonClick((Button.ClickEvent) event);
+            break;
+        case CLICK:
+            ((ClickListener) listener).click((ClickEvent) event);
+            break;
+        case DOUBLE_CLICK:
+            ((DoubleClickListener) listener)
+                    .doubleClick((DoubleClickEvent) event);
+            break;
+        case LAYOUT_CLICK:
+            ((LayoutClickListener) listener)
+                    .layoutClick((LayoutClickEvent) event);
+            break;
+        case ITEM_CLICK:
+            ((ItemClickListener) listener).itemClick((ItemClickEvent) event);
+            break;
+        case FOCUS:
+            ((FocusListener) listener).focus((FocusEvent) event);
+            break;
+        case BLUR:
+            ((BlurListener) listener).blur((BlurEvent) event);
+            break;
+        case TEXT_CHANGE:
+            ((TextChangeListener) listener).textChange((TextChangeEvent) event);
+            break;
+        case COMPONENT_EVENT:
+            ((Component.Listener) listener)
+                    .componentEvent((Component.Event) event);
+            break;
+        case ATTACH:
+            ((AttachListener) listener).attach((AttachEvent) event);
+            break;
+        case DETACH:
+            ((DetachListener) listener).detach((DetachEvent) event);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown listener method "
+                    + index);
+        }
+    }
+}
@@ -82,6 +82,12 @@ public class ListenerMethod implements EventListener, Serializable {
      */
     private int eventArgumentIndex;
 
+    /**
+     * The index of the method in {@link ListenerInvoker} if the method is
+     * invoked directly, {@link ListenerInvoker#NONE} if using reflection.
+     */
+    private transient int invokerIndex;
+
     /* Special serialization to handle method references */
     private void writeObject(java.io.ObjectOutputStream out) throws IOException {
         try {
@@ -113,6 +119,20 @@ public class ListenerMethod implements EventListener, Serializable {
         } catch (SecurityException e) {
             getLogger().log(Level.SEVERE, "Internal deserialization error", e);
         }
+        invokerIndex = getInvokerIndex();
+    }
+
+    /*
+     * Listeners of the standard listener interfaces that only take the event
+     * as a parameter are invoked directly.
+     */
+    private int getInvokerIndex() {
+        if (method == null || eventArgumentIndex != 0
+                || arguments.length != 1
+                || !method.getDeclaringClass().isInstance(target)) {
+            return ListenerInvoker.NONE;
+        }
+        return ListenerInvoker.getIndex(method);
     }
 
     private static Method findHighestMethod(Class<?> cls, String method,
@@ -207,6 +227,7 @@ public class ListenerMethod implements EventListener, Serializable {
         this.method = method;
         this.arguments = arguments;
         this.eventArgumentIndex = eventArgumentIndex;
+        invokerIndex = getInvokerIndex();
     }
 
     /**
@@ -278,6 +299,7 @@ public class ListenerMethod implements EventListener, Serializable {
         this.method = method;
         this.arguments = arguments;
         this.eventArgumentIndex = eventArgumentIndex;
+        invokerIndex = getInvokerIndex();
     }
 
     /**
@@ -322,6 +344,7 @@ public class ListenerMethod implements EventListener, Serializable {
         this.method = method;
         this.arguments = arguments;
         eventArgumentIndex = -1;
+        invokerIndex = getInvokerIndex();
     }
 
     /**
@@ -374,6 +397,7 @@ public class ListenerMethod implements EventListener, Serializable {
         this.method = method;
         this.arguments = arguments;
         eventArgumentIndex = -1;
+        invokerIndex = getInvokerIndex();
     }
 
     /**
@@ -426,6 +450,7 @@ public class ListenerMethod implements EventListener, Serializable {
             throw new IllegalArgumentException(
                     "Method requires unknown parameters");
         }
+        invokerIndex = getInvokerIndex();
     }
 
     /**
@@ -486,6 +511,7 @@ public class ListenerMethod implements EventListener, Serializable {
             throw new IllegalArgumentException(
                     "Method requires unknown parameters");
         }
+        invokerIndex = getInvokerIndex();
     }
 
     /**
@@ -502,6 +528,17 @@ public class ListenerMethod implements EventListener, Serializable {
     public void receiveEvent(EventObject event) {
         // Only send events supported by the method
         if (eventType.isAssignableFrom(event.getClass())) {
+            if (invokerIndex != ListenerInvoker.NONE) {
+                try {
+                    ListenerInvoker.invoke(invokerIndex, target, event);
+                } catch (Throwable e) {
+                    // Wrapped as when using reflection
+                    throw new MethodException("Invocation of method "
+                            + method.getName() + " in "
+                            + target.getClass().getName() + " failed.", e);
+                }
+                return;
+            }
             try {
                 if (eventArgumentIndex >= 0) {
                     if (eventArgumentIndex == 0 && arguments.length == 1) {
@@ -655,6 +692,18 @@ public class ListenerMethod implements EventListener, Serializable {
         return eventType.isAssignableFrom(this.eventType);
     }
 
+    /**
+     * Checks whether events of the given class are sent to the trigger method.
+     * 
+     * @param eventClass
+     *            the class of the event
+     * @return true if the trigger method is called for events of the class,
+     *         false otherwise
+     */
+    boolean acceptsEvent(Class<?> eventClass) {
+        return eventType.isAssignableFrom(eventClass);
+    }
+
     /**
      * Returns the target object which contains the trigger method.
      * 
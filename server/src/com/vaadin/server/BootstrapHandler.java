@@ -21,17 +21,21 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.jsoup.nodes.Attribute;
 import org.jsoup.nodes.DataNode;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.DocumentType;
@@ -61,6 +65,97 @@ public abstract class BootstrapHandler extends SynchronizedRequestHandler {
      */
     public static final String IGNORE_RESTART_PARAM = "ignoreRestart";
 
+    /*
+     * Per-request values in cached bootstrap templates are represented by
+     * tokens of the form <prefix><value index><escaping>. The tokens are
+     * plain text so they are not altered when the page is serialized.
+     */
+    private static final String TOKEN_PREFIX = "vaadinBootstrapToken";
+    private static final Pattern TOKEN_PATTERN = Pattern.compile(TOKEN_PREFIX
+            + "([0-9])([raj])\\.");
+    private static final Pattern RAW_TOKEN_PATTERN = Pattern
+            .compile(TOKEN_PREFIX + "([0-9])r\\.");
+
+    private static final int MAX_TEMPLATES = 100;
+
+    private static final int APP_ID = 0;
+    private static final int VAADIN_LOCATION = 1;
+    private static final int THEME_URI = 2;
+    private static final int APPLICATION_PARAMETERS = 3;
+
+    // Escaping of a token: raw, HTML attribute or JSON string
+    private static final char RAW = 'r';
+    private static final char ATTRIBUTE = 'a';
+    private static final char JSON_STRING = 'j';
+
+    /**
+     * A bootstrap page or fragment with tokens for the per-request values.
+     */
+    private static class BootstrapTemplate implements Serializable {
+        private final List<String> segments = new ArrayList<String>();
+        private final List<String> tokens = new ArrayList<String>();
+        private final Map<String, Object> headers;
+
+        private BootstrapTemplate(String html, Map<String, Object> headers) {
+            this.headers = headers;
+            Matcher matcher = TOKEN_PATTERN.matcher(html);
+            int start = 0;
+            while (matcher.find()) {
+                segments.add(html.substring(start, matcher.start()));
+                tokens.add(matcher.group(1) + matcher.group(2));
+                start = matcher.end();
+            }
+            segments.add(html.substring(start));
+        }
+
+        private String merge(String[] values) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < tokens.size(); i++) {
+                builder.append(segments.get(i));
+                String token = tokens.get(i);
+                String value = values[token.charAt(0) - '0'];
+                switch (token.charAt(1)) {
+                case ATTRIBUTE:
+                    // Escape exactly as jsoup does
+                    String attribute = new Attribute("a", value).html();
+                    builder.append(attribute, 3, attribute.length() - 1);
+                    break;
+                case JSON_STRING:
+                    String quoted = JSONObject.quote(value);
+                    builder.append(quoted, 1, quoted.length() - 1);
+                    break;
+                default:
+                    builder.append(value);
+                }
+            }
+            builder.append(segments.get(segments.size() - 1));
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Keeps the most recently used bootstrap templates.
+     */
+    private static class TemplateCache extends
+            LinkedHashMap<List<Object>, BootstrapTemplate> {
+        private TemplateCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<List<Object>, BootstrapTemplate> eldest) {
+            // The theme can be given as a request parameter, don't let the
+            // cache grow without bounds
+            return size() > MAX_TEMPLATES;
+        }
+    }
+
+    /*
+     * Shared by all sessions, all access is synchronized on the map.
+     */
+    private final TemplateCache templates = new TemplateCache();
+
     protected class BootstrapContext implements Serializable {
 
         private final VaadinResponse response;
@@ -70,6 +165,7 @@ public abstract class BootstrapHandler extends SynchronizedRequestHandler {
         private String themeName;
         private String appId;
         private PushMode pushMode;
+        private boolean template = false;
 
         public BootstrapContext(VaadinResponse response,
                 BootstrapFragmentResponse bootstrapResponse) {
@@ -132,6 +228,9 @@ public abstract class BootstrapHandler extends SynchronizedRequestHandler {
         }
 
         public String getAppId() {
+            if (template) {
+                return getToken(APP_ID);
+            }
             if (appId == null) {
                 appId = getRequest().getService().getMainDivId(getSession(),
                         getRequest(), getUIClass());
@@ -186,13 +285,20 @@ public abstract class BootstrapHandler extends SynchronizedRequestHandler {
                     new BootstrapFragmentResponse(this, request, session,
                             uiClass, new ArrayList<Node>(), provider));
 
-            setupMainDiv(context);
+            String html;
+            if (isBootstrapTemplateCacheable(context)) {
+                html = getBootstrapHtmlFromTemplate(context);
+            } else {
+                setupMainDiv(context);
 
-            BootstrapFragmentResponse fragmentResponse = context
-                    .getBootstrapResponse();
-            session.modifyBootstrapResponse(fragmentResponse);
+                BootstrapFragmentResponse fragmentResponse = context
+                        .getBootstrapResponse();
+                session.modifyBootstrapResponse(fragmentResponse);
 
-            String html = getBootstrapHtml(context);
+                Map<String, Object> headers = new LinkedHashMap<String, Object>();
+                html = getBootstrapHtml(context, headers);
+                sendBootstrapHeaders(response, headers);
+            }
 
             writeBootstrapPage(response, html);
         } catch (JSONException e) {
@@ -202,16 +308,147 @@ public abstract class BootstrapHandler extends SynchronizedRequestHandler {
         return true;
     }
 
-    private String getBootstrapHtml(BootstrapContext context) {
+    /**
+     * Checks whether the bootstrap page for a request can be produced from a
+     * cached template. Templates are cached per UI class, theme, widgetset,
+     * push mode and page title, and only the application id, the URLs and the
+     * application parameters are produced separately for each request.
+     * <p>
+     * Caching is disabled by default. The default implementation allows
+     * caching if it has been enabled using the
+     * {@value Constants#SERVLET_PARAMETER_CACHE_BOOTSTRAP_TEMPLATES} deployment
+     * configuration parameter and there are no {@link BootstrapListener}s in
+     * the session, since listeners may modify the page differently for each
+     * request. Caching should not be enabled for handlers that customize the
+     * page in a way that depends on the request in other ways than by
+     * overriding {@link #getApplicationParameters(BootstrapContext)}, e.g. by
+     * overriding {@link #appendMainScriptTagContents(BootstrapContext,
+     * StringBuilder)}, unless they override this method to opt out of
+     * caching.
+     * 
+     * @param context
+     *            the bootstrap context of the request
+     * @return <code>true</code> if a cached template can be used,
+     *         <code>false</code> to build the page from scratch
+     * @since 7.2
+     */
+    protected boolean isBootstrapTemplateCacheable(BootstrapContext context) {
+        DeploymentConfiguration configuration = context.getSession()
+                .getConfiguration();
+        return configuration != null
+                && Boolean.parseBoolean(configuration
+                        .getApplicationOrSystemProperty(
+                                Constants.SERVLET_PARAMETER_CACHE_BOOTSTRAP_TEMPLATES,
+                                "false"))
+                && !context.getSession().hasBootstrapListeners();
+    }
+
+    private String getBootstrapHtmlFromTemplate(BootstrapContext context)
+            throws IOException, JSONException {
+        VaadinRequest request = context.getRequest();
+        VaadinService vaadinService = request.getService();
+        boolean standalone = vaadinService.isStandalone(request);
+        String title = null;
+        if (standalone) {
+            title = context.getBootstrapResponse().getUIProvider()
+                    .getPageTitle(
+                            new UICreateEvent(request, context.getUIClass()));
+        }
+        List<Object> key = Arrays.<Object> asList(context.getUIClass(),
+                context.getThemeName(), context.getWidgetsetName(),
+                context.getPushMode(), Boolean.valueOf(standalone),
+                Boolean.valueOf(vaadinService.getDeploymentConfiguration()
+                        .isProductionMode()),
+                Boolean.valueOf(context.getSession().getConfiguration()
+                        .isProductionMode()), getMainDivStyle(context), title);
+
+        BootstrapTemplate template;
+        synchronized (templates) {
+            template = templates.get(key);
+        }
+        if (template == null) {
+            template = createBootstrapTemplate(context);
+            synchronized (templates) {
+                templates.put(key, template);
+            }
+        }
+
+        String[] values = new String[4];
+        values[APP_ID] = context.getAppId();
+        values[VAADIN_LOCATION] = getVaadinLocation(context);
+        String themeName = context.getThemeName();
+        values[THEME_URI] = themeName == null ? "" : getThemeUri(context,
+                themeName);
+        StringBuilder parameters = new StringBuilder();
+        appendJsonObject(parameters, getApplicationParameters(context),
+                !context.getSession().getConfiguration().isProductionMode());
+        values[APPLICATION_PARAMETERS] = parameters.toString();
+
+        sendBootstrapHeaders(context.getResponse(), template.headers);
+        return template.merge(values);
+    }
+
+    private BootstrapTemplate createBootstrapTemplate(BootstrapContext context)
+            throws IOException, JSONException {
+        BootstrapFragmentResponse fragmentResponse = context
+                .getBootstrapResponse();
+        BootstrapContext templateContext = new BootstrapContext(
+                context.getResponse(), new BootstrapFragmentResponse(this,
+                        context.getRequest(), context.getSession(),
+                        context.getUIClass(), new ArrayList<Node>(),
+                        fragmentResponse.getUIProvider()));
+        templateContext.template = true;
+
+        setupMainDiv(templateContext);
+        Map<String, Object> headers = new LinkedHashMap<String, Object>();
+        String html = getBootstrapHtml(templateContext, headers);
+        return new BootstrapTemplate(html, headers);
+    }
+
+    private static String getToken(int value) {
+        return TOKEN_PREFIX + value + RAW + ".";
+    }
+
+    /*
+     * Marks the tokens in attribute values and in the alert message of the
+     * script to be escaped accordingly when the template is merged.
+     */
+    private static void markTokenEscaping(Node node) {
+        if (node instanceof DataNode) {
+            // jsoup keeps the data of the node as an attribute
+            DataNode dataNode = (DataNode) node;
+            String location = getToken(VAADIN_LOCATION);
+            dataNode.setWholeData(dataNode.getWholeData().replace(location,
+                    location.replace(RAW + ".", JSON_STRING + ".")));
+            return;
+        }
+        for (Attribute attribute : node.attributes()) {
+            String value = attribute.getValue();
+            if (value.contains(TOKEN_PREFIX)) {
+                attribute.setValue(RAW_TOKEN_PATTERN.matcher(value)
+                        .replaceAll(TOKEN_PREFIX + "$1" + ATTRIBUTE + "."));
+            }
+        }
+        for (Node child : node.childNodes()) {
+            markTokenEscaping(child);
+        }
+    }
+
+    private String getBootstrapHtml(BootstrapContext context,
+            Map<String, Object> headers) {
         VaadinRequest request = context.getRequest();
-        VaadinResponse response = context.getResponse();
         VaadinService vaadinService = request.getService();
 
         BootstrapFragmentResponse fragmentResponse = context
                 .getBootstrapResponse();
 
+        if (context.template) {
+            for (Node node : fragmentResponse.getFragmentNodes()) {
+                markTokenEscaping(node);
+            }
+        }
+
         if (vaadinService.isStandalone(request)) {
-            Map<String, Object> headers = new LinkedHashMap<String, Object>();
             Document document = Document.createShell("");
             BootstrapPageResponse pageResponse = new BootstrapPageResponse(
                     this, request, context.getSession(), context.getUIClass(),
@@ -223,9 +460,11 @@ public abstract class BootstrapHandler extends SynchronizedRequestHandler {
             }
 
             setupStandaloneDocument(context, pageResponse);
-            context.getSession().modifyBootstrapResponse(pageResponse);
-
-            sendBootstrapHeaders(response, headers);
+            if (context.template) {
+                markTokenEscaping(document.head());
+            } else {
+                context.getSession().modifyBootstrapResponse(pageResponse);
+            }
 
             return document.outerHtml();
         } else {
@@ -300,7 +539,8 @@ public abstract class BootstrapHandler extends SynchronizedRequestHandler {
         // Add favicon links
         String themeName = context.getThemeName();
         if (themeName != null) {
-            String themeUri = getThemeUri(context, themeName);
+            String themeUri = context.template ? getToken(THEME_URI)
+                    : getThemeUri(context, themeName);
             head.appendElement("link").attr("rel", "shortcut icon")
                     .attr("type", "image/vnd.microsoft.icon")
                     .attr("href", themeUri + "/favicon.ico");
@@ -373,11 +613,7 @@ public abstract class BootstrapHandler extends SynchronizedRequestHandler {
                 .append("You have to enable javascript in your browser to use an application built with Vaadin.");
         fragmentNodes.add(mainDiv);
 
-        VaadinRequest request = context.getRequest();
-
-        VaadinService vaadinService = request.getService();
-        String vaadinLocation = vaadinService.getStaticFileLocation(request)
-                + "/VAADIN/";
+        String vaadinLocation = getVaadinLocation(context);
 
         fragmentNodes
                 .add(new Element(Tag.valueOf("iframe"), "")
@@ -422,10 +658,17 @@ public abstract class BootstrapHandler extends SynchronizedRequestHandler {
 
     }
 
+    private static String getVaadinLocation(BootstrapContext context) {
+        if (context.template) {
+            return getToken(VAADIN_LOCATION);
+        }
+        VaadinRequest request = context.getRequest();
+        return request.getService().getStaticFileLocation(request)
+                + "/VAADIN/";
+    }
+
     protected void appendMainScriptTagContents(BootstrapContext context,
             StringBuilder builder) throws JSONException, IOException {
-        JSONObject appConfig = getApplicationParameters(context);
-
         boolean isDebug = !context.getSession().getConfiguration()
                 .isProductionMode();
 
@@ -444,7 +687,12 @@ public abstract class BootstrapHandler extends SynchronizedRequestHandler {
         builder.append("vaadin.initApplication(\"");
         builder.append(context.getAppId());
         builder.append("\",");
-        appendJsonObject(builder, appConfig, isDebug);
+        if (context.template) {
+            builder.append(getToken(APPLICATION_PARAMETERS));
+        } else {
+            JSONObject appConfig = getApplicationParameters(context);
+            appendJsonObject(builder, appConfig, isDebug);
+        }
         builder.append(");\n");
     }
 
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.server;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.vaadin.ui.ConnectorTracker;
+
+/**
+ * A compact representation of the shared state last sent to the client for a
+ * connector, used as the reference when computing what has changed.
+ * <p>
+ * Instead of keeping the fully encoded state as a {@link JSONObject}, only the
+ * property names and values are retained in plain arrays. Strings, booleans
+ * and numbers are kept as is (typically sharing the instances referenced by
+ * the state object itself) and nested objects, arrays and maps are kept as
+ * arrays of their compact values. Values are compared structurally, so no
+ * JSON strings are retained or produced for the comparison. The top level
+ * property names are shared between all instances created for the same state
+ * type.
+ * <p>
+ * A change anywhere inside a nested value causes the whole top level value to
+ * be included in the diff.
+ * 
+ * @see ConnectorTracker#isCompactDiffStates()
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class CompactDiffState implements Serializable {
+
+    /**
+     * Stands in for a nested JSON object, keeping its property names and the
+     * compact representations of its values.
+     */
+    private static final class NestedObject implements Serializable {
+        private final String[] names;
+        private final Object[] values;
+
+        private NestedObject(String[] names, Object[] values) {
+            this.names = names;
+            this.values = values;
+        }
+
+        /**
+         * Checks whether the given JSON object has the same properties, in the
+         * same order, with the same values as the object this was created
+         * for.
+         */
+        private boolean matches(JSONObject object) {
+            if (object.length() != names.length) {
+                return false;
+            }
+            int i = 0;
+            for (Iterator<?> keys = object.keys(); keys.hasNext(); i++) {
+                String name = (String) keys.next();
+                if (!names[i].equals(name)
+                        || !CompactDiffState.matches(values[i],
+                                object.opt(name))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stands in for a nested JSON array, keeping the compact representations
+     * of its values.
+     */
+    private static final class NestedArray implements Serializable {
+        private final Object[] values;
+
+        private NestedArray(Object[] values) {
+            this.values = values;
+        }
+
+        /**
+         * Checks whether the given JSON array has the same values as the array
+         * this was created for.
+         */
+        private boolean matches(JSONArray array) {
+            if (array.length() != values.length) {
+                return false;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (!CompactDiffState.matches(values[i], array.opt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Cache of property name arrays so that all instances for the same state
+     * type can share one array.
+     */
+    private static final ConcurrentMap<Class<?>, String[]> propertyNameCache = new ConcurrentHashMap<Class<?>, String[]>();
+
+    private final String[] names;
+    private final Object[] values;
+
+    private CompactDiffState(String[] names, Object[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * Creates a compact diff state from a fully encoded state.
+     * 
+     * @param stateType
+     *            the type of the encoded state, used for sharing property
+     *            names between instances
+     * @param encodedState
+     *            the fully encoded state, as produced by
+     *            {@link JsonCodec#encode(Object, Object, java.lang.reflect.Type, ConnectorTracker)}
+     * @return a compact diff state for the encoded state
+     */
+    public static CompactDiffState create(Class<?> stateType,
+            JSONObject encodedState) {
+        int length = encodedState.length();
+        String[] names = new String[length];
+        Object[] values = new Object[length];
+
+        int i = 0;
+        for (Iterator<?> keys = encodedState.keys(); keys.hasNext(); i++) {
+            String name = (String) keys.next();
+            names[i] = name;
+            values[i] = compact(encodedState.opt(name));
+        }
+
+        String[] sharedNames = propertyNameCache.get(stateType);
+        if (sharedNames != null && Arrays.equals(sharedNames, names)) {
+            names = sharedNames;
+        } else {
+            propertyNameCache.put(stateType, names);
+        }
+
+        return new CompactDiffState(names, values);
+    }
+
+    /**
+     * Creates a JSON object containing the properties of the given encoded
+     * state that differ from the values in this diff state.
+     * 
+     * @param encodedState
+     *            the fully encoded new state
+     * @return a JSON object with the changed properties, empty if nothing has
+     *         changed
+     * @throws JSONException
+     *             if the diff can not be created
+     */
+    public JSONObject diff(JSONObject encodedState) throws JSONException {
+        JSONObject diff = new JSONObject();
+
+        int i = 0;
+        for (Iterator<?> keys = encodedState.keys(); keys.hasNext(); i++) {
+            String name = (String) keys.next();
+            Object value = encodedState.opt(name);
+
+            // Properties are normally in the same order as last time
+            int index = i;
+            if (index >= names.length || !names[index].equals(name)) {
+                index = indexOf(name);
+            }
+
+            if (index == -1 || !matches(values[index], value)) {
+                diff.put(name, value);
+            }
+        }
+
+        return diff;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Object compact(Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            return null;
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            String[] names = new String[object.length()];
+            Object[] values = new Object[names.length];
+            int i = 0;
+            for (Iterator<?> keys = object.keys(); keys.hasNext(); i++) {
+                String name = (String) keys.next();
+                names[i] = name;
+                values[i] = compact(object.opt(name));
+            }
+            return new NestedObject(names, values);
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            Object[] values = new Object[array.length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = compact(array.opt(i));
+            }
+            return new NestedArray(values);
+        } else if (value instanceof String || value instanceof Boolean
+                || value instanceof Number) {
+            return value;
+        } else {
+            // Other values are encoded using their string representation
+            return value.toString();
+        }
+    }
+
+    private static boolean matches(Object compactValue, Object value) {
+        if (value == JSONObject.NULL) {
+            value = null;
+        }
+
+        if (compactValue == null || value == null) {
+            return compactValue == value;
+        } else if (compactValue instanceof NestedObject) {
+            return value instanceof JSONObject
+                    && ((NestedObject) compactValue)
+                            .matches((JSONObject) value);
+        } else if (compactValue instanceof NestedArray) {
+            return value instanceof JSONArray
+                    && ((NestedArray) compactValue).matches((JSONArray) value);
+        } else if (value instanceof JSONObject || value instanceof JSONArray) {
+            return false;
+        } else if (compactValue.getClass() == value.getClass()) {
+            return compactValue.equals(value);
+        } else if (compactValue instanceof Number && value instanceof Number) {
+            // Equal if encoded the same way, e.g. Integer and Long
+            try {
+                return JSONObject.numberToString((Number) compactValue)
+                        .equals(JSONObject.numberToString((Number) value));
+            } catch (JSONException e) {
+                return false;
+            }
+        } else if (isQuotedInJson(compactValue) && isQuotedInJson(value)) {
+            return compactValue.toString().equals(value.toString());
+        } else {
+            // Values of different kinds never have the same representation
+            return false;
+        }
+    }
+
+    private static boolean isQuotedInJson(Object value) {
+        return !(value instanceof Number || value instanceof Boolean);
+    }
+}
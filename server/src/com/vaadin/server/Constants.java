@@ -126,6 +126,12 @@ public interface Constants {
     static final String SERVLET_PARAMETER_PUSH_MODE = "pushMode";
     static final String SERVLET_PARAMETER_UI_PROVIDER = "UIProvider";
     static final String SERVLET_PARAMETER_LEGACY_PROPERTY_TOSTRING = "legacyPropertyToString";
+    static final String SERVLET_PARAMETER_STREAMING_JSON = "streamingJson";
+    static final String SERVLET_PARAMETER_COMPACT_DIFF_STATE = "compactDiffState";
+    static final String SERVLET_PARAMETER_STREAMING_UIDL_RESPONSE = "streamingUidlResponse";
+    static final String SERVLET_PARAMETER_COMPRESS_UIDL_RESPONSE = "compressUidlResponse";
+    static final String SERVLET_PARAMETER_STATIC_RESOURCE_CACHE_SIZE = "staticResourceCacheSize";
+    static final String SERVLET_PARAMETER_CACHE_BOOTSTRAP_TEMPLATES = "cacheBootstrapTemplates";
 
     // Configurable parameter names
     static final String PARAMETER_VAADIN_RESOURCES = "Resources";
@@ -20,6 +20,7 @@ import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.io.Serializable;
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.GenericArrayType;
@@ -91,11 +92,56 @@ public class JsonCodec implements Serializable {
         public Type getType();
     }
 
+    /**
+     * Strategy for creating the {@link BeanProperty} accessors used when
+     * encoding and decoding beans such as shared state objects. The accessors
+     * are created once per bean type and cached.
+     * <p>
+     * An implementation can e.g. provide generated or hand written accessors
+     * for frequently encoded state classes. Returning <code>null</code> from
+     * either method makes {@link JsonCodec} fall back to its default
+     * reflection based accessor for that property.
+     * 
+     * @see JsonCodec#setBeanPropertyFactory(BeanPropertyFactory)
+     * @since 7.2
+     */
+    public static interface BeanPropertyFactory extends Serializable {
+        /**
+         * Creates an accessor for a public field.
+         * 
+         * @param beanType
+         *            the type whose properties are being resolved
+         * @param field
+         *            the public, non-static field
+         * @return an accessor for the field, or <code>null</code> to use the
+         *         default reflection based accessor
+         */
+        public BeanProperty createFieldProperty(Class<?> beanType,
+                Field field);
+
+        /**
+         * Creates an accessor for a property with both a getter and a setter.
+         * 
+         * @param beanType
+         *            the type whose properties are being resolved
+         * @param descriptor
+         *            the property descriptor, with non-null read and write
+         *            methods
+         * @return an accessor for the property, or <code>null</code> to use
+         *         the default reflection based accessor
+         */
+        public BeanProperty createMethodProperty(Class<?> beanType,
+                PropertyDescriptor descriptor);
+    }
+
     private static class FieldProperty implements BeanProperty {
         private final Field field;
+        private final Type type;
 
         public FieldProperty(Field field) {
             this.field = field;
+            type = field.getGenericType();
+            makeAccessible(field);
         }
 
         @Override
@@ -115,17 +161,24 @@ public class JsonCodec implements Serializable {
 
         @Override
         public Type getType() {
-            return field.getGenericType();
+            return type;
         }
 
-        public static Collection<FieldProperty> find(Class<?> type)
-                throws IntrospectionException {
-            Collection<FieldProperty> properties = new ArrayList<FieldProperty>();
+        public static Collection<BeanProperty> find(Class<?> type,
+                BeanPropertyFactory factory) throws IntrospectionException {
+            Collection<BeanProperty> properties = new ArrayList<BeanProperty>();
 
             Field[] fields = type.getFields();
             for (Field field : fields) {
                 if (!Modifier.isStatic(field.getModifiers())) {
-                    properties.add(new FieldProperty(field));
+                    BeanProperty property = null;
+                    if (factory != null) {
+                        property = factory.createFieldProperty(type, field);
+                    }
+                    if (property == null) {
+                        property = new FieldProperty(field);
+                    }
+                    properties.add(property);
                 }
             }
 
@@ -135,34 +188,48 @@ public class JsonCodec implements Serializable {
     }
 
     private static class MethodProperty implements BeanProperty {
-        private final PropertyDescriptor pd;
+        /*
+         * The methods, name and type are resolved once as
+         * PropertyDescriptor.getReadMethod() and getWriteMethod() are
+         * relatively expensive and the name would otherwise be rebuilt for
+         * every encoded value.
+         */
+        private final Method readMethod;
+        private final Method writeMethod;
+        private final Type type;
+        private final String name;
 
         public MethodProperty(PropertyDescriptor pd) {
-            this.pd = pd;
+            readMethod = pd.getReadMethod();
+            writeMethod = pd.getWriteMethod();
+            type = readMethod.getGenericReturnType();
+
+            String fieldName = writeMethod.getName().substring(3);
+            name = Character.toLowerCase(fieldName.charAt(0))
+                    + fieldName.substring(1);
+
+            makeAccessible(readMethod);
+            makeAccessible(writeMethod);
         }
 
         @Override
         public Object getValue(Object bean) throws Exception {
-            Method readMethod = pd.getReadMethod();
             return readMethod.invoke(bean);
         }
 
         @Override
         public void setValue(Object bean, Object value) throws Exception {
-            pd.getWriteMethod().invoke(bean, value);
+            writeMethod.invoke(bean, value);
         }
 
         @Override
         public String getName() {
-            String fieldName = pd.getWriteMethod().getName().substring(3);
-            fieldName = Character.toLowerCase(fieldName.charAt(0))
-                    + fieldName.substring(1);
-            return fieldName;
+            return name;
         }
 
-        public static Collection<MethodProperty> find(Class<?> type)
-                throws IntrospectionException {
-            Collection<MethodProperty> properties = new ArrayList<MethodProperty>();
+        public static Collection<BeanProperty> find(Class<?> type,
+                BeanPropertyFactory factory) throws IntrospectionException {
+            Collection<BeanProperty> properties = new ArrayList<BeanProperty>();
 
             for (PropertyDescriptor pd : Introspector.getBeanInfo(type)
                     .getPropertyDescriptors()) {
@@ -170,18 +237,38 @@ public class JsonCodec implements Serializable {
                     continue;
                 }
 
-                properties.add(new MethodProperty(pd));
+                BeanProperty property = null;
+                if (factory != null) {
+                    property = factory.createMethodProperty(type, pd);
+                }
+                if (property == null) {
+                    property = new MethodProperty(pd);
+                }
+                properties.add(property);
             }
             return properties;
         }
 
         @Override
         public Type getType() {
-            return pd.getReadMethod().getGenericReturnType();
+            return type;
         }
 
     }
 
+    /**
+     * Suppresses Java language access checks for a reflected member to make
+     * invoking it cheaper. Access checks are left in place if a security
+     * manager prevents this.
+     */
+    private static void makeAccessible(AccessibleObject member) {
+        try {
+            member.setAccessible(true);
+        } catch (SecurityException e) {
+            // Fall back to checked access
+        }
+    }
+
     /**
      * Cache the collection of bean properties for a given type to avoid doing a
      * quite expensive lookup multiple times. Will be used from any thread that
@@ -190,6 +277,8 @@ public class JsonCodec implements Serializable {
      */
     private static ConcurrentMap<Class<?>, Collection<BeanProperty>> typePropertyCache = new ConcurrentHashMap<Class<?>, Collection<BeanProperty>>();
 
+    private static volatile BeanPropertyFactory beanPropertyFactory = null;
+
     private static Map<Class<?>, String> typeToTransportType = new HashMap<Class<?>, String>();
 
     /**
@@ -720,6 +809,35 @@ public class JsonCodec implements Serializable {
         }
     }
 
+    /**
+     * Sets the factory used for creating accessors for the properties of
+     * encoded and decoded beans. Properties for which the factory returns
+     * <code>null</code>, and all properties if no factory is set, are accessed
+     * using reflection. Changing the factory clears all cached accessors.
+     * 
+     * @param factory
+     *            the bean property factory to use, or <code>null</code> to
+     *            only use reflection
+     * @since 7.2
+     */
+    public static void setBeanPropertyFactory(BeanPropertyFactory factory) {
+        beanPropertyFactory = factory;
+        typePropertyCache.clear();
+    }
+
+    /**
+     * Gets the factory used for creating bean property accessors.
+     * 
+     * @see #setBeanPropertyFactory(BeanPropertyFactory)
+     * 
+     * @return the bean property factory, or <code>null</code> if only
+     *         reflection is used
+     * @since 7.2
+     */
+    public static BeanPropertyFactory getBeanPropertyFactory() {
+        return beanPropertyFactory;
+    }
+
     public static Collection<BeanProperty> getProperties(Class<?> type)
             throws IntrospectionException {
         Collection<BeanProperty> cachedProperties = typePropertyCache.get(type);
@@ -728,8 +846,9 @@ public class JsonCodec implements Serializable {
         }
         Collection<BeanProperty> properties = new ArrayList<BeanProperty>();
 
-        properties.addAll(MethodProperty.find(type));
-        properties.addAll(FieldProperty.find(type));
+        BeanPropertyFactory factory = beanPropertyFactory;
+        properties.addAll(MethodProperty.find(type, factory));
+        properties.addAll(FieldProperty.find(type, factory));
 
         // Doesn't matter if the same calculation is done multiple times from
         // different threads, so there's no need to do e.g. putIfAbsent
@@ -792,7 +911,8 @@ public class JsonCodec implements Serializable {
      * @param referenceValue
      * @return
      */
-    private static boolean jsonEquals(Object fieldValue, Object referenceValue) {
+    private static boolean jsonEquals(Object fieldValue, Object referenceValue)
+            throws JSONException {
         if (fieldValue == JSONObject.NULL) {
             fieldValue = null;
         }
@@ -807,11 +927,106 @@ public class JsonCodec implements Serializable {
         } else if (fieldValue instanceof Boolean
                 && referenceValue instanceof Boolean) {
             return ((Boolean) fieldValue).equals(referenceValue);
+        } else if (fieldValue instanceof String
+                && referenceValue instanceof String) {
+            return fieldValue.equals(referenceValue);
+        } else if (fieldValue instanceof JSONArray
+                && referenceValue instanceof JSONArray) {
+            // Compare structurally instead of serializing both values
+            return jsonArrayEquals((JSONArray) fieldValue,
+                    (JSONArray) referenceValue);
+        } else if (fieldValue instanceof JSONObject
+                && referenceValue instanceof JSONObject) {
+            return jsonObjectEquals((JSONObject) fieldValue,
+                    (JSONObject) referenceValue);
         } else {
             return fieldValue.toString().equals(referenceValue.toString());
         }
     }
 
+    /*
+     * The structural comparisons below give the same result as comparing the
+     * serialized values, including the order of the keys in objects.
+     */
+
+    private static boolean jsonArrayEquals(JSONArray value,
+            JSONArray reference) throws JSONException {
+        int length = value.length();
+        if (length != reference.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (!jsonElementEquals(value.opt(i), reference.opt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean jsonObjectEquals(JSONObject value,
+            JSONObject reference) throws JSONException {
+        if (value.length() != reference.length()) {
+            return false;
+        }
+        Iterator<?> referenceKeys = reference.keys();
+        for (Iterator<?> keys = value.keys(); keys.hasNext();) {
+            String key = (String) keys.next();
+            if (!key.equals(referenceKeys.next())
+                    || !jsonElementEquals(value.opt(key), reference.opt(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares two values contained in a JSON array or object. The values are
+     * equal if their serialized JSON representations are equal.
+     */
+    private static boolean jsonElementEquals(Object value, Object reference)
+            throws JSONException {
+        value = nullIfJsonNull(value);
+        reference = nullIfJsonNull(reference);
+
+        if (value == reference) {
+            return true;
+        } else if (value == null || reference == null) {
+            return false;
+        } else if (value instanceof JSONArray
+                && reference instanceof JSONArray) {
+            return jsonArrayEquals((JSONArray) value, (JSONArray) reference);
+        } else if (value instanceof JSONObject
+                && reference instanceof JSONObject) {
+            return jsonObjectEquals((JSONObject) value, (JSONObject) reference);
+        } else if (value instanceof Number && reference instanceof Number) {
+            return JSONObject.numberToString((Number) value).equals(
+                    JSONObject.numberToString((Number) reference));
+        } else if (value instanceof Boolean && reference instanceof Boolean) {
+            return value.equals(reference);
+        } else if (isQuotedInJson(value) && isQuotedInJson(reference)) {
+            return value.toString().equals(reference.toString());
+        } else {
+            // Values of different kinds never have the same representation
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether a value contained in a JSON array or object is serialized
+     * as a quoted string.
+     */
+    private static boolean isQuotedInJson(Object value) {
+        return !(value instanceof JSONArray || value instanceof JSONObject
+                || value instanceof Number || value instanceof Boolean);
+    }
+
+    private static Object nullIfJsonNull(Object value) {
+        if (value == JSONObject.NULL) {
+            return null;
+        }
+        return value;
+    }
+
     private static EncodeResult encodeEnum(Enum<?> e,
             ConnectorTracker connectorTracker) throws JSONException {
         return new EncodeResult(e.name());
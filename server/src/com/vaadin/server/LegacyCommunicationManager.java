@@ -90,9 +90,13 @@ public class LegacyCommunicationManager implements Serializable {
         UI uI = connector.getUI();
         ConnectorTracker connectorTracker = uI.getConnectorTracker();
         Class<? extends SharedState> stateType = connector.getStateType();
-        Object diffState = connectorTracker.getDiffState(connector);
         boolean supportsDiffState = !JavaScriptConnectorState.class
                 .isAssignableFrom(stateType);
+        if (supportsDiffState && connectorTracker.isCompactDiffStates()) {
+            return encodeStateUsingCompactDiffState(connector, state,
+                    stateType, connectorTracker);
+        }
+        Object diffState = connectorTracker.getDiffState(connector);
         if (diffState == null && supportsDiffState) {
             // Use an empty state object as reference for full
             // repaints
@@ -118,6 +122,42 @@ public class LegacyCommunicationManager implements Serializable {
         return (JSONObject) encodeResult.getDiff();
     }
 
+    private static JSONObject encodeStateUsingCompactDiffState(
+            ClientConnector connector, SharedState state,
+            Class<? extends SharedState> stateType,
+            ConnectorTracker connectorTracker) throws JSONException {
+        CompactDiffState diffState = connectorTracker
+                .getCompactDiffState(connector);
+        if (diffState == null) {
+            // Use an empty state object as reference for full
+            // repaints
+            try {
+                SharedState referenceState = stateType.newInstance();
+                EncodeResult encodeResult = JsonCodec.encode(referenceState,
+                        null, stateType, connectorTracker);
+                diffState = CompactDiffState.create(stateType,
+                        (JSONObject) encodeResult.getEncodedValue());
+            } catch (Exception e) {
+                getLogger()
+                        .log(Level.WARNING,
+                                "Error creating reference object for state of type {0}",
+                                stateType.getName());
+            }
+        }
+
+        // Only the compact form of the previous state is available, so the
+        // diff is computed from the full encoding
+        JSONObject encoded = (JSONObject) JsonCodec.encode(state, null,
+                stateType, connectorTracker).getEncodedValue();
+        connectorTracker.setCompactDiffState(connector,
+                CompactDiffState.create(stateType, encoded));
+        if (diffState == null) {
+            return encoded;
+        } else {
+            return diffState.diff(encoded);
+        }
+    }
+
     /**
      * Resolves a dependency URI, registering the URI with this
      * {@code LegacyCommunicationManager} if needed and returns a fully
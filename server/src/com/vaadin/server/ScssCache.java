@@ -0,0 +1,275 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.io.File;
+import java.io.Serializable;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.vaadin.sass.internal.ScssStylesheet;
+
+/**
+ * Caches the CSS compiled on the fly from SCSS themes by {@link VaadinServlet}.
+ * A theme is only recompiled when any SCSS or CSS file in the themes directory
+ * has been added, removed or modified since the cached CSS was compiled, so
+ * that changes in imported files and base themes are also noticed. Themes
+ * that are not in the file system, e.g. themes in JAR files, are compiled only
+ * once.
+ * <p>
+ * To avoid scanning the themes directory on every request, the sources of a
+ * theme are checked at most once per check interval, one second by default.
+ * <p>
+ * Cached CSS is served without locking. Only one thread at a time compiles a
+ * given theme, other threads requesting the theme wait for the result instead
+ * of compiling it again.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+class ScssCache implements Serializable {
+
+    /**
+     * Mutex for preventing to scss compilations to take place simultaneously.
+     * This is a workaround needed as the scss compiler currently is not thread
+     * safe (#10292).
+     */
+    private static final Object SCSS_MUTEX = new Object();
+
+    private static final long DEFAULT_CHECK_INTERVAL = 1000;
+
+    private static class Entry implements Serializable {
+        private volatile String css;
+        private volatile long sourceStamp;
+        /*
+         * The time when the sources were last found to match the stamp of the
+         * cached CSS
+         */
+        private volatile long checkTime;
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private final long checkInterval;
+
+    ScssCache() {
+        this(DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * Creates a cache checking the sources of a theme at most once per the
+     * given interval.
+     * 
+     * @param checkInterval
+     *            the minimum time between checking the sources, in
+     *            milliseconds
+     */
+    ScssCache(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Gets the CSS compiled from an SCSS file, compiling it if it has not been
+     * compiled yet or if the sources have changed.
+     * 
+     * @param scssFilename
+     *            the name of the SCSS file, e.g.
+     *            /VAADIN/themes/mytheme/styles.scss
+     * @param realFilename
+     *            the path of the SCSS file in the file system, or
+     *            <code>null</code> if not known
+     * @param scssUrl
+     *            the URL of the SCSS file
+     * @return the compiled CSS, or <code>null</code> if the SCSS file could
+     *         not be compiled
+     */
+    String getCss(String scssFilename, String realFilename, URL scssUrl) {
+        Entry entry = entries.get(scssFilename);
+        if (entry == null) {
+            Entry newEntry = new Entry();
+            entry = entries.putIfAbsent(scssFilename, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+
+        long checkTime = System.currentTimeMillis();
+        String css = entry.css;
+        if (css != null && checkTime - entry.checkTime < checkInterval) {
+            return css;
+        }
+
+        File themesDirectory = getThemesDirectory(realFilename, scssUrl);
+        long sourceStamp = getSourceStamp(themesDirectory);
+        if (css != null && entry.sourceStamp == sourceStamp) {
+            entry.checkTime = checkTime;
+            return css;
+        }
+
+        synchronized (entry) {
+            // Another thread may have compiled the sources while waiting
+            css = entry.css;
+            if (css != null && entry.sourceStamp == sourceStamp) {
+                return css;
+            }
+            css = compile(scssFilename, realFilename);
+            if (css != null) {
+                /*
+                 * Files modified during the compilation are compiled again on
+                 * the next request as the stamp is from before the compilation
+                 */
+                entry.sourceStamp = sourceStamp;
+                entry.checkTime = checkTime;
+                entry.css = css;
+            }
+            return css;
+        }
+    }
+
+    /**
+     * Removes all compiled CSS from the cache.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Compiles an SCSS file. Only one file is compiled at a time.
+     * 
+     * @param scssFilename
+     *            the name of the SCSS file
+     * @param realFilename
+     *            the path of the SCSS file in the file system, or
+     *            <code>null</code> if not known
+     * @return the compiled CSS, or <code>null</code> if the compilation failed
+     */
+    String compile(String scssFilename, String realFilename) {
+        synchronized (SCSS_MUTEX) {
+            try {
+                ScssStylesheet scss = ScssStylesheet.get(realFilename);
+                if (scss == null) {
+                    // Not a file in the file system (WebContent directory).
+                    // Use the identifier directly
+                    // (VAADIN/themes/.../styles.css) so ScssStylesheet will
+                    // try using the class loader.
+                    if (scssFilename.startsWith("/")) {
+                        scssFilename = scssFilename.substring(1);
+                    }
+
+                    scss = ScssStylesheet.get(scssFilename);
+                }
+
+                if (scss == null) {
+                    getLogger()
+                            .log(Level.WARNING,
+                                    "Scss file {0} exists but ScssStylesheet was not able to find it",
+                                    scssFilename);
+                    return null;
+                }
+                getLogger().log(Level.FINE, "Compiling {0}",
+                        new Object[] { scssFilename });
+                scss.compile();
+                return scss.printState();
+            } catch (Exception e) {
+                getLogger().log(Level.WARNING, "Scss compilation failed", e);
+                return null;
+            }
+        }
+    }
+
+    /*
+     * Finds the directory containing all themes, so that imports from other
+     * themes are also tracked. Returns null if the theme is not in the file
+     * system.
+     */
+    static File getThemesDirectory(String realFilename, URL scssUrl) {
+        File scssFile = null;
+        if (realFilename != null) {
+            scssFile = new File(realFilename);
+        } else if ("file".equals(scssUrl.getProtocol())) {
+            try {
+                scssFile = new File(scssUrl.toURI());
+            } catch (URISyntaxException e) {
+                return null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (scssFile == null || !scssFile.isFile()) {
+            return null;
+        }
+        File themeDirectory = scssFile.getParentFile();
+        if (themeDirectory.getParentFile() != null) {
+            return themeDirectory.getParentFile();
+        }
+        return themeDirectory;
+    }
+
+    /*
+     * Gets a value that changes whenever an SCSS or CSS file in the directory
+     * is added, removed or modified, also if a file is replaced by one with an
+     * older modification time.
+     */
+    static long getSourceStamp(File directory) {
+        if (directory == null) {
+            return 0;
+        }
+        return collectSourceStamp(directory);
+    }
+
+    private static long collectSourceStamp(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        // A sum does not depend on the order of the files
+        long stamp = 0;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                stamp += collectSourceStamp(file);
+            } else {
+                String name = file.getName();
+                if (name.endsWith(".scss") || name.endsWith(".css")) {
+                    long fileStamp = file.getPath().hashCode();
+                    fileStamp = fileStamp * 31 + file.lastModified();
+                    fileStamp = fileStamp * 31 + file.length();
+                    stamp += mix(fileStamp);
+                }
+            }
+        }
+        return stamp;
+    }
+
+    /*
+     * Mixes the bits of a file stamp so that changes in different files are
+     * unlikely to cancel out in the sum (MurmurHash3 finalizer).
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    private static Logger getLogger() {
+        return Logger.getLogger(ScssCache.class.getName());
+    }
+}
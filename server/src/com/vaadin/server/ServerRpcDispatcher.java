@@ -0,0 +1,131 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The methods of a server RPC interface, resolved once per interface. RPC
+ * methods are identified by their name and number of parameters, so the
+ * methods are kept in a table indexed by the number of parameters for each
+ * name. The generic parameter types needed for decoding the parameters are
+ * resolved when the table is built.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+class ServerRpcDispatcher implements Serializable {
+
+    /**
+     * A method of an RPC interface together with its generic parameter types.
+     */
+    static class RpcMethod implements Serializable {
+        private final Method method;
+        private final Type[] genericParameterTypes;
+
+        private RpcMethod(Method method) {
+            this.method = method;
+            genericParameterTypes = method.getGenericParameterTypes();
+            try {
+                // Skip the access checks on every invocation
+                method.setAccessible(true);
+            } catch (SecurityException e) {
+                // Use the access checks
+            }
+        }
+
+        Method getMethod() {
+            return method;
+        }
+
+        /*
+         * Shared, must not be modified.
+         */
+        Type[] getGenericParameterTypes() {
+            return genericParameterTypes;
+        }
+    }
+
+    private static final ConcurrentMap<Class<?>, ServerRpcDispatcher> dispatchers = new ConcurrentHashMap<Class<?>, ServerRpcDispatcher>(
+            128, 0.75f, 1);
+
+    /*
+     * For each method name, the methods indexed by their number of parameters.
+     * Not modified after construction.
+     */
+    private final Map<String, RpcMethod[]> methods = new HashMap<String, RpcMethod[]>();
+
+    private ServerRpcDispatcher(Class<?> rpcInterface) {
+        for (Method method : rpcInterface.getMethods()) {
+            int parameterCount = method.getParameterTypes().length;
+            RpcMethod[] overloads = methods.get(method.getName());
+            if (overloads == null || overloads.length <= parameterCount) {
+                RpcMethod[] newOverloads = new RpcMethod[parameterCount + 1];
+                if (overloads != null) {
+                    System.arraycopy(overloads, 0, newOverloads, 0,
+                            overloads.length);
+                }
+                overloads = newOverloads;
+                methods.put(method.getName(), overloads);
+            }
+            // The first matching method is used, as before
+            if (overloads[parameterCount] == null) {
+                overloads[parameterCount] = new RpcMethod(method);
+            }
+        }
+    }
+
+    /**
+     * Gets the dispatcher for an RPC interface, creating it if necessary.
+     * 
+     * @param rpcInterface
+     *            the RPC interface
+     * @return the dispatcher for the interface
+     */
+    static ServerRpcDispatcher get(Class<?> rpcInterface) {
+        ServerRpcDispatcher dispatcher = dispatchers.get(rpcInterface);
+        if (dispatcher == null) {
+            // Created at most a few times concurrently, all equivalent
+            dispatcher = new ServerRpcDispatcher(rpcInterface);
+            dispatchers.put(rpcInterface, dispatcher);
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Finds the method with the given name and number of parameters.
+     * 
+     * @param methodName
+     *            the name of the method
+     * @param parameterCount
+     *            the number of parameters
+     * @return the method, or <code>null</code> if there is no such method
+     */
+    RpcMethod getMethod(String methodName, int parameterCount) {
+        RpcMethod[] overloads = methods.get(methodName);
+        if (overloads == null || parameterCount < 0
+                || parameterCount >= overloads.length) {
+            return null;
+        }
+        return overloads[parameterCount];
+    }
+}
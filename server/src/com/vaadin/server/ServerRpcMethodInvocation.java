@@ -16,18 +16,14 @@
 package com.vaadin.server;
 
 import java.lang.reflect.Method;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.lang.reflect.Type;
 
 import com.vaadin.shared.communication.MethodInvocation;
 import com.vaadin.shared.communication.ServerRpc;
 
 public class ServerRpcMethodInvocation extends MethodInvocation {
 
-    private static final Map<String, Method> invocationMethodCache = new ConcurrentHashMap<String, Method>(
-            128, 0.75f, 1);
-
-    private final Method method;
+    private final ServerRpcDispatcher.RpcMethod rpcMethod;
 
     private final Class<? extends ServerRpc> interfaceClass;
 
@@ -39,8 +35,13 @@ public class ServerRpcMethodInvocation extends MethodInvocation {
         assert ServerRpc.class.isAssignableFrom(interfaceClass);
         this.interfaceClass = interfaceClass;
 
-        method = findInvocationMethod(interfaceClass, methodName,
-                parameterCount);
+        rpcMethod = ServerRpcDispatcher.get(interfaceClass).getMethod(
+                methodName, parameterCount);
+        if (rpcMethod == null) {
+            throw new IllegalStateException("Can't find method " + methodName
+                    + " with " + parameterCount + " parameters in "
+                    + interfaceClass.getName());
+        }
     }
 
     public Class<? extends ServerRpc> getInterfaceClass() {
@@ -48,65 +49,20 @@ public class ServerRpcMethodInvocation extends MethodInvocation {
     }
 
     public Method getMethod() {
-        return method;
+        return rpcMethod.getMethod();
     }
 
     /**
-     * Tries to find the method from the cache or alternatively by invoking
-     * {@link #doFindInvocationMethod(Class, String, int)} and updating the
-     * cache.
+     * Gets the generic parameter types of the invoked method, as given by
+     * {@link Method#getGenericParameterTypes()}. The types are resolved once
+     * per method and the returned array is shared, so it must not be
+     * modified.
      * 
-     * @param targetType
-     * @param methodName
-     * @param parameterCount
-     * @return
+     * @return the generic parameter types of the method
+     * @since 7.2
      */
-    private Method findInvocationMethod(Class<?> targetType, String methodName,
-            int parameterCount) {
-        // TODO currently only using method name and number of parameters as the
-        // signature
-        String signature = targetType.getName() + "." + methodName + "("
-                + parameterCount;
-        Method invocationMethod = invocationMethodCache.get(signature);
-
-        if (invocationMethod == null) {
-            invocationMethod = doFindInvocationMethod(targetType, methodName,
-                    parameterCount);
-
-            if (invocationMethod != null) {
-                invocationMethodCache.put(signature, invocationMethod);
-            }
-        }
-
-        if (invocationMethod == null) {
-            throw new IllegalStateException("Can't find method " + methodName
-                    + " with " + parameterCount + " parameters in "
-                    + targetType.getName());
-        }
-
-        return invocationMethod;
-    }
-
-    /**
-     * Tries to find the method from the class by looping through available
-     * methods.
-     * 
-     * @param targetType
-     * @param methodName
-     * @param parameterCount
-     * @return
-     */
-    private Method doFindInvocationMethod(Class<?> targetType,
-            String methodName, int parameterCount) {
-        Method[] methods = targetType.getMethods();
-        for (Method method : methods) {
-            Class<?>[] parameterTypes = method.getParameterTypes();
-            if (method.getName().equals(methodName)
-                    && parameterTypes.length == parameterCount) {
-                return method;
-            }
-        }
-        return null;
+    public Type[] getGenericParameterTypes() {
+        return rpcMethod.getGenericParameterTypes();
     }
 
 }
@@ -127,6 +127,45 @@ public class ServletPortletHelper implements Serializable {
         return hasPathPrefix(request, ApplicationConstants.PUSH_PATH + '/');
     }
 
+    /**
+     * Checks whether an Accept-Encoding header allows a gzip compressed
+     * response, i.e. lists gzip or * without a zero quality value.
+     * 
+     * @param acceptEncoding
+     *            the value of the Accept-Encoding header, or <code>null</code>
+     *            if there is no such header
+     * @return <code>true</code> if gzip is accepted, <code>false</code>
+     *         otherwise
+     * @since 7.2
+     */
+    public static boolean isGzipAccepted(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+            if (accepted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static void initDefaultUIProvider(VaadinSession session,
             VaadinService vaadinService) throws ServiceException {
         String uiProperty = vaadinService.getDeploymentConfiguration()
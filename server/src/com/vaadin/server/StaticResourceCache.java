@@ -0,0 +1,573 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A bounded in-memory cache of static resources served by
+ * {@link VaadinServlet} from the VAADIN directory. The cache keeps the
+ * modification time, length and ETag of each resource so that conditional
+ * requests can be answered without opening the resource, and keeps the
+ * contents of small resources in memory together with a gzip compressed
+ * variant.
+ * <p>
+ * The total size of the contents kept in memory is bounded, evicting the least
+ * recently used resources first. Resources larger than an eighth of the cache
+ * are never kept in memory but are read from their original location, using
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} for
+ * resources in the file system. Resources in the file system, including their
+ * precompressed <code>.gz</code> variants, are checked for modifications
+ * whenever they are served, while resources in JAR files are assumed not to
+ * change while the application is running.
+ * 
+ * @see Constants#SERVLET_PARAMETER_STATIC_RESOURCE_CACHE_SIZE
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class StaticResourceCache implements Serializable {
+
+    /*
+     * Resources smaller than this are not compressed on the fly since the
+     * savings would not cover the overhead.
+     */
+    private static final int MIN_COMPRESSED_SIZE = 256;
+
+    // Approximate memory used by a resource in addition to its contents
+    private static final int ENTRY_OVERHEAD = 256;
+
+    /**
+     * The contents of a resource in one encoding, either kept in memory or
+     * read from a file or an URL when needed.
+     */
+    private static class Content implements Serializable {
+        private final byte[] bytes;
+        private final File file;
+        private final URL url;
+        private final long length;
+
+        private Content(byte[] bytes) {
+            this.bytes = bytes;
+            file = null;
+            url = null;
+            length = bytes.length;
+        }
+
+        private Content(File file, URL url, long length) {
+            bytes = null;
+            this.file = file;
+            this.url = url;
+            this.length = length;
+        }
+
+        private void write(OutputStream out, long start, long count)
+                throws IOException {
+            if (bytes != null) {
+                out.write(bytes, (int) start, (int) count);
+            } else if (file != null) {
+                transferFile(out, start, count);
+            } else {
+                copyUrl(out, start, count);
+            }
+        }
+
+        private void transferFile(OutputStream out, long start, long count)
+                throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = start;
+                long end = start + count;
+                while (position < end) {
+                    long transferred = channel.transferTo(position, end
+                            - position, target);
+                    if (transferred <= 0) {
+                        throw new IOException("Unexpected end of file "
+                                + file);
+                    }
+                    position += transferred;
+                }
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+
+        private void copyUrl(OutputStream out, long start, long count)
+                throws IOException {
+            InputStream in = url.openStream();
+            try {
+                long skipped = 0;
+                while (skipped < start) {
+                    long n = in.skip(start - skipped);
+                    if (n <= 0) {
+                        throw new IOException("Unexpected end of resource "
+                                + url);
+                    }
+                    skipped += n;
+                }
+                byte[] buffer = new byte[Constants.DEFAULT_BUFFER_SIZE];
+                long remaining = count;
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0,
+                            (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new IOException("Unexpected end of resource "
+                                + url);
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        private int getMemorySize() {
+            return bytes == null ? 0 : bytes.length;
+        }
+    }
+
+    /**
+     * A static resource with precomputed response headers.
+     * 
+     * @since 7.2
+     */
+    public static class StaticResource implements Serializable {
+        private final URL url;
+        private final File file;
+        private final long lastModified;
+        private final Content content;
+        private final Content gzipContent;
+        private final File gzipFile;
+        private final long gzipLastModified;
+        private final String eTag;
+
+        private StaticResource(URL url, File file, long lastModified,
+                Content content, Content gzipContent, File gzipFile,
+                long gzipLastModified) {
+            this.url = url;
+            this.file = file;
+            this.lastModified = lastModified;
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.gzipFile = gzipFile;
+            this.gzipLastModified = gzipLastModified;
+            eTag = "\"" + Long.toHexString(lastModified) + "-"
+                    + Long.toHexString(content.length) + "\"";
+        }
+
+        /**
+         * Gets the URL from which the resource was loaded.
+         * 
+         * @return the URL of the resource
+         */
+        public URL getURL() {
+            return url;
+        }
+
+        /**
+         * Gets the time when the resource was last modified, truncated to
+         * whole seconds as in HTTP date headers.
+         * 
+         * @return the last modification time in milliseconds, or 0 if not
+         *         known
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Checks whether a gzip compressed variant of the resource is
+         * available, either as a precompressed <code>.gz</code> file next to
+         * the resource or compressed when the resource was cached.
+         * 
+         * @return <code>true</code> if there is a compressed variant,
+         *         <code>false</code> otherwise
+         */
+        public boolean isGzipAvailable() {
+            return gzipContent != null;
+        }
+
+        /**
+         * Gets the length of the resource in bytes.
+         * 
+         * @param gzip
+         *            <code>true</code> to get the length of the gzip
+         *            compressed variant, <code>false</code> for the resource
+         *            itself
+         * @return the length in bytes
+         */
+        public long getLength(boolean gzip) {
+            return getContent(gzip).length;
+        }
+
+        /**
+         * Gets the entity tag of the resource. The compressed variant has an
+         * entity tag of its own.
+         * 
+         * @param gzip
+         *            <code>true</code> to get the entity tag of the gzip
+         *            compressed variant, <code>false</code> for the resource
+         *            itself
+         * @return the quoted entity tag
+         */
+        public String getETag(boolean gzip) {
+            if (gzip) {
+                return eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+            }
+            return eTag;
+        }
+
+        /**
+         * Writes a range of the resource to an output stream.
+         * 
+         * @param out
+         *            the output stream to write to
+         * @param gzip
+         *            <code>true</code> to write the gzip compressed variant,
+         *            <code>false</code> to write the resource itself
+         * @param start
+         *            the index of the first byte to write
+         * @param count
+         *            the number of bytes to write
+         * @throws IOException
+         *             if reading the resource or writing to the stream fails
+         */
+        public void write(OutputStream out, boolean gzip, long start,
+                long count) throws IOException {
+            getContent(gzip).write(out, start, count);
+        }
+
+        private Content getContent(boolean gzip) {
+            if (gzip) {
+                if (gzipContent == null) {
+                    throw new IllegalStateException(
+                            "No compressed variant available");
+                }
+                return gzipContent;
+            }
+            return content;
+        }
+
+        private boolean isModified() {
+            if (gzipFile != null
+                    && (gzipFile.lastModified() != gzipLastModified || gzipFile
+                            .length() != gzipContent.length)) {
+                // The precompressed variant has been regenerated or removed
+                return true;
+            }
+            if (file == null) {
+                return false;
+            }
+            long fileModified = file.lastModified();
+            return fileModified - fileModified % 1000 != lastModified
+                    || file.length() != content.length;
+        }
+
+        private int getMemorySize() {
+            int size = ENTRY_OVERHEAD + content.getMemorySize();
+            if (gzipContent != null) {
+                size += gzipContent.getMemorySize();
+            }
+            return size;
+        }
+    }
+
+    private final long maxSize;
+    private long size = 0;
+
+    /*
+     * Resources in least recently used order. All access is synchronized on
+     * the map.
+     */
+    private final LinkedHashMap<String, StaticResource> resources = new LinkedHashMap<String, StaticResource>(
+            16, 0.75f, true);
+
+    /**
+     * Creates a new static resource cache.
+     * 
+     * @param maxSize
+     *            the maximum number of bytes to keep in memory
+     */
+    public StaticResourceCache(long maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum size must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the maximum number of bytes kept in memory by this cache.
+     * 
+     * @return the maximum size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the approximate number of bytes currently kept in memory.
+     * 
+     * @return the size of the cached resources in bytes
+     */
+    public long getSize() {
+        synchronized (resources) {
+            return size;
+        }
+    }
+
+    /**
+     * Gets a cached resource.
+     * 
+     * @param filename
+     *            the name of the requested resource
+     * @return the cached resource, or <code>null</code> if the resource is
+     *         not cached or has been modified since it was cached
+     */
+    public StaticResource get(String filename) {
+        StaticResource resource;
+        synchronized (resources) {
+            resource = resources.get(filename);
+        }
+        if (resource != null && resource.isModified()) {
+            remove(filename);
+            return null;
+        }
+        return resource;
+    }
+
+    /**
+     * Loads a resource and adds it to the cache.
+     * 
+     * @param filename
+     *            the name of the requested resource
+     * @param url
+     *            the URL of the resource
+     * @param gzipUrl
+     *            the URL of a precompressed variant of the resource, or
+     *            <code>null</code> if there is none
+     * @param mimeType
+     *            the MIME type of the resource, used for deciding whether to
+     *            compress it, or <code>null</code> if not known
+     * @return the loaded resource
+     * @throws IOException
+     *             if the resource cannot be read
+     */
+    public StaticResource load(String filename, URL url, URL gzipUrl,
+            String mimeType) throws IOException {
+        long maxContentSize = maxSize / 8;
+        File file = toFile(url);
+        URLConnection connection = url.openConnection();
+        long lastModified;
+        long length;
+        Content content;
+        InputStream in = connection.getInputStream();
+        try {
+            lastModified = connection.getLastModified();
+            length = connection.getContentLength();
+            if (length < 0 || length <= maxContentSize) {
+                byte[] bytes = read(in, maxContentSize);
+                if (bytes != null) {
+                    length = bytes.length;
+                    content = new Content(bytes);
+                } else {
+                    content = null;
+                }
+            } else {
+                content = null;
+            }
+        } finally {
+            // Explicitly close the input stream to prevent it from remaining
+            // hanging http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=4257700
+            in.close();
+        }
+        if (content == null) {
+            if (length < 0) {
+                length = file != null ? file.length() : countBytes(url);
+            }
+            content = new Content(file, url, length);
+        }
+        // Milliseconds are not included in HTTP date headers
+        lastModified -= lastModified % 1000;
+
+        Content gzipContent = null;
+        File gzipFile = null;
+        long gzipLastModified = 0;
+        if (gzipUrl != null) {
+            gzipFile = toFile(gzipUrl);
+            if (gzipFile != null) {
+                // Before reading, so that changes while reading are noticed
+                gzipLastModified = gzipFile.lastModified();
+            }
+            gzipContent = loadGzipVariant(gzipUrl, gzipFile, maxContentSize);
+        } else if (content.bytes != null && isCompressible(mimeType)) {
+            gzipContent = compress(content.bytes);
+        }
+
+        StaticResource resource = new StaticResource(url, file, lastModified,
+                content, gzipContent, gzipFile, gzipLastModified);
+        put(filename, resource);
+        return resource;
+    }
+
+    /**
+     * Removes a resource from the cache.
+     * 
+     * @param filename
+     *            the name of the resource to remove
+     */
+    public void remove(String filename) {
+        synchronized (resources) {
+            StaticResource removed = resources.remove(filename);
+            if (removed != null) {
+                size -= removed.getMemorySize();
+            }
+        }
+    }
+
+    /**
+     * Removes all resources from the cache.
+     */
+    public void clear() {
+        synchronized (resources) {
+            resources.clear();
+            size = 0;
+        }
+    }
+
+    private void put(String filename, StaticResource resource) {
+        synchronized (resources) {
+            StaticResource previous = resources.put(filename, resource);
+            if (previous != null) {
+                size -= previous.getMemorySize();
+            }
+            size += resource.getMemorySize();
+            Iterator<StaticResource> i = resources.values().iterator();
+            while (size > maxSize && i.hasNext()) {
+                StaticResource eldest = i.next();
+                if (eldest != resource) {
+                    size -= eldest.getMemorySize();
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    private static Content loadGzipVariant(URL gzipUrl, File gzipFile,
+            long maxContentSize) throws IOException {
+        InputStream in = gzipUrl.openStream();
+        try {
+            byte[] bytes = read(in, maxContentSize);
+            if (bytes != null) {
+                return new Content(bytes);
+            }
+        } finally {
+            in.close();
+        }
+        long length = gzipFile != null ? gzipFile.length()
+                : countBytes(gzipUrl);
+        return new Content(gzipFile, gzipUrl, length);
+    }
+
+    private static Content compress(byte[] bytes) throws IOException {
+        if (bytes.length < MIN_COMPRESSED_SIZE) {
+            return null;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+                bytes.length / 4);
+        GZIPOutputStream out = new GZIPOutputStream(compressed);
+        out.write(bytes);
+        out.close();
+        if (compressed.size() >= bytes.length) {
+            return null;
+        }
+        return new Content(compressed.toByteArray());
+    }
+
+    private static boolean isCompressible(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        return mimeType.startsWith("text/") || mimeType.contains("javascript")
+                || mimeType.contains("json") || mimeType.contains("xml");
+    }
+
+    /*
+     * Reads a stream into memory, returns null if the stream is longer than
+     * the given maximum.
+     */
+    private static byte[] read(InputStream in, long max) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[Constants.DEFAULT_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            if (out.size() + read > max) {
+                return null;
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static long countBytes(URL url) throws IOException {
+        InputStream in = url.openStream();
+        try {
+            long count = 0;
+            long skipped;
+            while ((skipped = in.skip(Long.MAX_VALUE)) > 0) {
+                count += skipped;
+            }
+            while (in.read() >= 0) {
+                count++;
+            }
+            return count;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -54,6 +54,7 @@ import com.vaadin.annotations.PreserveOnRefresh;
 import com.vaadin.event.EventRouter;
 import com.vaadin.server.VaadinSession.FutureAccess;
 import com.vaadin.server.VaadinSession.State;
+import com.vaadin.server.communication.CoalescedPushScheduler;
 import com.vaadin.server.communication.FileUploadHandler;
 import com.vaadin.server.communication.HeartbeatHandler;
 import com.vaadin.server.communication.PublishedFileHandler;
@@ -129,6 +130,8 @@ public abstract class VaadinService implements Serializable {
 
     private Iterable<RequestHandler> requestHandlers;
 
+    private final CoalescedPushScheduler coalescedPushScheduler = new CoalescedPushScheduler();
+
     /**
      * Keeps track of whether a warning about missing push support has already
      * been logged. This is used to avoid spamming the log with the same message
@@ -1390,6 +1393,11 @@ public abstract class VaadinService implements Serializable {
             throws ServiceException {
         requestStart(request, response);
 
+        if (ServletPortletHelper.isHeartbeatRequest(request)
+                && handleHeartbeatRequestWithoutLock(request, response)) {
+            return;
+        }
+
         VaadinSession vaadinSession = null;
         try {
             // Find out the service session this request is related to
@@ -1417,6 +1425,80 @@ public abstract class VaadinService implements Serializable {
         }
     }
 
+    /**
+     * Handles a heartbeat request for an existing session without waiting for
+     * the session lock, so that heartbeats are not delayed by other requests
+     * or tasks holding the lock. Heartbeat requests that can not be handled
+     * this way, e.g. because the session has expired or has just been
+     * deserialized, are handled as any other request.
+     * 
+     * @param request
+     *            the heartbeat request
+     * @param response
+     *            the response
+     * @return true if the request was handled, otherwise false
+     * @throws ServiceException
+     *             if writing the response fails
+     */
+    private boolean handleHeartbeatRequestWithoutLock(VaadinRequest request,
+            VaadinResponse response) throws ServiceException {
+        WrappedSession wrappedSession = request.getWrappedSession(false);
+        if (wrappedSession == null) {
+            return false;
+        }
+        try {
+            VaadinSession session;
+            try {
+                session = VaadinSession.getForSessionWithoutLock(this,
+                        wrappedSession);
+            } catch (IllegalStateException e) {
+                // Session invalidated
+                return false;
+            }
+            if (session == null) {
+                return false;
+            }
+            for (RequestHandler handler : getRequestHandlers()) {
+                if (handler instanceof HeartbeatHandler) {
+                    if (!handler.handleRequest(session, request, response)) {
+                        return false;
+                    }
+                    heartbeatRequestEnd(request, session);
+                    CurrentInstance.clearAll();
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            CurrentInstance.clearAll();
+            throw new ServiceException(e);
+        }
+    }
+
+    /**
+     * Does the work of {@link #requestEnd} for a heartbeat request handled
+     * without locking the session. Inactive and closed UIs are cleaned up once
+     * the session lock is available, without making the heartbeat request
+     * wait for it.
+     * 
+     * @param request
+     *            the heartbeat request
+     * @param session
+     *            the session of the request
+     */
+    private void heartbeatRequestEnd(VaadinRequest request,
+            final VaadinSession session) {
+        final long duration = (System.nanoTime() - (Long) request
+                .getAttribute(REQUEST_START_TIME_ATTRIBUTE)) / 1000000;
+        session.access(new Runnable() {
+            @Override
+            public void run() {
+                cleanupSession(session);
+                session.setLastRequestDuration(duration);
+            }
+        });
+    }
+
     private void handleExceptionDuringRequest(VaadinRequest request,
             VaadinResponse response, VaadinSession vaadinSession, Throwable t)
             throws ServiceException {
@@ -1852,6 +1934,21 @@ public abstract class VaadinService implements Serializable {
      */
     public void destroy() {
         eventRouter.fireEvent(new ServiceDestroyEvent(this));
+        coalescedPushScheduler.shutdown();
+    }
+
+    /**
+     * Gets the scheduler that runs the deferred pushes of the UIs of this
+     * service that use
+     * {@link com.vaadin.shared.communication.PushMode#COALESCED coalesced
+     * push}. The scheduler is shut down when this service is destroyed.
+     * 
+     * @return the coalesced push scheduler, not <code>null</code>
+     * 
+     * @since 7.2
+     */
+    public CoalescedPushScheduler getCoalescedPushScheduler() {
+        return coalescedPushScheduler;
     }
 
 }
@@ -42,7 +42,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import com.vaadin.annotations.VaadinServletConfiguration;
 import com.vaadin.annotations.VaadinServletConfiguration.InitParameterName;
-import com.vaadin.sass.internal.ScssStylesheet;
+import com.vaadin.server.StaticResourceCache.StaticResource;
 import com.vaadin.server.communication.ServletUIInitHandler;
 import com.vaadin.shared.JsonConstants;
 import com.vaadin.ui.UI;
@@ -53,6 +53,10 @@ public class VaadinServlet extends HttpServlet implements Constants {
 
     private VaadinServletService servletService;
 
+    private StaticResourceCache staticResourceCache;
+
+    private final ScssCache scssCache = new ScssCache();
+
     /**
      * Called by the servlet container to indicate to a servlet that the servlet
      * is being placed into service.
@@ -100,6 +104,8 @@ public class VaadinServlet extends HttpServlet implements Constants {
         // Sets current service even though there are no request and response
         servletService.setCurrentInstances(null, null);
 
+        staticResourceCache = createStaticResourceCache(deploymentConfiguration);
+
         servletInitialized();
 
         CurrentInstance.clearAll();
@@ -531,13 +537,6 @@ public class VaadinServlet extends HttpServlet implements Constants {
             Arrays.asList(new Character[] { '&', '"', '\'', '<', '>', '(', ')',
                     ';' }));
 
-    /**
-     * Mutex for preventing to scss compilations to take place simultaneously.
-     * This is a workaround needed as the scss compiler currently is not thread
-     * safe (#10292).
-     */
-    private static final Object SCSS_MUTEX = new Object();
-
     /**
      * Returns the default theme. Must never return null.
      * 
@@ -634,6 +633,11 @@ public class VaadinServlet extends HttpServlet implements Constants {
             throws IOException, ServletException {
 
         final ServletContext sc = getServletContext();
+        if (staticResourceCache != null
+                && serveCachedStaticResource(filename, request, response)) {
+            return;
+        }
+
         URL resourceUrl = findResourceURL(filename, sc);
 
         if (resourceUrl == null) {
@@ -664,6 +668,17 @@ public class VaadinServlet extends HttpServlet implements Constants {
             return;
         }
 
+        if (staticResourceCache != null) {
+            URL gzipUrl = findResourceURL(filename + ".gz", sc);
+            if (gzipUrl != null && !isAllowedVAADINResourceUrl(request, gzipUrl)) {
+                gzipUrl = null;
+            }
+            StaticResource resource = staticResourceCache.load(filename,
+                    resourceUrl, gzipUrl, sc.getMimeType(filename));
+            writeStaticResource(filename, resource, request, response);
+            return;
+        }
+
         // Find the modification timestamp
         long lastModifiedTime = 0;
         URLConnection connection = null;
@@ -723,6 +738,235 @@ public class VaadinServlet extends HttpServlet implements Constants {
         writeStaticResourceResponse(request, response, resourceUrl);
     }
 
+    /**
+     * Creates the cache used for serving static resources from the VAADIN
+     * directory. The default implementation creates a cache if the
+     * {@value Constants#SERVLET_PARAMETER_STATIC_RESOURCE_CACHE_SIZE}
+     * deployment configuration parameter is set to a positive number of bytes.
+     * <p>
+     * When a cache is used, {@link #writeStaticResourceResponse} is not
+     * invoked for serving static resources.
+     * 
+     * @param deploymentConfiguration
+     *            the deployment configuration of this servlet
+     * @return the static resource cache to use, or <code>null</code> to read
+     *         the resources for each request
+     * @since 7.2
+     */
+    protected StaticResourceCache createStaticResourceCache(
+            DeploymentConfiguration deploymentConfiguration) {
+        String size = deploymentConfiguration.getApplicationOrSystemProperty(
+                Constants.SERVLET_PARAMETER_STATIC_RESOURCE_CACHE_SIZE, "0");
+        try {
+            long maxSize = Long.parseLong(size.trim());
+            if (maxSize > 0) {
+                return new StaticResourceCache(maxSize);
+            }
+        } catch (NumberFormatException e) {
+            getLogger().log(Level.WARNING, "Invalid value {0} for {1}",
+                    new Object[] { size,
+                            Constants.SERVLET_PARAMETER_STATIC_RESOURCE_CACHE_SIZE });
+        }
+        return null;
+    }
+
+    /**
+     * Gets the cache used for serving static resources from the VAADIN
+     * directory.
+     * 
+     * @return the static resource cache, or <code>null</code> if static
+     *         resources are not cached
+     * @since 7.2
+     */
+    protected StaticResourceCache getStaticResourceCache() {
+        return staticResourceCache;
+    }
+
+    private boolean serveCachedStaticResource(String filename,
+            HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        StaticResource resource = staticResourceCache.get(filename);
+        if (resource == null) {
+            return false;
+        }
+        if (!getService().getDeploymentConfiguration().isProductionMode()) {
+            // Resources may be added during development, check that the
+            // resource would still be found in the same place
+            URL resourceUrl = findResourceURL(filename, getServletContext());
+            if (resourceUrl == null
+                    || !resourceUrl.toExternalForm().equals(
+                            resource.getURL().toExternalForm())) {
+                staticResourceCache.remove(filename);
+                return false;
+            }
+        }
+        writeStaticResource(filename, resource, request, response);
+        return true;
+    }
+
+    private void writeStaticResource(String filename,
+            StaticResource resource, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        boolean gzip = resource.isGzipAvailable()
+                && ServletPortletHelper.isGzipAccepted(request
+                        .getHeader("Accept-Encoding"));
+        String eTag = resource.getETag(gzip);
+        long lastModified = resource.getLastModified();
+
+        if (resource.isGzipAvailable()) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        response.setHeader("ETag", eTag);
+        if (lastModified > 0) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+        String cacheControl = "public, max-age=0, must-revalidate";
+        int resourceCacheTime = getCacheTime(filename);
+        if (resourceCacheTime > 0) {
+            cacheControl = "max-age=" + String.valueOf(resourceCacheTime);
+        }
+        response.setHeader("Cache-Control", cacheControl);
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null ? matchesETag(ifNoneMatch, eTag)
+                : browserHasNewestVersion(request, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        final String mimetype = getServletContext().getMimeType(filename);
+        if (mimetype != null) {
+            response.setContentType(mimetype);
+        }
+
+        long length = resource.getLength(gzip);
+        long start = 0;
+        long count = length;
+        if (gzip) {
+            // Ranges of the compressed variant are not supported
+            response.setHeader("Content-Encoding", "gzip");
+        } else {
+            response.setHeader("Accept-Ranges", "bytes");
+            long[] range = getRequestedRange(request, eTag, lastModified,
+                    length);
+            if (range == INVALID_RANGE) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.setStatus(REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            } else if (range != null) {
+                start = range[0];
+                count = range[1] - range[0] + 1;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + range[0] + "-"
+                        + range[1] + "/" + length);
+            }
+        }
+        if (count <= Integer.MAX_VALUE) {
+            response.setContentLength((int) count);
+        } else {
+            response.setHeader("Content-Length", String.valueOf(count));
+        }
+
+        try {
+            resource.write(response.getOutputStream(), gzip, start, count);
+        } catch (FileNotFoundException e) {
+            // Removed after it was cached
+            staticResourceCache.remove(filename);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    private static boolean matchesETag(String header, String eTag) {
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long[] getRequestedRange(HttpServletRequest request, String eTag,
+            long lastModified, long length) {
+        String range = request.getHeader("Range");
+        if (range == null) {
+            return null;
+        }
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange != null && !ifRange.equals(eTag)) {
+            long ifRangeDate;
+            try {
+                ifRangeDate = request.getDateHeader("If-Range");
+            } catch (IllegalArgumentException e) {
+                ifRangeDate = -1;
+            }
+            if (lastModified <= 0 || ifRangeDate != lastModified) {
+                // The resource has changed, send all of it
+                return null;
+            }
+        }
+        return parseByteRange(range, length);
+    }
+
+    /*
+     * Status code 416, which is missing from the servlet 2.4 API.
+     */
+    private static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+    static final long[] INVALID_RANGE = new long[0];
+
+    /**
+     * Parses the value of a Range header. Only a single byte range is
+     * supported, requests for multiple ranges are served as a whole.
+     * 
+     * @param header
+     *            the value of the Range header
+     * @param length
+     *            the length of the resource
+     * @return the first and last byte of the range, <code>null</code> if the
+     *         whole resource should be sent or {@link #INVALID_RANGE} if the
+     *         range cannot be satisfied
+     */
+    static long[] parseByteRange(String header, long length) {
+        header = header.trim();
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        long first;
+        long last;
+        try {
+            String firstPart = spec.substring(0, dash).trim();
+            String lastPart = spec.substring(dash + 1).trim();
+            if (firstPart.length() == 0) {
+                // Suffix range, the last n bytes
+                long suffix = Long.parseLong(lastPart);
+                if (suffix <= 0) {
+                    return INVALID_RANGE;
+                }
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            } else {
+                first = Long.parseLong(firstPart);
+                last = lastPart.length() == 0 ? length - 1 : Math.min(
+                        Long.parseLong(lastPart), length - 1);
+                if (last < first) {
+                    return first < length ? null : INVALID_RANGE;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (first < 0 || first >= length) {
+            return INVALID_RANGE;
+        }
+        return new long[] { first, last };
+    }
+
     /**
      * Calculates the cache lifetime for the given filename in seconds. By
      * default filenames containing ".nocache." return 0, filenames containing
@@ -859,45 +1103,19 @@ public class VaadinServlet extends HttpServlet implements Constants {
             return true;
         }
 
-        synchronized (SCSS_MUTEX) {
-            String realFilename = sc.getRealPath(scssFilename);
-            ScssStylesheet scss = ScssStylesheet.get(realFilename);
-            if (scss == null) {
-                // Not a file in the file system (WebContent directory). Use the
-                // identifier directly (VAADIN/themes/.../styles.css) so
-                // ScssStylesheet will try using the class loader.
-                if (scssFilename.startsWith("/")) {
-                    scssFilename = scssFilename.substring(1);
-                }
-
-                scss = ScssStylesheet.get(scssFilename);
-            }
-
-            if (scss == null) {
-                getLogger()
-                        .log(Level.WARNING,
-                                "Scss file {0} exists but ScssStylesheet was not able to find it",
-                                scssFilename);
-                return false;
-            }
-            try {
-                getLogger().log(Level.FINE, "Compiling {0} for request to {1}",
-                        new Object[] { realFilename, filename });
-                scss.compile();
-            } catch (Exception e) {
-                getLogger().log(Level.WARNING, "Scss compilation failed", e);
-                return false;
-            }
+        String realFilename = sc.getRealPath(scssFilename);
+        String css = scssCache.getCss(scssFilename, realFilename, scssUrl);
+        if (css == null) {
+            return false;
+        }
 
-            // This is for development mode only so instruct the browser to
-            // never
-            // cache it
-            response.setHeader("Cache-Control", "no-cache");
-            final String mimetype = getService().getMimeType(filename);
-            writeResponse(response, mimetype, scss.printState());
+        // This is for development mode only so instruct the browser to never
+        // cache it
+        response.setHeader("Cache-Control", "no-cache");
+        final String mimetype = getService().getMimeType(filename);
+        writeResponse(response, mimetype, css);
 
-            return true;
-        }
+        return true;
     }
 
     /**
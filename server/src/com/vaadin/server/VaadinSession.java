@@ -32,6 +32,7 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -232,7 +233,11 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
     private LinkedList<RequestHandler> requestHandlers = new LinkedList<RequestHandler>();
 
     private int nextUIId = 0;
-    private Map<Integer, UI> uIs = new HashMap<Integer, UI>();
+    /*
+     * Concurrent so that heartbeat requests can find their UI without locking
+     * the session
+     */
+    private Map<Integer, UI> uIs = new ConcurrentHashMap<Integer, UI>();
 
     private final Map<String, Integer> embedIdMap = new HashMap<String, Integer>();
 
@@ -497,6 +502,36 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         session.removeAttribute(getSessionAttributeName(service));
     }
 
+    /**
+     * Retrieves a VaadinSession stored in the given HTTP session without
+     * locking it. Unlike {@link #getForSession(VaadinService, WrappedSession)},
+     * this does not prepare the session for being used by the current thread,
+     * so only the thread safe parts of the returned session may be used.
+     * <p>
+     * A session that has not yet been prepared by
+     * {@link #getForSession(VaadinService, WrappedSession)}, e.g. one that has
+     * just been deserialized, has no service or lock and is not returned.
+     * 
+     * @param service
+     *            the service associated with the session
+     * @param underlyingSession
+     *            the HTTP session
+     * @return the Vaadin session, or <code>null</code> if there is none or if
+     *         it must first be retrieved with the session locked
+     */
+    static VaadinSession getForSessionWithoutLock(VaadinService service,
+            WrappedSession underlyingSession) {
+        Object attribute = underlyingSession
+                .getAttribute(getSessionAttributeName(service));
+        if (attribute instanceof VaadinSession) {
+            VaadinSession vaadinSession = (VaadinSession) attribute;
+            if (vaadinSession.service != null && vaadinSession.lock != null) {
+                return vaadinSession;
+            }
+        }
+        return null;
+    }
+
     /**
      * Retrieves the name of the attribute used for storing a VaadinSession for
      * the given service.
@@ -804,6 +839,24 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         return uIs.get(uiId);
     }
 
+    /**
+     * Returns a UI with the given id without requiring the session to be
+     * locked. The state of the returned UI must not be accessed without
+     * locking the session, except for thread safe methods such as
+     * {@link UI#setLastHeartbeatTimestamp(long)}.
+     * <p>
+     * This is meant for framework internal use.
+     * </p>
+     * 
+     * @param uiId
+     *            The UI id
+     * @return The UI with the given id or null if not found
+     * @since 7.2
+     */
+    public UI getUIByIdWithoutLock(int uiId) {
+        return uIs.get(uiId);
+    }
+
     /**
      * Checks if the current thread has exclusive access to this VaadinSession
      * 
@@ -879,6 +932,17 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
         eventRouter.fireEvent(response);
     }
 
+    /**
+     * Checks whether any bootstrap listeners have been added to this session.
+     * 
+     * @return <code>true</code> if there are bootstrap listeners,
+     *         <code>false</code> otherwise
+     */
+    boolean hasBootstrapListeners() {
+        return eventRouter.hasListeners(BootstrapFragmentResponse.class)
+                || eventRouter.hasListeners(BootstrapPageResponse.class);
+    }
+
     /**
      * Called by the framework to remove an UI instance from the session because
      * it has been closed.
@@ -993,8 +1057,8 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
      * block after {@link #lock()} to ensure that the lock is always released.
      * <p>
      * For UIs in this session that have its push mode set to
-     * {@link PushMode#AUTOMATIC automatic}, pending changes will be pushed to
-     * their respective clients.
+     * {@link PushMode#AUTOMATIC automatic} or {@link PushMode#COALESCED
+     * coalesced}, pending changes will be pushed to their respective clients.
      * 
      * @see #lock()
      * @see UI#push()
@@ -1012,7 +1076,10 @@ public class VaadinSession implements HttpSessionBindingListener, Serializable {
                 getService().runPendingAccessTasks(this);
 
                 for (UI ui : getUIs()) {
-                    if (ui.getPushConfiguration().getPushMode() == PushMode.AUTOMATIC) {
+                    PushMode pushMode = ui.getPushConfiguration()
+                            .getPushMode();
+                    if (pushMode == PushMode.AUTOMATIC
+                            || pushMode == PushMode.COALESCED) {
                         Map<Class<?>, CurrentInstance> oldCurrent = CurrentInstance
                                 .setCurrent(ui);
                         try {
@@ -31,7 +31,9 @@ import java.util.logging.Logger;
 import org.atmosphere.cpr.AtmosphereResource;
 import org.atmosphere.cpr.AtmosphereResource.TRANSPORT;
 
+import com.vaadin.server.VaadinSession;
 import com.vaadin.shared.communication.PushConstants;
+import com.vaadin.shared.communication.PushMode;
 import com.vaadin.ui.UI;
 
 /**
@@ -117,12 +119,60 @@ public class AtmospherePushConnection implements PushConnection {
         CONNECTED;
     }
 
+    /**
+     * Hands a deferred push over to the session of the UI when the coalescing
+     * interval has elapsed.
+     */
+    private static class ScheduledPush implements Runnable, Serializable {
+        private final AtmospherePushConnection connection;
+
+        private ScheduledPush(AtmospherePushConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void run() {
+            VaadinSession session = connection.getUI().getSession();
+            if (session == null) {
+                connection.pushScheduled = false;
+                return;
+            }
+            session.access(new DeferredPush(connection));
+        }
+    }
+
+    /**
+     * Pushes the changes coalesced during the interval while holding the
+     * session lock.
+     */
+    private static class DeferredPush implements Runnable, Serializable {
+        private final AtmospherePushConnection connection;
+
+        private DeferredPush(AtmospherePushConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void run() {
+            connection.pushDeferred();
+        }
+    }
+
     private State state = State.DISCONNECTED;
     private UI ui;
     private AtmosphereResource resource;
     private FragmentedMessage incomingMessage;
     private Future<Object> outgoingMessage;
 
+    /* Coalesced push state, only accessed while holding the session lock */
+    private boolean pushScheduled;
+    private long lastPushTime;
+
+    /* Metrics */
+    private long messagesSent;
+    private long charactersSent;
+    private long coalescedPushes;
+
     public AtmospherePushConnection(UI ui) {
         this.ui = ui;
     }
@@ -142,6 +192,9 @@ public class AtmospherePushConnection implements PushConnection {
      *            false if it is a response to a client request.
      */
     public void push(boolean async) {
+        if (async && isConnected() && isCoalescing() && deferPush()) {
+            return;
+        }
         if (!isConnected()) {
             if (async && state != State.RESPONSE_PENDING) {
                 state = State.PUSH_PENDING;
@@ -151,14 +204,94 @@ public class AtmospherePushConnection implements PushConnection {
         } else {
             try {
                 Writer writer = new StringWriter();
+                writer.write("for(;;);[{");
                 new UidlWriter().write(getUI(), writer, false, async);
-                sendMessage("for(;;);[{" + writer.toString() + "}]");
+                writer.write("}]");
+                lastPushTime = System.currentTimeMillis();
+                sendMessage(writer.toString());
             } catch (Exception e) {
                 throw new RuntimeException("Push failed", e);
             }
         }
     }
 
+    private boolean isCoalescing() {
+        return getUI().getPushConfiguration().getPushMode() == PushMode.COALESCED;
+    }
+
+    /**
+     * Defers an asynchronous push until the coalescing interval since the
+     * previous push has elapsed.
+     * 
+     * @return true if the push was deferred, false if it should be sent
+     *         immediately
+     */
+    private boolean deferPush() {
+        if (pushScheduled) {
+            // Sent with the already scheduled push
+            coalescedPushes++;
+            return true;
+        }
+        int interval = getUI().getPushConfiguration().getCoalescingInterval();
+        long delay = lastPushTime + interval - System.currentTimeMillis();
+        if (delay <= 0) {
+            return false;
+        }
+        CoalescedPushScheduler scheduler = getUI().getSession().getService()
+                .getCoalescedPushScheduler();
+        if (!scheduler.schedule(new ScheduledPush(this), delay)) {
+            // The service is being destroyed, push right away
+            return false;
+        }
+        pushScheduled = true;
+        return true;
+    }
+
+    /**
+     * Pushes the changes made since a coalesced push was scheduled. Called
+     * with the session locked.
+     */
+    private void pushDeferred() {
+        pushScheduled = false;
+        if (getUI().getConnectorTracker().hasDirtyConnectors()) {
+            push(true);
+        }
+    }
+
+    /**
+     * Returns the number of messages sent to the client through this
+     * connection.
+     * 
+     * @return the number of messages sent
+     * @since 7.2
+     */
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+
+    /**
+     * Returns the total length of the messages sent to the client through this
+     * connection.
+     * 
+     * @return the number of characters sent
+     * @since 7.2
+     */
+    public long getCharactersSent() {
+        return charactersSent;
+    }
+
+    /**
+     * Returns the number of pushes that have been deferred and combined with
+     * another push when using {@link PushMode#COALESCED}. Each such push saves
+     * sending a separate message.
+     * 
+     * @return the number of coalesced pushes
+     * @since 7.2
+     */
+    public long getCoalescedPushes() {
+        return coalescedPushes;
+    }
+
     /**
      * Sends the given message to the current client. Cannot be called if
      * {@isConnected()} is false.
@@ -168,6 +301,8 @@ public class AtmospherePushConnection implements PushConnection {
      */
     void sendMessage(String message) {
         assert (isConnected());
+        messagesSent++;
+        charactersSent += message.length();
         // "Broadcast" the changes to the single client only
         outgoingMessage = getResource().getBroadcaster().broadcast(message,
                 getResource());
@@ -100,6 +100,60 @@ public class ClientRpcWriter implements Serializable {
         writer.write(rpcCalls.toString());
     }
 
+    /**
+     * Streams a JSON array containing all pending client RPC invocations in the
+     * given UI. Each invocation is written as soon as its parameters have been
+     * encoded instead of first collecting all invocations into one JSON array.
+     * 
+     * @param ui
+     *            The {@link UI} whose RPC calls to write.
+     * @param json
+     *            The JSON stream writer to use.
+     * @throws IOException
+     *             If the serialization fails.
+     * @since 7.2
+     */
+    public void write(UI ui, JsonStreamWriter json) throws IOException {
+
+        Collection<ClientMethodInvocation> pendingInvocations = collectPendingRpcCalls(ui
+                .getConnectorTracker().getDirtyVisibleConnectors());
+
+        json.beginArray();
+        for (ClientMethodInvocation invocation : pendingInvocations) {
+            try {
+                // Encode all parameters before writing anything so that a
+                // failure does not leave a partial invocation in the output
+                Type[] parameterTypes = invocation.getParameterTypes();
+                Object[] encodedParameters = new Object[parameterTypes.length];
+                for (int i = 0; i < parameterTypes.length; ++i) {
+                    EncodeResult encodeResult = JsonCodec.encode(
+                            invocation.getParameters()[i], null,
+                            parameterTypes[i], ui.getConnectorTracker());
+                    encodedParameters[i] = encodeResult.getEncodedValue();
+                }
+
+                json.beginArray();
+                json.value(invocation.getConnector().getConnectorId());
+                json.value(invocation.getInterfaceName());
+                json.value(invocation.getMethodName());
+                json.beginArray();
+                for (Object encodedParameter : encodedParameters) {
+                    json.value(encodedParameter);
+                }
+                json.endArray();
+                json.endArray();
+            } catch (JSONException e) {
+                throw new PaintException(
+                        "Failed to serialize RPC method call parameters for connector "
+                                + invocation.getConnector().getConnectorId()
+                                + " method " + invocation.getInterfaceName()
+                                + "." + invocation.getMethodName() + ": "
+                                + e.getMessage(), e);
+            }
+        }
+        json.endArray();
+    }
+
     /**
      * Collects all pending RPC calls from listed {@link ClientConnector}s and
      * clears their RPC queues.
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.io.Serializable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the deferred pushes of UIs using
+ * {@link com.vaadin.shared.communication.PushMode#COALESCED coalesced push}.
+ * All UIs of a service share a single daemon thread, which only hands the
+ * pushes over to the sessions of the UIs. The thread is started when the first
+ * push is deferred and stopped by {@link #shutdown()}, which
+ * {@link com.vaadin.server.VaadinService#destroy()} calls.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class CoalescedPushScheduler implements Serializable {
+
+    private transient ScheduledExecutorService executor;
+
+    private boolean shutdown = false;
+
+    private static class DaemonThreadFactory implements ThreadFactory,
+            Serializable {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Vaadin coalesced push");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Runs a task after the given delay.
+     * 
+     * @param task
+     *            the task to run
+     * @param delayMillis
+     *            the delay in milliseconds
+     * @return <code>true</code> if the task was scheduled,
+     *         <code>false</code> if the scheduler has been shut down
+     */
+    public synchronized boolean schedule(Runnable task, long delayMillis) {
+        if (shutdown) {
+            return false;
+        }
+        if (executor == null) {
+            executor = Executors
+                    .newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+        }
+        executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Stops the scheduler thread and discards the pushes that have not yet
+     * been run. No tasks are scheduled after this method has been called.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Checks whether this scheduler has been shut down.
+     * 
+     * @return <code>true</code> if {@link #shutdown()} has been called,
+     *         otherwise <code>false</code>
+     */
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+}
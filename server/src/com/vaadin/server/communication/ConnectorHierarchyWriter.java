@@ -78,4 +78,37 @@ public class ConnectorHierarchyWriter implements Serializable {
         }
         writer.write(hierarchyInfo.toString());
     }
+
+    /**
+     * Streams a JSON object containing the connector hierarchy (parent-child
+     * mappings) of the dirty connectors in the given UI without building
+     * intermediate JSON objects.
+     * 
+     * @param ui
+     *            The {@link UI} whose hierarchy to write.
+     * @param json
+     *            The JSON stream writer to use.
+     * @throws IOException
+     *             If the serialization fails.
+     * @since 7.2
+     */
+    public void write(UI ui, JsonStreamWriter json) throws IOException {
+
+        Collection<ClientConnector> dirtyVisibleConnectors = ui
+                .getConnectorTracker().getDirtyVisibleConnectors();
+
+        json.beginObject();
+        for (ClientConnector connector : dirtyVisibleConnectors) {
+            json.key(connector.getConnectorId()).beginArray();
+            for (ClientConnector child : AbstractClientConnector
+                    .getAllChildrenIterable(connector)) {
+                if (LegacyCommunicationManager
+                        .isConnectorVisibleToClient(child)) {
+                    json.value(child.getConnectorId());
+                }
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
 }
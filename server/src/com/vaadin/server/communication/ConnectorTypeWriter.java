@@ -70,4 +70,33 @@ public class ConnectorTypeWriter implements Serializable {
         }
         writer.write(connectorTypes.toString());
     }
+
+    /**
+     * Streams a JSON object containing connector-ID-to-type-ID mappings for
+     * each dirty Connector in the given UI without building intermediate JSON
+     * objects.
+     * 
+     * @param ui
+     *            The {@link UI} containing dirty connectors
+     * @param json
+     *            The JSON stream writer to use.
+     * @param target
+     *            The paint target containing the connector type IDs.
+     * @throws IOException
+     *             If the serialization fails.
+     * @since 7.2
+     */
+    public void write(UI ui, JsonStreamWriter json, PaintTarget target)
+            throws IOException {
+
+        Collection<ClientConnector> dirtyVisibleConnectors = ui
+                .getConnectorTracker().getDirtyVisibleConnectors();
+
+        json.beginObject();
+        for (ClientConnector connector : dirtyVisibleConnectors) {
+            json.key(connector.getConnectorId()).value(
+                    target.getTag(connector));
+        }
+        json.endObject();
+    }
 }
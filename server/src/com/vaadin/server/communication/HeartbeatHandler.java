@@ -43,6 +43,20 @@ import com.vaadin.ui.UI;
 public class HeartbeatHandler extends SynchronizedRequestHandler implements
         SessionExpiredHandler {
 
+    /**
+     * Handles a heartbeat request without locking the session. Recording a
+     * heartbeat only touches thread safe state, so heartbeats are not delayed
+     * by other requests holding the session lock.
+     */
+    @Override
+    public boolean handleRequest(VaadinSession session, VaadinRequest request,
+            VaadinResponse response) throws IOException {
+        if (!canHandleRequest(request)) {
+            return false;
+        }
+        return synchronizedHandleRequest(session, request, response);
+    }
+
     @Override
     protected boolean canHandleRequest(VaadinRequest request) {
         return ServletPortletHelper.isHeartbeatRequest(request);
@@ -54,11 +68,17 @@ public class HeartbeatHandler extends SynchronizedRequestHandler implements
      * If the UI is found in the session, sets it
      * {@link UI#getLastHeartbeatTimestamp() heartbeat timestamp} to the current
      * time. Otherwise, writes a HTTP Not Found error to the response.
+     * <p>
+     * Since 7.2, this method is called without locking the session.
      */
     @Override
     public boolean synchronizedHandleRequest(VaadinSession session,
             VaadinRequest request, VaadinResponse response) throws IOException {
-        UI ui = session.getService().findUI(request);
+        String uiIdString = request.getParameter(UIConstants.UI_ID_PARAMETER);
+        UI ui = null;
+        if (uiIdString != null) {
+            ui = session.getUIByIdWithoutLock(Integer.parseInt(uiIdString));
+        }
         if (ui != null) {
             ui.setLastHeartbeatTimestamp(System.currentTimeMillis());
             // Ensure that the browser does not cache heartbeat responses.
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Reads JSON values directly from a {@link Reader} in a single pass. The
+ * values are read into the same types as when parsing a string using
+ * {@link JSONObject} and {@link JSONArray}, but the input does not have to be
+ * read into a string first.
+ * <p>
+ * Objects and arrays are read as {@link JSONObject} and {@link JSONArray},
+ * strings as {@link String}, numbers as {@link Integer}, {@link Long} or
+ * {@link Double} depending on their value, booleans as {@link Boolean} and
+ * <code>null</code> as {@link JSONObject#NULL}. This class is not thread
+ * safe.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class JsonStreamReader implements Serializable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    // Number of characters read before the current buffer
+    private long offset = 0;
+
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * Creates a new JSON reader.
+     * 
+     * @param reader
+     *            the reader to read the JSON from
+     */
+    public JsonStreamReader(Reader reader) {
+        if (reader == null) {
+            throw new IllegalArgumentException("Reader cannot be null");
+        }
+        this.reader = reader;
+    }
+
+    /**
+     * Checks whether there is only whitespace left in the input.
+     * 
+     * @return <code>true</code> if there are no more values to read,
+     *         <code>false</code> otherwise
+     * @throws IOException
+     *             if reading the input fails
+     */
+    public boolean isAtEnd() throws IOException {
+        return peekNonWhitespace() == -1;
+    }
+
+    /**
+     * Reads the next value from the input.
+     * 
+     * @return the value, not <code>null</code>
+     * @throws IOException
+     *             if reading the input fails
+     * @throws JSONException
+     *             if the input is not valid JSON
+     */
+    public Object readValue() throws IOException, JSONException {
+        int c = peekNonWhitespace();
+        switch (c) {
+        case -1:
+            throw syntaxError("Unexpected end of input");
+        case '{':
+            position++;
+            return readObjectContents();
+        case '[':
+            position++;
+            return readArrayContents();
+        case '"':
+        case '\'':
+            position++;
+            return readString((char) c);
+        default:
+            return readLiteral();
+        }
+    }
+
+    /**
+     * Reads the next value from the input, which must be an object.
+     * 
+     * @return the object
+     * @throws IOException
+     *             if reading the input fails
+     * @throws JSONException
+     *             if the input is not valid JSON or the value is not an object
+     */
+    public JSONObject readObject() throws IOException, JSONException {
+        if (peekNonWhitespace() != '{') {
+            throw syntaxError("Expected a JSON object");
+        }
+        return (JSONObject) readValue();
+    }
+
+    private JSONObject readObjectContents() throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        if (peekNonWhitespace() == '}') {
+            position++;
+            return object;
+        }
+        while (true) {
+            int c = peekNonWhitespace();
+            if (c != '"' && c != '\'') {
+                throw syntaxError("Expected a name");
+            }
+            position++;
+            String name = readString((char) c);
+            expect(':');
+            object.put(name, readValue());
+
+            c = peekNonWhitespace();
+            position++;
+            if (c == '}') {
+                return object;
+            } else if (c != ',') {
+                throw syntaxError("Unterminated object");
+            }
+        }
+    }
+
+    private JSONArray readArrayContents() throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        if (peekNonWhitespace() == ']') {
+            position++;
+            return array;
+        }
+        while (true) {
+            array.put(readValue());
+
+            int c = peekNonWhitespace();
+            position++;
+            if (c == ']') {
+                return array;
+            } else if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+        }
+    }
+
+    private String readString(char quote) throws IOException, JSONException {
+        // Most strings have no escapes and fit in the buffer
+        for (int i = position; i < limit; i++) {
+            char c = buffer[i];
+            if (c == quote) {
+                String string = new String(buffer, position, i - position);
+                position = i + 1;
+                return string;
+            } else if (c == '\\') {
+                break;
+            }
+        }
+
+        builder.setLength(0);
+        while (true) {
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == quote || c == '\\') {
+                    break;
+                }
+                position++;
+            }
+            builder.append(buffer, start, position - start);
+
+            int c = read();
+            if (c == -1) {
+                throw syntaxError("Unterminated string");
+            } else if (c == quote) {
+                return builder.toString();
+            } else if (c == '\\') {
+                builder.append(readEscapedCharacter());
+            } else {
+                // The buffer was refilled
+                builder.append((char) c);
+            }
+        }
+    }
+
+    private char readEscapedCharacter() throws IOException, JSONException {
+        int c = read();
+        switch (c) {
+        case -1:
+            throw syntaxError("Unterminated escape sequence");
+        case 'u':
+            char[] hex = new char[4];
+            for (int i = 0; i < hex.length; i++) {
+                int h = read();
+                if (h == -1) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                hex[i] = (char) h;
+            }
+            try {
+                return (char) Integer.parseInt(new String(hex), 16);
+            } catch (NumberFormatException e) {
+                throw syntaxError("Invalid escape sequence: "
+                        + new String(hex));
+            }
+        case 't':
+            return '\t';
+        case 'b':
+            return '\b';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 'f':
+            return '\f';
+        default:
+            return (char) c;
+        }
+    }
+
+    private Object readLiteral() throws IOException, JSONException {
+        builder.setLength(0);
+        while (true) {
+            if (position == limit && !fill()) {
+                break;
+            }
+            char c = buffer[position];
+            if (isLiteralEnd(c)) {
+                break;
+            }
+            builder.append(c);
+            position++;
+        }
+        if (builder.length() == 0) {
+            throw syntaxError("Expected a value");
+        }
+        String literal = builder.toString();
+
+        // Convert the literal the same way as JSONTokener does
+        if ("null".equalsIgnoreCase(literal)) {
+            return JSONObject.NULL;
+        } else if ("true".equalsIgnoreCase(literal)) {
+            return Boolean.TRUE;
+        } else if ("false".equalsIgnoreCase(literal)) {
+            return Boolean.FALSE;
+        }
+
+        if (literal.indexOf('.') == -1) {
+            int base = 10;
+            String number = literal;
+            if (number.startsWith("0x") || number.startsWith("0X")) {
+                number = number.substring(2);
+                base = 16;
+            } else if (number.startsWith("0") && number.length() > 1) {
+                number = number.substring(1);
+                base = 8;
+            }
+            try {
+                long value = Long.parseLong(number, base);
+                if (value <= Integer.MAX_VALUE && value >= Integer.MIN_VALUE) {
+                    return Integer.valueOf((int) value);
+                } else {
+                    return Long.valueOf(value);
+                }
+            } catch (NumberFormatException e) {
+                // Not an integer, try as a floating point number
+            }
+        }
+
+        try {
+            return Double.valueOf(literal);
+        } catch (NumberFormatException e) {
+            // Unquoted string
+            return literal;
+        }
+    }
+
+    private static boolean isLiteralEnd(char c) {
+        switch (c) {
+        case '{':
+        case '}':
+        case '[':
+        case ']':
+        case '/':
+        case '\\':
+        case ':':
+        case ',':
+        case '=':
+        case ';':
+        case '#':
+        case ' ':
+        case '\t':
+        case '\f':
+        case '\r':
+        case '\n':
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private void expect(char expected) throws IOException, JSONException {
+        if (peekNonWhitespace() != expected) {
+            throw syntaxError("Expected '" + expected + "'");
+        }
+        position++;
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[position];
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                position++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        int read;
+        do {
+            read = reader.read(buffer);
+        } while (read == 0);
+        if (read == -1) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character "
+                + (offset + position));
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.server.communication;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.Iterator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Writes JSON tokens directly to a {@link Writer} without first building a
+ * {@link JSONObject} or {@link JSONArray} tree for the whole document.
+ * <p>
+ * Values that already exist as org.json objects are written by walking their
+ * contents, so the only intermediate strings created are for individual keys,
+ * strings and numbers. The produced output is equivalent to what
+ * {@link JSONObject#toString()} would produce for the same content.
+ * <p>
+ * The writer only tracks the separators needed between values; it does not
+ * validate that the produced document is well formed.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class JsonStreamWriter implements Serializable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+
+    /*
+     * For each open object or array, whether a value has already been written
+     * to it and the next value thus needs a separator.
+     */
+    private boolean[] hasValue = new boolean[16];
+    private int depth = 0;
+
+    /* True right after a key has been written */
+    private boolean afterKey = false;
+
+    /**
+     * Creates a new JSON stream writer writing to the given writer.
+     * 
+     * @param writer
+     *            the writer to write JSON to, not <code>null</code>
+     */
+    public JsonStreamWriter(Writer writer) {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer cannot be null");
+        }
+        this.writer = writer;
+    }
+
+    /**
+     * Gets the writer to which this stream writer writes.
+     * 
+     * @return the underlying writer
+     */
+    public Writer getWriter() {
+        return writer;
+    }
+
+    /**
+     * Begins a new JSON object.
+     * 
+     * @return this writer, for chaining
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter beginObject() throws IOException {
+        beforeValue();
+        writer.write('{');
+        push();
+        return this;
+    }
+
+    /**
+     * Ends the current JSON object.
+     * 
+     * @return this writer, for chaining
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter endObject() throws IOException {
+        pop();
+        writer.write('}');
+        return this;
+    }
+
+    /**
+     * Begins a new JSON array.
+     * 
+     * @return this writer, for chaining
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter beginArray() throws IOException {
+        beforeValue();
+        writer.write('[');
+        push();
+        return this;
+    }
+
+    /**
+     * Ends the current JSON array.
+     * 
+     * @return this writer, for chaining
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter endArray() throws IOException {
+        pop();
+        writer.write(']');
+        return this;
+    }
+
+    /**
+     * Writes the key of the next member of the current JSON object. Must be
+     * followed by exactly one value.
+     * 
+     * @param key
+     *            the member name, not <code>null</code>
+     * @return this writer, for chaining
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter key(String key) throws IOException {
+        beforeValue();
+        writeString(key);
+        writer.write(':');
+        afterKey = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value.
+     * 
+     * @param value
+     *            the string to write, or <code>null</code> to write a JSON
+     *            null
+     * @return this writer, for chaining
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            writer.write("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     * 
+     * @param value
+     *            the value to write
+     * @return this writer, for chaining
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter value(boolean value) throws IOException {
+        beforeValue();
+        writer.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes an integer value.
+     * 
+     * @param value
+     *            the value to write
+     * @return this writer, for chaining
+     * @throws IOException
+     *             if writing fails
+     */
+    public JsonStreamWriter value(long value) throws IOException {
+        beforeValue();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes an arbitrary JSON value. Supported values are the same as for
+     * {@link JSONObject#put(String, Object)}: {@link JSONObject},
+     * {@link JSONArray}, strings, booleans, numbers, {@link JSONObject#NULL}
+     * and <code>null</code>. Any other value is written as the string returned
+     * by its {@link Object#toString()} method.
+     * 
+     * @param value
+     *            the value to write
+     * @return this writer, for chaining
+     * @throws IOException
+     *             if writing fails
+     * @throws JSONException
+     *             if the value is a non-finite number
+     */
+    public JsonStreamWriter value(Object value) throws IOException,
+            JSONException {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            beginObject();
+            for (Iterator<?> keys = object.keys(); keys.hasNext();) {
+                String key = (String) keys.next();
+                key(key);
+                value(object.opt(key));
+            }
+            endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            beginArray();
+            for (int i = 0; i < array.length(); i++) {
+                value(array.opt(i));
+            }
+            endArray();
+        } else if (value == null || value == JSONObject.NULL) {
+            beforeValue();
+            writer.write("null");
+        } else if (value instanceof Boolean) {
+            value(((Boolean) value).booleanValue());
+        } else if (value instanceof Number) {
+            beforeValue();
+            writer.write(JSONObject.numberToString((Number) value));
+        } else {
+            value(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Flushes the underlying writer.
+     * 
+     * @throws IOException
+     *             if flushing fails
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterKey) {
+            // The value of an object member, no separator needed
+            afterKey = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasValue[depth - 1]) {
+                writer.write(',');
+            } else {
+                hasValue[depth - 1] = true;
+            }
+        }
+    }
+
+    private void push() {
+        if (depth == hasValue.length) {
+            boolean[] newHasValue = new boolean[depth * 2];
+            System.arraycopy(hasValue, 0, newHasValue, 0, depth);
+            hasValue = newHasValue;
+        }
+        hasValue[depth++] = false;
+    }
+
+    private void pop() {
+        if (depth == 0) {
+            throw new IllegalStateException(
+                    "No open JSON object or array to close");
+        }
+        depth--;
+    }
+
+    /**
+     * Writes a quoted and escaped string using the same escaping rules as the
+     * org.json implementation.
+     */
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape;
+            switch (c) {
+            case '"':
+                escape = "\\\"";
+                break;
+            case '\\':
+                escape = "\\\\";
+                break;
+            case '/':
+                escape = "\\/";
+                break;
+            case '\t':
+                escape = "\\t";
+                break;
+            case '\b':
+                escape = "\\b";
+                break;
+            case '\n':
+                escape = "\\n";
+                break;
+            case '\r':
+                escape = "\\r";
+                break;
+            case '\f':
+                escape = "\\f";
+                break;
+            default:
+                if (c <= 0x1F) {
+                    escape = null;
+                    break;
+                }
+                // Plain character, written as part of the next chunk
+                continue;
+            }
+            // Write the unescaped chunk before this character
+            if (i > start) {
+                writer.write(value, start, i - start);
+            }
+            if (escape != null) {
+                writer.write(escape);
+            } else {
+                writer.write("\\u00");
+                writer.write(HEX[(c >> 4) & 0xF]);
+                writer.write(HEX[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        if (length > start) {
+            writer.write(value, start, length - start);
+        }
+        writer.write('"');
+    }
+}
@@ -85,6 +85,12 @@ public class PortletBootstrapHandler extends BootstrapHandler {
         super.appendMainScriptTagContents(context, builder);
     }
 
+    @Override
+    protected boolean isBootstrapTemplateCacheable(BootstrapContext context) {
+        // The main script tag refers to the portal theme of the request
+        return false;
+    }
+
     @Override
     protected String getMainDivStyle(BootstrapContext context) {
         VaadinService vaadinService = context.getRequest().getService();
@@ -76,11 +76,29 @@ public class ServerRpcHandler implements Serializable {
         private final JSONObject json;
 
         public RpcRequest(String jsonString) throws JSONException {
-            json = new JSONObject(jsonString);
+            this(new JSONObject(jsonString));
+        }
+
+        /**
+         * Creates a new RPC request from an already parsed message.
+         * 
+         * @param json
+         *            the JSON object received from the client
+         * @throws JSONException
+         *             if the message does not contain the required values
+         */
+        public RpcRequest(JSONObject json) throws JSONException {
+            this.json = json;
             csrfToken = json.getString(ApplicationConstants.CSRF_TOKEN);
             syncId = json.getInt(ApplicationConstants.SERVER_SYNC_ID);
-            invocations = new JSONArray(
-                    json.getString(ApplicationConstants.RPC_INVOCATIONS));
+            Object invocationsJson = json
+                    .get(ApplicationConstants.RPC_INVOCATIONS);
+            if (invocationsJson instanceof JSONArray) {
+                invocations = (JSONArray) invocationsJson;
+            } else {
+                invocations = new JSONArray(
+                        json.getString(ApplicationConstants.RPC_INVOCATIONS));
+            }
         }
 
         /**
@@ -150,14 +168,15 @@ public class ServerRpcHandler implements Serializable {
             throws IOException, InvalidUIDLSecurityKeyException, JSONException {
         ui.getSession().setLastRequestTimestamp(System.currentTimeMillis());
 
-        String changeMessage = getMessage(reader);
+        // Parse the message in a single pass without reading it into a string
+        JsonStreamReader jsonReader = new JsonStreamReader(reader);
 
-        if (changeMessage == null || changeMessage.equals("")) {
+        if (jsonReader.isAtEnd()) {
             // The client sometimes sends empty messages, this is probably a bug
             return;
         }
 
-        RpcRequest rpcRequest = new RpcRequest(changeMessage);
+        RpcRequest rpcRequest = new RpcRequest(jsonReader.readObject());
 
         // Security: double cookie submission pattern unless disabled by
         // property
@@ -453,7 +472,7 @@ public class ServerRpcHandler implements Serializable {
                 connectorId, rpcInterface, methodName, parametersJson.length());
 
         Object[] parameters = new Object[parametersJson.length()];
-        Type[] declaredRpcMethodParameterTypes = invocation.getMethod()
+        Type[] declaredRpcMethodParameterTypes = invocation
                 .getGenericParameterTypes();
 
         for (int j = 0; j < parametersJson.length(); ++j) {
@@ -471,6 +490,19 @@ public class ServerRpcHandler implements Serializable {
         owner.changeVariables(source, m);
     }
 
+    /**
+     * Reads the whole message from a reader into a string.
+     * 
+     * @param reader
+     *            the reader to read the message from
+     * @return the message
+     * @throws IOException
+     *             if reading the message fails
+     * @deprecated As of 7.2, {@link #handleRpc(UI, Reader, VaadinRequest)}
+     *             parses the message directly from the reader and no longer
+     *             uses this method.
+     */
+    @Deprecated
     protected String getMessage(Reader reader) throws IOException {
 
         StringBuilder sb = new StringBuilder(MAX_BUFFER_SIZE);
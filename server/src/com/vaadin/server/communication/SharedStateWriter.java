@@ -72,4 +72,43 @@ public class SharedStateWriter implements Serializable {
         }
         writer.write(sharedStates.toString());
     }
+
+    /**
+     * Streams a JSON object containing the pending state changes of the dirty
+     * connectors of the given UI. Each connector's state is written as soon as
+     * it has been encoded instead of first collecting all states into one
+     * JSON object.
+     * 
+     * @param ui
+     *            The UI whose state changes should be written.
+     * @param json
+     *            The JSON stream writer to use.
+     * @throws IOException
+     *             If the serialization fails.
+     * @since 7.2
+     */
+    public void write(UI ui, JsonStreamWriter json) throws IOException {
+
+        Collection<ClientConnector> dirtyVisibleConnectors = ui
+                .getConnectorTracker().getDirtyVisibleConnectors();
+
+        json.beginObject();
+        for (ClientConnector connector : dirtyVisibleConnectors) {
+            // encode and send shared state
+            try {
+                JSONObject stateJson = connector.encodeState();
+
+                if (stateJson != null && stateJson.length() != 0) {
+                    json.key(connector.getConnectorId()).value(stateJson);
+                }
+            } catch (JSONException e) {
+                throw new PaintException(
+                        "Failed to serialize shared state for connector "
+                                + connector.getClass().getName() + " ("
+                                + connector.getConnectorId() + "): "
+                                + e.getMessage(), e);
+            }
+        }
+        json.endObject();
+    }
 }
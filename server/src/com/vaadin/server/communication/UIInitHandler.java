@@ -90,6 +90,20 @@ public abstract class UIInitHandler extends SynchronizedRequestHandler {
         return commitJsonResponse(request, response, stringWriter.toString());
     }
 
+    /**
+     * Sets the content type and caching headers of a JSON response.
+     * 
+     * @param response
+     *            the response to set the headers for
+     */
+    static void setJsonResponseHeaders(VaadinResponse response) {
+        response.setContentType(JsonConstants.JSON_CONTENT_TYPE);
+
+        // Ensure that the browser does not cache UIDL responses.
+        // iOS 6 Safari requires this (#9732)
+        response.setHeader("Cache-Control", "no-cache");
+    }
+
     /**
      * Commit the JSON response. We can't write immediately to the output stream
      * as we want to write only a critical notification if something goes wrong
@@ -108,11 +122,7 @@ public abstract class UIInitHandler extends SynchronizedRequestHandler {
     static boolean commitJsonResponse(VaadinRequest request,
             VaadinResponse response, String json) throws IOException {
         // The response was produced without errors so write it to the client
-        response.setContentType(JsonConstants.JSON_CONTENT_TYPE);
-
-        // Ensure that the browser does not cache UIDL responses.
-        // iOS 6 Safari requires this (#9732)
-        response.setHeader("Cache-Control", "no-cache");
+        setJsonResponseHeaders(response);
 
         // NOTE! GateIn requires, for some weird reason, getOutputStream
         // to be used instead of getWriter() (it seems to interpret
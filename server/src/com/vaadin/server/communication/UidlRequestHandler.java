@@ -17,14 +17,17 @@
 package com.vaadin.server.communication;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 import org.json.JSONException;
 
 import com.vaadin.server.Constants;
+import com.vaadin.server.DeploymentConfiguration;
 import com.vaadin.server.LegacyCommunicationManager.InvalidUIDLSecurityKeyException;
 import com.vaadin.server.ServletPortletHelper;
 import com.vaadin.server.SessionExpiredHandler;
@@ -88,6 +91,7 @@ public class UidlRequestHandler extends SynchronizedRequestHandler implements
                 .getParameter(ApplicationConstants.URL_PARAMETER_REPAINT_ALL) != null);
 
         StringWriter stringWriter = new StringWriter();
+        Writer streamingWriter = null;
 
         try {
             rpcHandler.handleRpc(uI, request.getReader(), request);
@@ -96,9 +100,23 @@ public class UidlRequestHandler extends SynchronizedRequestHandler implements
                 session.getCommunicationManager().repaintAll(uI);
             }
 
+            if (isStreamingResponse(session)) {
+                streamingWriter = openStreamingResponse(request, response,
+                        session);
+                writeUidl(request, response, uI, streamingWriter, repaintAll);
+                // NOTE GateIn requires the buffers to be flushed to work
+                streamingWriter.flush();
+                return true;
+            }
+
             writeUidl(request, response, uI, stringWriter, repaintAll);
         } catch (JSONException e) {
             getLogger().log(Level.SEVERE, "Error writing JSON to response", e);
+            if (streamingWriter != null) {
+                // Part of the response may already have been sent, the client
+                // will handle the incomplete response as a communication error
+                return true;
+            }
             // Refresh on client side
             response.getWriter().write(
                     VaadinService.createCriticalNotificationJSON(null, null,
@@ -115,12 +133,91 @@ public class UidlRequestHandler extends SynchronizedRequestHandler implements
             return true;
         } finally {
             stringWriter.close();
+            if (streamingWriter != null) {
+                streamingWriter.close();
+            }
         }
 
         return UIInitHandler.commitJsonResponse(request, response,
                 stringWriter.toString());
     }
 
+    /**
+     * Checks whether UIDL responses should be written directly to the output
+     * stream of the response as they are produced instead of first being
+     * collected into a string. Streaming avoids keeping several copies of large
+     * responses in memory, but the response can then no longer be replaced by
+     * an error message if writing the changes fails half way.
+     * <p>
+     * The default implementation uses the
+     * {@value Constants#SERVLET_PARAMETER_STREAMING_UIDL_RESPONSE} deployment
+     * configuration parameter, which defaults to <code>false</code>.
+     * 
+     * @param session
+     *            the session for which the response is written
+     * @return <code>true</code> to stream the response, <code>false</code> to
+     *         buffer it
+     * @since 7.2
+     */
+    protected boolean isStreamingResponse(VaadinSession session) {
+        return isEnabled(session,
+                Constants.SERVLET_PARAMETER_STREAMING_UIDL_RESPONSE);
+    }
+
+    /**
+     * Checks whether streamed UIDL responses should be gzip compressed for
+     * clients that accept it. Compression trades server CPU for a smaller
+     * response and is mostly useful for large responses over slow networks.
+     * <p>
+     * The default implementation uses the
+     * {@value Constants#SERVLET_PARAMETER_COMPRESS_UIDL_RESPONSE} deployment
+     * configuration parameter, which defaults to <code>false</code>.
+     * 
+     * @param session
+     *            the session for which the response is written
+     * @return <code>true</code> to compress streamed responses,
+     *         <code>false</code> otherwise
+     * @since 7.2
+     */
+    protected boolean isCompressedResponse(VaadinSession session) {
+        return isEnabled(session,
+                Constants.SERVLET_PARAMETER_COMPRESS_UIDL_RESPONSE);
+    }
+
+    private static boolean isEnabled(VaadinSession session, String parameter) {
+        DeploymentConfiguration configuration = session.getConfiguration();
+        return configuration != null
+                && Boolean.parseBoolean(configuration
+                        .getApplicationOrSystemProperty(parameter, "false"));
+    }
+
+    Writer openStreamingResponse(VaadinRequest request,
+            VaadinResponse response, VaadinSession session) throws IOException {
+        UIInitHandler.setJsonResponseHeaders(response);
+
+        // NOTE! GateIn requires, for some weird reason, getOutputStream
+        // to be used instead of getWriter() (it seems to interpret
+        // application/json as a binary content type)
+        OutputStream out = response.getOutputStream();
+        if (isCompressedResponse(session)) {
+            // The encoding depends on the request, also when not compressed
+            response.setHeader("Vary", "Accept-Encoding");
+            if (acceptsGzip(request)) {
+                response.setHeader("Content-Encoding", "gzip");
+                out = new GZIPOutputStream(out);
+            }
+        }
+        return new Utf8Writer(out);
+    }
+
+    /**
+     * Checks whether the Accept-Encoding header of a request allows gzip.
+     */
+    static boolean acceptsGzip(VaadinRequest request) {
+        return ServletPortletHelper.isGzipAccepted(request
+                .getHeader("Accept-Encoding"));
+    }
+
     /**
      * Checks that the version reported by the client (widgetset) matches that
      * of the server.
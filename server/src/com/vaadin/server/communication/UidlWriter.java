@@ -33,6 +33,8 @@ import org.json.JSONException;
 import com.vaadin.annotations.JavaScript;
 import com.vaadin.annotations.StyleSheet;
 import com.vaadin.server.ClientConnector;
+import com.vaadin.server.Constants;
+import com.vaadin.server.DeploymentConfiguration;
 import com.vaadin.server.JsonPaintTarget;
 import com.vaadin.server.LegacyCommunicationManager;
 import com.vaadin.server.LegacyCommunicationManager.ClientCache;
@@ -52,6 +54,54 @@ import com.vaadin.ui.UI;
  */
 public class UidlWriter implements Serializable {
 
+    private Boolean streamingJson = null;
+
+    /**
+     * Sets whether the shared state, connector type, hierarchy and RPC sections
+     * should be streamed directly to the writer as connectors are visited
+     * instead of first being collected into JSON objects and converted to
+     * strings. Streaming produces equivalent JSON but avoids holding several
+     * copies of large responses in memory.
+     * <p>
+     * By default (<code>null</code>), the mode is determined by the
+     * {@value Constants#SERVLET_PARAMETER_STREAMING_JSON} deployment
+     * configuration parameter, which defaults to <code>false</code>.
+     * 
+     * @param streamingJson
+     *            <code>true</code> to stream, <code>false</code> to build JSON
+     *            objects, <code>null</code> to use the deployment
+     *            configuration
+     * @since 7.2
+     */
+    public void setStreamingJson(Boolean streamingJson) {
+        this.streamingJson = streamingJson;
+    }
+
+    /**
+     * Checks whether JSON sections are streamed when writing changes for the
+     * given UI.
+     * 
+     * @see #setStreamingJson(Boolean)
+     * 
+     * @param ui
+     *            the UI whose changes are being written
+     * @return <code>true</code> if JSON sections are streamed,
+     *         <code>false</code> otherwise
+     * @since 7.2
+     */
+    public boolean isStreamingJson(UI ui) {
+        if (streamingJson != null) {
+            return streamingJson.booleanValue();
+        }
+        DeploymentConfiguration configuration = ui.getSession()
+                .getConfiguration();
+        return configuration != null
+                && Boolean.parseBoolean(configuration
+                        .getApplicationOrSystemProperty(
+                                Constants.SERVLET_PARAMETER_STREAMING_JSON,
+                                "false"));
+    }
+
     /**
      * Writes a JSON object containing all pending changes to the given UI.
      * 
@@ -97,6 +147,10 @@ public class UidlWriter implements Serializable {
             connector.beforeClientResponse(!initialized);
         }
 
+        boolean streaming = isStreamingJson(ui);
+        JsonStreamWriter json = streaming ? new JsonStreamWriter(writer)
+                : null;
+
         uiConnectorTracker.setWritingResponse(true);
         try {
             writer.write("\"" + ApplicationConstants.SERVER_SYNC_ID + "\": "
@@ -124,7 +178,11 @@ public class UidlWriter implements Serializable {
             // processing.
 
             writer.write("\"state\":");
-            new SharedStateWriter().write(ui, writer);
+            if (streaming) {
+                new SharedStateWriter().write(ui, json);
+            } else {
+                new SharedStateWriter().write(ui, writer);
+            }
             writer.write(", "); // close states
 
             // TODO This should be optimized. The type only needs to be
@@ -133,7 +191,11 @@ public class UidlWriter implements Serializable {
             // widget mapping
 
             writer.write("\"types\":");
-            new ConnectorTypeWriter().write(ui, writer, paintTarget);
+            if (streaming) {
+                new ConnectorTypeWriter().write(ui, json, paintTarget);
+            } else {
+                new ConnectorTypeWriter().write(ui, writer, paintTarget);
+            }
             writer.write(", "); // close states
 
             // Send update hierarchy information to the client.
@@ -144,7 +206,11 @@ public class UidlWriter implements Serializable {
             // child to 0 children)
 
             writer.write("\"hierarchy\":");
-            new ConnectorHierarchyWriter().write(ui, writer);
+            if (streaming) {
+                new ConnectorHierarchyWriter().write(ui, json);
+            } else {
+                new ConnectorHierarchyWriter().write(ui, writer);
+            }
             writer.write(", "); // close hierarchy
 
             // send server to client RPC calls for components in the UI, in call
@@ -154,7 +220,11 @@ public class UidlWriter implements Serializable {
             // which they were performed, remove the calls from components
 
             writer.write("\"rpc\" : ");
-            new ClientRpcWriter().write(ui, writer);
+            if (streaming) {
+                new ClientRpcWriter().write(ui, json);
+            } else {
+                new ClientRpcWriter().write(ui, writer);
+            }
             writer.write(", "); // close rpc
 
             uiConnectorTracker.markAllConnectorsClean();
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A writer that encodes characters as UTF-8 directly into an output stream.
+ * The encoded bytes are collected into a single buffer that is reused for the
+ * whole lifetime of the writer, so writing a large response does not require
+ * the response to be kept in memory as a string or as an encoded byte array.
+ * <p>
+ * As with {@link java.io.OutputStreamWriter}, unpaired surrogate characters
+ * are written as <code>'?'</code>. This class is not thread safe.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+public class Utf8Writer extends Writer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    // The longest UTF-8 encoding of a single code point
+    private static final int MAX_BYTES_PER_CHAR = 4;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count = 0;
+    private char highSurrogate = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a new writer with a default sized buffer.
+     * 
+     * @param out
+     *            the output stream to write to
+     */
+    public Utf8Writer(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new writer with the given buffer size.
+     * 
+     * @param out
+     *            the output stream to write to
+     * @param bufferSize
+     *            the size of the byte buffer, at least 4
+     */
+    public Utf8Writer(OutputStream out, int bufferSize) {
+        if (out == null) {
+            throw new IllegalArgumentException("Output stream cannot be null");
+        }
+        if (bufferSize < MAX_BYTES_PER_CHAR) {
+            throw new IllegalArgumentException("Buffer size must be at least "
+                    + MAX_BYTES_PER_CHAR);
+        }
+        this.out = out;
+        buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        writeChar((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            writeChar(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            writeChar(str.charAt(i));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                writeChar('?');
+            }
+            flushBuffer();
+            out.flush();
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void writeChar(char c) throws IOException {
+        if (c < 0x80 && highSurrogate == 0) {
+            // Fast path for ASCII, which most of the UIDL is
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            buffer[count++] = (byte) c;
+            return;
+        }
+
+        if (count > buffer.length - MAX_BYTES_PER_CHAR) {
+            flushBuffer();
+        }
+
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                buffer[count++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+                return;
+            }
+            // Unpaired high surrogate
+            buffer[count++] = '?';
+            writeChar(c);
+            return;
+        }
+
+        if (c < 0x80) {
+            buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[count++] = (byte) (0xc0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            // Unpaired low surrogate
+            buffer[count++] = '?';
+        } else {
+            buffer[count++] = (byte) (0xe0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            buffer[count++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+    }
+}
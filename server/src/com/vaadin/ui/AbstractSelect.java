@@ -215,6 +215,17 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
      */
     protected KeyMapper<Object> itemIdMapper = new KeyMapper<Object>();
 
+    /**
+     * Are unchanged options left out of repaints?
+     */
+    private boolean optionsCachedOnClient = false;
+
+    /**
+     * The key, caption, icon and extra state of each option last painted to
+     * the client, or null if the client has no usable options cached.
+     */
+    private transient List<Object> paintedOptions;
+
     /**
      * Item icons.
      */
@@ -359,28 +370,24 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
         // ==
         // first remove all previous item/property listeners
         getCaptionChangeListener().clear();
-        // Paints the options and create array of selected id keys
+        // Creates array of selected id keys
 
-        target.startTag("options");
+        final List<Object> optionIds = new ArrayList<Object>();
         int keyIndex = 0;
         // Support for external null selection item id
         final Collection<?> ids = getItemIds();
         if (isNullSelectionAllowed() && getNullSelectionItemId() != null
                 && !ids.contains(getNullSelectionItemId())) {
             final Object id = getNullSelectionItemId();
-            // Paints option
-            target.startTag("so");
-            paintItem(target, id);
+            optionIds.add(id);
             if (isSelected(id)) {
                 selectedKeys[keyIndex++] = itemIdMapper.key(id);
             }
-            target.endTag("so");
         }
 
-        final Iterator<?> i = getItemIds().iterator();
-        // Paints the available selection options from data source
+        final Iterator<?> i = ids.iterator();
+        // Collects the available selection options from data source
         while (i.hasNext()) {
-            // Gets the option attribute values
             final Object id = i.next();
             if (!isNullSelectionAllowed() && id != null
                     && id.equals(getNullSelectionItemId())) {
@@ -391,12 +398,22 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
             final String key = itemIdMapper.key(id);
             // add listener for each item, to cause repaint if an item changes
             getCaptionChangeListener().addNotifierForItem(id);
-            target.startTag("so");
-            paintItem(target, id);
+            optionIds.add(id);
             if (isSelected(id) && keyIndex < selectedKeys.length) {
                 selectedKeys[keyIndex++] = key;
             }
-            target.endTag("so");
+        }
+
+        // Paints the options unless the client already has them
+        target.startTag("options");
+        if (isPaintedOptionsUnchanged(target, optionIds)) {
+            target.addAttribute("unchanged", true);
+        } else {
+            for (Object id : optionIds) {
+                target.startTag("so");
+                paintItem(target, id);
+                target.endTag("so");
+            }
         }
         target.endTag("options");
         // ==
@@ -427,6 +444,55 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
         }
     }
 
+    /**
+     * Checks whether the options last sent to the client are still valid and
+     * can be left out of this paint. Always returns false unless
+     * {@link #isOptionsCachedOnClient()} is set.
+     * 
+     * @param target
+     *            the paint target
+     * @param optionIds
+     *            the ids of the options to paint, in order
+     * @return true if the client can reuse its cached options, false if they
+     *         must be painted
+     */
+    private boolean isPaintedOptionsUnchanged(PaintTarget target,
+            List<Object> optionIds) {
+        if (!isOptionsCachedOnClient()) {
+            paintedOptions = null;
+            return false;
+        }
+        final List<Object> options = new ArrayList<Object>(
+                optionIds.size() * 5);
+        for (Object id : optionIds) {
+            options.add(itemIdMapper.key(id));
+            options.add(getItemCaption(id));
+            options.add(getItemIcon(id));
+            options.add(Boolean.valueOf(id != null
+                    && id.equals(getNullSelectionItemId())));
+            options.add(getOptionPaintState(id));
+        }
+        final boolean unchanged = !target.isFullRepaint()
+                && options.equals(paintedOptions);
+        paintedOptions = options;
+        return unchanged;
+    }
+
+    /**
+     * Returns the option state painted by a subclass in
+     * {@link #paintItem(PaintTarget, Object)} in addition to the caption, icon
+     * and key. Used for detecting whether cached client-side options are
+     * still up to date.
+     * 
+     * @param itemId
+     *            the id of the painted item
+     * @return an object that is equal between paints as long as the extra
+     *         state has not changed, or null if there is no extra state
+     */
+    Object getOptionPaintState(Object itemId) {
+        return null;
+    }
+
     /**
      * Invoked when the value of a variable has changed.
      * 
@@ -1142,6 +1208,42 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
         }
     }
 
+    /**
+     * Sets whether options that have not changed since the previous paint are
+     * left out of the response. When enabled, a repaint caused for instance
+     * by a selection change only sends the selected keys, and the client
+     * rebuilds the widget from the options it already has. This considerably
+     * reduces the amount of data sent for selects with many options.
+     * <p>
+     * Subclasses that paint additional option attributes in
+     * {@link #paintItem(PaintTarget, Object)} should not enable this, as
+     * changes to those attributes are not detected. Also custom client-side
+     * widgets must support the "unchanged" options tag.
+     * <p>
+     * The default is false.
+     * 
+     * @param optionsCachedOnClient
+     *            true to leave unchanged options out of repaints, false to
+     *            always send all options
+     * @since 7.2
+     */
+    public void setOptionsCachedOnClient(boolean optionsCachedOnClient) {
+        this.optionsCachedOnClient = optionsCachedOnClient;
+        paintedOptions = null;
+    }
+
+    /**
+     * Checks whether options that have not changed since the previous paint
+     * are left out of the response.
+     * 
+     * @see #setOptionsCachedOnClient(boolean)
+     * @return true if unchanged options are not repainted, false otherwise
+     * @since 7.2
+     */
+    public boolean isOptionsCachedOnClient() {
+        return optionsCachedOnClient;
+    }
+
     /**
      * Override the caption of an item. Setting caption explicitly overrides id,
      * item and index captions.
@@ -1860,9 +1962,19 @@ public abstract class AbstractSelect extends AbstractField<Object> implements
     @Override
     public void detach() {
         getCaptionChangeListener().clear();
+        paintedOptions = null;
         super.detach();
     }
 
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+        if (initial) {
+            // A new client-side connector has no options cached
+            paintedOptions = null;
+        }
+    }
+
     // Caption change listener
     protected CaptionChangeListener getCaptionChangeListener() {
         if (captionChangeListener == null) {
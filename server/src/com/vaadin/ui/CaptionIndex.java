@@ -0,0 +1,276 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.ui;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+import com.vaadin.data.Container.ItemSetChangeNotifier;
+import com.vaadin.data.Property;
+import com.vaadin.data.Property.ValueChangeEvent;
+import com.vaadin.data.Property.ValueChangeListener;
+import com.vaadin.data.Property.ValueChangeNotifier;
+import com.vaadin.shared.ui.combobox.FilteringMode;
+
+/**
+ * An index of the item captions of a container for filtering the options of a
+ * {@link ComboBox} without adding filters to the container.
+ * <p>
+ * The index is a snapshot of the item ids and the lower case captions taken
+ * from a property of the items, in the order of the container, and of the
+ * captions in sorted order for finding the items with a given prefix by
+ * binary search. The items are matched in the same way as by a
+ * {@link com.vaadin.data.util.filter.SimpleStringFilter} ignoring case.
+ * <p>
+ * Indexes are shared by all combo boxes using the same container and caption
+ * property, and are built when first needed. An index is discarded when the
+ * container notifies of an item set change or, if the container supports it,
+ * of a property value change. Only containers that are
+ * {@link ItemSetChangeNotifier}s are indexed.
+ * <p>
+ * An index is never modified after it has been built, so it can be used by
+ * any number of threads.
+ * 
+ * @author Vaadin Ltd
+ * @since 7.2
+ */
+class CaptionIndex implements Serializable {
+
+    /*
+     * The indexes of a container, discarded when the container changes.
+     */
+    private static class ContainerIndexes implements ItemSetChangeListener,
+            ValueChangeListener {
+        private final Map<Object, CaptionIndex> indexes = new HashMap<Object, CaptionIndex>();
+
+        @Override
+        public void containerItemSetChange(ItemSetChangeEvent event) {
+            clear();
+        }
+
+        @Override
+        public void valueChange(ValueChangeEvent event) {
+            clear();
+        }
+
+        private synchronized void clear() {
+            indexes.clear();
+        }
+
+        private synchronized CaptionIndex get(Object propertyId) {
+            return indexes.get(propertyId);
+        }
+
+        private synchronized void put(Object propertyId, CaptionIndex index) {
+            indexes.put(propertyId, index);
+        }
+    }
+
+    // The values do not refer to the containers
+    private static final Map<Container, ContainerIndexes> containers = new WeakHashMap<Container, ContainerIndexes>();
+
+    private static class CaptionComparator implements Comparator<Integer>,
+            Serializable {
+        private final String[] captions;
+
+        private CaptionComparator(String[] captions) {
+            this.captions = captions;
+        }
+
+        @Override
+        public int compare(Integer o1, Integer o2) {
+            return captions[o1.intValue()].compareTo(captions[o2.intValue()]);
+        }
+    }
+
+    private final Object[] itemIds;
+
+    // Lower case captions in container order, null if the item has none
+    private final String[] captions;
+
+    // Positions of the items with a caption, sorted by caption
+    private final int[] sorted;
+
+    private CaptionIndex(Container container, Object propertyId) {
+        Collection<?> ids = container.getItemIds();
+        itemIds = ids.toArray();
+        captions = new String[itemIds.length];
+        Integer[] positions = new Integer[itemIds.length];
+        int count = 0;
+        for (int i = 0; i < itemIds.length; i++) {
+            Property<?> property = container.getContainerProperty(itemIds[i],
+                    propertyId);
+            Object value = property == null ? null : property.getValue();
+            if (value != null) {
+                captions[i] = value.toString().toLowerCase();
+                positions[count++] = Integer.valueOf(i);
+            }
+        }
+        Arrays.sort(positions, 0, count, new CaptionComparator(captions));
+        sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = positions[i].intValue();
+        }
+    }
+
+    /**
+     * Gets the index of the captions in a container, building it if
+     * necessary.
+     * 
+     * @param container
+     *            the container to index
+     * @param propertyId
+     *            the id of the property containing the captions
+     * @return the caption index, or <code>null</code> if the container cannot
+     *         be indexed
+     */
+    static CaptionIndex get(Container container, Object propertyId) {
+        if (!(container instanceof ItemSetChangeNotifier)) {
+            return null;
+        }
+        ContainerIndexes containerIndexes;
+        synchronized (containers) {
+            containerIndexes = containers.get(container);
+            if (containerIndexes == null) {
+                containerIndexes = new ContainerIndexes();
+                ((ItemSetChangeNotifier) container)
+                        .addItemSetChangeListener(containerIndexes);
+                if (container instanceof ValueChangeNotifier) {
+                    ((ValueChangeNotifier) container)
+                            .addValueChangeListener(containerIndexes);
+                }
+                containers.put(container, containerIndexes);
+            }
+        }
+        CaptionIndex index = containerIndexes.get(propertyId);
+        if (index == null) {
+            index = new CaptionIndex(container, propertyId);
+            containerIndexes.put(propertyId, index);
+        }
+        return index;
+    }
+
+    /**
+     * Gets the number of items in the index.
+     * 
+     * @return the number of items
+     */
+    int size() {
+        return itemIds.length;
+    }
+
+    /**
+     * Finds the items whose caption matches a filter string.
+     * 
+     * @param filterString
+     *            the string to match, <code>null</code> or empty to match all
+     *            items
+     * @param filteringMode
+     *            how to match the captions
+     * @return the positions of the matching items in container order, or
+     *         <code>null</code> if all items match
+     */
+    int[] find(String filterString, FilteringMode filteringMode) {
+        if (filterString == null || filterString.length() == 0
+                || filteringMode == FilteringMode.OFF) {
+            return null;
+        }
+        String filter = filterString.toLowerCase();
+        if (filteringMode == FilteringMode.STARTSWITH) {
+            int from = lowerBound(filter);
+            int to = lowerBound(filter + Character.MAX_VALUE);
+            int[] matches = new int[to - from];
+            System.arraycopy(sorted, from, matches, 0, matches.length);
+            Arrays.sort(matches);
+            return matches;
+        } else {
+            int[] matches = new int[captions.length];
+            int count = 0;
+            for (int i = 0; i < captions.length; i++) {
+                if (captions[i] != null && captions[i].contains(filter)) {
+                    matches[count++] = i;
+                }
+            }
+            return Arrays.copyOf(matches, count);
+        }
+    }
+
+    // The first position in the sorted captions not less than the string
+    private int lowerBound(String string) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (captions[sorted[middle]].compareTo(string) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the index of an item among the matching items.
+     * 
+     * @param itemId
+     *            the item id to find
+     * @param matches
+     *            the matching items as given by
+     *            {@link #find(String, FilteringMode)}
+     * @return the index of the item among the matches, or -1 if it does not
+     *         match
+     */
+    int indexOf(Object itemId, int[] matches) {
+        int count = matches == null ? itemIds.length : matches.length;
+        for (int i = 0; i < count; i++) {
+            int position = matches == null ? i : matches[i];
+            if (itemIds[position].equals(itemId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the ids of a range of matching items.
+     * 
+     * @param matches
+     *            the matching items as given by
+     *            {@link #find(String, FilteringMode)}
+     * @param first
+     *            the index of the first item among the matches
+     * @param count
+     *            the number of items to get
+     * @return the item ids
+     */
+    List<Object> getItemIds(int[] matches, int first, int count) {
+        Object[] ids = new Object[Math.max(0, count)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = itemIds[matches == null ? first + i : matches[first + i]];
+        }
+        return Arrays.asList(ids);
+    }
+}
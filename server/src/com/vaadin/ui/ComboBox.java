@@ -102,6 +102,12 @@ public class ComboBox extends AbstractSelect implements
      */
     private boolean textInputAllowed = true;
 
+    /**
+     * Whether the options are filtered using a caption index instead of
+     * container filters.
+     */
+    private boolean captionIndexEnabled = false;
+
     public ComboBox() {
         initDefaults();
     }
@@ -357,9 +363,20 @@ public class ComboBox extends AbstractSelect implements
             return new ArrayList<Object>(container.getItemIds());
         }
 
+        if (getItemCaptionMode() != ITEM_CAPTION_MODE_PROPERTY) {
+            return null;
+        }
+
+        if (isCaptionIndexEnabled()) {
+            CaptionIndex index = CaptionIndex.get(container,
+                    getItemCaptionPropertyId());
+            if (index != null) {
+                return getOptionsWithIndex(index, needNullSelectOption);
+            }
+        }
+
         if (!(container instanceof Filterable)
-                || !(container instanceof Indexed)
-                || getItemCaptionMode() != ITEM_CAPTION_MODE_PROPERTY) {
+                || !(container instanceof Indexed)) {
             return null;
         }
 
@@ -414,6 +431,80 @@ public class ComboBox extends AbstractSelect implements
         }
     }
 
+    /*
+     * Gets the options on the current page using a caption index. Sets
+     * filteredSize as getOptionsWithFilter does.
+     */
+    private List<?> getOptionsWithIndex(CaptionIndex index,
+            boolean needNullSelectOption) {
+        int[] matches = index.find(filterstring, filteringMode);
+
+        int indexToEnsureInView = -1;
+
+        // if not an option request (item list when user changes page), go to
+        // page with the selected item after filtering if accepted by filter
+        Object selection = getValue();
+        if (isScrollToSelectedItem() && !optionRequest && selection != null) {
+            // ensure proper page
+            indexToEnsureInView = index.indexOf(selection, matches);
+        }
+
+        filteredSize = matches == null ? index.size() : matches.length;
+        currentPage = adjustCurrentPage(currentPage, needNullSelectOption,
+                indexToEnsureInView, filteredSize);
+        int first = getFirstItemIndexOnCurrentPage(needNullSelectOption,
+                filteredSize);
+        int last = getLastItemIndexOnCurrentPage(needNullSelectOption,
+                filteredSize, first);
+
+        int lastItemToFetch = Math.min(last, filteredSize - 1);
+        return index.getItemIds(matches, first, (lastItemToFetch + 1) - first);
+    }
+
+    /**
+     * Sets whether the options are filtered using an index of the item
+     * captions instead of container filters.
+     * <p>
+     * By default, a filter is temporarily added to the container to find the
+     * options on the page shown to the user, which filters the whole container
+     * twice and fires item set change events each time the user types. When
+     * the caption index is enabled, the options are instead looked up from an
+     * index of the item captions that is built when first needed and shared
+     * by all combo boxes using the same container and caption property. The
+     * filter state of the container is not changed.
+     * <p>
+     * The caption index is only used in the
+     * {@link AbstractSelect.ItemCaptionMode#PROPERTY} caption mode with a
+     * container that is an {@link Container.ItemSetChangeNotifier}, and
+     * {@link #buildFilter(String, FilteringMode)} is not used with it. The
+     * index is rebuilt after the container notifies of an item set change
+     * or, if supported by the container, of a value change. Changes to the
+     * captions that the container does not notify of are not seen while the
+     * index is in use.
+     * 
+     * @param captionIndexEnabled
+     *            true to filter the options using a caption index, false to
+     *            use container filters
+     * @since 7.2
+     */
+    public void setCaptionIndexEnabled(boolean captionIndexEnabled) {
+        this.captionIndexEnabled = captionIndexEnabled;
+    }
+
+    /**
+     * Returns whether the options are filtered using an index of the item
+     * captions instead of container filters.
+     * 
+     * @see #setCaptionIndexEnabled(boolean)
+     * 
+     * @return true if the options are filtered using a caption index, false
+     *         if container filters are used
+     * @since 7.2
+     */
+    public boolean isCaptionIndexEnabled() {
+        return captionIndexEnabled;
+    }
+
     /**
      * Constructs a filter instance to use when using a Filterable container in
      * the <code>ITEM_CAPTION_MODE_PROPERTY</code> mode.
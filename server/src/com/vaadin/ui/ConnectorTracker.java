@@ -35,10 +35,13 @@ import org.json.JSONObject;
 
 import com.vaadin.server.AbstractClientConnector;
 import com.vaadin.server.ClientConnector;
+import com.vaadin.server.CompactDiffState;
+import com.vaadin.server.Constants;
 import com.vaadin.server.DragAndDropService;
 import com.vaadin.server.GlobalResourceHandler;
 import com.vaadin.server.LegacyCommunicationManager;
 import com.vaadin.server.StreamVariable;
+import com.vaadin.server.VaadinSession;
 
 /**
  * A class which takes care of book keeping of {@link ClientConnector}s for a
@@ -77,6 +80,13 @@ public class ConnectorTracker implements Serializable {
 
     private UI uI;
     private transient Map<ClientConnector, JSONObject> diffStates = new HashMap<ClientConnector, JSONObject>();
+    private Map<ClientConnector, CompactDiffState> compactDiffStates = new HashMap<ClientConnector, CompactDiffState>();
+
+    /**
+     * Whether compact diff states are used, read lazily from the deployment
+     * configuration.
+     */
+    private Boolean compactDiffStatesEnabled;
 
     /** Maps connectorIds to a map of named StreamVariables */
     private Map<String, Map<String, StreamVariable>> pidToNameToStreamVariable;
@@ -257,6 +267,7 @@ public class ConnectorTracker implements Serializable {
     public void markAllClientSidesUninitialized() {
         uninitializedConnectors.addAll(connectorIdToConnector.values());
         diffStates.clear();
+        compactDiffStates.clear();
     }
 
     /**
@@ -298,6 +309,7 @@ public class ConnectorTracker implements Serializable {
             removeFromGlobalResourceHandler(connector);
             uninitializedConnectors.remove(connector);
             diffStates.remove(connector);
+            compactDiffStates.remove(connector);
         }
         unregisteredConnectors.clear();
 
@@ -331,12 +343,14 @@ public class ConnectorTracker implements Serializable {
                 removeFromGlobalResourceHandler(connector);
                 uninitializedConnectors.remove(connector);
                 diffStates.remove(connector);
+                compactDiffStates.remove(connector);
                 iterator.remove();
             } else if (!uninitializedConnectors.contains(connector)
                     && !LegacyCommunicationManager
                             .isConnectorVisibleToClient(connector)) {
                 uninitializedConnectors.add(connector);
                 diffStates.remove(connector);
+                compactDiffStates.remove(connector);
                 if (getLogger().isLoggable(Level.FINE)) {
                     getLogger()
                             .log(Level.FINE,
@@ -578,6 +592,74 @@ public class ConnectorTracker implements Serializable {
         diffStates.put(connector, diffState);
     }
 
+    /**
+     * Gets the compact representation of the state last sent to the client for
+     * the given connector.
+     * 
+     * @param connector
+     *            the connector for which to get the diff state
+     * @return the compact diff state, or <code>null</code> if no state has been
+     *         sent for the connector
+     * 
+     * @see #isCompactDiffStates()
+     * @since 7.2
+     */
+    public CompactDiffState getCompactDiffState(ClientConnector connector) {
+        assert getConnector(connector.getConnectorId()) == connector;
+        return compactDiffStates.get(connector);
+    }
+
+    /**
+     * Sets the compact representation of the state last sent to the client for
+     * the given connector.
+     * 
+     * @param connector
+     *            the connector for which to set the diff state
+     * @param diffState
+     *            the compact diff state
+     * 
+     * @see #isCompactDiffStates()
+     * @since 7.2
+     */
+    public void setCompactDiffState(ClientConnector connector,
+            CompactDiffState diffState) {
+        assert getConnector(connector.getConnectorId()) == connector;
+        compactDiffStates.put(connector, diffState);
+    }
+
+    /**
+     * Checks whether the state last sent to the client is stored as
+     * {@link CompactDiffState} instances instead of fully encoded JSON objects.
+     * Compact diff states use significantly less memory per connector but
+     * changes inside nested values, e.g. lists or maps in the state, cause the
+     * entire nested value to be sent again.
+     * <p>
+     * Compact diff states are enabled using the
+     * {@value Constants#SERVLET_PARAMETER_COMPACT_DIFF_STATE} init parameter.
+     * The setting is read once per connector tracker and can not be changed
+     * afterwards as the stored diff states must stay consistent with what the
+     * client has received.
+     * 
+     * @return <code>true</code> if compact diff states are used,
+     *         <code>false</code> otherwise
+     * @since 7.2
+     */
+    public boolean isCompactDiffStates() {
+        if (compactDiffStatesEnabled == null) {
+            VaadinSession session = uI.getSession();
+            if (session == null || session.getConfiguration() == null) {
+                // Can't know yet, don't remember the default
+                return false;
+            }
+            String value = session.getConfiguration()
+                    .getApplicationOrSystemProperty(
+                            Constants.SERVLET_PARAMETER_COMPACT_DIFF_STATE,
+                            "false");
+            compactDiffStatesEnabled = Boolean.valueOf(value);
+        }
+        return compactDiffStatesEnabled.booleanValue();
+    }
+
     public boolean isDirty(ClientConnector connector) {
         return dirtyConnectors.contains(connector);
     }
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.vaadin.ui;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An ordered list of unique item ids supporting positional access and index
+ * lookups in O(log n) time, and insertion or removal of a range of k ids in
+ * O(k + log n) time.
+ * <p>
+ * The ids are stored in an implicit treap, a randomized binary search tree
+ * ordered by position where each node knows the size of its subtree. A map
+ * from ids to nodes and parent links allow finding the position of an id by
+ * walking from its node to the root.
+ * 
+ * @since 7.2
+ */
+class IndexedIdList implements Serializable {
+
+    private static final class Node implements Serializable {
+        private final Object id;
+        private final int priority;
+        private Node left;
+        private Node right;
+        private Node parent;
+        private int size = 1;
+
+        private Node(Object id, int priority) {
+            this.id = id;
+            this.priority = priority;
+        }
+    }
+
+    private final HashMap<Object, Node> nodes = new HashMap<Object, Node>();
+
+    private Node root;
+
+    private int seed = 0x2545F491;
+
+    /**
+     * Returns the number of ids in the list.
+     * 
+     * @return the number of ids
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns the id at the given position.
+     * 
+     * @param index
+     *            the position of the id
+     * @return the id at the position
+     * @throws IndexOutOfBoundsException
+     *             if the index is out of range
+     */
+    public Object get(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.id;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the position of an id in the list.
+     * 
+     * @param id
+     *            the id to look for
+     * @return the position of the id, or -1 if the id is not in the list
+     */
+    public int indexOf(Object id) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            return -1;
+        }
+        int index = size(node.left);
+        while (node.parent != null) {
+            if (node == node.parent.right) {
+                index += size(node.parent.left) + 1;
+            }
+            node = node.parent;
+        }
+        return index;
+    }
+
+    /**
+     * Inserts ids at the given position. The ids must not already be in the
+     * list.
+     * 
+     * @param index
+     *            the position of the first inserted id
+     * @param ids
+     *            the ids to insert, in order
+     * @throws IndexOutOfBoundsException
+     *             if the index is out of range
+     */
+    public void addAll(int index, List<?> ids)
+            throws IndexOutOfBoundsException {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size());
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        Node[] parts = split(root, index);
+        root = merge(merge(parts[0], build(ids)), parts[1]);
+        root.parent = null;
+    }
+
+    /**
+     * Removes the ids from the given range of positions.
+     * 
+     * @param fromIndex
+     *            the position of the first removed id, inclusive
+     * @param toIndex
+     *            the position after the last removed id, exclusive
+     * @throws IndexOutOfBoundsException
+     *             if the range is invalid
+     */
+    public void removeRange(int fromIndex, int toIndex)
+            throws IndexOutOfBoundsException {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("From index: " + fromIndex
+                    + ", To index: " + toIndex + ", Size: " + size());
+        }
+        if (fromIndex == toIndex) {
+            return;
+        }
+        Node[] head = split(root, fromIndex);
+        Node[] tail = split(head[1], toIndex - fromIndex);
+        forgetIds(tail[0]);
+        root = merge(head[0], tail[1]);
+        if (root != null) {
+            root.parent = null;
+        }
+    }
+
+    /**
+     * Returns a read-only list view of the ids. Positional access through the
+     * view takes O(log n) time, iteration takes O(1) amortized time per id.
+     * 
+     * @return a list view of the ids
+     */
+    public List<Object> asList() {
+        return new IdListView();
+    }
+
+    /**
+     * Read-only list view backed by the tree.
+     */
+    private class IdListView extends AbstractList<Object> implements
+            Serializable {
+        @Override
+        public Object get(int index) {
+            return IndexedIdList.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return IndexedIdList.this.size();
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return IndexedIdList.this.indexOf(o);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return nodes.containsKey(o);
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return new IdIterator();
+        }
+    }
+
+    /**
+     * Iterates the ids in order by moving to the in-order successor of the
+     * previous node.
+     */
+    private class IdIterator implements Iterator<Object>, Serializable {
+        private Node next = first(root);
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Object next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Node current = next;
+            if (current.right != null) {
+                next = first(current.right);
+            } else {
+                Node node = current;
+                while (node.parent != null && node == node.parent.right) {
+                    node = node.parent;
+                }
+                next = node.parent;
+            }
+            return current.id;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static Node first(Node node) {
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+        }
+        return node;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Recomputes the size of a node and links its children to it.
+     */
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        if (node.left != null) {
+            node.left.parent = node;
+        }
+        if (node.right != null) {
+            node.right.parent = node;
+        }
+    }
+
+    /**
+     * Splits a tree into the first count nodes and the rest.
+     */
+    private static Node[] split(Node node, int count) {
+        if (node == null) {
+            return new Node[2];
+        }
+        Node[] parts;
+        if (count <= size(node.left)) {
+            parts = split(node.left, count);
+            node.left = parts[1];
+            update(node);
+            parts[1] = node;
+        } else {
+            parts = split(node.right, count - size(node.left) - 1);
+            node.right = parts[0];
+            update(node);
+            parts[0] = node;
+        }
+        parts[0] = detach(parts[0]);
+        parts[1] = detach(parts[1]);
+        return parts;
+    }
+
+    private static Node detach(Node node) {
+        if (node != null) {
+            node.parent = null;
+        }
+        return node;
+    }
+
+    /**
+     * Merges two trees, all nodes of the first one preceding the nodes of the
+     * second one.
+     */
+    private static Node merge(Node first, Node second) {
+        if (first == null) {
+            return second;
+        } else if (second == null) {
+            return first;
+        } else if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            update(first);
+            return first;
+        } else {
+            second.left = merge(first, second.left);
+            update(second);
+            return second;
+        }
+    }
+
+    /**
+     * Builds a tree of new nodes for the ids in linear time, maintaining the
+     * right spine of the tree built so far on a stack.
+     */
+    private Node build(List<?> ids) {
+        List<Node> spine = new ArrayList<Node>();
+        for (Object id : ids) {
+            Node node = new Node(id, nextPriority());
+            nodes.put(id, node);
+            Node last = null;
+            while (!spine.isEmpty()
+                    && spine.get(spine.size() - 1).priority < node.priority) {
+                last = spine.remove(spine.size() - 1);
+                update(last);
+            }
+            node.left = last;
+            if (!spine.isEmpty()) {
+                spine.get(spine.size() - 1).right = node;
+            }
+            spine.add(node);
+        }
+        for (int i = spine.size() - 1; i >= 0; i--) {
+            update(spine.get(i));
+        }
+        return detach(spine.get(0));
+    }
+
+    private void forgetIds(Node node) {
+        if (node != null) {
+            nodes.remove(node.id);
+            forgetIds(node.left);
+            forgetIds(node.right);
+        }
+    }
+
+    private int nextPriority() {
+        // xorshift
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+}
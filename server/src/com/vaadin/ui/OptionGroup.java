@@ -76,6 +76,11 @@ public class OptionGroup extends AbstractSelect implements
         }
     }
 
+    @Override
+    Object getOptionPaintState(Object itemId) {
+        return Boolean.valueOf(isItemEnabled(itemId));
+    }
+
     @Override
     public void changeVariables(Object source, Map<String, Object> variables) {
         super.changeVariables(source, variables);
@@ -139,10 +139,39 @@ public interface PushConfiguration extends Serializable {
      */
     public void setParameter(String parameter, String value);
 
+    /**
+     * Returns the minimum time between two pushes when using
+     * {@link PushMode#COALESCED}.
+     * 
+     * @since 7.2
+     * @return the coalescing interval in milliseconds
+     */
+    public int getCoalescingInterval();
+
+    /**
+     * Sets the minimum time between two pushes when using
+     * {@link PushMode#COALESCED}. Changes made during the interval are pushed
+     * to the client together when the interval has elapsed. The default is
+     * {@value #DEFAULT_COALESCING_INTERVAL} milliseconds.
+     * 
+     * @since 7.2
+     * @param coalescingInterval
+     *            the coalescing interval in milliseconds, not negative
+     */
+    public void setCoalescingInterval(int coalescingInterval);
+
+    /**
+     * The default coalescing interval in milliseconds.
+     * 
+     * @since 7.2
+     */
+    public static final int DEFAULT_COALESCING_INTERVAL = 100;
+
 }
 
 class PushConfigurationImpl implements PushConfiguration {
     private UI ui;
+    private int coalescingInterval = DEFAULT_COALESCING_INTERVAL;
 
     public PushConfigurationImpl(UI ui) {
         this.ui = ui;
@@ -291,4 +320,18 @@ class PushConfigurationImpl implements PushConfiguration {
                 .keySet());
     }
 
+    @Override
+    public int getCoalescingInterval() {
+        return coalescingInterval;
+    }
+
+    @Override
+    public void setCoalescingInterval(int coalescingInterval) {
+        if (coalescingInterval < 0) {
+            throw new IllegalArgumentException(
+                    "The coalescing interval cannot be negative");
+        }
+        this.coalescingInterval = coalescingInterval;
+    }
+
 }
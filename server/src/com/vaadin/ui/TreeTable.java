@@ -202,7 +202,12 @@ public class TreeTable extends Table implements Hierarchical {
 
         @Override
         public Collection<Object> getItemIds() {
-            return Collections.unmodifiableCollection(getPreOrder());
+            if (itemIds == null) {
+                itemIds = Collections
+                        .unmodifiableList(new ArrayList<Object>(getPreOrder()
+                                .asList()));
+            }
+            return itemIds;
         }
 
         @Override
@@ -250,6 +255,20 @@ public class TreeTable extends Table implements Hierarchical {
 
         @Override
         public void toggleChildVisibility(Object itemId) {
+            // collections already returned by getItemIds() stay unchanged
+            itemIds = null;
+            if (!(getContainerDataSource() instanceof ItemSetChangeNotifier)) {
+                // the container may have changed without notifying
+                clearPreorderCache();
+            }
+            int index = preOrder == null ? -1 : preOrder.indexOf(itemId);
+            if (index != -1 && isNodeOpen(itemId)) {
+                // splice out the visible descendants of the collapsed item
+                List<Object> descendants = new ArrayList<Object>();
+                addVisibleChildTree(itemId, descendants);
+                preOrder.removeRange(index + 1, index + 1 + descendants.size());
+            }
+
             boolean removed = openItems.remove(itemId);
             if (!removed) {
                 openItems.add(itemId);
@@ -259,41 +278,61 @@ public class TreeTable extends Table implements Hierarchical {
                 getLogger().log(Level.FINEST, "Item {0} is now collapsed",
                         itemId);
             }
-            clearPreorderCache();
+
+            if (index != -1 && !removed) {
+                // splice in the now visible descendants of the expanded item
+                List<Object> descendants = new ArrayList<Object>();
+                addVisibleChildTree(itemId, descendants);
+                preOrder.addAll(index + 1, descendants);
+            }
         }
 
         private void clearPreorderCache() {
             preOrder = null; // clear preorder cache
+            itemIds = null;
         }
 
-        List<Object> preOrder;
+        /**
+         * Preorder of ids currently visible, updated when items are expanded
+         * or collapsed and rebuilt lazily when the container changes.
+         */
+        private transient IndexedIdList preOrder;
+
+        /**
+         * Snapshot of the visible ids returned by {@link #getItemIds()},
+         * discarded whenever the visible items change so that the returned
+         * collections can be iterated while expanding or collapsing items.
+         */
+        private transient List<Object> itemIds;
 
         /**
          * Preorder of ids currently visible
          * 
          * @return
          */
-        private List<Object> getPreOrder() {
+        private IndexedIdList getPreOrder() {
             if (preOrder == null) {
-                preOrder = new ArrayList<Object>();
+                List<Object> visibleIds = new ArrayList<Object>();
                 Collection<?> rootItemIds = getContainerDataSource()
                         .rootItemIds();
                 for (Object id : rootItemIds) {
-                    preOrder.add(id);
-                    addVisibleChildTree(id);
+                    visibleIds.add(id);
+                    addVisibleChildTree(id, visibleIds);
                 }
+                preOrder = new IndexedIdList();
+                preOrder.addAll(0, visibleIds);
             }
             return preOrder;
         }
 
-        private void addVisibleChildTree(Object id) {
+        private void addVisibleChildTree(Object id, List<Object> visibleIds) {
             if (isNodeOpen(id)) {
                 Collection<?> children = getContainerDataSource().getChildren(
                         id);
                 if (children != null) {
                     for (Object childId : children) {
-                        preOrder.add(childId);
-                        addVisibleChildTree(childId);
+                        visibleIds.add(childId);
+                        addVisibleChildTree(childId, visibleIds);
                     }
                 }
             }
@@ -216,9 +216,10 @@ public abstract class UI extends AbstractSingleComponentContainer implements
     /**
      * Timestamp keeping track of the last heartbeat of this UI. Updated to the
      * current time whenever the application receives a heartbeat or UIDL
-     * request from the client for this UI.
+     * request from the client for this UI. Volatile as heartbeats are recorded
+     * without locking the session.
      */
-    private long lastHeartbeatTimestamp = System.currentTimeMillis();
+    private volatile long lastHeartbeatTimestamp = System.currentTimeMillis();
 
     private boolean closing = false;
 
@@ -1124,7 +1125,8 @@ public abstract class UI extends AbstractSingleComponentContainer implements
      * <p>
      * This method is not intended to be overridden. If it is overridden, care
      * should be taken since this method might be called in situations where
-     * {@link UI#getCurrent()} does not return this UI.
+     * {@link UI#getCurrent()} does not return this UI, and without holding the
+     * session lock.
      * 
      * @param lastHeartbeat
      *            The time the last heartbeat request occurred, in milliseconds
@@ -0,0 +1,138 @@
+package com.vaadin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.vaadin.data.util.BeanItemContainer;
+
+/*
+ * Measures the heap retained by a BeanItemContainer holding 100,000 beans with
+ * BeanItems created when the beans are added (the default) and with lazily
+ * created BeanItems. The beans themselves are not included in the result. The
+ * result is reported as retained bytes per bean.
+ * 
+ * The retained size is measured as the difference in used heap with and
+ * without the container, so the result is only an approximation. Run a couple
+ * of times to get a feeling for the variance.
+ * 
+ * Please run with -server -Xmx1g.
+ */
+public class PerformanceTestBeanItemContainerMemory {
+
+    private static final int BEANS = 100000;
+
+    public static class Person {
+        private String firstName;
+        private String lastName;
+        private String email;
+        private int age;
+        private double salary;
+        private boolean active;
+        private Date birthDate;
+
+        public Person(int index) {
+            firstName = "First " + index;
+            lastName = "Last " + index;
+            email = "person" + index + "@example.com";
+            age = index % 100;
+            salary = index * 10.5;
+            active = index % 2 == 0;
+            birthDate = new Date(index * 1000L);
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public void setFirstName(String firstName) {
+            this.firstName = firstName;
+        }
+
+        public String getLastName() {
+            return lastName;
+        }
+
+        public void setLastName(String lastName) {
+            this.lastName = lastName;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public double getSalary() {
+            return salary;
+        }
+
+        public void setSalary(double salary) {
+            this.salary = salary;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public Date getBirthDate() {
+            return birthDate;
+        }
+
+        public void setBirthDate(Date birthDate) {
+            this.birthDate = birthDate;
+        }
+    }
+
+    public static void main(String[] args) {
+        List<Person> beans = new ArrayList<Person>(BEANS);
+        for (int i = 0; i < BEANS; i++) {
+            beans.add(new Person(i));
+        }
+
+        for (boolean lazy : new boolean[] { false, true, false, true }) {
+            long withoutContainer = getUsedMemory();
+
+            long start = System.nanoTime();
+            BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                    Person.class);
+            container.setLazyItems(lazy);
+            container.addAll(beans);
+            long end = System.nanoTime();
+
+            long withContainer = getUsedMemory();
+            long retained = withContainer - withoutContainer;
+
+            // keep the container reachable until measured
+            if (container.size() != BEANS) {
+                throw new IllegalStateException();
+            }
+
+            System.out.println((lazy ? "lazy : " : "eager: ") + retained
+                    / BEANS + " bytes retained per bean, addAll "
+                    + (end - start) / 1000000 + " ms");
+        }
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
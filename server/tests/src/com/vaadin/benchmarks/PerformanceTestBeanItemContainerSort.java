@@ -0,0 +1,81 @@
+package com.vaadin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.vaadin.data.util.BeanItemContainer;
+import com.vaadin.data.util.DefaultItemSorter;
+
+/*
+ * Compares sorting a BeanItemContainer with 500,000 items on two properties
+ * when DefaultItemSorter reads the property values once per item (the
+ * default) and when the values are read in every comparison.
+ * 
+ * Reading values in every comparison is forced by overriding
+ * DefaultItemSorter.compare, which disables sorting by extracted keys.
+ * 
+ * Please run with -server -Xmx1g.
+ */
+public class PerformanceTestBeanItemContainerSort {
+
+    private static final int ITEMS = 500000;
+    private static final int ROUNDS = 5;
+
+    public static class Person {
+        private String lastName;
+        private int age;
+
+        public Person(String lastName, int age) {
+            this.lastName = lastName;
+            this.age = age;
+        }
+
+        public String getLastName() {
+            return lastName;
+        }
+
+        public void setLastName(String lastName) {
+            this.lastName = lastName;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        List<Person> persons = new ArrayList<Person>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            persons.add(new Person("Name" + random.nextInt(ITEMS / 10),
+                    random.nextInt(100)));
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (boolean extractKeys : new boolean[] { false, true }) {
+                BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                        Person.class, persons);
+                if (!extractKeys) {
+                    container.setItemSorter(new DefaultItemSorter() {
+                        @Override
+                        public int compare(Object o1, Object o2) {
+                            return super.compare(o1, o2);
+                        }
+                    });
+                }
+
+                long start = System.currentTimeMillis();
+                container.sort(new Object[] { "lastName", "age" },
+                        new boolean[] { true, false });
+                long time = System.currentTimeMillis() - start;
+                System.out.println((extractKeys ? "extracted keys: "
+                        : "comparator:     ") + time + " ms");
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.vaadin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.data.Property;
+import com.vaadin.data.util.BeanItem;
+import com.vaadin.data.util.MethodProperty;
+import com.vaadin.data.util.NestedMethodProperty;
+
+/*
+ * Measures the cost of creating bean items and properties for beans and of
+ * reading property values through them: BeanItem creation for a bean (which
+ * introspects the bean class), MethodProperty and NestedMethodProperty
+ * creation by property name, and value reads through the created properties.
+ * 
+ * Please run with -server -Xmx512m and optionally -verbose:gc.
+ */
+public class PerformanceTestBeanPropertyAccess {
+
+    private static final int BEANS = 10000;
+    private static final int ROUNDS = 100;
+    private static final int ITERATIONS = 10;
+
+    public static class Address {
+        private String street;
+        private int postalCode;
+
+        public Address(String street, int postalCode) {
+            this.street = street;
+            this.postalCode = postalCode;
+        }
+
+        public String getStreet() {
+            return street;
+        }
+
+        public void setStreet(String street) {
+            this.street = street;
+        }
+
+        public int getPostalCode() {
+            return postalCode;
+        }
+
+        public void setPostalCode(int postalCode) {
+            this.postalCode = postalCode;
+        }
+    }
+
+    public static class Person {
+        private String name;
+        private int age;
+        private boolean active;
+        private Address address;
+
+        public Person(int index) {
+            name = "Person " + index;
+            age = index % 100;
+            active = index % 2 == 0;
+            address = new Address("Street " + index, index);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public Address getAddress() {
+            return address;
+        }
+
+        public void setAddress(Address address) {
+            this.address = address;
+        }
+    }
+
+    private static Object sink;
+
+    public static void main(String[] args) {
+        List<Person> beans = new ArrayList<Person>(BEANS);
+        for (int i = 0; i < BEANS; i++) {
+            beans.add(new Person(i));
+        }
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            boolean report = i == ITERATIONS - 1;
+            if (report) {
+                System.out.println("warmup complete.");
+            }
+            List<BeanItem<Person>> items = createItems(beans, report);
+            createProperties(beans, report);
+            List<Property<?>> nestedProperties = createNestedProperties(beans,
+                    report);
+            readItems(items, report);
+            readProperties(nestedProperties, report);
+        }
+    }
+
+    private static List<BeanItem<Person>> createItems(List<Person> beans,
+            boolean report) {
+        List<BeanItem<Person>> items = new ArrayList<BeanItem<Person>>(
+                BEANS);
+        long start = System.nanoTime();
+        for (Person bean : beans) {
+            items.add(new BeanItem<Person>(bean));
+        }
+        report(report, "new BeanItem(bean)", start, BEANS);
+        return items;
+    }
+
+    private static void createProperties(List<Person> beans, boolean report) {
+        List<Property<?>> properties = new ArrayList<Property<?>>(BEANS);
+        long start = System.nanoTime();
+        for (Person bean : beans) {
+            properties.add(new MethodProperty<Object>(bean, "name"));
+        }
+        report(report, "new MethodProperty(bean, name)", start, BEANS);
+    }
+
+    private static List<Property<?>> createNestedProperties(
+            List<Person> beans, boolean report) {
+        List<Property<?>> properties = new ArrayList<Property<?>>(BEANS);
+        long start = System.nanoTime();
+        for (Person bean : beans) {
+            properties.add(new NestedMethodProperty<Object>(bean,
+                    "address.street"));
+        }
+        report(report, "new NestedMethodProperty(bean, address.street)",
+                start, BEANS);
+        return properties;
+    }
+
+    private static void readItems(List<BeanItem<Person>> items,
+            boolean report) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (BeanItem<Person> item : items) {
+                sink = item.getItemProperty("name").getValue();
+                sink = item.getItemProperty("age").getValue();
+                sink = item.getItemProperty("active").getValue();
+            }
+        }
+        report(report, "BeanItem property read", start, ROUNDS * BEANS * 3);
+    }
+
+    private static void readProperties(List<Property<?>> properties,
+            boolean report) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Property<?> property : properties) {
+                sink = property.getValue();
+            }
+        }
+        report(report, "NestedMethodProperty read", start, ROUNDS * BEANS);
+    }
+
+    private static void report(boolean report, String name, long start,
+            int operations) {
+        long end = System.nanoTime();
+        if (report) {
+            System.out.println(name + ": " + (end - start) / operations
+                    + " ns/op");
+        }
+    }
+}
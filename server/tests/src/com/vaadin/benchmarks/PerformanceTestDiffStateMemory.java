@@ -0,0 +1,118 @@
+package com.vaadin.benchmarks;
+
+import java.io.StringWriter;
+
+import com.vaadin.server.Constants;
+import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.MockServletConfig;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.communication.UidlWriter;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+
+/*
+ * Measures the heap retained by the diff states stored in ConnectorTracker
+ * after a full repaint, using fully encoded JSONObjects (the default) and
+ * compact diff states. The result is reported as retained bytes per 1,000
+ * connectors.
+ * 
+ * The retained size is measured as the difference in used heap before and
+ * after the diff states have been discarded, so the result is only an
+ * approximation. Run a couple of times to get a feeling for the variance.
+ * 
+ * Please run with -server -Xmx512m.
+ */
+public class PerformanceTestDiffStateMemory {
+
+    private static final int CONNECTORS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        for (boolean compact : new boolean[] { false, true, false, true }) {
+            UI ui = createUI(createSession(compact), CONNECTORS);
+
+            ui.getSession().getCommunicationManager().repaintAll(ui);
+            new UidlWriter().write(ui, new StringWriter(), true, false);
+
+            long withDiffStates = getUsedMemory();
+            ui.getConnectorTracker().markAllClientSidesUninitialized();
+            long withoutDiffStates = getUsedMemory();
+
+            long retained = (withDiffStates - withoutDiffStates) * 1000
+                    / CONNECTORS;
+            System.out.println((compact ? "compact" : "JSON   ") + ": "
+                    + retained / 1024 + " kB retained per 1,000 connectors");
+        }
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static VaadinSession createSession(boolean compact)
+            throws Exception {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        MockDeploymentConfiguration configuration = new MockDeploymentConfiguration();
+        configuration.setApplicationOrSystemProperty(
+                Constants.SERVLET_PARAMETER_COMPACT_DIFF_STATE,
+                String.valueOf(compact));
+        VaadinServletService service = new VaadinServletService(servlet,
+                configuration);
+        service.init();
+
+        VaadinSession session = new AlwaysLockedVaadinSession(service);
+        session.setCommunicationManager(new LegacyCommunicationManager(
+                session));
+        session.setConfiguration(configuration);
+        return session;
+    }
+
+    private static UI createUI(VaadinSession session, int connectors) {
+        UI ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+
+        CssLayout root = new CssLayout();
+        CssLayout layout = null;
+        for (int i = 0; i < connectors; i++) {
+            if (i % 100 == 0) {
+                layout = new CssLayout();
+                root.addComponent(layout);
+            }
+            switch (i % 3) {
+            case 0:
+                Label label = new Label("Label " + i);
+                label.setDescription("Description " + i);
+                layout.addComponent(label);
+                break;
+            case 1:
+                Button button = new Button("Button " + i);
+                button.addStyleName("primary");
+                layout.addComponent(button);
+                break;
+            default:
+                TextField textField = new TextField("Field " + i);
+                textField.setValue("Value " + i);
+                textField.setWidth("100%");
+                layout.addComponent(textField);
+            }
+        }
+        ui.setContent(root);
+        return ui;
+    }
+}
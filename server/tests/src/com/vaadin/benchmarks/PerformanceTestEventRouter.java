@@ -0,0 +1,118 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.EventObject;
+
+import com.vaadin.data.Property;
+import com.vaadin.data.Property.ValueChangeEvent;
+import com.vaadin.data.Property.ValueChangeListener;
+import com.vaadin.event.EventRouter;
+import com.vaadin.ui.AbstractField;
+import com.vaadin.ui.TextField;
+import com.vaadin.util.ReflectTools;
+
+/*
+ * Compares firing value change events to listeners registered with the
+ * ValueChangeListener interface method, which are invoked directly, to the
+ * same listeners registered by method name, which are invoked using
+ * reflection as all listeners used to be.
+ * 
+ * Reports the average time per event and, when the JVM supports it, the
+ * number of bytes allocated per event.
+ * 
+ * Please run with -server.
+ */
+public class PerformanceTestEventRouter {
+
+    private static final int LISTENERS = 5;
+    private static final int EVENTS = 1000000;
+    private static final int ROUNDS = 5;
+
+    private static final Method VALUE_CHANGE_METHOD = ReflectTools.findMethod(
+            ValueChangeListener.class, "valueChange", ValueChangeEvent.class);
+
+    public static class CountingListener implements ValueChangeListener {
+        private int count = 0;
+
+        @Override
+        public void valueChange(ValueChangeEvent event) {
+            count++;
+        }
+    }
+
+    public static void main(String[] args) {
+        EventRouter direct = createRouter(true);
+        EventRouter reflective = createRouter(false);
+        AbstractField.ValueChangeEvent event = new AbstractField.ValueChangeEvent(
+                new TextField());
+
+        for (int i = 0; i < ROUNDS; i++) {
+            report("Round " + i + ": reflection", reflective, event);
+            report("Round " + i + ": direct", direct, event);
+        }
+    }
+
+    private static EventRouter createRouter(boolean direct) {
+        EventRouter router = new EventRouter();
+        for (int i = 0; i < LISTENERS; i++) {
+            if (direct) {
+                router.addListener(Property.ValueChangeEvent.class,
+                        new CountingListener(), VALUE_CHANGE_METHOD);
+            } else {
+                router.addListener(Property.ValueChangeEvent.class,
+                        new CountingListener(), "valueChange");
+            }
+        }
+        return router;
+    }
+
+    private static void report(String name, EventRouter router,
+            EventObject event) {
+        long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            router.fireEvent(event);
+        }
+        long end = System.nanoTime();
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        System.out.println(name + ": " + (end - start) / EVENTS
+                + " ns/event with " + LISTENERS + " listeners"
+                + (allocatedBefore < 0 ? "" : ", " + allocated / EVENTS
+                        + " bytes allocated/event"));
+    }
+
+    /*
+     * Uses the HotSpot specific per thread allocation counter if available.
+     * Returns -1 if not supported.
+     */
+    private static long getAllocatedBytes() {
+        try {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            Method method = threadMXBean.getClass().getMethod(
+                    "getThreadAllocatedBytes", long.class);
+            method.setAccessible(true);
+            return (Long) method.invoke(threadMXBean, Thread.currentThread()
+                    .getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.vaadin.benchmarks;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+
+import org.json.JSONObject;
+
+import com.vaadin.server.EncodeResult;
+import com.vaadin.server.JsonCodec;
+import com.vaadin.server.JsonCodec.BeanProperty;
+import com.vaadin.server.JsonCodec.BeanPropertyFactory;
+import com.vaadin.shared.AbstractComponentState;
+import com.vaadin.shared.communication.SharedState;
+import com.vaadin.shared.ui.tabsheet.TabState;
+import com.vaadin.shared.ui.tabsheet.TabsheetState;
+
+/*
+ * Measures shared state encoding throughput of JsonCodec for
+ * AbstractComponentState and TabsheetState sized states, in the style of a
+ * JMH benchmark: a number of warmup iterations followed by measured iterations
+ * of a fixed duration, reporting operations per second.
+ * 
+ * The default cached reflective accessors are compared to accessors that look
+ * up the reflected members on every call, which is how properties were
+ * accessed before BeanPropertyFactory was introduced.
+ * 
+ * Please run with -server.
+ */
+public class PerformanceTestJsonCodec {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        AbstractComponentState componentState = createComponentState();
+        TabsheetState tabsheetState = createTabsheetState(20);
+
+        for (BeanPropertyFactory factory : new BeanPropertyFactory[] {
+                null, new UncachedReflectionFactory() }) {
+            JsonCodec.setBeanPropertyFactory(factory);
+            String name = factory == null ? "cached reflection"
+                    : "uncached reflection";
+
+            runBenchmark(name + ", AbstractComponentState", componentState,
+                    AbstractComponentState.class);
+            runBenchmark(name + ", TabsheetState", tabsheetState,
+                    TabsheetState.class);
+        }
+    }
+
+    private static void runBenchmark(String name, SharedState state,
+            Class<? extends SharedState> stateType) throws Exception {
+        // Diff against a default state like LegacyCommunicationManager does
+        JSONObject reference = (JSONObject) JsonCodec.encode(
+                stateType.newInstance(), null, stateType, null)
+                .getEncodedValue();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(state, stateType, reference);
+        }
+
+        double total = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            total += runIteration(state, stateType, reference);
+        }
+        System.out.println(String.format("%-50s %12.0f ops/s", name, total
+                / MEASUREMENT_ITERATIONS));
+    }
+
+    private static double runIteration(SharedState state,
+            Class<? extends SharedState> stateType, JSONObject reference)
+            throws Exception {
+        long operations = 0;
+        long start = System.nanoTime();
+        long end = start + ITERATION_MILLIS * 1000000;
+        long now;
+        int sink = 0;
+        do {
+            for (int i = 0; i < 100; i++) {
+                EncodeResult result = JsonCodec.encode(state, reference,
+                        stateType, null);
+                sink += ((JSONObject) result.getDiff()).length();
+            }
+            operations += 100;
+            now = System.nanoTime();
+        } while (now < end);
+
+        if (sink == 42) {
+            // Prevent dead code elimination
+            System.out.print("");
+        }
+        return operations * 1000000000.0 / (now - start);
+    }
+
+    private static AbstractComponentState createComponentState() {
+        AbstractComponentState state = new AbstractComponentState();
+        populate(state);
+        return state;
+    }
+
+    private static TabsheetState createTabsheetState(int tabs) {
+        TabsheetState state = new TabsheetState();
+        populate(state);
+        state.tabIndex = 3;
+        state.selected = "tab5";
+        for (int i = 0; i < tabs; i++) {
+            TabState tab = new TabState();
+            tab.caption = "Tab " + i;
+            tab.key = "tab" + i;
+            tab.description = "Description of tab " + i;
+            tab.closable = i % 2 == 0;
+            state.tabs.add(tab);
+        }
+        return state;
+    }
+
+    private static void populate(AbstractComponentState state) {
+        state.caption = "Caption";
+        state.description = "Tooltip";
+        state.width = "100%";
+        state.height = "300px";
+        state.immediate = true;
+        state.id = "component";
+        state.styles = new ArrayList<String>();
+        state.styles.add("first");
+        state.styles.add("second");
+    }
+
+    private static class UncachedReflectionFactory implements
+            BeanPropertyFactory {
+
+        @Override
+        public BeanProperty createFieldProperty(Class<?> beanType,
+                final Field field) {
+            return new BeanProperty() {
+                @Override
+                public Object getValue(Object bean) throws Exception {
+                    return field.get(bean);
+                }
+
+                @Override
+                public void setValue(Object bean, Object value)
+                        throws Exception {
+                    field.set(bean, value);
+                }
+
+                @Override
+                public String getName() {
+                    return field.getName();
+                }
+
+                @Override
+                public Type getType() {
+                    return field.getGenericType();
+                }
+            };
+        }
+
+        @Override
+        public BeanProperty createMethodProperty(Class<?> beanType,
+                final PropertyDescriptor pd) {
+            return new BeanProperty() {
+                @Override
+                public Object getValue(Object bean) throws Exception {
+                    return pd.getReadMethod().invoke(bean);
+                }
+
+                @Override
+                public void setValue(Object bean, Object value)
+                        throws Exception {
+                    pd.getWriteMethod().invoke(bean, value);
+                }
+
+                @Override
+                public String getName() {
+                    String fieldName = pd.getWriteMethod().getName()
+                            .substring(3);
+                    return Character.toLowerCase(fieldName.charAt(0))
+                            + fieldName.substring(1);
+                }
+
+                @Override
+                public Type getType() {
+                    return pd.getReadMethod().getGenericReturnType();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.benchmarks;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.vaadin.server.communication.JsonStreamReader;
+import com.vaadin.server.communication.ServerRpcHandler.RpcRequest;
+import com.vaadin.shared.ApplicationConstants;
+
+/*
+ * Compares parsing a client message with a burst of 1000 invocations the way
+ * ServerRpcHandler used to (copying the message into a string, parsing it
+ * and then parsing the invocations a second time from their string form) to
+ * reading it in a single pass with a JsonStreamReader.
+ * 
+ * Reports the average time per message and, when the JVM supports it, the
+ * number of bytes allocated per message.
+ * 
+ * Please run with -server and optionally -verbose:gc.
+ */
+public class PerformanceTestRpcRequest {
+
+    private static final int INVOCATIONS = 1000;
+    private static final int ROUNDS = 500;
+
+    private enum Mode {
+        STRING, STREAMING;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String message = createMessage(INVOCATIONS);
+
+        for (Mode mode : Mode.values()) {
+            runBenchmark(message, mode, ROUNDS);
+        }
+        System.gc();
+        System.out.println("warmup and gc complete.");
+
+        for (Mode mode : Mode.values()) {
+            System.gc();
+            long allocatedBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+            runBenchmark(message, mode, ROUNDS);
+            long end = System.nanoTime();
+            long allocated = getAllocatedBytes() - allocatedBefore;
+
+            System.out.println(mode + ": message " + message.length() / 1024
+                    + " kB, " + (end - start) / ROUNDS / 1000 + " us/message"
+                    + (allocatedBefore < 0 ? "" : ", " + allocated / ROUNDS
+                            / 1024 + " kB allocated/message"));
+        }
+    }
+
+    private static int runBenchmark(String message, Mode mode, int rounds)
+            throws Exception {
+        int invocations = 0;
+        for (int i = 0; i < rounds; i++) {
+            Reader reader = new StringReader(message);
+            RpcRequest request;
+            if (mode == Mode.STRING) {
+                request = new RpcRequest(readMessage(reader));
+            } else {
+                request = new RpcRequest(
+                        new JsonStreamReader(reader).readObject());
+            }
+            invocations += request.getRpcInvocationsData().length();
+        }
+        return invocations;
+    }
+
+    // Same as ServerRpcHandler.getMessage
+    private static String readMessage(Reader reader) throws Exception {
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        char[] buffer = new char[64 * 1024];
+        while (true) {
+            int read = reader.read(buffer);
+            if (read == -1) {
+                break;
+            }
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+
+    /*
+     * Alternating legacy variable changes, e.g. for table selections, and RPC
+     * calls with a few parameters.
+     */
+    private static String createMessage(int invocations) throws Exception {
+        JSONArray rpc = new JSONArray();
+        for (int i = 0; i < invocations; i++) {
+            String connectorId = String.valueOf(i % 100 + 1);
+            JSONArray parameters = new JSONArray();
+            if (i % 2 == 0) {
+                rpc.put(new JSONArray().put(connectorId)
+                        .put(ApplicationConstants.UPDATE_VARIABLE_INTERFACE)
+                        .put(ApplicationConstants.UPDATE_VARIABLE_METHOD)
+                        .put(parameters));
+                parameters.put("selected");
+                JSONArray selected = new JSONArray();
+                for (int j = 0; j < 10; j++) {
+                    selected.put(String.valueOf(i + j));
+                }
+                parameters.put(new JSONArray().put("S").put(selected));
+            } else {
+                rpc.put(new JSONArray().put(connectorId)
+                        .put("com.vaadin.shared.ui.button.ButtonServerRpc")
+                        .put("click").put(parameters));
+                parameters.put(new JSONObject().put("button", "LEFT")
+                        .put("clientX", i).put("clientY", i * 2)
+                        .put("altKey", false)
+                        .put("type", "Text with \"quotes\" \u00e4 " + i));
+            }
+        }
+        JSONObject message = new JSONObject();
+        message.put(ApplicationConstants.CSRF_TOKEN,
+                "7ac8b7d2-4d34-4a1c-9b2b-4f4e3b8f1a52");
+        message.put(ApplicationConstants.RPC_INVOCATIONS, rpc);
+        message.put(ApplicationConstants.SERVER_SYNC_ID, 42);
+        return message.toString();
+    }
+
+    /*
+     * Uses the HotSpot specific per thread allocation counter if available.
+     * Returns -1 if not supported.
+     */
+    private static long getAllocatedBytes() {
+        try {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            Method method = threadMXBean.getClass().getMethod(
+                    "getThreadAllocatedBytes", long.class);
+            method.setAccessible(true);
+            return (Long) method.invoke(threadMXBean, Thread.currentThread()
+                    .getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.vaadin.benchmarks;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.MockServletConfig;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.communication.UidlWriter;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.TwinColSelect;
+import com.vaadin.ui.UI;
+
+/*
+ * Measures the size of the response sent when the selection of a TwinColSelect
+ * with many options changes on the server, with and without keeping unchanged
+ * options cached on the client.
+ * 
+ * Reports the response size, the average time per response and, when the JVM
+ * supports it, the number of bytes allocated per response.
+ * 
+ * Please run with -server -Xmx512m and optionally -verbose:gc.
+ */
+public class PerformanceTestSelectRepaint {
+
+    private static final int OPTIONS = 20000;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) throws Exception {
+        VaadinSession session = createSession();
+
+        for (boolean cached : new boolean[] { false, true }) {
+            UI ui = createUI(session);
+            TwinColSelect select = createSelect(cached);
+            ui.setContent(select);
+            write(ui, true);
+
+            // warmup
+            runBenchmark(ui, select, ROUNDS);
+            System.gc();
+
+            long allocatedBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+            int length = runBenchmark(ui, select, ROUNDS);
+            long end = System.nanoTime();
+            long allocated = getAllocatedBytes() - allocatedBefore;
+
+            System.out.println((cached ? "cached options: " : "all options:    ")
+                    + "response " + length / 1024 + " kB, "
+                    + (end - start) / ROUNDS / 1000 + " us/response"
+                    + (allocatedBefore < 0 ? "" : ", " + allocated / ROUNDS
+                            / 1024 + " kB allocated/response"));
+        }
+    }
+
+    private static int runBenchmark(UI ui, TwinColSelect select, int rounds)
+            throws Exception {
+        List<Object> itemIds = new ArrayList<Object>(select.getItemIds());
+        int length = 0;
+        for (int i = 0; i < rounds; i++) {
+            select.setValue(itemIds.subList(0, i + 1));
+            length = write(ui, false);
+        }
+        return length;
+    }
+
+    private static int write(UI ui, boolean repaintAll) throws Exception {
+        if (repaintAll) {
+            ui.getSession().getCommunicationManager().repaintAll(ui);
+        }
+        StringWriter writer = new StringWriter();
+        new UidlWriter().write(ui, writer, repaintAll, false);
+        return writer.getBuffer().length();
+    }
+
+    private static TwinColSelect createSelect(boolean optionsCachedOnClient) {
+        TwinColSelect select = new TwinColSelect();
+        select.setOptionsCachedOnClient(optionsCachedOnClient);
+        for (int i = 0; i < OPTIONS; i++) {
+            select.addItem("Option " + i);
+        }
+        return select;
+    }
+
+    private static VaadinSession createSession() throws Exception {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        VaadinServletService service = new VaadinServletService(servlet,
+                new MockDeploymentConfiguration());
+        service.init();
+
+        VaadinSession session = new AlwaysLockedVaadinSession(service);
+        session.setCommunicationManager(new LegacyCommunicationManager(
+                session));
+        session.setConfiguration(service.getDeploymentConfiguration());
+        return session;
+    }
+
+    private static UI createUI(VaadinSession session) {
+        UI ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+        return ui;
+    }
+
+    /*
+     * Uses the HotSpot specific per thread allocation counter if available.
+     * Returns -1 if not supported.
+     */
+    private static long getAllocatedBytes() {
+        try {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            Method method = threadMXBean.getClass().getMethod(
+                    "getThreadAllocatedBytes", long.class);
+            method.setAccessible(true);
+            return (Long) method.invoke(threadMXBean, Thread.currentThread()
+                    .getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
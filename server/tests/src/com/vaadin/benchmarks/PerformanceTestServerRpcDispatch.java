@@ -0,0 +1,126 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.benchmarks;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.vaadin.server.ServerRpcManager;
+import com.vaadin.server.ServerRpcMethodInvocation;
+import com.vaadin.shared.ui.slider.SliderServerRpc;
+
+/*
+ * Compares dispatching 1M slider value change RPC calls the way
+ * ServerRpcMethodInvocation and ServerRpcManager used to (building a signature
+ * string for the method cache lookup, copying the parameter types and the
+ * arguments for each call) to the precomputed per interface dispatch table.
+ * 
+ * Both variants resolve the generic parameter types as needed for decoding the
+ * parameters with JsonCodec, and invoke the RPC implementation.
+ * 
+ * Please run with -server.
+ */
+public class PerformanceTestServerRpcDispatch {
+
+    private static final int INVOCATIONS = 1000000;
+    private static final int ROUNDS = 5;
+
+    private static class CountingSliderRpc implements SliderServerRpc {
+        private double sum = 0;
+
+        @Override
+        public void valueChanged(double value) {
+            sum += value;
+        }
+    }
+
+    private static final Map<String, Method> invocationMethodCache = new ConcurrentHashMap<String, Method>(
+            128, 0.75f, 1);
+
+    public static void main(String[] args) throws Exception {
+        CountingSliderRpc rpc = new CountingSliderRpc();
+        ServerRpcManager<SliderServerRpc> manager = new ServerRpcManager<SliderServerRpc>(
+                rpc, SliderServerRpc.class);
+
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            runPrevious(rpc, INVOCATIONS);
+            long previous = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            runDispatcher(manager, INVOCATIONS);
+            long dispatcher = System.nanoTime() - start;
+
+            System.out.println("Round " + i + ": previous "
+                    + previous / INVOCATIONS + " ns/call, dispatcher "
+                    + dispatcher / INVOCATIONS + " ns/call");
+        }
+        System.out.println(rpc.sum);
+    }
+
+    private static void runDispatcher(
+            ServerRpcManager<SliderServerRpc> manager, int invocations)
+            throws Exception {
+        for (int i = 0; i < invocations; i++) {
+            ServerRpcMethodInvocation invocation = new ServerRpcMethodInvocation(
+                    "1", SliderServerRpc.class, "valueChanged", 1);
+            Type[] types = invocation.getGenericParameterTypes();
+            Object[] parameters = new Object[types.length];
+            parameters[0] = Double.valueOf(i);
+            invocation.setParameters(parameters);
+            manager.applyInvocation(invocation);
+        }
+    }
+
+    private static void runPrevious(SliderServerRpc rpc, int invocations)
+            throws Exception {
+        for (int i = 0; i < invocations; i++) {
+            Method method = findInvocationMethod(SliderServerRpc.class,
+                    "valueChanged", 1);
+            Type[] types = method.getGenericParameterTypes();
+            Object[] parameters = new Object[types.length];
+            parameters[0] = Double.valueOf(i);
+
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            Object[] args = new Object[parameterTypes.length];
+            for (int j = 0; j < args.length; j++) {
+                args[j] = parameters[j];
+            }
+            method.invoke(rpc, args);
+        }
+    }
+
+    // As previously in ServerRpcMethodInvocation
+    private static Method findInvocationMethod(Class<?> targetType,
+            String methodName, int parameterCount) {
+        String signature = targetType.getName() + "." + methodName + "("
+                + parameterCount;
+        Method invocationMethod = invocationMethodCache.get(signature);
+        if (invocationMethod == null) {
+            for (Method method : targetType.getMethods()) {
+                if (method.getName().equals(methodName)
+                        && method.getParameterTypes().length == parameterCount) {
+                    invocationMethod = method;
+                    invocationMethodCache.put(signature, invocationMethod);
+                    break;
+                }
+            }
+        }
+        return invocationMethod;
+    }
+}
@@ -0,0 +1,73 @@
+package com.vaadin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.vaadin.data.util.HierarchicalContainer;
+import com.vaadin.ui.TreeTable;
+
+/*
+ * Measures expanding and collapsing a node of a TreeTable with 100,000 visible
+ * items backed by a HierarchicalContainer, and looking up the index of a
+ * visible item after each toggle.
+ * 
+ * Please run with -server -Xmx512m and optionally -verbose:gc.
+ */
+public class PerformanceTestTreeTableToggle {
+
+    private static final int PARENTS = 1000;
+    private static final int CHILDREN = 100;
+    private static final int ROUNDS = 200;
+
+    private static class BenchmarkTreeTable extends TreeTable {
+        public int indexOf(Object itemId) {
+            return indexOfId(itemId);
+        }
+    }
+
+    public static void main(String[] args) {
+        HierarchicalContainer container = new HierarchicalContainer();
+        List<Object> parents = new ArrayList<Object>();
+        List<Object> children = new ArrayList<Object>();
+        for (int i = 0; i < PARENTS; i++) {
+            Object parent = container.addItem();
+            parents.add(parent);
+            for (int j = 0; j < CHILDREN; j++) {
+                Object child = container.addItem();
+                container.setParent(child, parent);
+                container.setChildrenAllowed(child, false);
+                children.add(child);
+            }
+        }
+
+        BenchmarkTreeTable treeTable = new BenchmarkTreeTable();
+        treeTable.setContainerDataSource(container);
+        for (Object parent : parents) {
+            treeTable.setCollapsed(parent, false);
+        }
+        System.out.println("visible items: " + treeTable.size());
+
+        // warmup
+        runBenchmark(treeTable, parents, children, ROUNDS);
+        System.out.println("warmup complete.");
+
+        long start = System.nanoTime();
+        runBenchmark(treeTable, parents, children, ROUNDS);
+        long end = System.nanoTime();
+        System.out.println("collapse + expand + 2 x indexOfId: "
+                + (end - start) / ROUNDS / 1000 + " us");
+    }
+
+    private static void runBenchmark(BenchmarkTreeTable treeTable,
+            List<Object> parents, List<Object> children, int rounds) {
+        Random random = new Random(0);
+        for (int i = 0; i < rounds; i++) {
+            Object parent = parents.get(random.nextInt(parents.size()));
+            treeTable.setCollapsed(parent, true);
+            treeTable.indexOf(children.get(random.nextInt(children.size())));
+            treeTable.setCollapsed(parent, false);
+            treeTable.indexOf(children.get(random.nextInt(children.size())));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.vaadin.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.zip.GZIPOutputStream;
+
+import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.MockServletConfig;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.communication.UidlWriter;
+import com.vaadin.server.communication.Utf8Writer;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+
+/*
+ * Compares writing the initial render of a UI producing a response of about
+ * 2 MB the way UidlRequestHandler does by default (collecting the response
+ * into a string which is then encoded to the output stream) to streaming it
+ * through a Utf8Writer, with and without gzip compression.
+ * 
+ * Reports the average time per response and, when the JVM supports it, the
+ * number of bytes allocated per response. Besides the total, the buffered
+ * mode holds the whole response in memory two to three times at its peak,
+ * whereas the streaming modes only hold the encoding buffer.
+ * 
+ * Please run with -server -Xmx512m and optionally -verbose:gc.
+ */
+public class PerformanceTestUidlResponse {
+
+    private static final int CONNECTORS = 24000;
+    private static final int ROUNDS = 20;
+
+    private enum Mode {
+        BUFFERED, STREAMING, STREAMING_GZIP;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        VaadinSession session = createSession();
+        UI ui = createUI(session, CONNECTORS);
+
+        for (Mode mode : Mode.values()) {
+            runBenchmark(session, ui, mode, ROUNDS);
+        }
+        System.gc();
+        System.out.println("warmup and gc complete.");
+
+        for (Mode mode : Mode.values()) {
+            System.gc();
+            long allocatedBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+            long length = runBenchmark(session, ui, mode, ROUNDS);
+            long end = System.nanoTime();
+            long allocated = getAllocatedBytes() - allocatedBefore;
+
+            System.out.println(mode + ": response " + length / 1024 + " kB, "
+                    + (end - start) / ROUNDS / 1000 + " us/response"
+                    + (allocatedBefore < 0 ? "" : ", " + allocated / ROUNDS
+                            / 1024 + " kB allocated/response"));
+        }
+    }
+
+    private static long runBenchmark(VaadinSession session, UI ui, Mode mode,
+            int rounds) throws Exception {
+        UidlWriter uidlWriter = new UidlWriter();
+        uidlWriter.setStreamingJson(true);
+
+        long length = 0;
+        for (int i = 0; i < rounds; i++) {
+            session.getCommunicationManager().repaintAll(ui);
+            CountingOutputStream out = new CountingOutputStream();
+            if (mode == Mode.BUFFERED) {
+                StringWriter stringWriter = new StringWriter();
+                writeResponse(uidlWriter, ui, stringWriter);
+                Writer writer = new OutputStreamWriter(out, "UTF-8");
+                writer.write(stringWriter.toString());
+                writer.close();
+            } else {
+                OutputStream stream = out;
+                if (mode == Mode.STREAMING_GZIP) {
+                    stream = new GZIPOutputStream(stream);
+                }
+                Writer writer = new Utf8Writer(stream);
+                writeResponse(uidlWriter, ui, writer);
+                writer.close();
+            }
+            length = out.count;
+        }
+        return length;
+    }
+
+    private static void writeResponse(UidlWriter uidlWriter, UI ui,
+            Writer writer) throws Exception {
+        writer.write("for(;;);[{");
+        uidlWriter.write(ui, writer, true, false);
+        writer.write("}]");
+    }
+
+    private static VaadinSession createSession() throws Exception {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        VaadinServletService service = new VaadinServletService(servlet,
+                new MockDeploymentConfiguration());
+        service.init();
+
+        VaadinSession session = new AlwaysLockedVaadinSession(service);
+        session.setCommunicationManager(new LegacyCommunicationManager(
+                session));
+        session.setConfiguration(service.getDeploymentConfiguration());
+        return session;
+    }
+
+    private static UI createUI(VaadinSession session, int connectors) {
+        UI ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+
+        CssLayout root = new CssLayout();
+        ui.setContent(root);
+
+        CssLayout row = null;
+        for (int i = 0; i < connectors; i++) {
+            if (i % 10 == 0) {
+                row = new CssLayout();
+                row.addStyleName("row");
+                root.addComponent(row);
+            }
+            switch (i % 3) {
+            case 0:
+                row.addComponent(new Label("Label " + i));
+                break;
+            case 1:
+                row.addComponent(new Button("Button " + i));
+                break;
+            default:
+                TextField textField = new TextField("Field " + i);
+                textField.setValue("Value " + i);
+                row.addComponent(textField);
+            }
+        }
+        return ui;
+    }
+
+    /*
+     * Uses the HotSpot specific per thread allocation counter if available.
+     * Returns -1 if not supported.
+     */
+    private static long getAllocatedBytes() {
+        try {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            Method method = threadMXBean.getClass().getMethod(
+                    "getThreadAllocatedBytes", long.class);
+            method.setAccessible(true);
+            return (Long) method.invoke(threadMXBean, Thread.currentThread()
+                    .getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
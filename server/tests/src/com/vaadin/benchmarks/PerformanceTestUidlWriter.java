@@ -0,0 +1,147 @@
+package com.vaadin.benchmarks;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.MockServletConfig;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.communication.UidlWriter;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+
+/*
+ * Compares writing a full repaint of a large UI using the streaming JSON mode
+ * of UidlWriter to the mode which first builds JSON objects for the state,
+ * types, hierarchy and rpc sections.
+ * 
+ * Reports the average time per response and, when the JVM supports it, the
+ * number of bytes allocated per response.
+ * 
+ * Please run with -server -Xmx512m and optionally -verbose:gc.
+ */
+public class PerformanceTestUidlWriter {
+
+    private static final int CONNECTORS = 5000;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) throws Exception {
+        VaadinSession session = createSession();
+        UI ui = createUI(session, CONNECTORS);
+
+        warmup(session, ui);
+
+        for (boolean streaming : new boolean[] { false, true }) {
+            System.gc();
+            long allocatedBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+            int length = runBenchmark(session, ui, streaming, ROUNDS);
+            long end = System.nanoTime();
+            long allocated = getAllocatedBytes() - allocatedBefore;
+
+            System.out.println((streaming ? "streaming" : "objects  ")
+                    + ": response " + length / 1024 + " kB, "
+                    + (end - start) / ROUNDS / 1000 + " us/response"
+                    + (allocatedBefore < 0 ? "" : ", " + allocated / ROUNDS
+                            / 1024 + " kB allocated/response"));
+        }
+    }
+
+    private static void warmup(VaadinSession session, UI ui)
+            throws Exception {
+        runBenchmark(session, ui, false, ROUNDS);
+        runBenchmark(session, ui, true, ROUNDS);
+        System.gc();
+        System.out.println("warmup and gc complete.");
+    }
+
+    private static int runBenchmark(VaadinSession session, UI ui,
+            boolean streaming, int rounds) throws Exception {
+        UidlWriter uidlWriter = new UidlWriter();
+        uidlWriter.setStreamingJson(streaming);
+
+        int length = 0;
+        for (int i = 0; i < rounds; i++) {
+            session.getCommunicationManager().repaintAll(ui);
+            StringWriter writer = new StringWriter();
+            uidlWriter.write(ui, writer, true, false);
+            length = writer.getBuffer().length();
+        }
+        return length;
+    }
+
+    private static VaadinSession createSession() throws Exception {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        VaadinServletService service = new VaadinServletService(servlet,
+                new MockDeploymentConfiguration());
+        service.init();
+
+        VaadinSession session = new AlwaysLockedVaadinSession(service);
+        session.setCommunicationManager(new LegacyCommunicationManager(
+                session));
+        session.setConfiguration(service.getDeploymentConfiguration());
+        return session;
+    }
+
+    private static UI createUI(VaadinSession session, int connectors) {
+        UI ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+
+        CssLayout root = new CssLayout();
+        ui.setContent(root);
+
+        CssLayout row = null;
+        for (int i = 0; i < connectors; i++) {
+            if (i % 10 == 0) {
+                row = new CssLayout();
+                row.addStyleName("row");
+                root.addComponent(row);
+            }
+            switch (i % 3) {
+            case 0:
+                row.addComponent(new Label("Label " + i));
+                break;
+            case 1:
+                row.addComponent(new Button("Button " + i));
+                break;
+            default:
+                TextField textField = new TextField("Field " + i);
+                textField.setValue("Value " + i);
+                row.addComponent(textField);
+            }
+        }
+        return ui;
+    }
+
+    /*
+     * Uses the HotSpot specific per thread allocation counter if available.
+     * Returns -1 if not supported.
+     */
+    private static long getAllocatedBytes() {
+        try {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            Method method = threadMXBean.getClass().getMethod(
+                    "getThreadAllocatedBytes", long.class);
+            method.setAccessible(true);
+            return (Long) method.invoke(threadMXBean, Thread.currentThread()
+                    .getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
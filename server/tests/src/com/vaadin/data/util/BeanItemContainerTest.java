@@ -7,11 +7,14 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.Assert;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Item;
+import com.vaadin.data.Property;
 
 /**
  * Test basic functionality of BeanItemContainer.
@@ -87,6 +90,29 @@ public class BeanItemContainerTest extends AbstractBeanContainerTest {
         testContainerSortingAndFiltering(getContainer());
     }
 
+    public void testLazyItemsBasicOperations() {
+        testBasicContainerOperations(getLazyContainer());
+    }
+
+    public void testLazyItemsFiltering() {
+        testContainerFiltering(getLazyContainer());
+    }
+
+    public void testLazyItemsSorting() {
+        testContainerSorting(getLazyContainer());
+    }
+
+    public void testLazyItemsSortingAndFiltering() {
+        testContainerSortingAndFiltering(getLazyContainer());
+    }
+
+    private BeanItemContainer<ClassName> getLazyContainer() {
+        BeanItemContainer<ClassName> container = getContainer();
+        container.setLazyItems(true);
+        container.setLazyItemCacheSize(2);
+        return container;
+    }
+
     // duplicated from parent class and modified - adding items to
     // BeanItemContainer differs from other containers
     public void testContainerOrdered() {
@@ -588,6 +614,166 @@ public class BeanItemContainerTest extends AbstractBeanContainerTest {
         assertEquals(3, container.size());
     }
 
+    public void testLazyItemCache() {
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class);
+        container.setLazyItems(true);
+        container.setLazyItemCacheSize(1);
+
+        Person john = new Person("John");
+        Person jane = new Person("Jane");
+        container.addAll(Arrays.asList(john, jane));
+
+        BeanItem<Person> johnItem = container.getItem(john);
+        assertSame(john, johnItem.getBean());
+        assertSame(johnItem, container.getItem(john));
+        assertSame(jane, container.getItem(jane).getBean());
+        // john has been discarded from the cache
+        assertNotSame(johnItem, container.getItem(john));
+        assertEquals("Jane", container.getContainerProperty(jane, "name")
+                .getValue());
+
+        container.setLazyItemCacheSize(0);
+        assertNotSame(container.getItem(jane), container.getItem(jane));
+
+        assertTrue(container.removeItem(john));
+        assertNull(container.getItem(john));
+        assertEquals(1, container.size());
+
+        container.removeAllItems();
+        assertNull(container.getItem(jane));
+    }
+
+    public void testLazyItemsNotCreatedByAddAll() {
+        final int[] created = new int[1];
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class) {
+            @Override
+            protected BeanItem<Person> createBeanItem(Person bean) {
+                created[0]++;
+                return super.createBeanItem(bean);
+            }
+        };
+        container.setLazyItems(true);
+
+        List<Person> persons = new ArrayList<Person>();
+        for (int i = 0; i < 100; i++) {
+            persons.add(new Person("Person " + i));
+        }
+        container.addAll(persons);
+        assertEquals(100, container.size());
+        assertEquals(0, created[0]);
+        // Adding an existing bean again has no effect
+        container.addAll(persons.subList(0, 1));
+        assertEquals(100, container.size());
+
+        // Only the requested item is created
+        Person person = persons.get(10);
+        assertSame(person, container.getItem(person).getBean());
+        assertEquals(1, created[0]);
+
+        // The item returned when adding a single bean is created and cached
+        Person added = new Person("Added");
+        BeanItem<Person> addedItem = container.addBean(added);
+        assertEquals(2, created[0]);
+        assertSame(addedItem, container.getItem(added));
+        assertEquals(101, container.size());
+        assertEquals(added, container.lastItemId());
+    }
+
+    public void testLazyItemsRefilterOnPropertyModification() {
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class);
+        container.setLazyItems(true);
+        container.setLazyItemCacheSize(0);
+
+        Person john = new Person("John");
+        Person jane = new Person("Jane");
+        container.addAll(Arrays.asList(john, jane));
+        container.addContainerFilter("name", "j", true, true);
+        assertEquals(2, container.size());
+
+        container.getContainerProperty(john, "name").setValue("Mark");
+        assertEquals(1, container.size());
+        assertEquals(jane, container.firstItemId());
+    }
+
+    public void testLazyItemsEvictedItemsDetached() {
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class);
+        container.setLazyItems(true);
+        container.setLazyItemCacheSize(1);
+
+        Person john = new Person("John");
+        Person jane = new Person("Jane");
+        container.addAll(Arrays.asList(john, jane));
+        container.addContainerFilter("name", "j", true, true);
+
+        MethodProperty<?> johnName = (MethodProperty<?>) container
+                .getContainerProperty(john, "name");
+        assertEquals(1,
+                johnName.getListeners(Property.ValueChangeEvent.class).size());
+        // evicts the item of john from the cache
+        container.getItem(jane);
+        assertTrue(johnName.getListeners(Property.ValueChangeEvent.class)
+                .isEmpty());
+
+        MethodProperty<?> janeName = (MethodProperty<?>) container
+                .getContainerProperty(jane, "name");
+        container.setLazyItemCacheSize(0);
+        assertTrue(janeName.getListeners(Property.ValueChangeEvent.class)
+                .isEmpty());
+    }
+
+    public void testLazyItemsParallelFiltering() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            BeanItemContainer<Person> plain = new BeanItemContainer<Person>(
+                    Person.class);
+            BeanItemContainer<Person> lazy = new BeanItemContainer<Person>(
+                    Person.class);
+            lazy.setLazyItems(true);
+            lazy.setLazyItemCacheSize(10);
+            lazy.setFilteringExecutor(executor);
+
+            for (int i = 0; i < 50000; i++) {
+                Person person = new Person("Person " + (i % 1000));
+                plain.addBean(person);
+                lazy.addBean(person);
+            }
+            Person first = lazy.getIdByIndex(0);
+            BeanItem<Person> firstItem = lazy.getItem(first);
+
+            plain.addContainerFilter("name", "person 1", true, true);
+            lazy.addContainerFilter("name", "person 1", true, true);
+            assertEquals(plain.getItemIds(), lazy.getItemIds());
+
+            plain.addContainerFilter("name", "person 12", true, true);
+            lazy.addContainerFilter("name", "person 12", true, true);
+            assertEquals(plain.getItemIds(), lazy.getItemIds());
+
+            // filtering does not go through the item cache
+            assertSame(firstItem, lazy.getItem(first));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testLazyItemsRequireEmptyContainer() {
+        BeanItemContainer<Person> container = new BeanItemContainer<Person>(
+                Person.class);
+        container.addBean(new Person("John"));
+        try {
+            container.setLazyItems(true);
+            fail("Should not be able to enable lazy items for a non-empty container");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        container.removeAllItems();
+        container.setLazyItems(true);
+        assertTrue(container.isLazyItems());
+    }
+
     public void testAddAll() {
         BeanItemContainer<Person> container = new BeanItemContainer<Person>(
                 Person.class);
@@ -330,4 +330,17 @@ public class BeanItemTest extends TestCase {
         Assert.assertEquals(6, item.getItemPropertyIds().size());
         Assert.assertEquals(null, item.getItemProperty("myname"));
     }
+
+    public void testContainerPropertyChangesNotShared() {
+        BeanItemContainer<MyClass> container = new BeanItemContainer<MyClass>(
+                MyClass.class);
+        container.removeContainerProperty("name");
+        Assert.assertEquals(5, container.getContainerPropertyIds().size());
+
+        // the property descriptors of the class are cached but not shared
+        Assert.assertEquals(6, new BeanItemContainer<MyClass>(MyClass.class)
+                .getContainerPropertyIds().size());
+        Assert.assertEquals(6, new BeanItem<MyClass>(new MyClass("bean1"))
+                .getItemPropertyIds().size());
+    }
 }
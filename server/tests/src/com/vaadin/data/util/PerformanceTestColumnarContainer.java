@@ -0,0 +1,104 @@
+package com.vaadin.data.util;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+
+/**
+ * Compares memory use as well as sorting and filtering throughput of
+ * {@link ColumnarContainer} to {@link IndexedContainer}.
+ */
+public class PerformanceTestColumnarContainer extends TestCase {
+
+    private static final int ITEMS = 100000;
+    private static final int REPEATS = 3;
+
+    public void testMemoryUse() {
+        long indexed = measureRetainedMemory(new IndexedContainer());
+        long columnar = measureRetainedMemory(new ColumnarContainer());
+
+        System.out.println("Retained memory for " + ITEMS
+                + " items: IndexedContainer " + indexed / 1024
+                + " kB, ColumnarContainer " + columnar / 1024 + " kB");
+        Assert.assertTrue("ColumnarContainer uses more memory ("
+                + columnar / 1024 + " kB) than IndexedContainer ("
+                + indexed / 1024 + " kB)", columnar < indexed);
+    }
+
+    public void testSortPerformance() {
+        for (Container.Sortable container : new Container.Sortable[] {
+                new IndexedContainer(), new ColumnarContainer() }) {
+            populate(container);
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < REPEATS; i++) {
+                container.sort(new Object[] { "int", "string" },
+                        new boolean[] { i % 2 == 0, true });
+                container.sort(new Object[] { "double" },
+                        new boolean[] { true });
+            }
+            report("sort", container, System.currentTimeMillis() - start);
+        }
+    }
+
+    public void testFilterPerformance() {
+        for (Container.Filterable container : new Container.Filterable[] {
+                new IndexedContainer(), new ColumnarContainer() }) {
+            populate(container);
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < REPEATS; i++) {
+                container.addContainerFilter(new Compare.Greater("int",
+                        Integer.valueOf(i * 100)));
+                container.addContainerFilter(new SimpleStringFilter("string",
+                        "item 1", true, true));
+                container.removeAllContainerFilters();
+            }
+            report("filter", container, System.currentTimeMillis() - start);
+        }
+    }
+
+    private static void report(String operation, Container container,
+            long time) {
+        System.out.println(container.getClass().getSimpleName() + " "
+                + operation + " timings (ms) for " + ITEMS + " items: " + time
+                / REPEATS + " per round");
+    }
+
+    private static long measureRetainedMemory(Container container) {
+        long before = getUsedMemory();
+        populate(container);
+        long after = getUsedMemory();
+        // Keep the container reachable until measured
+        Assert.assertEquals(ITEMS, container.size());
+        return after - before;
+    }
+
+    private static void populate(Container container) {
+        container.addContainerProperty("string", String.class, null);
+        container.addContainerProperty("int", Integer.class, null);
+        container.addContainerProperty("double", Double.class, null);
+        container.addContainerProperty("boolean", Boolean.class, null);
+
+        for (int i = 0; i < ITEMS; i++) {
+            Item item = container.addItem(Integer.valueOf(i));
+            item.getItemProperty("string").setValue("Item " + i);
+            item.getItemProperty("int").setValue(
+                    Integer.valueOf((i * 7919) % 1000));
+            item.getItemProperty("double").setValue(
+                    Double.valueOf(((i * 104729) % ITEMS) / 3.0));
+            item.getItemProperty("boolean").setValue(
+                    Boolean.valueOf(i % 3 == 0));
+        }
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,168 @@
+package com.vaadin.data.util;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import com.vaadin.data.Item;
+
+public class TestColumnarContainer extends AbstractInMemoryContainerTest {
+
+    public void testBasicOperations() {
+        testBasicContainerOperations(new ColumnarContainer());
+    }
+
+    public void testFiltering() {
+        testContainerFiltering(new ColumnarContainer());
+    }
+
+    public void testSorting() {
+        testContainerSorting(new ColumnarContainer());
+    }
+
+    public void testSortingAndFiltering() {
+        testContainerSortingAndFiltering(new ColumnarContainer());
+    }
+
+    public void testContainerOrdered() {
+        testContainerOrdered(new ColumnarContainer());
+    }
+
+    public void testContainerIndexed() {
+        testContainerIndexed(new ColumnarContainer(), sampleData[2], 2, true,
+                "newItemId", true);
+    }
+
+    public void testItemSetChangeListeners() {
+        ColumnarContainer container = new ColumnarContainer();
+        ItemSetChangeCounter counter = new ItemSetChangeCounter();
+        container.addItemSetChangeListener(counter);
+
+        initializeContainer(container);
+        counter.reset();
+        container.addItem();
+        counter.assertOnce();
+        container.addItem("id1");
+        counter.assertOnce();
+        // no notification if already in container
+        container.addItem("id1");
+        counter.assertNone();
+        container.addItemAt(0, "id1");
+        counter.assertNone();
+        container.removeItem("id1");
+        counter.assertOnce();
+        container.removeItem("id1");
+        counter.assertNone();
+        container.removeAllItems();
+        counter.assertOnce();
+        container.removeAllItems();
+        counter.assertNone();
+    }
+
+    public void testPrimitiveColumns() {
+        ColumnarContainer container = new ColumnarContainer();
+        container.addContainerProperty("int", Integer.class, null);
+        container.addContainerProperty("long", Long.class, Long.valueOf(7));
+        container.addContainerProperty("double", Double.class, null);
+        container.addContainerProperty("boolean", Boolean.class, Boolean.TRUE);
+
+        Item item = container.addItem("a");
+        Assert.assertNull(item.getItemProperty("int").getValue());
+        Assert.assertEquals(Long.valueOf(7), item.getItemProperty("long")
+                .getValue());
+        Assert.assertEquals(Boolean.TRUE, item.getItemProperty("boolean")
+                .getValue());
+
+        item.getItemProperty("int").setValue(Integer.valueOf(-5));
+        item.getItemProperty("double").setValue(Double.valueOf(1.5));
+        item.getItemProperty("boolean").setValue(Boolean.FALSE);
+        Assert.assertEquals(Integer.valueOf(-5), item.getItemProperty("int")
+                .getValue());
+        Assert.assertEquals(Double.valueOf(1.5),
+                container.getContainerProperty("a", "double").getValue());
+        Assert.assertEquals(Boolean.FALSE, item.getItemProperty("boolean")
+                .getValue());
+
+        item.getItemProperty("int").setValue(null);
+        Assert.assertNull(item.getItemProperty("int").getValue());
+
+        try {
+            item.getItemProperty("int").setValue("foo");
+            Assert.fail("Should not accept a value of the wrong type");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testRemovedRowsAreReused() {
+        ColumnarContainer container = new ColumnarContainer();
+        container.addContainerProperty("value", Integer.class, null);
+        for (int i = 0; i < 100; i++) {
+            container.addItem(Integer.valueOf(i)).getItemProperty("value")
+                    .setValue(Integer.valueOf(i));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            Assert.assertTrue(container.removeItem(Integer.valueOf(i)));
+        }
+
+        Item item = container.addItem("new");
+        Assert.assertNull(item.getItemProperty("value").getValue());
+        for (int i = 1; i < 100; i += 2) {
+            Assert.assertEquals(Integer.valueOf(i), container
+                    .getContainerProperty(Integer.valueOf(i), "value")
+                    .getValue());
+        }
+        Assert.assertEquals(51, container.size());
+    }
+
+    public void testSortPrimitiveColumnWithNulls() {
+        ColumnarContainer container = new ColumnarContainer();
+        container.addContainerProperty("group", Boolean.class, null);
+        container.addContainerProperty("value", Double.class, null);
+        Object[][] rows = { { "a", true, 3.0 }, { "b", false, 2.0 },
+                { "c", true, null }, { "d", null, 1.0 }, { "e", true, 1.0 } };
+        for (Object[] row : rows) {
+            Item item = container.addItem(row[0]);
+            item.getItemProperty("group").setValue(row[1]);
+            item.getItemProperty("value").setValue(row[2]);
+        }
+
+        container.sort(new Object[] { "group", "value" }, new boolean[] {
+                true, false });
+        Assert.assertEquals(Arrays.asList("d", "b", "a", "e", "c"),
+                container.getItemIds());
+
+        // Same result using the generic item sorter
+        container.setItemSorter(new DefaultItemSorter());
+        container.sort(new Object[] { "value" }, new boolean[] { true });
+        Assert.assertEquals(Arrays.asList("c", "d", "e", "b", "a"),
+                container.getItemIds());
+    }
+
+    public void testNonExistingProperty() {
+        ColumnarContainer container = new ColumnarContainer();
+        container.addItem("Obj1");
+        assertNull(container.getContainerProperty("Obj1", "xyz"));
+        assertNull(container.getContainerProperty("Obj1", null));
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testCloneCopiesValues() throws CloneNotSupportedException {
+        ColumnarContainer container = new ColumnarContainer();
+        container.addContainerProperty("int", Integer.class, null);
+        container.addContainerProperty("name", String.class, null);
+        Item item = container.addItem("a");
+        item.getItemProperty("int").setValue(Integer.valueOf(1));
+        item.getItemProperty("name").setValue("foo");
+
+        IndexedContainer clone = (IndexedContainer) container.clone();
+        item.getItemProperty("int").setValue(Integer.valueOf(2));
+        clone.addItem("b");
+
+        Assert.assertEquals(Integer.valueOf(1),
+                clone.getContainerProperty("a", "int").getValue());
+        Assert.assertEquals("foo", clone.getContainerProperty("a", "name")
+                .getValue());
+        Assert.assertFalse(container.containsId("b"));
+    }
+}
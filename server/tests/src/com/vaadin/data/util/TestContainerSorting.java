@@ -1,13 +1,16 @@
 package com.vaadin.data.util;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Item;
+import com.vaadin.data.util.filter.Compare;
 import com.vaadin.tests.util.TestUtil;
 
 public class TestContainerSorting extends TestCase {
@@ -105,6 +108,62 @@ public class TestContainerSorting extends TestCase {
                         nameToId.get("Red Alert") });
     }
 
+    public void testSortByExtractedKeysMatchesComparator() {
+        Random random = new Random(1234);
+        IndexedContainer keyed = new IndexedContainer();
+        IndexedContainer compared = new IndexedContainer();
+        // Overriding compare disables sorting by extracted keys
+        compared.setItemSorter(new DefaultItemSorter() {
+            @Override
+            public int compare(Object o1, Object o2) {
+                return super.compare(o1, o2);
+            }
+        });
+        for (IndexedContainer container : new IndexedContainer[] { keyed,
+                compared }) {
+            container.addContainerProperty("int", Integer.class, null);
+            container.addContainerProperty("double", Double.class, null);
+            container.addContainerProperty("string", String.class, null);
+        }
+        for (int i = 0; i < 1000; i++) {
+            Integer intValue = random.nextInt(5) == 0 ? null : random
+                    .nextInt(20) - 10;
+            Double doubleValue = random.nextInt(5) == 0 ? null : random
+                    .nextInt(10) / 4.0;
+            String stringValue = random.nextInt(5) == 0 ? null : "s"
+                    + random.nextInt(30);
+            for (IndexedContainer container : new IndexedContainer[] {
+                    keyed, compared }) {
+                Item item = container.addItem(i);
+                item.getItemProperty("int").setValue(intValue);
+                item.getItemProperty("double").setValue(doubleValue);
+                item.getItemProperty("string").setValue(stringValue);
+            }
+        }
+
+        Object[][] sortProperties = { { "int" }, { "double", "int" },
+                { "string", "double", "int" } };
+        for (Object[] propertyIds : sortProperties) {
+            for (boolean ascending : new boolean[] { true, false }) {
+                boolean[] directions = new boolean[propertyIds.length];
+                Arrays.fill(directions, ascending);
+                directions[0] = !ascending;
+                keyed.sort(propertyIds, directions);
+                compared.sort(propertyIds, directions);
+                assertEquals(compared.getItemIds(), keyed.getItemIds());
+            }
+        }
+
+        // Items filtered out are placed last in the unfiltered order
+        for (IndexedContainer container : new IndexedContainer[] { keyed,
+                compared }) {
+            container.addContainerFilter(new Compare.Greater("int", 0));
+            container.sort(new Object[] { "string" }, new boolean[] { true });
+            container.removeAllContainerFilters();
+        }
+        assertEquals(compared.getItemIds(), keyed.getItemIds());
+    }
+
     private static void populateContainer(HierarchicalContainer container) {
         container.addContainerProperty("name", String.class, null);
 
@@ -50,6 +50,22 @@ public class TestHierarchicalContainer extends
 
     }
 
+    public void testIncludeParentsWithPropertyIndex() {
+        HierarchicalContainer container = new HierarchicalContainer();
+        initializeContainer(container);
+        container.addPropertyIndex(FULLY_QUALIFIED_NAME);
+        container.setIncludeParentsWhenFiltering(true);
+        // filter repeatedly so that the index is built
+        for (int i = 0; i < 3; i++) {
+            container.removeAllContainerFilters();
+            container.addContainerFilter(FULLY_QUALIFIED_NAME,
+                    "com.vaadin.ui.Tab", false, true);
+            assertTrue(container.containsId("com.vaadin.ui"));
+            assertEquals("com.vaadin.ui",
+                    container.getParent("com.vaadin.ui.TabSheet"));
+        }
+    }
+
     public void testParentWhenRemovingFilterFromContainer() {
         HierarchicalContainer container = new HierarchicalContainer();
         initializeContainer(container);
@@ -0,0 +1,177 @@
+package com.vaadin.data.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.Item;
+import com.vaadin.data.util.AbstractBeanContainerTest.ClassName;
+import com.vaadin.data.util.filter.Between;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+
+/**
+ * Tests that indexed and parallel filtering of in-memory containers gives the
+ * same results as plain sequential filtering.
+ */
+public class TestInMemoryContainerFilterIndex extends TestCase {
+
+    private static final int ITEMS = 20000;
+
+    private static final Filter[] FILTERS = {
+            new Compare.Equal("int", Integer.valueOf(42)),
+            new Compare.Equal("int", Integer.valueOf(-1)),
+            new Compare.Less("int", Integer.valueOf(10)),
+            new Compare.LessOrEqual("int", Integer.valueOf(10)),
+            new Compare.Greater("int", Integer.valueOf(990)),
+            new Compare.GreaterOrEqual("int", Integer.valueOf(990)),
+            new Between("int", Integer.valueOf(100), Integer.valueOf(120)),
+            new SimpleStringFilter("string", "item 12", true, true),
+            new SimpleStringFilter("string", "Item 12", false, true),
+            new SimpleStringFilter("string", "item 12", false, true),
+            new SimpleStringFilter("string", "12", true, false),
+            // not applicable to the index, value of a different type
+            new Compare.Equal("int", "42") };
+
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdown();
+    }
+
+    public void testIndexedFiltering() {
+        IndexedContainer plain = createContainer();
+        IndexedContainer indexed = createContainer();
+        indexed.addPropertyIndex("int");
+        indexed.addPropertyIndex("string");
+
+        assertSameResults(plain, indexed);
+    }
+
+    public void testParallelFiltering() {
+        IndexedContainer plain = createContainer();
+        IndexedContainer parallel = createContainer();
+        parallel.setFilteringExecutor(executor);
+
+        assertSameResults(plain, parallel);
+    }
+
+    public void testIndexedFilteringAfterChanges() {
+        IndexedContainer plain = createContainer();
+        IndexedContainer indexed = createContainer();
+        indexed.addPropertyIndex("int");
+
+        assertSameResults(plain, indexed);
+
+        for (IndexedContainer container : new IndexedContainer[] { plain,
+                indexed }) {
+            container.removeAllContainerFilters();
+            container.getContainerProperty(Integer.valueOf(5), "int")
+                    .setValue(Integer.valueOf(42));
+            container.removeItem(Integer.valueOf(42));
+            container.addItem("new").getItemProperty("int")
+                    .setValue(Integer.valueOf(42));
+            container.sort(new Object[] { "string" }, new boolean[] { true });
+        }
+        assertSameResults(plain, indexed);
+    }
+
+    public void testCombinedFilters() {
+        IndexedContainer indexed = createContainer();
+        indexed.addPropertyIndex("int");
+        indexed.setFilteringExecutor(executor);
+
+        for (int i = 0; i < 2; i++) {
+            indexed.removeAllContainerFilters();
+            indexed.addContainerFilter(new SimpleStringFilter("string",
+                    "item 1", true, true));
+            indexed.addContainerFilter(new Compare.Equal("int", Integer
+                    .valueOf(919)));
+        }
+        Assert.assertFalse(indexed.getItemIds().isEmpty());
+        for (Object itemId : indexed.getItemIds()) {
+            Item item = indexed.getItem(itemId);
+            Assert.assertEquals(Integer.valueOf(919), item
+                    .getItemProperty("int").getValue());
+            Assert.assertTrue(((String) item.getItemProperty("string")
+                    .getValue()).startsWith("Item 1"));
+        }
+        Assert.assertEquals(createFilteredIds(createContainer(),
+                new SimpleStringFilter("string", "item 1", true, true),
+                new Compare.Equal("int", Integer.valueOf(919))),
+                indexed.getItemIds());
+    }
+
+    public void testBeanValueChangeUpdatesIndex() {
+        BeanItemContainer<ClassName> container = new BeanItemContainer<ClassName>(
+                ClassName.class);
+        for (int i = 0; i < 100; i++) {
+            container.addBean(new ClassName("com.example.Class" + i, i % 10));
+        }
+        container.addPropertyIndex("idNumber");
+
+        // use twice to build the index
+        for (int i = 0; i < 2; i++) {
+            container.removeAllContainerFilters();
+            container.addContainerFilter(new Compare.Equal("idNumber",
+                    Integer.valueOf(3)));
+            Assert.assertEquals(10, container.size());
+        }
+        container.removeAllContainerFilters();
+
+        container.getItem(container.getIdByIndex(0))
+                .getItemProperty("idNumber").setValue(Integer.valueOf(3));
+        container.addContainerFilter(new Compare.Equal("idNumber", Integer
+                .valueOf(3)));
+        Assert.assertEquals(11, container.size());
+    }
+
+    private void assertSameResults(IndexedContainer expected,
+            IndexedContainer actual) {
+        // repeat to make sure indexes are built and used
+        for (int round = 0; round < 3; round++) {
+            for (Filter filter : FILTERS) {
+                expected.removeAllContainerFilters();
+                actual.removeAllContainerFilters();
+                expected.addContainerFilter(filter);
+                actual.addContainerFilter(filter);
+                Assert.assertEquals("Filter " + filter, expected.getItemIds(),
+                        actual.getItemIds());
+            }
+        }
+    }
+
+    private static List<Object> createFilteredIds(IndexedContainer container,
+            Filter... filters) {
+        for (Filter filter : filters) {
+            container.addContainerFilter(filter);
+        }
+        return new ArrayList<Object>(container.getItemIds());
+    }
+
+    private static IndexedContainer createContainer() {
+        IndexedContainer container = new IndexedContainer();
+        container.addContainerProperty("string", String.class, null);
+        container.addContainerProperty("int", Integer.class, null);
+        for (int i = 0; i < ITEMS; i++) {
+            Item item = container.addItem(Integer.valueOf(i));
+            item.getItemProperty("string").setValue("Item " + i);
+            if (i % 100 != 0) {
+                item.getItemProperty("int").setValue(
+                        Integer.valueOf((i * 7919) % 1000));
+            }
+        }
+        return container;
+    }
+}
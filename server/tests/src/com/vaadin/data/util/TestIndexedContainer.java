@@ -1,10 +1,13 @@
 package com.vaadin.data.util;
 
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.Assert;
 
 import com.vaadin.data.Item;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.SimpleStringFilter;
 
 public class TestIndexedContainer extends AbstractInMemoryContainerTest {
 
@@ -376,6 +379,91 @@ public class TestIndexedContainer extends AbstractInMemoryContainerTest {
         }
     }
 
+    public void testNarrowingFilters() {
+        final int[] evaluated = new int[1];
+        IndexedContainer container = new IndexedContainer() {
+            @Override
+            protected boolean passesFilters(Object itemId) {
+                evaluated[0]++;
+                return super.passesFilters(itemId);
+            }
+        };
+        container.addContainerProperty("name", String.class, null);
+        for (int i = 0; i < 1000; i++) {
+            container.addItem(Integer.valueOf(i)).getItemProperty("name")
+                    .setValue("Item " + i);
+        }
+        container.setIncrementalFiltering(true);
+        ItemSetChangeCounter counter = new ItemSetChangeCounter();
+        container.addItemSetChangeListener(counter);
+
+        SimpleStringFilter filter = new SimpleStringFilter("name", "item 1",
+                true, true);
+        container.addContainerFilter(filter);
+        assertEquals(1000, evaluated[0]);
+        assertEquals(111, container.size());
+        counter.assertOnce();
+
+        // only the visible items are evaluated for a narrower filter
+        evaluated[0] = 0;
+        SimpleStringFilter narrower = new SimpleStringFilter("name",
+                "item 12", true, true);
+        container.replaceContainerFilter(filter, narrower);
+        assertEquals(111, evaluated[0]);
+        assertEquals(11, container.size());
+        counter.assertOnce();
+
+        evaluated[0] = 0;
+        container.addContainerFilter(new Compare.Less("name", "Item 125"));
+        assertEquals(11, evaluated[0]);
+        assertEquals(Arrays.asList(12, 120, 121, 122, 123, 124),
+                container.getItemIds());
+        counter.assertOnce();
+
+        // widening the filter evaluates all items
+        evaluated[0] = 0;
+        container.replaceContainerFilter(narrower, filter);
+        assertEquals(1000, evaluated[0]);
+        assertEquals(Arrays.asList(1, 10, 11, 12, 100, 101, 102, 103, 104,
+                105, 106, 107, 108, 109, 110, 111, 112, 113, 114, 115, 116,
+                117, 118, 119, 120, 121, 122, 123, 124), container.getItemIds());
+        counter.assertOnce();
+    }
+
+    public void testNarrowingFiltersNotIncremental() {
+        final int[] evaluated = new int[1];
+        IndexedContainer container = new IndexedContainer() {
+            @Override
+            protected boolean passesFilters(Object itemId) {
+                evaluated[0]++;
+                return super.passesFilters(itemId);
+            }
+        };
+        container.addContainerProperty("name", String.class, null);
+        for (int i = 0; i < 1000; i++) {
+            container.addItem(Integer.valueOf(i)).getItemProperty("name")
+                    .setValue("Item " + i);
+        }
+        assertFalse(container.isIncrementalFiltering());
+
+        SimpleStringFilter filter = new SimpleStringFilter("name", "item 1",
+                true, true);
+        container.addContainerFilter(filter);
+        assertEquals(111, container.size());
+
+        // all items are evaluated unless incremental filtering is enabled
+        evaluated[0] = 0;
+        container.replaceContainerFilter(filter, new SimpleStringFilter(
+                "name", "item 12", true, true));
+        assertEquals(1000, evaluated[0]);
+        assertEquals(11, container.size());
+
+        evaluated[0] = 0;
+        container.addContainerFilter(new Compare.Less("name", "Item 125"));
+        assertEquals(1000, evaluated[0]);
+        assertEquals(6, container.size());
+    }
+
     // test getting non-existing property (#10445)
     public void testNonExistingProperty() {
         IndexedContainer ic = new IndexedContainer();
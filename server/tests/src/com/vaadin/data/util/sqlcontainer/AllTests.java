@@ -11,6 +11,7 @@ import com.vaadin.data.util.sqlcontainer.filters.LikeTest;
 import com.vaadin.data.util.sqlcontainer.generator.SQLGeneratorsTest;
 import com.vaadin.data.util.sqlcontainer.query.FreeformQueryTest;
 import com.vaadin.data.util.sqlcontainer.query.QueryBuilderTest;
+import com.vaadin.data.util.sqlcontainer.query.SharedPageCacheTest;
 import com.vaadin.data.util.sqlcontainer.query.TableQueryTest;
 
 @RunWith(Suite.class)
@@ -19,6 +20,7 @@ import com.vaadin.data.util.sqlcontainer.query.TableQueryTest;
         FreeformQueryTest.class, RowIdTest.class, SQLContainerTest.class,
         SQLContainerTableQueryTest.class, ColumnPropertyTest.class,
         TableQueryTest.class, SQLGeneratorsTest.class, UtilTest.class,
-        TicketTests.class, BetweenTest.class, ReadOnlyRowIdTest.class })
+        TicketTests.class, BetweenTest.class, ReadOnlyRowIdTest.class,
+        SharedPageCacheTest.class, BackgroundCountStrategyTest.class })
 public class AllTests {
 }
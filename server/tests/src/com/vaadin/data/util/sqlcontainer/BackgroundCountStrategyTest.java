@@ -0,0 +1,200 @@
+package com.vaadin.data.util.sqlcontainer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+import com.vaadin.data.util.filter.Like;
+import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.connection.SimpleJDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.query.TableQuery;
+import com.vaadin.server.VaadinSession;
+
+public class BackgroundCountStrategyTest {
+
+    private JDBCConnectionPool connectionPool;
+    private RecordingSession session;
+    private final List<Runnable> backgroundTasks = new ArrayList<Runnable>();
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            backgroundTasks.add(command);
+        }
+    };
+
+    private static class CountingListener implements ItemSetChangeListener {
+        private int count = 0;
+
+        @Override
+        public void containerItemSetChange(ItemSetChangeEvent event) {
+            count++;
+        }
+    }
+
+    private static class RecordingSession extends VaadinSession {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        public RecordingSession() {
+            super(null);
+        }
+
+        @Override
+        public Future<Void> access(Runnable runnable) {
+            tasks.add(runnable);
+            return null;
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        connectionPool = new SimpleJDBCConnectionPool(
+                SQLTestsConstants.dbDriver, SQLTestsConstants.dbURL,
+                SQLTestsConstants.dbUser, SQLTestsConstants.dbPwd, 2, 2);
+        DataGenerator.addPeopleToDatabase(connectionPool);
+        session = new RecordingSession();
+        VaadinSession.setCurrent(session);
+    }
+
+    @After
+    public void tearDown() {
+        VaadinSession.setCurrent(null);
+        if (connectionPool != null) {
+            connectionPool.destroy();
+        }
+    }
+
+    private SQLContainer createContainer() throws SQLException {
+        return new SQLContainer(new TableQuery("people", connectionPool,
+                SQLTestsConstants.sqlGen));
+    }
+
+    private void runBackgroundCount() {
+        Assert.assertEquals(1, backgroundTasks.size());
+        backgroundTasks.remove(0).run();
+        Assert.assertEquals(1, session.tasks.size());
+        session.tasks.remove(0).run();
+    }
+
+    private void addPersonDirectly() throws SQLException {
+        Connection conn = connectionPool.reserveConnection();
+        Statement statement = conn.createStatement();
+        if (SQLTestsConstants.db == SQLTestsConstants.DB.MSSQL) {
+            statement.executeUpdate("insert into people values('Nisse', '5')");
+        } else {
+            statement
+                    .executeUpdate("insert into people values(default, 'Nisse', '5')");
+        }
+        statement.close();
+        conn.commit();
+        connectionPool.releaseConnection(conn);
+    }
+
+    @Test
+    public void size_estimatedCount_updatedInBackground() throws SQLException {
+        SQLContainer container = createContainer();
+        container.setCountStrategy(new BackgroundCountStrategy(executor, 100));
+        CountingListener listener = new CountingListener();
+        container.addItemSetChangeListener(listener);
+
+        Assert.assertEquals(100, container.size());
+        container.refresh();
+        Assert.assertEquals(100, container.size());
+        listener.count = 0;
+
+        runBackgroundCount();
+        Assert.assertEquals(4, container.size());
+        Assert.assertEquals(1, listener.count);
+        Assert.assertTrue(backgroundTasks.isEmpty());
+    }
+
+    @Test
+    public void size_previousCount_usedUntilCountedInBackground()
+            throws SQLException {
+        SQLContainer container = createContainer();
+        container.setCountStrategy(new BackgroundCountStrategy(executor));
+        // No previous count, counted immediately
+        Assert.assertEquals(4, container.size());
+        Assert.assertTrue(backgroundTasks.isEmpty());
+
+        addPersonDirectly();
+        container.refresh();
+        Assert.assertEquals(4, container.size());
+        runBackgroundCount();
+        Assert.assertEquals(5, container.size());
+    }
+
+    @Test
+    public void size_filtersChangedWhileCounting_countedAgain()
+            throws SQLException {
+        SQLContainer container = createContainer();
+        container.setCountStrategy(new BackgroundCountStrategy(executor, 100));
+        Assert.assertEquals(100, container.size());
+
+        container.addContainerFilter(new Like("NAME", "%lle"));
+        runBackgroundCount();
+        Assert.assertEquals(100, container.size());
+
+        runBackgroundCount();
+        Assert.assertEquals(3, container.size());
+    }
+
+    @Test
+    public void size_countRejected_countedImmediately() throws SQLException {
+        final boolean[] reject = { true };
+        Executor rejectingExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (reject[0]) {
+                    throw new RejectedExecutionException();
+                }
+                executor.execute(command);
+            }
+        };
+        SQLContainer container = createContainer();
+        container.setCountStrategy(new BackgroundCountStrategy(
+                rejectingExecutor, 100));
+        Assert.assertEquals(4, container.size());
+        Assert.assertFalse(container.isBackgroundCountPending());
+
+        // Counted in the background when the executor accepts the count
+        reject[0] = false;
+        addPersonDirectly();
+        container.refresh();
+        Assert.assertEquals(4, container.size());
+        runBackgroundCount();
+        Assert.assertEquals(5, container.size());
+    }
+
+    @Test
+    public void size_noSession_countedImmediately() throws SQLException {
+        VaadinSession.setCurrent(null);
+        SQLContainer container = createContainer();
+        container.setCountStrategy(new BackgroundCountStrategy(executor, 100));
+        Assert.assertEquals(4, container.size());
+        Assert.assertTrue(backgroundTasks.isEmpty());
+    }
+
+    @Test
+    public void setSizeValidMilliSeconds_zero_countedEveryTime()
+            throws SQLException {
+        SQLContainer container = createContainer();
+        Assert.assertEquals(4, container.size());
+        addPersonDirectly();
+        Assert.assertEquals(4, container.size());
+
+        container.setSizeValidMilliSeconds(0);
+        Assert.assertEquals(5, container.size());
+    }
+}
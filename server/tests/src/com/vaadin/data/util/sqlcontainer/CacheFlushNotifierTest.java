@@ -0,0 +1,123 @@
+package com.vaadin.data.util.sqlcontainer;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.connection.SimpleJDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.query.TableQuery;
+import com.vaadin.server.VaadinSession;
+
+public class CacheFlushNotifierTest {
+
+    private JDBCConnectionPool connectionPool;
+
+    private static class CountingListener implements ItemSetChangeListener {
+        private int count = 0;
+
+        @Override
+        public void containerItemSetChange(ItemSetChangeEvent event) {
+            count++;
+        }
+    }
+
+    private static class RecordingSession extends VaadinSession {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        public RecordingSession() {
+            super(null);
+        }
+
+        @Override
+        public boolean hasLock() {
+            return false;
+        }
+
+        @Override
+        public Future<Void> access(Runnable runnable) {
+            tasks.add(runnable);
+            return null;
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        connectionPool = new SimpleJDBCConnectionPool(
+                SQLTestsConstants.dbDriver, SQLTestsConstants.dbURL,
+                SQLTestsConstants.dbUser, SQLTestsConstants.dbPwd, 2, 2);
+        DataGenerator.addPeopleToDatabase(connectionPool);
+    }
+
+    @After
+    public void tearDown() {
+        VaadinSession.setCurrent(null);
+        if (connectionPool != null) {
+            connectionPool.destroy();
+        }
+    }
+
+    private SQLContainer createContainer(String tableName)
+            throws SQLException {
+        SQLContainer container = new SQLContainer(new TableQuery(tableName,
+                connectionPool, SQLTestsConstants.sqlGen));
+        container.enableCacheFlushNotifications();
+        return container;
+    }
+
+    @Test
+    public void notifyOfCacheFlush_noSession_refreshedLazily()
+            throws SQLException {
+        SQLContainer modified = createContainer("people");
+        SQLContainer other = createContainer("people");
+        int size = other.size();
+        CountingListener listener = new CountingListener();
+        other.addItemSetChangeListener(listener);
+
+        modified.removeItem(modified.firstItemId());
+        modified.commit();
+
+        // Not refreshed by the notifying thread, but the size is read again
+        // when used
+        Assert.assertEquals(0, listener.count);
+        Assert.assertEquals(size - 1, other.size());
+    }
+
+    @Test
+    public void notifyOfCacheFlush_otherSession_refreshedThroughSession()
+            throws SQLException {
+        SQLContainer modified = createContainer("people");
+
+        RecordingSession session = new RecordingSession();
+        VaadinSession.setCurrent(session);
+        SQLContainer other = createContainer("people");
+        VaadinSession.setCurrent(null);
+
+        int size = other.size();
+        CountingListener listener = new CountingListener();
+        other.addItemSetChangeListener(listener);
+
+        modified.removeItem(modified.firstItemId());
+        modified.commit();
+        Assert.assertEquals(0, listener.count);
+        // Only one refresh is queued even if notified multiple times
+        CacheFlushNotifier.notifyOfCacheFlush(modified);
+        Assert.assertEquals(1, session.tasks.size());
+
+        session.tasks.get(0).run();
+        Assert.assertEquals(1, listener.count);
+        Assert.assertEquals(size - 1, other.size());
+
+        // Notified again once refreshed
+        CacheFlushNotifier.notifyOfCacheFlush(modified);
+        Assert.assertEquals(2, session.tasks.size());
+    }
+}
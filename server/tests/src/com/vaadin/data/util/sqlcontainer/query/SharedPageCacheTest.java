@@ -0,0 +1,163 @@
+package com.vaadin.data.util.sqlcontainer.query;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.data.util.sqlcontainer.DataGenerator;
+import com.vaadin.data.util.sqlcontainer.SQLContainer;
+import com.vaadin.data.util.sqlcontainer.SQLTestsConstants;
+import com.vaadin.data.util.sqlcontainer.connection.JDBCConnectionPool;
+import com.vaadin.data.util.sqlcontainer.connection.SimpleJDBCConnectionPool;
+
+public class SharedPageCacheTest {
+    private JDBCConnectionPool connectionPool;
+    private SharedPageCache cache;
+
+    @Before
+    public void setUp() throws SQLException {
+        connectionPool = new SimpleJDBCConnectionPool(
+                SQLTestsConstants.dbDriver, SQLTestsConstants.dbURL,
+                SQLTestsConstants.dbUser, SQLTestsConstants.dbPwd, 2, 2);
+        DataGenerator.addPeopleToDatabase(connectionPool);
+        cache = new SharedPageCache(10, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        if (connectionPool != null) {
+            connectionPool.destroy();
+        }
+    }
+
+    private SQLContainer createContainer() throws SQLException {
+        TableQuery query = new TableQuery("people", connectionPool,
+                SQLTestsConstants.sqlGen);
+        query.setSharedPageCache(cache);
+        return new SQLContainer(query);
+    }
+
+    private static Object getFirstName(SQLContainer container) {
+        return container.getContainerProperty(container.firstItemId(), "NAME")
+                .getValue();
+    }
+
+    private void updateFirstNameDirectly(String name) throws SQLException {
+        Connection conn = connectionPool.reserveConnection();
+        Statement statement = conn.createStatement();
+        statement.executeUpdate("UPDATE people SET name = '" + name
+                + "' WHERE id = " + SQLTestsConstants.offset);
+        statement.close();
+        conn.commit();
+        connectionPool.releaseConnection(conn);
+    }
+
+    @Test
+    public void getItem_sharedCache_pageReadFromCache() throws SQLException {
+        SQLContainer first = createContainer();
+        Object name = getFirstName(first);
+        Assert.assertEquals(1, cache.size());
+
+        // Not visible to other containers until the cached page has expired
+        updateFirstNameDirectly("Changed");
+        SQLContainer second = createContainer();
+        Assert.assertEquals(name, getFirstName(second));
+        Assert.assertEquals(1, cache.size());
+
+        cache.clear();
+        second.refresh();
+        Assert.assertEquals("Changed", getFirstName(second));
+    }
+
+    @Test
+    public void commit_sharedCache_tableInvalidated() throws SQLException {
+        SQLContainer first = createContainer();
+        SQLContainer second = createContainer();
+        getFirstName(second);
+        Assert.assertEquals(1, cache.size());
+
+        first.getContainerProperty(first.firstItemId(), "NAME").setValue(
+                "Changed");
+        first.commit();
+        Assert.assertEquals(0, cache.size());
+
+        second.refresh();
+        Assert.assertEquals("Changed", getFirstName(second));
+    }
+
+    @Test
+    public void put_maxPagesExceeded_leastRecentlyUsedEvicted() {
+        SharedPageCache smallCache = new SharedPageCache(2, 60000);
+        SharedPageCache.CachedPage page = createPage();
+        smallCache.put("people", "a", page,
+                smallCache.getGeneration("people"));
+        smallCache.put("people", "b", page,
+                smallCache.getGeneration("people"));
+        smallCache.get("a");
+        smallCache.put("people", "c", page,
+                smallCache.getGeneration("people"));
+
+        Assert.assertEquals(2, smallCache.size());
+        Assert.assertSame(page, smallCache.get("a"));
+        Assert.assertNull(smallCache.get("b"));
+        Assert.assertSame(page, smallCache.get("c"));
+    }
+
+    @Test
+    public void get_expiredPage_returnsNull() {
+        SharedPageCache expiringCache = new SharedPageCache(2, -1);
+        expiringCache.put("people", "a", createPage(),
+                expiringCache.getGeneration("people"));
+
+        Assert.assertNull(expiringCache.get("a"));
+        Assert.assertEquals(0, expiringCache.size());
+    }
+
+    @Test
+    public void invalidate_otherTable_pagesKept() {
+        SharedPageCache.CachedPage page = createPage();
+        cache.put("people", "a", page,
+                cache.getGeneration("people"));
+        cache.put("other", "b", page,
+                cache.getGeneration("other"));
+
+        cache.invalidate("people");
+        Assert.assertNull(cache.get("a"));
+        Assert.assertSame(page, cache.get("b"));
+    }
+
+    @Test
+    public void put_tableInvalidatedWhileFetching_pageNotCached() {
+        long generation = cache.getGeneration("people");
+        long otherGeneration = cache.getGeneration("other");
+        SharedPageCache.CachedPage page = createPage();
+
+        cache.invalidate("people");
+        cache.put("people", "a", page, generation);
+        cache.put("other", "b", page, otherGeneration);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertSame(page, cache.get("b"));
+
+        generation = cache.getGeneration("people");
+        cache.clear();
+        cache.put("people", "a", page, generation);
+        Assert.assertNull(cache.get("a"));
+
+        cache.put("people", "a", page, cache.getGeneration("people"));
+        Assert.assertSame(page, cache.get("a"));
+    }
+
+    private SharedPageCache.CachedPage createPage() {
+        try {
+            return new TableQuery("people", connectionPool,
+                    SQLTestsConstants.sqlGen).getResultsPage(0, 1);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
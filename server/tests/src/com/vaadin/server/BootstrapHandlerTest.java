@@ -0,0 +1,240 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.servlet.ServletOutputStream;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.easymock.IMocksControl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.annotations.Title;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.UI;
+
+public class BootstrapHandlerTest {
+
+    private String staticFileLocation;
+    private String appId;
+    private String theme;
+    private MockDeploymentConfiguration configuration;
+    private VaadinRequest request;
+    private VaadinSession session;
+    private TestBootstrapHandler handler;
+
+    @Title("Bootstrap & <test>")
+    public static class TestUI extends UI {
+        @Override
+        protected void init(VaadinRequest request) {
+        }
+    }
+
+    private static class TestBootstrapHandler extends BootstrapHandler {
+        private boolean cacheable = true;
+        private int templatesCreated = 0;
+        private boolean appIdInStyle = false;
+
+        @Override
+        protected String getServiceUrl(BootstrapContext context) {
+            return "./";
+        }
+
+        @Override
+        protected boolean isBootstrapTemplateCacheable(BootstrapContext context) {
+            return cacheable && super.isBootstrapTemplateCacheable(context);
+        }
+
+        @Override
+        protected String getMainDivStyle(BootstrapContext context) {
+            if (context.getAppId().startsWith("vaadinBootstrapToken")) {
+                templatesCreated++;
+            }
+            if (appIdInStyle) {
+                return "background: url(header.r.png); --app: "
+                        + context.getAppId();
+            }
+            return super.getMainDivStyle(context);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        IMocksControl control = EasyMock.createNiceControl();
+        request = control.createMock(VaadinRequest.class);
+        VaadinService service = control.createMock(VaadinService.class);
+        configuration = new MockDeploymentConfiguration();
+        configuration.setApplicationOrSystemProperty(
+                Constants.SERVLET_PARAMETER_CACHE_BOOTSTRAP_TEMPLATES, "true");
+        theme = "reindeer";
+
+        EasyMock.expect(request.getService()).andReturn(service).anyTimes();
+        EasyMock.expect(request.getLocale()).andReturn(Locale.ENGLISH)
+                .anyTimes();
+        EasyMock.expect(service.isStandalone(request)).andReturn(true)
+                .anyTimes();
+        EasyMock.expect(service.getDeploymentConfiguration())
+                .andReturn(configuration).anyTimes();
+        EasyMock.expect(
+                service.getSystemMessages(EasyMock.<Locale> anyObject(),
+                        EasyMock.same(request))).andReturn(
+                ServletPortletHelper.DEFAULT_SYSTEM_MESSAGES).anyTimes();
+        EasyMock.expect(service.getConfiguredWidgetset(request))
+                .andReturn("com.example.Widgetset").anyTimes();
+        EasyMock.expect(service.getConfiguredTheme(request))
+                .andAnswer(new IAnswer<String>() {
+                    @Override
+                    public String answer() {
+                        return theme;
+                    }
+                }).anyTimes();
+        EasyMock.expect(service.getStaticFileLocation(request))
+                .andAnswer(new IAnswer<String>() {
+                    @Override
+                    public String answer() {
+                        return staticFileLocation;
+                    }
+                }).anyTimes();
+        EasyMock.expect(
+                service.getMainDivId(EasyMock.<VaadinSession> anyObject(),
+                        EasyMock.same(request),
+                        EasyMock.<Class<? extends UI>> anyObject()))
+                .andAnswer(new IAnswer<String>() {
+                    @Override
+                    public String answer() {
+                        return appId;
+                    }
+                }).anyTimes();
+        control.replay();
+
+        session = new MockVaadinSession(service);
+        session.lock();
+        session.setConfiguration(configuration);
+        session.addUIProvider(new UIProvider() {
+            @Override
+            public Class<? extends UI> getUIClass(UIClassSelectionEvent event) {
+                return TestUI.class;
+            }
+        });
+        handler = new TestBootstrapHandler();
+    }
+
+    private String getBootstrapPage(boolean cacheable) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VaadinResponse response = EasyMock
+                .createNiceMock(VaadinResponse.class);
+        EasyMock.expect(response.getOutputStream())
+                .andReturn(new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        out.write(b);
+                    }
+                }).anyTimes();
+        EasyMock.replay(response);
+
+        handler.cacheable = cacheable;
+        Assert.assertTrue(handler.synchronizedHandleRequest(session, request,
+                response));
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void cachedTemplate_sameAsUncachedPage() throws IOException {
+        staticFileLocation = "/context";
+        appId = "ROOT-1";
+        String page = getBootstrapPage(true);
+        Assert.assertEquals(getBootstrapPage(false), page);
+        Assert.assertTrue(page.contains("Bootstrap &amp; &lt;test&gt;"));
+
+        // Per-request values substituted into the cached template
+        staticFileLocation = "/other\"&context";
+        appId = "app-2";
+        page = getBootstrapPage(true);
+        Assert.assertEquals(getBootstrapPage(false), page);
+        Assert.assertTrue(page.contains("app-2"));
+        Assert.assertFalse(page.contains("vaadinBootstrapToken"));
+        Assert.assertEquals(1, handler.templatesCreated);
+    }
+
+    @Test
+    public void bootstrapListener_templateNotUsed() throws IOException {
+        session.addBootstrapListener(new BootstrapListener() {
+            @Override
+            public void modifyBootstrapPage(BootstrapPageResponse response) {
+                response.getDocument().body().appendElement("div")
+                        .attr("id", "added");
+            }
+
+            @Override
+            public void modifyBootstrapFragment(
+                    BootstrapFragmentResponse response) {
+            }
+        });
+        staticFileLocation = "/context";
+        appId = "ROOT-1";
+        Assert.assertTrue(getBootstrapPage(true).contains("added"));
+        Assert.assertEquals(0, handler.templatesCreated);
+    }
+
+    @Test
+    public void cachingNotEnabled_templateNotUsed() throws IOException {
+        configuration.setApplicationOrSystemProperty(
+                Constants.SERVLET_PARAMETER_CACHE_BOOTSTRAP_TEMPLATES, "false");
+        staticFileLocation = "/context";
+        appId = "ROOT-1";
+        getBootstrapPage(true);
+        Assert.assertEquals(0, handler.templatesCreated);
+    }
+
+    @Test
+    public void tokenInAttribute_onlyTokenEscaped() throws IOException {
+        handler.appIdInStyle = true;
+        staticFileLocation = "/context";
+        appId = "ROOT-1";
+        String page = getBootstrapPage(true);
+        Assert.assertEquals(1, handler.templatesCreated);
+        Assert.assertEquals(getBootstrapPage(false), page);
+        Assert.assertTrue(page.contains("url(header.r.png); --app: ROOT-1"));
+    }
+
+    @Test
+    public void manyThemes_recentTemplatesCached() throws IOException {
+        staticFileLocation = "/context";
+        appId = "ROOT-1";
+        for (int i = 0; i <= 100; i++) {
+            theme = "theme" + i;
+            getBootstrapPage(true);
+        }
+        Assert.assertEquals(101, handler.templatesCreated);
+
+        // the most recently used templates are kept
+        getBootstrapPage(true);
+        theme = "theme1";
+        getBootstrapPage(true);
+        Assert.assertEquals(101, handler.templatesCreated);
+
+        // the least recently used one has been discarded
+        theme = "theme0";
+        getBootstrapPage(true);
+        Assert.assertEquals(102, handler.templatesCreated);
+    }
+}
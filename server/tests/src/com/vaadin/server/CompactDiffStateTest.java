@@ -0,0 +1,137 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.shared.AbstractComponentState;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+
+/**
+ * Tests for {@link CompactDiffState} and its use when encoding shared state.
+ * 
+ * @author Vaadin Ltd
+ */
+public class CompactDiffStateTest {
+
+    private UI ui;
+    private Label label;
+
+    @Before
+    public void setup() throws Exception {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        MockDeploymentConfiguration configuration = new MockDeploymentConfiguration();
+        configuration.setApplicationOrSystemProperty(
+                Constants.SERVLET_PARAMETER_COMPACT_DIFF_STATE, "true");
+        VaadinServletService service = new VaadinServletService(servlet,
+                configuration);
+        service.init();
+
+        VaadinSession session = new AlwaysLockedVaadinSession(service);
+        session.setCommunicationManager(new LegacyCommunicationManager(
+                session));
+        session.setConfiguration(configuration);
+
+        ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+        label = new Label("Hello");
+        ui.setContent(label);
+    }
+
+    @Test
+    public void unchangedValuesAreNotInDiff() throws Exception {
+        JSONObject encoded = new JSONObject(
+                "{\"a\":\"x\",\"b\":1,\"c\":true,\"d\":null,\"e\":[1,{\"f\":\"g\"}],\"h\":{\"i\":[]}}");
+        CompactDiffState diffState = CompactDiffState.create(
+                AbstractComponentState.class, encoded);
+
+        JSONObject same = new JSONObject(encoded.toString());
+        Assert.assertEquals(0, diffState.diff(same).length());
+    }
+
+    @Test
+    public void changedValuesAreInDiff() throws Exception {
+        CompactDiffState diffState = CompactDiffState.create(
+                AbstractComponentState.class, new JSONObject(
+                        "{\"a\":\"x\",\"b\":1,\"d\":null,\"e\":[1,{\"f\":\"g\"}]}"));
+
+        JSONObject diff = diffState.diff(new JSONObject(
+                "{\"a\":\"y\",\"b\":1,\"d\":\"z\",\"e\":[1,{\"f\":\"h\"}],\"n\":2}"));
+
+        Assert.assertEquals("y", diff.getString("a"));
+        Assert.assertFalse(diff.has("b"));
+        Assert.assertEquals("z", diff.getString("d"));
+        Assert.assertEquals("h", diff.getJSONArray("e").getJSONObject(1)
+                .getString("f"));
+        Assert.assertEquals(2, diff.getInt("n"));
+    }
+
+    @Test
+    public void nestedValuesAreComparedByEncodedForm() throws Exception {
+        CompactDiffState diffState = CompactDiffState.create(
+                AbstractComponentState.class, new JSONObject(
+                        "{\"e\":[1,\"2\"],\"f\":{\"g\":[true]},\"h\":[1]}"));
+
+        JSONObject same = new JSONObject();
+        same.put("e", new JSONArray().put(1L).put("2"));
+        same.put("f", new JSONObject("{\"g\":[true]}"));
+        same.put("h", new JSONArray().put(1));
+        Assert.assertEquals(0, diffState.diff(same).length());
+
+        JSONObject changed = new JSONObject();
+        // The string "1" is encoded differently than the number 1
+        changed.put("e", new JSONArray().put("1").put("2"));
+        changed.put("f", new JSONObject("{\"g\":[true,false]}"));
+        changed.put("h", new JSONArray().put(1).put(JSONObject.NULL));
+        JSONObject diff = diffState.diff(changed);
+        Assert.assertEquals(3, diff.length());
+        Assert.assertEquals("1", diff.getJSONArray("e").get(0));
+    }
+
+    @Test
+    public void encodeStateUsesCompactDiffState() throws Exception {
+        Assert.assertTrue(ui.getConnectorTracker().isCompactDiffStates());
+
+        JSONObject initial = label.encodeState();
+        Assert.assertEquals("Hello", initial.getString("text"));
+        Assert.assertNull(ui.getConnectorTracker().getDiffState(label));
+        Assert.assertNotNull(ui.getConnectorTracker().getCompactDiffState(
+                label));
+
+        Assert.assertEquals(0,
+                label.encodeState().length());
+
+        label.setValue("World");
+        label.addStyleName("foo");
+        JSONObject diff = label.encodeState();
+        Assert.assertEquals(2, diff.length());
+        Assert.assertEquals("World", diff.getString("text"));
+        JSONArray styles = diff.getJSONArray("styles");
+        Assert.assertEquals("foo", styles.getString(0));
+    }
+}
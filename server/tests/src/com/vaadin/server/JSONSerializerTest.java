@@ -15,10 +15,15 @@ package com.vaadin.server;
  * License for the specific language governing permissions and limitations under
  * the License.
  */
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import junit.framework.AssertionFailedError;
@@ -29,6 +34,8 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.vaadin.server.JsonCodec.BeanProperty;
+import com.vaadin.server.JsonCodec.BeanPropertyFactory;
+import com.vaadin.shared.communication.URLReference;
 import com.vaadin.shared.communication.UidlValue;
 import com.vaadin.shared.ui.splitpanel.AbstractSplitPanelState;
 
@@ -99,6 +106,100 @@ public class JSONSerializerTest extends TestCase {
         }
     }
 
+    public void testBeanPropertyFactory() throws Exception {
+        final List<String> createdFields = new ArrayList<String>();
+        JsonCodec.setBeanPropertyFactory(new BeanPropertyFactory() {
+            @Override
+            public BeanProperty createFieldProperty(Class<?> beanType,
+                    final Field field) {
+                if (!"caption".equals(field.getName())) {
+                    // Use default
+                    return null;
+                }
+                createdFields.add(field.getName());
+                return new BeanProperty() {
+                    @Override
+                    public Object getValue(Object bean) throws Exception {
+                        return "factory " + field.get(bean);
+                    }
+
+                    @Override
+                    public void setValue(Object bean, Object value)
+                            throws Exception {
+                        field.set(bean, value);
+                    }
+
+                    @Override
+                    public String getName() {
+                        return field.getName();
+                    }
+
+                    @Override
+                    public Type getType() {
+                        return field.getGenericType();
+                    }
+                };
+            }
+
+            @Override
+            public BeanProperty createMethodProperty(Class<?> beanType,
+                    PropertyDescriptor descriptor) {
+                return null;
+            }
+        });
+        try {
+            AbstractSplitPanelState state = new AbstractSplitPanelState();
+            state.caption = "caption";
+            state.id = "id";
+
+            JSONObject encoded = (JSONObject) JsonCodec.encode(state, null,
+                    AbstractSplitPanelState.class, null).getEncodedValue();
+
+            assertEquals(Arrays.asList("caption"), createdFields);
+            assertEquals("factory caption", encoded.getString("caption"));
+            assertEquals("id", encoded.getString("id"));
+        } finally {
+            JsonCodec.setBeanPropertyFactory(null);
+        }
+
+        // Reflection based properties are used again after resetting
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.caption = "caption";
+        JSONObject encoded = (JSONObject) JsonCodec.encode(state, null,
+                AbstractSplitPanelState.class, null).getEncodedValue();
+        assertEquals("caption", encoded.getString("caption"));
+    }
+
+    public void testDiffComparesSerializedForm() throws Exception {
+        AbstractSplitPanelState state = new AbstractSplitPanelState();
+        state.styles = Arrays.asList("1", "a");
+        state.resources = new LinkedHashMap<String, URLReference>();
+        // Keys with the same hash code keep their insertion order
+        state.resources.put("Aa", new URLReference());
+        state.resources.put("BB", new URLReference());
+        JSONObject reference = (JSONObject) JsonCodec.encode(state, null,
+                AbstractSplitPanelState.class, null).getEncodedValue();
+
+        JSONObject diff = (JSONObject) JsonCodec.encode(state, reference,
+                AbstractSplitPanelState.class, null).getDiff();
+        assertEquals(0, diff.length());
+
+        // Same entries in a different order
+        JSONObject resources = reference.getJSONObject("resources");
+        JSONObject reordered = new JSONObject();
+        reordered.put("BB", resources.get("BB"));
+        reordered.put("Aa", resources.get("Aa"));
+        reference.put("resources", reordered);
+        // Same string representation of the values but different types
+        reference.put("styles", new JSONArray("[1,\"a\"]"));
+
+        diff = (JSONObject) JsonCodec.encode(state, reference,
+                AbstractSplitPanelState.class, null).getDiff();
+        assertEquals(2, diff.length());
+        assertTrue(diff.has("resources"));
+        assertTrue(diff.has("styles"));
+    }
+
     private void ensureDecodedCorrectly(Object original, Object encoded,
             Type type) throws Exception {
         Object serverSideDecoded = JsonCodec.decodeInternalOrCustomType(type,
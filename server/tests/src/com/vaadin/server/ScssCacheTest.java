@@ -0,0 +1,181 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScssCacheTest {
+
+    private File themes;
+    private File styles;
+    private File base;
+
+    private static class CountingScssCache extends ScssCache {
+        private final AtomicInteger compilations = new AtomicInteger();
+
+        public CountingScssCache() {
+            // Check the sources on every request
+            super(0);
+        }
+
+        public CountingScssCache(long checkInterval) {
+            super(checkInterval);
+        }
+
+        @Override
+        String compile(String scssFilename, String realFilename) {
+            compilations.incrementAndGet();
+            return super.compile(scssFilename, realFilename);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        themes = File.createTempFile("themes", "");
+        themes.delete();
+        new File(themes, "mytheme").mkdirs();
+        new File(themes, "base").mkdirs();
+        styles = new File(themes, "mytheme/styles.scss");
+        base = new File(themes, "base/base.scss");
+        write(styles, "@import \"../base/base.scss\";\n.mytheme { color: red; }");
+        write(base, ".base { color: blue; }");
+    }
+
+    @After
+    public void tearDown() {
+        delete(themes);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(contents.getBytes("UTF-8"));
+        out.close();
+    }
+
+    private String getCss(ScssCache cache) throws IOException {
+        return cache.getCss("/VAADIN/themes/mytheme/styles.scss",
+                styles.getPath(), styles.toURI().toURL());
+    }
+
+    @Test
+    public void getCss_unchanged_compiledOnce() throws IOException {
+        CountingScssCache cache = new CountingScssCache();
+        String css = getCss(cache);
+        Assert.assertTrue(css, css.contains(".base"));
+        Assert.assertTrue(css, css.contains(".mytheme"));
+
+        Assert.assertSame(css, getCss(cache));
+        Assert.assertEquals(1, cache.compilations.get());
+    }
+
+    @Test
+    public void getCss_importedFileModified_recompiled() throws IOException {
+        CountingScssCache cache = new CountingScssCache();
+        getCss(cache);
+
+        write(base, ".changed { color: blue; }");
+        base.setLastModified(System.currentTimeMillis() + 10000);
+        String css = getCss(cache);
+        Assert.assertTrue(css, css.contains(".changed"));
+        Assert.assertEquals(2, cache.compilations.get());
+    }
+
+    @Test
+    public void getCss_modifiedWithinCheckInterval_notRecompiled()
+            throws IOException {
+        CountingScssCache cache = new CountingScssCache(60 * 60 * 1000);
+        String css = getCss(cache);
+
+        write(base, ".changed { color: blue; }");
+        base.setLastModified(System.currentTimeMillis() + 10000);
+        Assert.assertSame(css, getCss(cache));
+        Assert.assertEquals(1, cache.compilations.get());
+    }
+
+    @Test
+    public void getCss_concurrentRequests_compiledOnce() throws Exception {
+        final CountingScssCache cache = new CountingScssCache();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<String> results = new ArrayList<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 10; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        String css = getCss(cache);
+                        synchronized (results) {
+                            results.add(css);
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(10, results.size());
+        Assert.assertNotNull(results.get(0));
+        Assert.assertEquals(1, cache.compilations.get());
+    }
+
+    @Test
+    public void getSourceStamp_fileAdded_changed() throws IOException {
+        long stamp = ScssCache.getSourceStamp(themes);
+        write(new File(themes, "base/other.scss"), "");
+        new File(themes, "base/other.scss").setLastModified(base
+                .lastModified());
+        Assert.assertFalse(stamp == ScssCache.getSourceStamp(themes));
+    }
+
+    @Test
+    public void getSourceStamp_replacedWithOlderFile_changed()
+            throws IOException {
+        long lastModified = base.lastModified();
+        long stamp = ScssCache.getSourceStamp(themes);
+        write(base, ".replaced { color: green; }");
+        base.setLastModified(lastModified - 10000);
+        Assert.assertFalse(stamp == ScssCache.getSourceStamp(themes));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.server.ServerRpcManager.RpcInvocationException;
+import com.vaadin.shared.communication.ServerRpc;
+
+public class ServerRpcManagerTest {
+
+    interface TestRpc extends ServerRpc {
+        public void call();
+
+        public void call(int value);
+
+        public void call(List<String> values, boolean flag);
+    }
+
+    private static class RecordingRpc implements TestRpc {
+        private final List<Object> calls = new ArrayList<Object>();
+
+        @Override
+        public void call() {
+            calls.add("call()");
+        }
+
+        @Override
+        public void call(int value) {
+            calls.add(Integer.valueOf(value));
+        }
+
+        @Override
+        public void call(List<String> values, boolean flag) {
+            calls.add(values);
+            calls.add(Boolean.valueOf(flag));
+        }
+    }
+
+    private static ServerRpcMethodInvocation createInvocation(
+            Object... parameters) {
+        ServerRpcMethodInvocation invocation = new ServerRpcMethodInvocation(
+                "1", TestRpc.class, "call", parameters.length);
+        invocation.setParameters(parameters);
+        return invocation;
+    }
+
+    @Test
+    public void applyInvocation_overloadsByParameterCount()
+            throws RpcInvocationException {
+        RecordingRpc rpc = new RecordingRpc();
+        ServerRpcManager<TestRpc> manager = new ServerRpcManager<TestRpc>(rpc,
+                TestRpc.class);
+        List<String> values = new ArrayList<String>();
+
+        manager.applyInvocation(createInvocation());
+        manager.applyInvocation(createInvocation(Integer.valueOf(42)));
+        manager.applyInvocation(createInvocation(values, Boolean.TRUE));
+
+        Assert.assertEquals(4, rpc.calls.size());
+        Assert.assertEquals("call()", rpc.calls.get(0));
+        Assert.assertEquals(Integer.valueOf(42), rpc.calls.get(1));
+        Assert.assertSame(values, rpc.calls.get(2));
+        Assert.assertEquals(Boolean.TRUE, rpc.calls.get(3));
+    }
+
+    @Test
+    public void getGenericParameterTypes_resolvedOncePerMethod() {
+        ServerRpcMethodInvocation first = createInvocation(null, null);
+        ServerRpcMethodInvocation second = createInvocation(null, null);
+
+        Assert.assertSame(first.getGenericParameterTypes(),
+                second.getGenericParameterTypes());
+        Assert.assertTrue(first.getGenericParameterTypes()[0] instanceof ParameterizedType);
+        Assert.assertEquals(boolean.class, first.getGenericParameterTypes()[1]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void createInvocation_unknownParameterCount_throws() {
+        createInvocation(null, null, null);
+    }
+
+    @Test(expected = RpcInvocationException.class)
+    public void applyInvocation_wrongParameterType_throws()
+            throws RpcInvocationException {
+        new ServerRpcManager<TestRpc>(new RecordingRpc(), TestRpc.class)
+                .applyInvocation(createInvocation("not an int"));
+    }
+}
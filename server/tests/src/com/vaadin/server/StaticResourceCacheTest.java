@@ -0,0 +1,188 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.server.StaticResourceCache.StaticResource;
+
+public class StaticResourceCacheTest {
+
+    private static final String CSS = "text/css";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("static", "");
+        directory.delete();
+        directory.mkdir();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private File createFile(String name, String contents) throws IOException {
+        File file = new File(directory, name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(contents.getBytes("UTF-8"));
+        out.close();
+        return file;
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    private static String write(StaticResource resource, boolean gzip,
+            long start, long count) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resource.write(out, gzip, start, count);
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        if (gzip) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0) {
+            decoded.write(b);
+        }
+        return decoded.toString("UTF-8");
+    }
+
+    @Test
+    public void load_smallTextResource_cachedWithCompressedVariant()
+            throws IOException {
+        String css = repeat(".v-button { color: red; }\n", 100);
+        File file = createFile("styles.css", css);
+        StaticResourceCache cache = new StaticResourceCache(1024 * 1024);
+
+        StaticResource resource = cache.load("/VAADIN/styles.css", file
+                .toURI().toURL(), null, CSS);
+        Assert.assertSame(resource, cache.get("/VAADIN/styles.css"));
+        Assert.assertEquals(css.length(), resource.getLength(false));
+        Assert.assertTrue(resource.isGzipAvailable());
+        Assert.assertTrue(resource.getLength(true) < css.length());
+        Assert.assertFalse(resource.getETag(true).equals(
+                resource.getETag(false)));
+        Assert.assertEquals(0, resource.getLastModified() % 1000);
+
+        Assert.assertEquals(css, write(resource, false, 0, css.length()));
+        Assert.assertEquals(css,
+                write(resource, true, 0, resource.getLength(true)));
+        Assert.assertEquals(css.substring(5, 15), write(resource, false, 5, 10));
+    }
+
+    @Test
+    public void load_precompressedVariant_used() throws IOException {
+        File file = createFile("widgetset.cache.js", "var a = 1;");
+        File gzipFile = new File(directory, "widgetset.cache.js.gz");
+        GZIPOutputStream out = new GZIPOutputStream(
+                new FileOutputStream(gzipFile));
+        out.write("var a = 1;".getBytes("UTF-8"));
+        out.close();
+        StaticResourceCache cache = new StaticResourceCache(1024 * 1024);
+
+        StaticResource resource = cache.load("/VAADIN/widgetset.cache.js",
+                file.toURI().toURL(), gzipFile.toURI().toURL(),
+                "text/javascript");
+        Assert.assertTrue(resource.isGzipAvailable());
+        Assert.assertEquals(gzipFile.length(), resource.getLength(true));
+        Assert.assertEquals("var a = 1;",
+                write(resource, true, 0, resource.getLength(true)));
+    }
+
+    @Test
+    public void load_largeResource_readFromFile() throws IOException {
+        String contents = repeat("0123456789", 100);
+        File file = createFile("large.css", contents);
+        StaticResourceCache cache = new StaticResourceCache(800);
+
+        StaticResource resource = cache.load("/VAADIN/large.css", file
+                .toURI().toURL(), null, CSS);
+        Assert.assertFalse(resource.isGzipAvailable());
+        Assert.assertTrue(cache.getSize() < 800);
+        Assert.assertEquals(contents.length(), resource.getLength(false));
+        Assert.assertEquals(contents.substring(995),
+                write(resource, false, 995, 5));
+    }
+
+    @Test
+    public void get_fileModified_returnsNull() throws IOException {
+        File file = createFile("styles.css", "a");
+        StaticResourceCache cache = new StaticResourceCache(1024);
+        cache.load("/VAADIN/styles.css", file.toURI().toURL(), null, CSS);
+
+        createFile("styles.css", "ab");
+        Assert.assertNull(cache.get("/VAADIN/styles.css"));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void get_precompressedVariantModified_returnsNull()
+            throws IOException {
+        File file = createFile("widgetset.cache.js", "var a = 1;");
+        File gzipFile = createFile("widgetset.cache.js.gz", "old");
+        StaticResourceCache cache = new StaticResourceCache(1024 * 1024);
+        cache.load("/VAADIN/widgetset.cache.js", file.toURI().toURL(),
+                gzipFile.toURI().toURL(), "text/javascript");
+        Assert.assertNotNull(cache.get("/VAADIN/widgetset.cache.js"));
+
+        // Regenerated with the same length
+        createFile("widgetset.cache.js.gz", "new");
+        gzipFile.setLastModified(gzipFile.lastModified() - 10000);
+        Assert.assertNull(cache.get("/VAADIN/widgetset.cache.js"));
+    }
+
+    @Test
+    public void load_maxSizeExceeded_leastRecentlyUsedEvicted()
+            throws IOException {
+        String contents = repeat("x", 100);
+        StaticResourceCache cache = new StaticResourceCache(1200);
+        for (String name : new String[] { "a", "b", "c" }) {
+            cache.load(name, createFile(name, contents).toURI().toURL(), null,
+                    null);
+        }
+        cache.get("a");
+        cache.load("d", createFile("d", contents).toURI().toURL(), null, null);
+
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertNotNull(cache.get("d"));
+    }
+}
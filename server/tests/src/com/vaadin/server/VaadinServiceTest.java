@@ -15,14 +15,26 @@
  */
 package com.vaadin.server;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.locks.ReentrantLock;
+
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpSessionBindingEvent;
 
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.easymock.IMocksControl;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.vaadin.shared.ApplicationConstants;
+import com.vaadin.shared.ui.ui.UIConstants;
+import com.vaadin.ui.UI;
+
 /**
  * 
  * @author Vaadin Ltd
@@ -66,4 +78,191 @@ public class VaadinServiceTest {
         Assert.assertEquals("SessionDestroyListeners not called exactly once",
                 1, listener.callCount);
     }
+
+    @Test
+    public void testDestroyShutsDownCoalescedPushScheduler()
+            throws ServletException {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        VaadinService service = servlet.getService();
+
+        Assert.assertTrue(service.getCoalescedPushScheduler().schedule(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                }, 1000));
+
+        service.destroy();
+
+        Assert.assertTrue(service.getCoalescedPushScheduler().isShutdown());
+        Assert.assertFalse(service.getCoalescedPushScheduler().schedule(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                }, 0));
+    }
+
+    @Test
+    public void testHeartbeatClosesInactiveUIs() throws Exception {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        VaadinService service = servlet.getService();
+
+        IMocksControl control = EasyMock.createNiceControl();
+        VaadinRequest request = control.createMock(VaadinRequest.class);
+        VaadinResponse response = control.createMock(VaadinResponse.class);
+        WrappedSession wrappedSession = control
+                .createMock(WrappedSession.class);
+        MockVaadinSession session = new MockVaadinSession(service);
+
+        EasyMock.expect(request.getPathInfo())
+                .andReturn("/" + ApplicationConstants.HEARTBEAT_PATH + "/")
+                .anyTimes();
+        EasyMock.expect(request.getParameter(UIConstants.UI_ID_PARAMETER))
+                .andReturn("0").anyTimes();
+        EasyMock.expect(request.getWrappedSession(false))
+                .andReturn(wrappedSession).anyTimes();
+        EasyMock.expect(request.getAttribute("requestStartTime"))
+                .andReturn(Long.valueOf(System.nanoTime())).anyTimes();
+        EasyMock.expect(
+                wrappedSession.getAttribute(VaadinSession.class.getName()
+                        + "." + service.getServiceName())).andReturn(session)
+                .anyTimes();
+        EasyMock.expect(
+                wrappedSession.getAttribute(service.getServiceName() + ".lock"))
+                .andReturn(session.getLockInstance()).anyTimes();
+        EasyMock.expect(wrappedSession.getId()).andReturn("session")
+                .anyTimes();
+        control.replay();
+
+        UI activeUI = createUI(request, session, 0);
+        UI abandonedUI = createUI(request, session, 1);
+        session.lock();
+        try {
+            session.storeInSession(service, wrappedSession);
+            abandonedUI.setLastHeartbeatTimestamp(0);
+        } finally {
+            session.unlock();
+        }
+
+        service.handleRequest(request, response);
+
+        Assert.assertTrue(activeUI.getLastHeartbeatTimestamp() > 0);
+        Assert.assertTrue("Inactive UI not closed by a heartbeat request",
+                abandonedUI.isClosing());
+        session.lock();
+        try {
+            Assert.assertTrue(session.getUIs().contains(activeUI));
+            Assert.assertFalse(session.getUIs().contains(abandonedUI));
+        } finally {
+            session.unlock();
+        }
+    }
+
+    @Test
+    public void testHeartbeatDeserializedSession() throws Exception {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        VaadinService service = servlet.getService();
+
+        IMocksControl control = EasyMock.createNiceControl();
+        VaadinRequest request = control.createMock(VaadinRequest.class);
+        VaadinResponse response = control.createMock(VaadinResponse.class);
+        WrappedSession originalWrappedSession = control
+                .createMock(WrappedSession.class);
+        WrappedSession wrappedSession = control
+                .createMock(WrappedSession.class);
+        ReentrantLock originalLock = new ReentrantLock();
+        final VaadinSession[] deserialized = new VaadinSession[1];
+
+        EasyMock.expect(request.getPathInfo())
+                .andReturn("/" + ApplicationConstants.HEARTBEAT_PATH + "/")
+                .anyTimes();
+        EasyMock.expect(request.getParameter(UIConstants.UI_ID_PARAMETER))
+                .andReturn("0").anyTimes();
+        EasyMock.expect(request.getWrappedSession()).andReturn(wrappedSession)
+                .anyTimes();
+        EasyMock.expect(request.getWrappedSession(false))
+                .andReturn(wrappedSession).anyTimes();
+        EasyMock.expect(request.getAttribute("requestStartTime"))
+                .andReturn(Long.valueOf(System.nanoTime())).anyTimes();
+        EasyMock.expect(
+                originalWrappedSession.getAttribute(service.getServiceName()
+                        + ".lock")).andReturn(originalLock).anyTimes();
+        EasyMock.expect(
+                wrappedSession.getAttribute(VaadinSession.class.getName()
+                        + "." + service.getServiceName()))
+                .andAnswer(new IAnswer<Object>() {
+                    @Override
+                    public Object answer() {
+                        return deserialized[0];
+                    }
+                }).anyTimes();
+        EasyMock.expect(
+                wrappedSession.getAttribute(service.getServiceName() + ".lock"))
+                .andReturn(new ReentrantLock()).anyTimes();
+        EasyMock.expect(wrappedSession.getId()).andReturn("session")
+                .anyTimes();
+        control.replay();
+
+        VaadinSession original = new VaadinSession(service);
+        originalLock.lock();
+        try {
+            original.storeInSession(service, originalWrappedSession);
+        } finally {
+            originalLock.unlock();
+        }
+        createUI(request, original, 0);
+
+        original.lock();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(original);
+            out.close();
+            deserialized[0] = (VaadinSession) new ObjectInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray()))
+                    .readObject();
+        } finally {
+            original.unlock();
+        }
+        VaadinSession session = deserialized[0];
+        // Not yet used by any request after being deserialized
+        Assert.assertNull(session.getService());
+        Assert.assertNull(session.getLockInstance());
+
+        service.handleRequest(request, response);
+
+        // Handled with the session locked, which restores the transients
+        Assert.assertSame(service, session.getService());
+        Assert.assertNotNull(session.getLockInstance());
+        session.lock();
+        try {
+            Assert.assertTrue(session.getUIById(0)
+                    .getLastHeartbeatTimestamp() > 0);
+        } finally {
+            session.unlock();
+        }
+    }
+
+    private static class TestUI extends UI {
+        @Override
+        protected void init(VaadinRequest request) {
+        }
+    }
+
+    private UI createUI(VaadinRequest request, VaadinSession session, int id) {
+        UI ui = new TestUI();
+        ui.doInit(request, id, null);
+        session.lock();
+        try {
+            ui.setSession(session);
+            session.addUI(ui);
+        } finally {
+            session.unlock();
+        }
+        return ui;
+    }
 }
@@ -57,4 +57,23 @@ public class VaadinServletTest {
         Assert.assertEquals("", VaadinServlet
                 .getLastPathParameter("http://myhost.com/a;hello/;b=1,c=2/"));
     }
+
+    @Test
+    public void parseByteRange() {
+        Assert.assertArrayEquals(new long[] { 0, 99 },
+                VaadinServlet.parseByteRange("bytes=0-99", 1000));
+        Assert.assertArrayEquals(new long[] { 500, 999 },
+                VaadinServlet.parseByteRange("bytes=500-", 1000));
+        Assert.assertArrayEquals(new long[] { 900, 999 },
+                VaadinServlet.parseByteRange("bytes=-100", 1000));
+        Assert.assertArrayEquals(new long[] { 0, 999 },
+                VaadinServlet.parseByteRange("bytes=-2000", 1000));
+        Assert.assertArrayEquals(new long[] { 990, 999 },
+                VaadinServlet.parseByteRange("bytes=990-5000", 1000));
+        Assert.assertSame(VaadinServlet.INVALID_RANGE,
+                VaadinServlet.parseByteRange("bytes=1000-", 1000));
+        Assert.assertNull(VaadinServlet.parseByteRange("bytes=0-1,5-6", 1000));
+        Assert.assertNull(VaadinServlet.parseByteRange("items=0-1", 1000));
+        Assert.assertNull(VaadinServlet.parseByteRange("bytes=5-1", 1000));
+    }
 }
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.Broadcaster;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.easymock.IMocksControl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.MockVaadinSession;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.shared.communication.PushMode;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+
+/**
+ * Tests that pushes are coalesced when using {@link PushMode#COALESCED} and
+ * that push messages are sent in the expected envelope.
+ */
+public class AtmospherePushConnectionTest {
+
+    private static final int INTERVAL = 200;
+
+    private CoalescedPushScheduler scheduler;
+    private RecordingSession session;
+    private RecordingPushConnection connection;
+    private UI ui;
+    private Label label;
+
+    private static class RecordingSession extends MockVaadinSession {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        public RecordingSession(VaadinService service) {
+            super(service);
+        }
+
+        @Override
+        public Future<Void> access(Runnable runnable) {
+            synchronized (tasks) {
+                tasks.add(runnable);
+                tasks.notifyAll();
+            }
+            return null;
+        }
+
+        private Runnable waitForTask(long timeout) throws InterruptedException {
+            long end = System.currentTimeMillis() + timeout;
+            synchronized (tasks) {
+                while (tasks.isEmpty() && System.currentTimeMillis() < end) {
+                    tasks.wait(end - System.currentTimeMillis());
+                }
+                return tasks.isEmpty() ? null : tasks.remove(0);
+            }
+        }
+    }
+
+    private static class RecordingPushConnection extends
+            AtmospherePushConnection {
+        private final List<String> messages = new ArrayList<String>();
+
+        public RecordingPushConnection(UI ui) {
+            super(ui);
+        }
+
+        @Override
+        void sendMessage(String message) {
+            super.sendMessage(message);
+            messages.add(message);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        IMocksControl control = EasyMock.createNiceControl();
+        VaadinRequest request = control.createMock(VaadinRequest.class);
+        VaadinService service = control.createMock(VaadinService.class);
+        AtmosphereResource resource = control
+                .createMock(AtmosphereResource.class);
+        Broadcaster broadcaster = control.createMock(Broadcaster.class);
+        EasyMock.expect(resource.getBroadcaster()).andReturn(broadcaster)
+                .anyTimes();
+        EasyMock.expect(service.ensurePushAvailable()).andReturn(true)
+                .anyTimes();
+        scheduler = new CoalescedPushScheduler();
+        EasyMock.expect(service.getCoalescedPushScheduler())
+                .andReturn(scheduler).anyTimes();
+        control.replay();
+
+        session = new RecordingSession(service);
+        ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.doInit(request, 0, "");
+        label = new Label();
+
+        session.lock();
+        try {
+            session.setCommunicationManager(new LegacyCommunicationManager(
+                    session));
+            ui.setSession(session);
+            session.addUI(ui);
+            ui.setContent(label);
+            ui.getPushConfiguration().setPushMode(PushMode.COALESCED);
+            ui.getPushConfiguration().setCoalescingInterval(INTERVAL);
+            connection = new RecordingPushConnection(ui);
+            ui.setPushConnection(connection);
+            connection.connect(resource);
+        } finally {
+            session.unlock();
+        }
+    }
+
+    @Test
+    public void push_coalescedMode_changesPushedOncePerInterval()
+            throws Exception {
+        Assert.assertEquals(1, connection.getMessagesSent());
+
+        session.lock();
+        try {
+            // Deferred, the previous push was just sent
+            label.setValue("a");
+            ui.push();
+            label.setValue("b");
+            ui.push();
+            label.setValue("c");
+        } finally {
+            session.unlock();
+        }
+        Assert.assertEquals(1, connection.getMessagesSent());
+        Assert.assertEquals(2, connection.getCoalescedPushes());
+
+        Runnable deferredPush = session.waitForTask(10 * INTERVAL);
+        Assert.assertNotNull("No deferred push was scheduled", deferredPush);
+        session.lock();
+        try {
+            deferredPush.run();
+        } finally {
+            session.unlock();
+        }
+
+        Assert.assertEquals(2, connection.getMessagesSent());
+        String message = connection.messages.get(1);
+        Assert.assertTrue(message.contains("\"c\""));
+        Assert.assertFalse(message.contains("\"b\""));
+        Assert.assertTrue(connection.getCharactersSent() >= connection.messages
+                .get(0).length() + message.length());
+        Assert.assertNull("Only one push should be scheduled",
+                session.waitForTask(2 * INTERVAL));
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void push_schedulerShutDown_pushedImmediately() throws Exception {
+        scheduler.shutdown();
+        Assert.assertTrue(scheduler.isShutdown());
+
+        session.lock();
+        try {
+            label.setValue("a");
+            ui.push();
+        } finally {
+            session.unlock();
+        }
+        Assert.assertEquals(2, connection.getMessagesSent());
+        Assert.assertEquals(0, connection.getCoalescedPushes());
+    }
+
+    @Test
+    public void push_manualMode_pushedImmediately() throws Exception {
+        session.lock();
+        try {
+            ui.getPushConfiguration().setPushMode(PushMode.MANUAL);
+            label.setValue("a");
+            ui.push();
+            label.setValue("b");
+            ui.push();
+        } finally {
+            session.unlock();
+        }
+        Assert.assertEquals(3, connection.getMessagesSent());
+        Assert.assertEquals(0, connection.getCoalescedPushes());
+    }
+
+    @Test
+    public void push_largeMessage_envelopeWrittenAroundUidl() throws Exception {
+        final List<Object> broadcasts = new ArrayList<Object>();
+        IMocksControl control = EasyMock.createNiceControl();
+        AtmosphereResource resource = control
+                .createMock(AtmosphereResource.class);
+        Broadcaster broadcaster = control.createMock(Broadcaster.class);
+        EasyMock.expect(resource.getBroadcaster()).andReturn(broadcaster)
+                .anyTimes();
+        EasyMock.expect(
+                broadcaster.broadcast(EasyMock.anyObject(),
+                        EasyMock.same(resource)))
+                .andAnswer(new IAnswer<Future<Object>>() {
+                    @Override
+                    public Future<Object> answer() throws Throwable {
+                        broadcasts.add(EasyMock.getCurrentArguments()[0]);
+                        return null;
+                    }
+                }).anyTimes();
+        control.replay();
+
+        StringBuilder value = new StringBuilder();
+        while (value.length() < 1024 * 1024) {
+            value.append("0123456789abcdef");
+        }
+
+        session.lock();
+        try {
+            ui.getPushConfiguration().setPushMode(PushMode.MANUAL);
+            connection.disconnect();
+            connection.connect(resource);
+            label.setValue(value.toString());
+            ui.push();
+        } finally {
+            session.unlock();
+        }
+
+        String message = connection.messages.get(connection.messages.size() - 1);
+        Assert.assertTrue(message.startsWith("for(;;);[{"));
+        Assert.assertTrue(message.endsWith("}]"));
+        Assert.assertTrue(message.contains(value));
+        Assert.assertEquals(message, broadcasts.get(broadcasts.size() - 1));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.easymock.IMocksControl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.server.MockVaadinSession;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.shared.ApplicationConstants;
+import com.vaadin.shared.ui.ui.UIConstants;
+import com.vaadin.ui.UI;
+
+/**
+ * Tests that heartbeats are recorded without waiting for the session lock.
+ */
+public class HeartbeatHandlerTest {
+
+    private static final int HEARTBEATS = 1000;
+
+    private VaadinRequest request;
+    private VaadinResponse response;
+    private VaadinSession session;
+    private UI ui;
+
+    private class HeartbeatSender extends Thread {
+        private long maxLatency = -1;
+        private IOException exception;
+
+        @Override
+        public void run() {
+            HeartbeatHandler handler = new HeartbeatHandler();
+            try {
+                for (int i = 0; i < HEARTBEATS; i++) {
+                    long start = System.nanoTime();
+                    Assert.assertTrue(handler.handleRequest(session, request,
+                            response));
+                    maxLatency = Math.max(maxLatency, System.nanoTime()
+                            - start);
+                }
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        IMocksControl control = EasyMock.createNiceControl();
+
+        request = control.createMock(VaadinRequest.class);
+        response = control.createMock(VaadinResponse.class);
+        VaadinService service = control.createMock(VaadinService.class);
+
+        EasyMock.expect(request.getPathInfo())
+                .andReturn("/" + ApplicationConstants.HEARTBEAT_PATH + "/")
+                .anyTimes();
+        EasyMock.expect(request.getParameter(UIConstants.UI_ID_PARAMETER))
+                .andReturn("0").anyTimes();
+
+        control.replay();
+
+        session = new MockVaadinSession(service);
+
+        ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.doInit(request, 0, "");
+
+        session.lock();
+        try {
+            ui.setSession(session);
+            session.addUI(ui);
+        } finally {
+            session.unlock();
+        }
+    }
+
+    @Test
+    public void handleRequest_sessionLockedByOtherThread_notBlocked()
+            throws Exception {
+        ui.setLastHeartbeatTimestamp(0);
+        HeartbeatSender sender = new HeartbeatSender();
+
+        // Simulates a long running UIDL request holding the lock
+        session.lock();
+        try {
+            sender.start();
+            sender.join(TimeUnit.SECONDS.toMillis(10));
+            Assert.assertFalse("Heartbeats blocked by the session lock",
+                    sender.isAlive());
+        } finally {
+            session.unlock();
+        }
+
+        Assert.assertNull(sender.exception);
+        Assert.assertTrue("Heartbeat latency too high: "
+                + TimeUnit.NANOSECONDS.toMillis(sender.maxLatency) + " ms",
+                sender.maxLatency < TimeUnit.SECONDS.toNanos(1));
+        Assert.assertTrue(ui.getLastHeartbeatTimestamp() > 0);
+    }
+
+    @Test
+    public void handleRequest_unknownUI_notFound() throws IOException {
+        IMocksControl control = EasyMock.createNiceControl();
+        VaadinRequest otherRequest = control.createMock(VaadinRequest.class);
+        VaadinResponse otherResponse = control
+                .createMock(VaadinResponse.class);
+        EasyMock.expect(otherRequest.getPathInfo())
+                .andReturn("/" + ApplicationConstants.HEARTBEAT_PATH + "/")
+                .anyTimes();
+        EasyMock.expect(otherRequest.getParameter(UIConstants.UI_ID_PARAMETER))
+                .andReturn("42").anyTimes();
+        otherResponse.sendError(EasyMock.eq(404),
+                EasyMock.anyObject(String.class));
+        control.replay();
+
+        Assert.assertTrue(new HeartbeatHandler().handleRequest(session,
+                otherRequest, otherResponse));
+        control.verify();
+    }
+}
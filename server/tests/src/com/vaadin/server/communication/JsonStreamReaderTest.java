@@ -0,0 +1,131 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonStreamReaderTest {
+
+    /*
+     * Returns at most a few characters per read to exercise values spanning
+     * several buffers.
+     */
+    private static class TrickleReader extends Reader {
+        private final String input;
+        private int position = 0;
+
+        private TrickleReader(String input) {
+            this.input = input;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (position == input.length()) {
+                return -1;
+            }
+            int count = Math.min(Math.min(len, 3), input.length() - position);
+            input.getChars(position, position + count, cbuf, off);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final String JSON = "{\"csrfToken\": \"abc\", \"rpc\": [[\"1\",\"v\",\"v\",[\"text\",[\"s\",\"quote \\\" backslash \\\\ slash \\/ \\u00e4 \\t\\n\"]]],"
+            + "[\"2\",\"com.example.Rpc\",\"call\",[1, -2, 2147483648, 1.5, 1e3, 012, 0x1F, true, false, null, {}, [], {\"a\": [{\"b\": 'c'}]}]]],"
+            + " \"syncId\" : 3 }";
+
+    @Test
+    public void readObject_sameAsJsonObject() throws Exception {
+        JSONObject expected = new JSONObject(JSON);
+
+        Assert.assertEquals(expected.toString(),
+                new JsonStreamReader(new StringReader(JSON)).readObject()
+                        .toString());
+        Assert.assertEquals(expected.toString(),
+                new JsonStreamReader(new TrickleReader(JSON)).readObject()
+                        .toString());
+    }
+
+    @Test
+    public void readValue_numberTypesSameAsJsonArray() throws Exception {
+        String json = "[0, -5, 2147483647, 2147483648, -2147483649, 1.0, 1e400, 010, 0x10, 99999999999999999999]";
+        JSONArray expected = new JSONArray(json);
+        JSONArray actual = (JSONArray) new JsonStreamReader(new StringReader(
+                json)).readValue();
+
+        Assert.assertEquals(expected.length(), actual.length());
+        for (int i = 0; i < expected.length(); i++) {
+            Assert.assertEquals(expected.get(i), actual.get(i));
+            Assert.assertEquals(expected.get(i).getClass(), actual.get(i)
+                    .getClass());
+        }
+    }
+
+    @Test
+    public void readString_longStringWithEscapes() throws Exception {
+        StringBuilder value = new StringBuilder();
+        while (value.length() < 20000) {
+            value.append("abc\"\\\n\u20ac");
+        }
+        String json = JSONObject.quote(value.toString());
+
+        Assert.assertEquals(value.toString(), new JsonStreamReader(
+                new StringReader(json)).readValue());
+    }
+
+    @Test
+    public void isAtEnd_whitespaceOnly() throws IOException {
+        Assert.assertTrue(new JsonStreamReader(new StringReader("")).isAtEnd());
+        Assert.assertTrue(new JsonStreamReader(new StringReader(" \n\t"))
+                .isAtEnd());
+        Assert.assertFalse(new JsonStreamReader(new StringReader(" {}"))
+                .isAtEnd());
+    }
+
+    @Test(expected = JSONException.class)
+    public void readObject_unterminatedObject_throws() throws Exception {
+        new JsonStreamReader(new StringReader("{\"a\": [1, 2]")).readObject();
+    }
+
+    @Test(expected = JSONException.class)
+    public void readObject_array_throws() throws Exception {
+        new JsonStreamReader(new StringReader("[]")).readObject();
+    }
+
+    @Test
+    public void rpcRequest_invocationsParsedOnce() throws Exception {
+        ServerRpcHandler.RpcRequest request = new ServerRpcHandler.RpcRequest(
+                new JsonStreamReader(new StringReader(JSON)).readObject());
+
+        Assert.assertEquals("abc", request.getCsrfToken());
+        Assert.assertEquals(3, request.getSyncId());
+        Assert.assertSame(request.getRawJson().get("rpc"),
+                request.getRpcInvocationsData());
+        Assert.assertEquals(2, request.getRpcInvocationsData().length());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.io.StringWriter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonStreamWriterTest {
+
+    @Test
+    public void nestedValuesMatchJsonObjectToString() throws Exception {
+        JSONObject object = new JSONObject();
+        object.put("string", "quote \" backslash \\ slash / tab \t nl \n");
+        object.put("control", "\u0000\u001f\u007f ");
+        object.put("int", 42);
+        object.put("double", 1.5);
+        object.put("wholeDouble", 2.0);
+        object.put("long", Long.MAX_VALUE);
+        object.put("bool", true);
+        object.put("null", JSONObject.NULL);
+        object.put("emptyObject", new JSONObject());
+        object.put("emptyArray", new JSONArray());
+        JSONArray array = new JSONArray();
+        array.put(1);
+        array.put("two");
+        array.put(new JSONObject().put("three", new JSONArray().put(3)));
+        array.put(JSONObject.NULL);
+        object.put("array", array);
+
+        StringWriter stringWriter = new StringWriter();
+        new JsonStreamWriter(stringWriter).value(object);
+
+        Assert.assertEquals(object.toString(), stringWriter.toString());
+    }
+
+    @Test
+    public void tokensAreSeparated() throws Exception {
+        StringWriter stringWriter = new StringWriter();
+        JsonStreamWriter json = new JsonStreamWriter(stringWriter);
+        json.beginObject();
+        json.key("a").beginArray().value("x").value(1).value(false)
+                .endArray();
+        json.key("b").beginObject().endObject();
+        json.key("c").value((String) null);
+        json.endObject();
+
+        Assert.assertEquals("{\"a\":[\"x\",1,false],\"b\":{},\"c\":null}",
+                stringWriter.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unbalancedEndThrows() throws Exception {
+        new JsonStreamWriter(new StringWriter()).endArray();
+    }
+}
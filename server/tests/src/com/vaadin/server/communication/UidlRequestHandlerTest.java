@@ -0,0 +1,88 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.io.ByteArrayOutputStream;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.shared.JsonConstants;
+
+public class UidlRequestHandlerTest {
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        VaadinRequest request = EasyMock.createMock(VaadinRequest.class);
+        EasyMock.expect(request.getHeader("Accept-Encoding")).andReturn(
+                acceptEncoding);
+        EasyMock.replay(request);
+        return UidlRequestHandler.acceptsGzip(request);
+    }
+
+    @Test
+    public void acceptsGzip_gzipListed_true() {
+        Assert.assertTrue(acceptsGzip("gzip"));
+        Assert.assertTrue(acceptsGzip("deflate, GZIP;q=0.5"));
+        Assert.assertTrue(acceptsGzip("*"));
+    }
+
+    @Test
+    public void acceptsGzip_gzipNotAccepted_false() {
+        Assert.assertFalse(acceptsGzip(null));
+        Assert.assertFalse(acceptsGzip("identity"));
+        Assert.assertFalse(acceptsGzip("gzip;q=0, deflate"));
+        Assert.assertFalse(acceptsGzip("x-gzip"));
+    }
+
+    private static void openCompressedResponse(String acceptEncoding,
+            boolean gzip) throws Exception {
+        UidlRequestHandler handler = new UidlRequestHandler() {
+            @Override
+            protected boolean isCompressedResponse(VaadinSession session) {
+                return true;
+            }
+        };
+
+        VaadinRequest request = EasyMock.createMock(VaadinRequest.class);
+        EasyMock.expect(request.getHeader("Accept-Encoding")).andReturn(
+                acceptEncoding);
+        VaadinResponse response = EasyMock.createMock(VaadinResponse.class);
+        response.setContentType(JsonConstants.JSON_CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+        EasyMock.expect(response.getOutputStream()).andReturn(
+                new ByteArrayOutputStream());
+        response.setHeader("Vary", "Accept-Encoding");
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        EasyMock.replay(request, response);
+
+        handler.openStreamingResponse(request, response, null);
+
+        EasyMock.verify(response);
+    }
+
+    @Test
+    public void openStreamingResponse_compressed_varyHeaderSet()
+            throws Exception {
+        openCompressedResponse("gzip", true);
+        openCompressedResponse("identity", false);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.MockServletConfig;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.UI;
+
+/**
+ * Tests that the streaming mode of {@link UidlWriter} produces the same JSON
+ * as the mode that builds JSON objects.
+ * 
+ * @author Vaadin Ltd
+ */
+public class UidlWriterTest {
+
+    private VaadinSession session;
+    private UI ui;
+
+    @Before
+    public void setup() throws Exception {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        VaadinServletService service = new VaadinServletService(servlet,
+                new MockDeploymentConfiguration());
+        service.init();
+
+        session = new AlwaysLockedVaadinSession(service);
+        session.setCommunicationManager(new LegacyCommunicationManager(
+                session));
+        session.setConfiguration(service.getDeploymentConfiguration());
+
+        ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+
+        CssLayout layout = new CssLayout();
+        for (int i = 0; i < 20; i++) {
+            Label label = new Label("Label \"" + i + "\" </script>\n");
+            label.setDescription("Description \u0001 " + i);
+            layout.addComponent(label);
+            layout.addComponent(new Button("Button " + i));
+        }
+        ui.setContent(layout);
+    }
+
+    @Test
+    public void streamingAndObjectModesProduceEqualJson() throws Exception {
+        JSONObject objectMode = writeAll(false);
+        JSONObject streamingMode = writeAll(true);
+
+        for (String section : Arrays.asList("state", "types", "hierarchy",
+                "rpc")) {
+            Assert.assertEquals(section, objectMode.get(section).toString(),
+                    streamingMode.get(section).toString());
+        }
+    }
+
+    @Test
+    public void streamingRpcCallsAreWritten() throws Exception {
+        writeAll(true);
+
+        ui.getPage().getJavaScript().execute("alert('Hello \"world\"')");
+
+        JSONObject uidl = write(true, false);
+        JSONArray rpc = uidl.getJSONArray("rpc");
+        Assert.assertEquals(1, rpc.length());
+        Assert.assertEquals(ui.getPage().getJavaScript().getConnectorId(), rpc
+                .getJSONArray(0).getString(0));
+        Assert.assertEquals("alert('Hello \"world\"')", rpc.getJSONArray(0)
+                .getJSONArray(3).getString(0));
+    }
+
+    private JSONObject writeAll(boolean streaming) throws Exception {
+        session.getCommunicationManager().repaintAll(ui);
+        return write(streaming, true);
+    }
+
+    private JSONObject write(boolean streaming, boolean repaintAll)
+            throws Exception {
+        StringWriter writer = new StringWriter();
+        UidlWriter uidlWriter = new UidlWriter();
+        uidlWriter.setStreamingJson(streaming);
+
+        writer.write("{");
+        uidlWriter.write(ui, writer, repaintAll, false);
+        writer.write("}");
+
+        return new JSONObject(writer.toString());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.server.communication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Utf8WriterTest {
+
+    private static byte[] write(String value, int bufferSize)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8Writer writer = new Utf8Writer(out, bufferSize);
+        writer.write(value);
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static void assertEncoded(String value) throws IOException {
+        byte[] expected = value.getBytes("UTF-8");
+        for (int bufferSize : new int[] { 4, 5, 7, 8192 }) {
+            Assert.assertArrayEquals("Buffer size " + bufferSize, expected,
+                    write(value, bufferSize));
+        }
+    }
+
+    @Test
+    public void write_ascii_encodedAsUtf8() throws IOException {
+        assertEncoded("for(;;);[{\"changes\":[]}]");
+    }
+
+    @Test
+    public void write_multiByteCharacters_encodedAsUtf8() throws IOException {
+        assertEncoded("B\u00f6rje \u20ac \u4e2d\u6587 \ud83d\ude00 end");
+    }
+
+    @Test
+    public void write_unpairedSurrogates_replaced() throws IOException {
+        Assert.assertEquals("a?b?c?",
+                new String(write("a\ud83db\ude00c\ud83d", 4), "UTF-8"));
+    }
+
+    @Test
+    public void write_charArrayAndSingleChars_encodedAsUtf8()
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8Writer writer = new Utf8Writer(out, 4);
+        writer.write("x\u00e4\ud83d".toCharArray(), 1, 2);
+        writer.write(0xde00);
+        writer.write('!');
+        writer.flush();
+        Assert.assertEquals("\u00e4\ud83d\ude00!",
+                new String(out.toByteArray(), "UTF-8"));
+    }
+
+    @Test(expected = IOException.class)
+    public void write_closed_throws() throws IOException {
+        Utf8Writer writer = new Utf8Writer(new ByteArrayOutputStream());
+        writer.close();
+        writer.write("a");
+    }
+}
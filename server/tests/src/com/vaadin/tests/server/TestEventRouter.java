@@ -1,9 +1,22 @@
 package com.vaadin.tests.server;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
+import com.vaadin.event.EventRouter;
+import com.vaadin.event.ListenerMethod.MethodException;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Button.ClickEvent;
+import com.vaadin.ui.Button.ClickListener;
 import com.vaadin.ui.TextField;
 
 public class TestEventRouter extends TestCase {
@@ -36,4 +49,76 @@ public class TestEventRouter extends TestCase {
         tf.setValue("ghi"); // Two inner listener calls, adds one inner
         assert (innerListenerCalls == 3);
     }
+
+    public static class RecordingListener implements ClickListener {
+        private final List<String> calls;
+        private final String name;
+
+        public RecordingListener(List<String> calls, String name) {
+            this.calls = calls;
+            this.name = name;
+        }
+
+        @Override
+        public void buttonClick(ClickEvent event) {
+            calls.add(name + " buttonClick");
+        }
+
+        public void anyEvent(EventObject event) {
+            calls.add(name + " anyEvent");
+        }
+    }
+
+    public void testFireEventInRegistrationOrder() {
+        EventRouter router = new EventRouter();
+        final List<String> calls = new ArrayList<String>();
+        RecordingListener first = new RecordingListener(calls, "first");
+        RecordingListener second = new RecordingListener(calls, "second");
+        router.addListener(EventObject.class, first, "anyEvent");
+        router.addListener(ClickEvent.class, second,
+                ClickListener.BUTTON_CLICK_METHOD);
+        router.addListener(EventObject.class, second, "anyEvent");
+
+        router.fireEvent(new ClickEvent(new Button()));
+        router.fireEvent(new EventObject(this));
+
+        assertEquals("[first anyEvent, second buttonClick, second anyEvent, "
+                + "first anyEvent, second anyEvent]", calls.toString());
+    }
+
+    public void testListenerExceptionWrapped() {
+        Button button = new Button();
+        final RuntimeException exception = new RuntimeException();
+        button.addClickListener(new ClickListener() {
+            @Override
+            public void buttonClick(ClickEvent event) {
+                throw exception;
+            }
+        });
+        try {
+            button.click();
+            fail("Exception was not thrown");
+        } catch (MethodException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+
+    public void testFireEventAfterDeserialization() throws Exception {
+        EventRouter router = new EventRouter();
+        router.addListener(ClickEvent.class, new RecordingListener(
+                new ArrayList<String>(), "listener"),
+                ClickListener.BUTTON_CLICK_METHOD);
+        router.fireEvent(new ClickEvent(new Button()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ObjectOutputStream(bytes).writeObject(router);
+        EventRouter copy = (EventRouter) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        copy.fireEvent(new ClickEvent(new Button()));
+
+        RecordingListener listener = (RecordingListener) copy.getListeners(
+                ClickEvent.class).iterator().next();
+        assertEquals("[listener buttonClick, listener buttonClick]",
+                listener.calls.toString());
+    }
 }
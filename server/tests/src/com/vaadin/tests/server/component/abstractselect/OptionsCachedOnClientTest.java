@@ -0,0 +1,139 @@
+package com.vaadin.tests.server.component.abstractselect;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.MockServletConfig;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.communication.UidlWriter;
+import com.vaadin.tests.util.AlwaysLockedVaadinSession;
+import com.vaadin.tests.util.MockDeploymentConfiguration;
+import com.vaadin.ui.AbstractSelect;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.OptionGroup;
+import com.vaadin.ui.TwinColSelect;
+import com.vaadin.ui.UI;
+
+public class OptionsCachedOnClientTest {
+
+    private UI ui;
+    private CssLayout layout;
+
+    @Before
+    public void setup() throws Exception {
+        VaadinServlet servlet = new VaadinServlet();
+        servlet.init(new MockServletConfig());
+        VaadinServletService service = new VaadinServletService(servlet,
+                new MockDeploymentConfiguration());
+        service.init();
+
+        VaadinSession session = new AlwaysLockedVaadinSession(service);
+        session.setCommunicationManager(new LegacyCommunicationManager(
+                session));
+        session.setConfiguration(service.getDeploymentConfiguration());
+
+        ui = new UI() {
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+        };
+        ui.setSession(session);
+        layout = new CssLayout();
+        ui.setContent(layout);
+    }
+
+    @Test
+    public void selectionChangeDoesNotResendOptions() throws Exception {
+        TwinColSelect select = createSelect(new TwinColSelect(), true);
+        assertTrue(write(true).contains("Option 42"));
+
+        select.setValue(select.getItemIds());
+        String response = write(false);
+        assertTrue(response.contains("\"unchanged\":true"));
+        assertFalse(response.contains("Option 42"));
+    }
+
+    @Test
+    public void optionsResentByDefault() throws Exception {
+        TwinColSelect select = createSelect(new TwinColSelect(), false);
+        write(true);
+
+        select.setValue(select.getItemIds());
+        String response = write(false);
+        assertTrue(response.contains("Option 42"));
+        assertFalse(response.contains("unchanged"));
+    }
+
+    @Test
+    public void changedOptionsAreResent() throws Exception {
+        TwinColSelect select = createSelect(new TwinColSelect(), true);
+        write(true);
+
+        select.setItemCaption("Option 42", "Changed caption");
+        String response = write(false);
+        assertTrue(response.contains("Changed caption"));
+        assertTrue(response.contains("Option 41"));
+
+        select.addItem("New option");
+        assertTrue(write(false).contains("New option"));
+    }
+
+    @Test
+    public void repaintAllResendsOptions() throws Exception {
+        TwinColSelect select = createSelect(new TwinColSelect(), true);
+        write(true);
+
+        select.markAsDirty();
+        assertFalse(write(false).contains("Option 42"));
+        assertTrue(write(true).contains("Option 42"));
+    }
+
+    @Test
+    public void reattachedSelectGetsOptions() throws Exception {
+        TwinColSelect select = createSelect(new TwinColSelect(), true);
+        write(true);
+
+        layout.removeComponent(select);
+        write(false);
+        layout.addComponent(select);
+        assertTrue(write(false).contains("Option 42"));
+    }
+
+    @Test
+    public void disabledOptionIsResent() throws Exception {
+        OptionGroup optionGroup = createSelect(new OptionGroup(), true);
+        write(true);
+
+        optionGroup.setItemEnabled("Option 42", false);
+        assertTrue(write(false).contains("Option 42"));
+    }
+
+    private <T extends AbstractSelect> T createSelect(T select,
+            boolean optionsCachedOnClient) {
+        select.setMultiSelect(true);
+        select.setOptionsCachedOnClient(optionsCachedOnClient);
+        for (int i = 0; i < 100; i++) {
+            select.addItem("Option " + i);
+        }
+        layout.addComponent(select);
+        return select;
+    }
+
+    private String write(boolean repaintAll) throws Exception {
+        if (repaintAll) {
+            ui.getSession().getCommunicationManager().repaintAll(ui);
+        }
+        StringWriter writer = new StringWriter();
+        new UidlWriter().write(ui, writer, repaintAll, false);
+        return writer.toString();
+    }
+}
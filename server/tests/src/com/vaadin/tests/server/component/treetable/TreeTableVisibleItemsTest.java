@@ -0,0 +1,144 @@
+package com.vaadin.tests.server.component.treetable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.vaadin.data.util.HierarchicalContainer;
+import com.vaadin.ui.TreeTable;
+
+public class TreeTableVisibleItemsTest extends TestCase {
+
+    private static class TestTreeTable extends TreeTable {
+        public Object idByIndex(int index) {
+            return getIdByIndex(index);
+        }
+
+        public int indexOf(Object itemId) {
+            return indexOfId(itemId);
+        }
+    }
+
+    private TestTreeTable treeTable;
+    private HierarchicalContainer container;
+    private List<Object> allIds = new ArrayList<Object>();
+
+    @Override
+    protected void setUp() {
+        container = new HierarchicalContainer();
+        Random random = new Random(1);
+        for (int i = 0; i < 300; i++) {
+            Object id = container.addItem();
+            if (!allIds.isEmpty() && random.nextInt(5) != 0) {
+                container.setParent(id,
+                        allIds.get(random.nextInt(allIds.size())));
+            }
+            allIds.add(id);
+        }
+        treeTable = new TestTreeTable();
+        treeTable.setContainerDataSource(container);
+    }
+
+    public void testExpandAndCollapse() {
+        Random random = new Random(2);
+        assertVisibleItems();
+        for (int i = 0; i < 200; i++) {
+            Object id = allIds.get(random.nextInt(allIds.size()));
+            treeTable.setCollapsed(id, !treeTable.isCollapsed(id));
+            assertVisibleItems();
+        }
+    }
+
+    public void testContainerChangeAfterExpand() {
+        Object root = container.rootItemIds().iterator().next();
+        treeTable.setCollapsed(root, false);
+        assertVisibleItems();
+
+        Object child = container.addItem();
+        container.setParent(child, root);
+        allIds.add(child);
+        assertVisibleItems();
+
+        treeTable.setCollapsed(root, true);
+        assertVisibleItems();
+    }
+
+    public void testCollapseAllLoop() {
+        List<Object> roots = createSmallTree();
+        for (Object rootId : roots) {
+            treeTable.setCollapsed(rootId, false);
+        }
+        assertEquals(12, treeTable.size());
+
+        for (Object id : treeTable.getItemIds()) {
+            treeTable.setCollapsed(id, true);
+        }
+        assertEquals(roots, new ArrayList<Object>(treeTable.getItemIds()));
+        assertVisibleItems();
+    }
+
+    public void testExpandAllLoop() {
+        List<Object> roots = createSmallTree();
+
+        // Expands the items visible when the loop starts
+        for (Object id : treeTable.getItemIds()) {
+            treeTable.setCollapsed(id, false);
+        }
+        assertEquals(12, treeTable.size());
+        for (Object rootId : roots) {
+            assertFalse(treeTable.isCollapsed(rootId));
+            for (Object childId : container.getChildren(rootId)) {
+                assertTrue(treeTable.isCollapsed(childId));
+            }
+        }
+        assertVisibleItems();
+    }
+
+    /**
+     * Replaces the container with three roots, each having three children.
+     */
+    private List<Object> createSmallTree() {
+        container = new HierarchicalContainer();
+        List<Object> roots = new ArrayList<Object>();
+        for (int r = 0; r < 3; r++) {
+            String rootId = "r" + r;
+            container.addItem(rootId);
+            roots.add(rootId);
+            for (int c = 0; c < 3; c++) {
+                String childId = rootId + "c" + c;
+                container.addItem(childId);
+                container.setParent(childId, rootId);
+            }
+        }
+        treeTable.setContainerDataSource(container);
+        return roots;
+    }
+
+    private void assertVisibleItems() {
+        List<Object> expected = new ArrayList<Object>();
+        for (Object rootId : container.rootItemIds()) {
+            addVisible(rootId, expected);
+        }
+
+        assertEquals(expected.size(), treeTable.size());
+        assertEquals(expected, new ArrayList<Object>(treeTable.getItemIds()));
+        for (int i = 0; i < expected.size(); i++) {
+            Object id = expected.get(i);
+            assertEquals(id, treeTable.idByIndex(i));
+            assertEquals(i, treeTable.indexOf(id));
+            assertEquals(i + 1 < expected.size() ? expected.get(i + 1)
+                    : null, treeTable.nextItemId(id));
+        }
+    }
+
+    private void addVisible(Object id, List<Object> visible) {
+        visible.add(id);
+        if (!treeTable.isCollapsed(id) && container.hasChildren(id)) {
+            for (Object childId : container.getChildren(id)) {
+                addVisible(childId, visible);
+            }
+        }
+    }
+}
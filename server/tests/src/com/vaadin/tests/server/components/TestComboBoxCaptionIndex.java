@@ -0,0 +1,102 @@
+package com.vaadin.tests.server.components;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+import com.vaadin.data.util.IndexedContainer;
+import com.vaadin.shared.ui.combobox.FilteringMode;
+import com.vaadin.ui.AbstractSelect.ItemCaptionMode;
+import com.vaadin.ui.ComboBox;
+
+/**
+ * Check that filtering the options of a combo box using a caption index gives
+ * the same pages as using container filters, without changing the container.
+ */
+public class TestComboBoxCaptionIndex extends TestCase {
+
+    private static final String CAPTION = "caption";
+
+    private static class TestComboBox extends ComboBox {
+        public TestComboBox(IndexedContainer container) {
+            setContainerDataSource(container);
+            setItemCaptionMode(ItemCaptionMode.PROPERTY);
+            setItemCaptionPropertyId(CAPTION);
+        }
+
+        public List<?> getOptions(String filter, int page) {
+            Map<String, Object> variables = new HashMap<String, Object>();
+            variables.put("filter", filter);
+            variables.put("page", Integer.valueOf(page));
+            changeVariables(this, variables);
+            return getOptionsWithFilter(false);
+        }
+    }
+
+    private IndexedContainer container;
+    private int itemSetChanges = 0;
+
+    @Override
+    protected void setUp() {
+        container = new IndexedContainer();
+        container.addContainerProperty(CAPTION, String.class, null);
+        for (int i = 0; i < 1000; i++) {
+            String caption = (i % 3 == 0 ? "Foo " : "Bar ") + i;
+            container.getContainerProperty(container.addItem(), CAPTION)
+                    .setValue(caption);
+        }
+        // An item without a caption
+        container.addItem();
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                itemSetChanges++;
+            }
+        });
+    }
+
+    public void testSameOptionsAsContainerFilter() {
+        TestComboBox filtered = new TestComboBox(container);
+        TestComboBox indexed = new TestComboBox(container);
+        indexed.setCaptionIndexEnabled(true);
+
+        for (FilteringMode mode : FilteringMode.values()) {
+            filtered.setFilteringMode(mode);
+            indexed.setFilteringMode(mode);
+            for (String filter : new String[] { "", "f", "FOO 1", "bar 99",
+                    "7", "x" }) {
+                for (int page = 0; page < 3; page++) {
+                    assertEquals(mode + " " + filter + " " + page,
+                            filtered.getOptions(filter, page),
+                            indexed.getOptions(filter, page));
+                }
+            }
+        }
+    }
+
+    public void testContainerNotChanged() {
+        TestComboBox indexed = new TestComboBox(container);
+        indexed.setCaptionIndexEnabled(true);
+        itemSetChanges = 0;
+
+        assertEquals(10, indexed.getOptions("foo", 0).size());
+        assertEquals(10, indexed.getOptions("foo 1", 1).size());
+        assertEquals(0, itemSetChanges);
+        assertFalse(container.hasContainerFilters());
+    }
+
+    public void testIndexUpdatedOnChange() {
+        TestComboBox indexed = new TestComboBox(container);
+        indexed.setCaptionIndexEnabled(true);
+        assertEquals(0, indexed.getOptions("baz", 0).size());
+
+        Object itemId = container.addItem();
+        assertEquals(0, indexed.getOptions("baz", 0).size());
+        container.getContainerProperty(itemId, CAPTION).setValue("Baz");
+        assertEquals(1, indexed.getOptions("baz", 0).size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.vaadin.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IndexedIdListTest {
+
+    @Test
+    public void addAndRemoveRanges() {
+        IndexedIdList list = new IndexedIdList();
+        list.addAll(0, Arrays.asList("a", "d"));
+        list.addAll(1, Arrays.asList("b", "c"));
+        list.addAll(4, Arrays.asList("e"));
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), list.asList());
+        assertEquals(2, list.indexOf("c"));
+        assertEquals(-1, list.indexOf("x"));
+
+        list.removeRange(1, 3);
+        assertEquals(Arrays.asList("a", "d", "e"), list.asList());
+        assertEquals(-1, list.indexOf("b"));
+        assertEquals(1, list.indexOf("d"));
+        assertFalse(list.asList().contains("c"));
+        assertTrue(list.asList().contains("e"));
+
+        list.removeRange(0, 3);
+        assertEquals(0, list.size());
+        assertEquals(-1, list.indexOf("a"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getOutOfRange() {
+        IndexedIdList list = new IndexedIdList();
+        list.addAll(0, Arrays.asList("a"));
+        list.get(1);
+    }
+
+    @Test
+    public void randomOperationsMatchArrayList() {
+        Random random = new Random(42);
+        IndexedIdList list = new IndexedIdList();
+        List<Object> expected = new ArrayList<Object>();
+        int nextId = 0;
+
+        for (int round = 0; round < 500; round++) {
+            if (random.nextBoolean() || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                List<Object> ids = new ArrayList<Object>();
+                int count = random.nextInt(50);
+                for (int i = 0; i < count; i++) {
+                    ids.add(Integer.valueOf(nextId++));
+                }
+                list.addAll(index, ids);
+                expected.addAll(index, ids);
+            } else {
+                int from = random.nextInt(expected.size());
+                int to = from + random.nextInt(expected.size() - from + 1);
+                list.removeRange(from, to);
+                expected.subList(from, to).clear();
+            }
+
+            assertEquals(expected.size(), list.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i), list.get(i));
+                assertEquals(i, list.indexOf(expected.get(i)));
+            }
+            assertEquals(expected, new ArrayList<Object>(list.asList()));
+        }
+    }
+}
@@ -51,7 +51,18 @@ public enum PushMode {
      * server-side state are automatically pushed to the client once the session
      * lock is released.
      */
-    AUTOMATIC;
+    AUTOMATIC,
+
+    /**
+     * Push is enabled. Like {@link #AUTOMATIC}, but changes are coalesced and
+     * pushed to the client at most once per
+     * {@link com.vaadin.ui.PushConfiguration#getCoalescingInterval()
+     * coalescing interval}. Calls to {@link com.vaadin.ui.UI#push() ui.push()}
+     * are also deferred until the end of the interval.
+     * 
+     * @since 7.2
+     */
+    COALESCED;
 
     /**
      * Checks whether the push mode is using push functionality